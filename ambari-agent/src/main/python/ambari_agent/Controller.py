@@ -43,6 +43,7 @@ from ambari_agent.LiveStatus import LiveStatus
 from ambari_agent.AlertSchedulerHandler import AlertSchedulerHandler
 from ambari_agent.ClusterConfiguration import  ClusterConfiguration
 from ambari_agent.RecoveryManager import  RecoveryManager
+from ambari_agent.PayloadCache import PayloadCache
 from ambari_agent.HeartbeatHandlers import HeartbeatStopHandlers, bind_signal_handlers
 
 logger = logging.getLogger(__name__)
@@ -67,12 +68,14 @@ class Controller(threading.Thread):
                          ':' + config.get('server', 'secured_url_port')
     self.registerUrl = server_secured_url + '/agent/v1/register/' + self.hostname
     self.heartbeatUrl = server_secured_url + '/agent/v1/heartbeat/' + self.hostname
+    self.commandsUrl = server_secured_url + '/agent/v1/commands/' + self.hostname
     self.componentsUrl = server_secured_url + '/agent/v1/components/'
     self.netutil = NetUtil(heartbeat_stop_callback)
     self.responseId = -1
     self.repeatRegistration = False
     self.isRegistered = False
     self.cachedconnect = None
+    self.commandPoller = None
     self.range = range
     self.hasMappedComponents = True
     # Event is used for synchronizing heartbeat iterations (to make possible
@@ -81,6 +84,7 @@ class Controller(threading.Thread):
     # List of callbacks that are called at agent registration
     self.registration_listeners = []
     self.recovery_manager = RecoveryManager()
+    self.payload_cache = PayloadCache()
 
     # pull config directory out of config
     cache_dir = config.get('agent', 'cache_dir')
@@ -264,23 +268,11 @@ class Controller(threading.Thread):
         else:
           self.responseId = serverId
 
-        # if the response contains configurations, update the in-memory and
-        # disk-based configuration cache (execution and alert commands have this)
-        self.cluster_configuration.update_configurations_from_heartbeat(response)
+        self.processCommands(response)
 
-        response_keys = response.keys()
-        if 'cancelCommands' in response_keys:
-          self.cancelCommandInQueue(response['cancelCommands'])
-
-        if 'executionCommands' in response_keys:
-          execution_commands = response['executionCommands']
-          self.recovery_manager.process_execution_commands(execution_commands)
-          self.addToQueue(execution_commands)
-
-        if 'statusCommands' in response_keys:
-          # try storing execution command details and desired state
-          self.recovery_manager.process_status_commands(response['statusCommands'])
-          self.addToStatusQueue(response['statusCommands'])
+        if self.repeatRegistration:
+          # a command referenced a payload which is not cached
+          return
 
         if not self.actionQueue.tasks_in_progress_or_pending():
           recovery_commands = self.recovery_manager.get_recovery_commands()
@@ -289,12 +281,6 @@ class Controller(threading.Thread):
                         recovery_command['roleCommand'], recovery_command['role'])
             self.addToQueue([recovery_command])
 
-        if 'alertDefinitionCommands' in response_keys:
-          self.alert_scheduler_handler.update_definitions(response)
-
-        if 'alertExecutionCommands' in response_keys:
-          self.alert_scheduler_handler.execute_alert(response['alertExecutionCommands'])
-
         if "true" == response['restartAgent']:
           logger.error("Received the restartAgent command")
           self.restartAgent()
@@ -348,6 +334,95 @@ class Controller(threading.Thread):
         logger.info("Stop event received")
         self.DEBUG_STOP_HEARTBEATING=True
 
+  def processCommands(self, response):
+    """ Queue the commands of a heartbeat or commands response """
+    # heartbeat and command poller responses are handled one at a time
+    with self.lock:
+      response_keys = response.keys()
+      if 'executionCommands' in response_keys:
+        response['executionCommands'] = self.resolvePayloads(response['executionCommands'])
+
+      # if the response contains configurations, update the in-memory and
+      # disk-based configuration cache (execution and alert commands have this)
+      self.cluster_configuration.update_configurations_from_heartbeat(response)
+
+      if 'cancelCommands' in response_keys:
+        self.cancelCommandInQueue(response['cancelCommands'])
+
+      if 'executionCommands' in response_keys:
+        execution_commands = response['executionCommands']
+        self.recovery_manager.process_execution_commands(execution_commands)
+        self.addToQueue(execution_commands)
+
+      if 'statusCommands' in response_keys:
+        # try storing execution command details and desired state
+        self.recovery_manager.process_status_commands(response['statusCommands'])
+        self.addToStatusQueue(response['statusCommands'])
+
+      if 'alertDefinitionCommands' in response_keys:
+        self.alert_scheduler_handler.update_definitions(response)
+
+      if 'alertExecutionCommands' in response_keys:
+        self.alert_scheduler_handler.execute_alert(response['alertExecutionCommands'])
+
+  def resolvePayloads(self, commands):
+    """
+    Fill in the payloads which the server only referenced. Commands whose
+    payload is not cached are dropped and the agent registers again, so that
+    the server sends payloads in full until they are cached again.
+    """
+    resolved = []
+    for command in commands:
+      if self.payload_cache.resolve(command):
+        resolved.append(command)
+      else:
+        logger.error("Dropping command %s, registering again to receive its payloads",
+                     command.get('taskId'))
+        self.isRegistered = False
+        self.repeatRegistration = True
+    return resolved
+
+  def startCommandPoller(self):
+    """
+    Start polling the server for commands, which it answers as soon as
+    commands are queued for this host instead of with the next heartbeat
+    """
+    if self.config.get('agent', 'command_poll_enabled', 'true') != 'true':
+      return
+    if self.commandPoller is not None and self.commandPoller.isAlive():
+      return
+
+    self.commandPoller = threading.Thread(target=self.pollCommands, name='CommandPoller')
+    self.commandPoller.daemon = True
+    self.commandPoller.start()
+
+  def pollCommands(self):
+    """
+    Request the commands of this host until the agent stops or has to
+    register again. The server holds each request until commands are queued
+    or its poll timeout passes.
+    """
+    connection = None
+    while self.isRegistered and not self.DEBUG_STOP_HEARTBEATING:
+      try:
+        if connection is None:
+          connection = security.CachedHTTPSConnection(self.config)
+        response = json.loads(connection.request(urllib2.Request(self.commandsUrl)))
+
+        if response.get('registrationCommand') is not None:
+          # the heartbeat registers the agent again
+          logger.info("Stopping command polling until the agent registers again")
+          return
+
+        self.processCommands(response)
+      except Exception, err:
+        if '404' in str(err):
+          logger.info("Server does not deliver commands outside of heartbeats, polling stopped")
+          return
+        logger.warn("Unable to poll commands from %s (details=%s)", self.serverHostname, str(err))
+        connection = None
+        time.sleep(randint(1, self.range))
+
   def run(self):
     self.actionQueue = ActionQueue(self.config, controller=self)
     self.actionQueue.start()
@@ -376,11 +451,15 @@ class Controller(threading.Thread):
         logger.info('Resetting ActionQueue...')
         self.actionQueue.reset()
 
+        # the server sends every payload again after registration
+        self.payload_cache.clear()
+
         # Process callbacks
         for callback in self.registration_listeners:
           callback()
 
         time.sleep(self.netutil.HEARTBEAT_IDDLE_INTERVAL_SEC)
+        self.startCommandPoller()
         self.heartbeatWithServer()
 
   def restartAgent(self):
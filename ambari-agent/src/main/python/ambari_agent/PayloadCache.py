@@ -0,0 +1,90 @@
+#!/usr/bin/env python
+
+"""
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+"""
+
+import copy
+import logging
+import threading
+
+logger = logging.getLogger(__name__)
+
+class PayloadCache():
+  """
+  Keeps the payloads shared by the execution commands of a stage
+  (clusterHostInfo, configurations and hostLevelParams). The server only
+  sends a payload with the first command which uses it; later commands carry
+  its hash in 'payloadHashes' and leave the payload out.
+  """
+
+  # the server remembers half as many payloads per host
+  PAYLOAD_LIMIT = 32
+
+  PAYLOAD_HASHES = 'payloadHashes'
+
+  def __init__(self):
+    self.__payloads = {}
+    self.__hashes = []
+    self.__lock = threading.RLock()
+
+  def resolve(self, command):
+    """
+    Fills in the payloads a command references and keeps the ones it carries.
+    :param command: the execution command, changed in place
+    :return: False if a referenced payload is not cached, True otherwise
+    """
+    hashes = command.get(PayloadCache.PAYLOAD_HASHES)
+    if not hashes:
+      return True
+
+    self.__lock.acquire()
+    try:
+      for name, payload_hash in hashes.items():
+        if command.get(name) is not None:
+          self.__put(payload_hash, copy.deepcopy(command[name]))
+        elif payload_hash in self.__payloads:
+          self.__touch(payload_hash)
+          command[name] = copy.deepcopy(self.__payloads[payload_hash])
+        else:
+          logger.error("Command {0} references {1} {2} which is not cached".format(
+            command.get('taskId'), name, payload_hash))
+          return False
+    finally:
+      self.__lock.release()
+
+    return True
+
+  def clear(self):
+    self.__lock.acquire()
+    try:
+      self.__payloads.clear()
+      del self.__hashes[:]
+    finally:
+      self.__lock.release()
+
+  def __put(self, payload_hash, payload):
+    self.__payloads[payload_hash] = payload
+    self.__touch(payload_hash)
+
+    while len(self.__hashes) > PayloadCache.PAYLOAD_LIMIT:
+      del self.__payloads[self.__hashes.pop(0)]
+
+  def __touch(self, payload_hash):
+    if payload_hash in self.__hashes:
+      self.__hashes.remove(payload_hash)
+    self.__hashes.append(payload_hash)
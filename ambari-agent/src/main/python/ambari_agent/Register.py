@@ -53,7 +53,8 @@ class Register:
                  'hardwareProfile'   : self.hardware.get(),
                  'agentEnv'          : agentEnv,
                  'agentVersion'      : version,
-                 'prefix'            : self.config.get('agent', 'prefix')
+                 'prefix'            : self.config.get('agent', 'prefix'),
+                 'cachesPayloads'    : True
                }
     return register
 
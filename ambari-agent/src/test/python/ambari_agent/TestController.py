@@ -713,6 +713,66 @@ class TestController(unittest.TestCase):
     self.controller.sendRequest = Controller.Controller.addToStatusQueue
     pass
 
+  @patch.object(Controller.security, "CachedHTTPSConnection")
+  @patch("time.sleep")
+  def test_pollCommands(self, sleepMock, connectionMock):
+    connection = MagicMock()
+    connectionMock.return_value = connection
+    connection.request.side_effect = [
+      Exception("Connection reset"),
+      '{"executionCommands": ["command1"]}',
+      '{"registrationCommand": {"command": "REGISTER"}}']
+
+    self.controller.isRegistered = True
+    self.controller.DEBUG_STOP_HEARTBEATING = False
+    addToQueue = MagicMock(name="addToQueue")
+    self.controller.addToQueue = addToQueue
+    self.controller.recovery_manager = MagicMock()
+    self.controller.cluster_configuration = MagicMock()
+
+    self.controller.pollCommands()
+
+    # the failed request gets a new connection
+    self.assertEquals(2, connectionMock.call_count)
+    self.assertEquals(1, sleepMock.call_count)
+    addToQueue.assert_called_once_with(["command1"])
+    self.assertEquals(3, connection.request.call_count)
+    self.assertEquals(self.controller.commandsUrl,
+                      connection.request.call_args[0][0].get_full_url())
+
+  @patch.object(Controller.security, "CachedHTTPSConnection")
+  @patch("time.sleep")
+  def test_pollCommandsStopsOnOlderServer(self, sleepMock, connectionMock):
+    connectionMock.return_value.request.side_effect = Exception("HTTP Error 404: Not Found")
+
+    self.controller.isRegistered = True
+    self.controller.DEBUG_STOP_HEARTBEATING = False
+    self.controller.pollCommands()
+
+    self.assertEquals(1, connectionMock.return_value.request.call_count)
+    self.assertFalse(sleepMock.called)
+
+  def test_processCommandsWithMissingPayload(self):
+    addToQueue = MagicMock(name="addToQueue")
+    self.controller.addToQueue = addToQueue
+    self.controller.recovery_manager = MagicMock()
+    self.controller.cluster_configuration = MagicMock()
+    self.controller.isRegistered = True
+
+    self.controller.processCommands({'executionCommands': [
+      {'taskId': 1, 'configurations': {'core-site': {}},
+       'payloadHashes': {'configurations': 'a'}},
+      {'taskId': 2, 'configurations': None,
+       'payloadHashes': {'configurations': 'a'}},
+      {'taskId': 3, 'configurations': None,
+       'payloadHashes': {'configurations': 'b'}}]})
+
+    commands = addToQueue.call_args[0][0]
+    self.assertEquals([1, 2], [command['taskId'] for command in commands])
+    self.assertEquals({'core-site': {}}, commands[1]['configurations'])
+    self.assertFalse(self.controller.isRegistered)
+    self.assertTrue(self.controller.repeatRegistration)
+
 if __name__ == "__main__":
   unittest.main(verbosity=2)
 
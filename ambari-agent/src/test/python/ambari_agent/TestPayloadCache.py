@@ -0,0 +1,78 @@
+#!/usr/bin/env python
+
+'''
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+'''
+
+
+from ambari_agent.PayloadCache import PayloadCache
+from unittest import TestCase
+
+class TestPayloadCache(TestCase):
+
+  def test_resolve_referenced_payloads(self):
+    cache = PayloadCache()
+
+    first = {'taskId': 1,
+             'clusterHostInfo': {'all_hosts': ['h1', 'h2']},
+             'configurations': {'core-site': {'fs.defaultFS': 'hdfs://h1:8020'}},
+             'hostLevelParams': None,
+             'payloadHashes': {'clusterHostInfo': 'a', 'configurations': 'b'}}
+    self.assertTrue(cache.resolve(first))
+
+    second = {'taskId': 2,
+              'clusterHostInfo': None,
+              'configurations': None,
+              'payloadHashes': {'clusterHostInfo': 'a', 'configurations': 'b'}}
+    self.assertTrue(cache.resolve(second))
+    self.assertEquals(['h1', 'h2'], second['clusterHostInfo']['all_hosts'])
+    self.assertEquals('hdfs://h1:8020', second['configurations']['core-site']['fs.defaultFS'])
+
+    # each command gets its own copy
+    second['configurations']['core-site']['fs.defaultFS'] = 'hdfs://h2:8020'
+    third = {'taskId': 3, 'configurations': None, 'payloadHashes': {'configurations': 'b'}}
+    self.assertTrue(cache.resolve(third))
+    self.assertEquals('hdfs://h1:8020', third['configurations']['core-site']['fs.defaultFS'])
+
+  def test_resolve_without_references(self):
+    cache = PayloadCache()
+    command = {'taskId': 1, 'configurations': {'core-site': {}}}
+    self.assertTrue(cache.resolve(command))
+    self.assertEquals({'core-site': {}}, command['configurations'])
+
+  def test_resolve_missing_payload(self):
+    cache = PayloadCache()
+    command = {'taskId': 1, 'configurations': None, 'payloadHashes': {'configurations': 'b'}}
+    self.assertFalse(cache.resolve(command))
+
+  def test_least_recently_used_payload_evicted(self):
+    cache = PayloadCache()
+    for i in range(PayloadCache.PAYLOAD_LIMIT + 1):
+      cache.resolve({'configurations': {'site': {'index': str(i)}},
+                     'payloadHashes': {'configurations': str(i)}})
+      # keep the first payload in use
+      self.assertTrue(cache.resolve({'configurations': None,
+                                     'payloadHashes': {'configurations': '0'}}))
+
+    self.assertFalse(cache.resolve({'configurations': None,
+                                    'payloadHashes': {'configurations': '1'}}))
+    self.assertTrue(cache.resolve({'configurations': None,
+                                   'payloadHashes': {'configurations': '2'}}))
+
+    cache.clear()
+    self.assertFalse(cache.resolve({'configurations': None,
+                                    'payloadHashes': {'configurations': '0'}}))
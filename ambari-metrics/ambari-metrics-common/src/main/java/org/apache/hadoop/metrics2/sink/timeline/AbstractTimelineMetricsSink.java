@@ -27,8 +27,11 @@ import org.codehaus.jackson.map.AnnotationIntrospector;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+import java.io.File;
 import java.io.IOException;
 import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class AbstractTimelineMetricsSink {
   public static final String TAGS_FOR_PREFIX_PROPERTY_PREFIX = "tagsForPrefix.";
@@ -37,10 +40,16 @@ public abstract class AbstractTimelineMetricsSink {
   public static final String METRICS_POST_TIMEOUT_SECONDS = "timeout";
   public static final String COLLECTOR_HOST_PROPERTY = "collector";
   public static final String COLLECTOR_PORT_PROPERTY = "port";
+  public static final String EMITTER_QUEUE_CAPACITY = "queueCapacity";
+  public static final String EMITTER_COMPRESS = "compress";
+  public static final String SPOOL_DIR_PROPERTY = "spoolDir";
+  public static final String SPOOL_MAX_SIZE = "spoolMaxSize";
+  public static final String COLLECTOR_PATH = "/ws/v1/timeline/metrics";
 
   protected static final int DEFAULT_POST_TIMEOUT_SECONDS = 10;
   protected final Log LOG;
   private HttpClient httpClient = new HttpClient();
+  private TimelineMetricsEmitter emitter;
 
   protected static ObjectMapper mapper;
 
@@ -80,6 +89,75 @@ public abstract class AbstractTimelineMetricsSink {
     }
   }
 
+  /**
+   * Starts posting the metrics passed to {@link #queueMetrics} from a
+   * background thread.
+   *
+   * @param collectorUris the collectors, tried in turn
+   * @param spoolDir      the directory of the spool file or null to drop the
+   *                      metrics while no collector is reachable
+   * @param spoolName     the name of the spool file, unique to the sink
+   */
+  protected synchronized void startEmitter(List<String> collectorUris,
+                                           int queueCapacity, boolean compress,
+                                           String spoolDir, String spoolName,
+                                           long spoolMaxSize) {
+    File spoolFile = spoolDir == null || spoolDir.trim().isEmpty() ? null :
+        new File(spoolDir.trim(), spoolName + ".spool");
+    emitter = new TimelineMetricsEmitter(httpClient, mapper, collectorUris,
+        queueCapacity, compress, spoolFile, spoolMaxSize);
+    emitter.start();
+  }
+
+  protected synchronized void stopEmitter() {
+    if (emitter != null) {
+      try {
+        emitter.stop(getTimeoutSeconds() * 1000L);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Hands the metrics to the emitter, or posts them from the calling thread
+   * if the sink did not start one.
+   */
+  protected void queueMetrics(TimelineMetrics metrics) throws IOException {
+    TimelineMetricsEmitter emitter = getEmitter();
+    if (emitter != null && emitter.isRunning()) {
+      if (!emitter.emit(metrics)) {
+        LOG.debug("Metrics queue is full, dropping metrics");
+      }
+    } else {
+      emitMetrics(metrics);
+    }
+  }
+
+  /**
+   * @return the emitter, which exposes the queue, drop and latency counters,
+   * or null if the sink posts synchronously
+   */
+  public synchronized TimelineMetricsEmitter getEmitter() {
+    return emitter;
+  }
+
+  /**
+   * Builds the collector URIs from a comma separated list of hosts, each
+   * optionally followed by its port.
+   */
+  public static List<String> getCollectorUris(String hosts, String defaultPort) {
+    List<String> uris = new ArrayList<String>();
+    for (String host : hosts.split(",")) {
+      host = host.trim();
+      if (!host.isEmpty()) {
+        uris.add("http://" + (host.contains(":") ? host : host + ":" + defaultPort) +
+            COLLECTOR_PATH);
+      }
+    }
+    return uris;
+  }
+
   public void setHttpClient(HttpClient httpClient) {
     this.httpClient = httpClient;
   }
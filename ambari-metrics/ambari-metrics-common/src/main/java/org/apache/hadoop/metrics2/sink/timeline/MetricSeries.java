@@ -0,0 +1,494 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.JsonSerializableWithType;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.TypeSerializer;
+
+/**
+ * The values of a timeline metric, kept sorted by timestamp in parallel
+ * primitive arrays instead of a TreeMap of boxed entries.
+ *
+ * Values are appended in constant time when they arrive in timestamp order,
+ * which is the common case, and are inserted or replaced with a binary search
+ * otherwise. Null values are stored as NaN.
+ *
+ * The series is also a {@code Map<Long, Double>} iterating in timestamp order,
+ * so it can be used where the values used to be a map. Access through the map
+ * methods boxes the values; code on hot paths should use the indexed methods.
+ * Mappers using the JAXB annotations write the series as a JSON object of
+ * timestamps to values, the shape of the map, without boxing.
+ */
+@XmlJavaTypeAdapter(MetricSeries.JsonAdapter.class)
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class MetricSeries extends AbstractMap<Long, Double> {
+
+  private static final long[] EMPTY_TIMESTAMPS = new long[0];
+  private static final double[] EMPTY_VALUES = new double[0];
+
+  private long[] timestamps;
+  private double[] values;
+  private int size;
+
+  /**
+   * Incremented on every structural modification, to fail iterators fast.
+   */
+  private int modCount;
+
+  private Set<Map.Entry<Long, Double>> entrySet;
+
+  public MetricSeries() {
+    timestamps = EMPTY_TIMESTAMPS;
+    values = EMPTY_VALUES;
+  }
+
+  public MetricSeries(int capacity) {
+    timestamps = capacity > 0 ? new long[capacity] : EMPTY_TIMESTAMPS;
+    values = capacity > 0 ? new double[capacity] : EMPTY_VALUES;
+  }
+
+  /**
+   * Copy the given values, which need not be sorted.
+   */
+  public MetricSeries(Map<Long, Double> values) {
+    this(values.size());
+    if (values instanceof MetricSeries) {
+      merge((MetricSeries) values);
+    } else {
+      for (Map.Entry<Long, Double> entry : values.entrySet()) {
+        add(toTimestamp(entry.getKey()), toDouble(entry.getValue()));
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  /**
+   * @return the value at the given index, NaN for a null value
+   */
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public void setValue(int index, double value) {
+    checkIndex(index);
+    values[index] = value;
+  }
+
+  public long firstTimestamp() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return timestamps[0];
+  }
+
+  public long lastTimestamp() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return timestamps[size - 1];
+  }
+
+  /**
+   * @return the index of the timestamp, or (-(insertion point) - 1) if the
+   * series has no value at the timestamp
+   */
+  public int indexOf(long timestamp) {
+    // Values mostly arrive in order, check the end first
+    if (size == 0 || timestamp > timestamps[size - 1]) {
+      return -size - 1;
+    }
+    return Arrays.binarySearch(timestamps, 0, size, timestamp);
+  }
+
+  /**
+   * Add a value, replacing the value at the same timestamp if any.
+   *
+   * @param timestamp  the timestamp
+   * @param value      the value, NaN for a null value
+   */
+  public void add(long timestamp, double value) {
+    int index = indexOf(timestamp);
+    if (index >= 0) {
+      values[index] = value;
+      return;
+    }
+
+    index = -index - 1;
+    ensureCapacity(size + 1);
+    if (index < size) {
+      System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+      System.arraycopy(values, index, values, index + 1, size - index);
+    }
+    timestamps[index] = timestamp;
+    values[index] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Add all values of the given series, replacing the values at the same
+   * timestamps.
+   */
+  public void merge(MetricSeries other) {
+    if (other == this || other.size == 0) {
+      return;
+    }
+
+    if (size == 0 || other.timestamps[0] > timestamps[size - 1]) {
+      ensureCapacity(size + other.size);
+      System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+      modCount++;
+      return;
+    }
+
+    long[] mergedTimestamps = new long[size + other.size];
+    double[] mergedValues = new double[size + other.size];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < size || j < other.size) {
+      if (j == other.size || (i < size && timestamps[i] < other.timestamps[j])) {
+        mergedTimestamps[k] = timestamps[i];
+        mergedValues[k++] = values[i++];
+      } else {
+        if (i < size && timestamps[i] == other.timestamps[j]) {
+          i++;
+        }
+        mergedTimestamps[k] = other.timestamps[j];
+        mergedValues[k++] = other.values[j++];
+      }
+    }
+
+    timestamps = mergedTimestamps;
+    values = mergedValues;
+    size = k;
+    modCount++;
+  }
+
+  /**
+   * @return a copy of the values from the start timestamp, inclusive, to the
+   * end timestamp, exclusive
+   */
+  public MetricSeries slice(long startTime, long endTime) {
+    int from = indexOf(startTime);
+    from = from < 0 ? -from - 1 : from;
+    int to = endTime > startTime ? indexOf(endTime) : from;
+    to = to < 0 ? -to - 1 : to;
+
+    MetricSeries slice = new MetricSeries(to - from);
+    if (to > from) {
+      System.arraycopy(timestamps, from, slice.timestamps, 0, to - from);
+      System.arraycopy(values, from, slice.values, 0, to - from);
+      slice.size = to - from;
+    }
+    return slice;
+  }
+
+  /**
+   * Release the unused capacity.
+   */
+  public void trimToSize() {
+    if (size < timestamps.length) {
+      timestamps = size == 0 ? EMPTY_TIMESTAMPS : Arrays.copyOf(timestamps, size);
+      values = size == 0 ? EMPTY_VALUES : Arrays.copyOf(values, size);
+    }
+  }
+
+  @Override
+  public Double get(Object key) {
+    if (!(key instanceof Number)) {
+      return null;
+    }
+    int index = indexOf(((Number) key).longValue());
+    return index >= 0 ? toValue(values[index]) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof Number && indexOf(((Number) key).longValue()) >= 0;
+  }
+
+  @Override
+  public Double put(Long key, Double value) {
+    long timestamp = toTimestamp(key);
+    int index = indexOf(timestamp);
+    if (index >= 0) {
+      Double previous = toValue(values[index]);
+      values[index] = toDouble(value);
+      return previous;
+    }
+    add(timestamp, toDouble(value));
+    return null;
+  }
+
+  @Override
+  public void putAll(Map<? extends Long, ? extends Double> map) {
+    if (map instanceof MetricSeries) {
+      merge((MetricSeries) map);
+    } else {
+      for (Map.Entry<? extends Long, ? extends Double> entry : map.entrySet()) {
+        add(toTimestamp(entry.getKey()), toDouble(entry.getValue()));
+      }
+    }
+  }
+
+  @Override
+  public Double remove(Object key) {
+    if (!(key instanceof Number)) {
+      return null;
+    }
+    int index = indexOf(((Number) key).longValue());
+    if (index < 0) {
+      return null;
+    }
+    Double previous = toValue(values[index]);
+    removeAt(index);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Set<Map.Entry<Long, Double>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  private void removeAt(int index) {
+    int moved = size - index - 1;
+    if (moved > 0) {
+      System.arraycopy(timestamps, index + 1, timestamps, index, moved);
+      System.arraycopy(values, index + 1, values, index, moved);
+    }
+    size--;
+    modCount++;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > timestamps.length) {
+      int newCapacity = Math.max(capacity, Math.max(8,
+        timestamps.length + (timestamps.length >> 1)));
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+
+  // JSON deserialization may produce keys of another number type or strings
+  private static long toTimestamp(Object key) {
+    if (key instanceof Number) {
+      return ((Number) key).longValue();
+    }
+    return Long.parseLong(key.toString());
+  }
+
+  private static double toDouble(Double value) {
+    return value == null ? Double.NaN : value;
+  }
+
+  private static Double toValue(double value) {
+    return Double.isNaN(value) ? null : value;
+  }
+
+  /**
+   * Jackson serializes maps with its own serializer, unless the annotations
+   * adapt them to another type.
+   */
+  public static final class JsonAdapter extends XmlAdapter<JsonValues, MetricSeries> {
+    @Override
+    public JsonValues marshal(MetricSeries series) {
+      return new JsonValues(series);
+    }
+
+    @Override
+    public MetricSeries unmarshal(JsonValues values) {
+      return values.series;
+    }
+  }
+
+  public static final class JsonValues implements JsonSerializableWithType {
+    private final MetricSeries series;
+
+    JsonValues(MetricSeries series) {
+      this.series = series;
+    }
+
+    @Override
+    public void serialize(JsonGenerator jgen, SerializerProvider provider)
+        throws IOException {
+      jgen.writeStartObject();
+      for (int i = 0; i < series.size; i++) {
+        jgen.writeFieldName(Long.toString(series.timestamps[i]));
+        if (Double.isNaN(series.values[i])) {
+          jgen.writeNull();
+        } else {
+          jgen.writeNumber(series.values[i]);
+        }
+      }
+      jgen.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator jgen, SerializerProvider provider,
+                                  TypeSerializer typeSer) throws IOException {
+      serialize(jgen, provider);
+    }
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<Long, Double>> {
+    @Override
+    public Iterator<Map.Entry<Long, Double>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void clear() {
+      MetricSeries.this.clear();
+    }
+  }
+
+  private final class EntryIterator implements Iterator<Map.Entry<Long, Double>> {
+    private int next;
+    private int last = -1;
+    private int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public Map.Entry<Long, Double> next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return new Entry(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeAt(last);
+      next = last;
+      last = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  private final class Entry implements Map.Entry<Long, Double> {
+    private final int index;
+
+    Entry(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public Long getKey() {
+      return timestamps[index];
+    }
+
+    @Override
+    public Double getValue() {
+      return toValue(values[index]);
+    }
+
+    @Override
+    public Double setValue(Double value) {
+      Double previous = toValue(values[index]);
+      values[index] = toDouble(value);
+      return previous;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+      Double value = getValue();
+      return getKey().equals(e.getKey())
+        && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      Double value = getValue();
+      return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
@@ -18,7 +18,6 @@
 package org.apache.hadoop.metrics2.sink.timeline;
 
 import java.util.Map;
-import java.util.TreeMap;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -27,6 +26,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
+import org.codehaus.jackson.annotate.JsonIgnore;
 
 @XmlRootElement(name = "metric")
 @XmlAccessorType(XmlAccessType.NONE)
@@ -41,7 +41,7 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
   private long timestamp;
   private long startTime;
   private String type;
-  private Map<Long, Double> metricValues = new TreeMap<Long, Double>();
+  private MetricSeries metricValues = new MetricSeries();
 
   @XmlElement(name = "metricname")
   public String getMetricName() {
@@ -111,8 +111,27 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     return metricValues;
   }
 
+  /**
+   * Set the values of the metric. A {@link MetricSeries} is used as is, any
+   * other map is copied.
+   */
   public void setMetricValues(Map<Long, Double> metricValues) {
-    this.metricValues = metricValues;
+    if (metricValues instanceof MetricSeries) {
+      this.metricValues = (MetricSeries) metricValues;
+    } else if (metricValues != null) {
+      this.metricValues = new MetricSeries(metricValues);
+    } else {
+      this.metricValues = new MetricSeries();
+    }
+  }
+
+  /**
+   * @return the values of the metric, the same instance as
+   * {@link #getMetricValues()}
+   */
+  @JsonIgnore
+  public MetricSeries getMetricSeries() {
+    return metricValues;
   }
 
   public void addMetricValues(Map<Long, Double> metricValues) {
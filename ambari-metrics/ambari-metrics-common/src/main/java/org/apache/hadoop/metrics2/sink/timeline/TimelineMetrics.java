@@ -18,7 +18,9 @@
 package org.apache.hadoop.metrics2.sink.timeline;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -39,6 +41,19 @@ public class TimelineMetrics {
 
   private List<TimelineMetric> allMetrics = new ArrayList<TimelineMetric>();
 
+  /**
+   * Index of the metrics by everything except time, used to find the metric
+   * to merge with. Metrics added to the list directly are indexed on the next
+   * merge; the index is rebuilt if the list is replaced or shrinks.
+   */
+  private final Map<MetricKey, TimelineMetric> index =
+    new HashMap<MetricKey, TimelineMetric>();
+
+  /**
+   * The number of leading metrics of the list that have been indexed.
+   */
+  private int indexedCount;
+
   public TimelineMetrics() {}
 
   @XmlElement(name = "metrics")
@@ -48,6 +63,8 @@ public class TimelineMetrics {
 
   public void setMetrics(List<TimelineMetric> allMetrics) {
     this.allMetrics = allMetrics;
+    index.clear();
+    indexedCount = 0;
   }
 
   private boolean isEqualTimelineMetrics(TimelineMetric metric1,
@@ -76,16 +93,8 @@ public class TimelineMetrics {
    * @param metric {@link TimelineMetric}
    */
   public void addOrMergeTimelineMetric(TimelineMetric metric) {
-    TimelineMetric metricToMerge = null;
-
-    if (!allMetrics.isEmpty()) {
-      for (TimelineMetric timelineMetric : allMetrics) {
-        if (timelineMetric.equalsExceptTime(metric)) {
-          metricToMerge = timelineMetric;
-          break;
-        }
-      }
-    }
+    TimelineMetric metricToMerge = findMetric(new MetricKey(metric.getMetricName(),
+      metric.getHostName(), metric.getAppId(), metric.getInstanceId()));
 
     if (metricToMerge != null) {
       metricToMerge.addMetricValues(metric.getMetricValues());
@@ -96,25 +105,18 @@ public class TimelineMetrics {
         metricToMerge.setStartTime(metric.getStartTime());
       }
     } else {
-      allMetrics.add(metric);
+      addMetric(metric);
     }
   }
 
   // Optimization that addresses too many TreeMaps from getting created.
   public void addOrMergeTimelineMetric(SingleValuedTimelineMetric metric) {
-    TimelineMetric metricToMerge = null;
-
-    if (!allMetrics.isEmpty()) {
-      for (TimelineMetric timelineMetric : allMetrics) {
-        if (metric.equalsExceptTime(timelineMetric)) {
-          metricToMerge = timelineMetric;
-          break;
-        }
-      }
-    }
+    TimelineMetric metricToMerge = findMetric(new MetricKey(metric.getMetricName(),
+      metric.getHostName(), metric.getAppId(), metric.getInstanceId()));
 
     if (metricToMerge != null) {
-      metricToMerge.getMetricValues().put(metric.getTimestamp(), metric.getValue());
+      metricToMerge.getMetricSeries().add(metric.getTimestamp(),
+        metric.getValue() != null ? metric.getValue() : Double.NaN);
       if (metricToMerge.getTimestamp() > metric.getTimestamp()) {
         metricToMerge.setTimestamp(metric.getTimestamp());
       }
@@ -122,7 +124,86 @@ public class TimelineMetrics {
         metricToMerge.setStartTime(metric.getStartTime());
       }
     } else {
-      allMetrics.add(metric.getTimelineMetric());
+      addMetric(metric.getTimelineMetric());
+    }
+  }
+
+  /**
+   * Finds the first metric of the list with the given key, indexing the
+   * metrics added to the list since the last lookup.
+   */
+  private TimelineMetric findMetric(MetricKey key) {
+    if (indexedCount > allMetrics.size()) {
+      index.clear();
+      indexedCount = 0;
+    }
+
+    for (; indexedCount < allMetrics.size(); indexedCount++) {
+      TimelineMetric metric = allMetrics.get(indexedCount);
+      MetricKey metricKey = new MetricKey(metric.getMetricName(),
+        metric.getHostName(), metric.getAppId(), metric.getInstanceId());
+      if (!index.containsKey(metricKey)) {
+        index.put(metricKey, metric);
+      }
+    }
+
+    return index.get(key);
+  }
+
+  private void addMetric(TimelineMetric metric) {
+    allMetrics.add(metric);
+    // index it now if the list was up to date, else on the next lookup
+    if (indexedCount == allMetrics.size() - 1) {
+      index.put(new MetricKey(metric.getMetricName(), metric.getHostName(),
+        metric.getAppId(), metric.getInstanceId()), metric);
+      indexedCount++;
+    }
+  }
+
+  /**
+   * The fields compared by {@link TimelineMetric#equalsExceptTime}.
+   */
+  private static final class MetricKey {
+    private final String metricName;
+    private final String hostName;
+    private final String appId;
+    private final String instanceId;
+    private final int hashCode;
+
+    MetricKey(String metricName, String hostName, String appId,
+              String instanceId) {
+      this.metricName = metricName;
+      this.hostName = hostName;
+      this.appId = appId;
+      this.instanceId = instanceId;
+
+      int result = metricName != null ? metricName.hashCode() : 0;
+      result = 31 * result + (hostName != null ? hostName.hashCode() : 0);
+      result = 31 * result + (appId != null ? appId.hashCode() : 0);
+      result = 31 * result + (instanceId != null ? instanceId.hashCode() : 0);
+      hashCode = result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof MetricKey)) return false;
+
+      MetricKey that = (MetricKey) o;
+      return hashCode == that.hashCode
+        && equal(metricName, that.metricName)
+        && equal(hostName, that.hostName)
+        && equal(appId, that.appId)
+        && equal(instanceId, that.instanceId);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    private static boolean equal(String s1, String s2) {
+      return s1 != null ? s1.equals(s2) : s2 == null;
     }
   }
 }
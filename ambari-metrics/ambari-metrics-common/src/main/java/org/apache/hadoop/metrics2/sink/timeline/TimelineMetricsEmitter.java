@@ -0,0 +1,492 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Posts the metrics of a sink to the collector from a background thread, so
+ * that the threads producing the metrics never wait for the collector.
+ *
+ * Batches are put on a bounded queue and dropped when it is full. The worker
+ * posts them, gzip compressed and serialized straight to the connection, to
+ * the first collector of the list which accepts them. When no collector
+ * accepts a batch it is written to the spool file, if one is configured, and
+ * the worker backs off; spooled batches are replayed in order before any new
+ * batch is posted.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class TimelineMetricsEmitter {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsEmitter.class);
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 100;
+  public static final long DEFAULT_SPOOL_MAX_SIZE = 64L * 1024 * 1024;
+  static final long MIN_RETRY_INTERVAL_MILLIS = 1000;
+  static final long MAX_RETRY_INTERVAL_MILLIS = 60000;
+
+  private static final String JSON_CONTENT_TYPE = "application/json";
+  private static final byte PLAIN = 0;
+  private static final byte GZIP = 1;
+
+  private final HttpClient httpClient;
+  private final ObjectMapper mapper;
+  private final List<String> collectorUris;
+  private final BlockingQueue<TimelineMetrics> queue;
+  private final boolean compress;
+  private final File spoolFile;
+  private final long spoolMaxSize;
+
+  private volatile TimelineMetricsSpool spool;
+  private Thread worker;
+  private volatile boolean running;
+
+  /**
+   * Index of the collector which accepted the last batch, tried first.
+   */
+  private int collectorIndex;
+  private long retryInterval = MIN_RETRY_INTERVAL_MILLIS;
+  private long retryTime;
+
+  private final AtomicLong queuedCount = new AtomicLong();
+  private final AtomicLong sentCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private final AtomicLong spooledCount = new AtomicLong();
+  private final AtomicLong postCount = new AtomicLong();
+  private final AtomicLong postMillis = new AtomicLong();
+  private volatile long lastPostMillis;
+
+  /**
+   * @param spoolFile the file batches are written to while no collector is
+   *                  reachable or null to drop them
+   */
+  public TimelineMetricsEmitter(HttpClient httpClient, ObjectMapper mapper,
+                                List<String> collectorUris, int queueCapacity,
+                                boolean compress, File spoolFile,
+                                long spoolMaxSize) {
+    if (collectorUris.isEmpty()) {
+      throw new IllegalArgumentException("No collector specified");
+    }
+    this.httpClient = httpClient;
+    this.mapper = mapper;
+    this.collectorUris = new ArrayList<String>(collectorUris);
+    this.queue = new ArrayBlockingQueue<TimelineMetrics>(queueCapacity);
+    this.compress = compress;
+    this.spoolFile = spoolFile;
+    this.spoolMaxSize = spoolMaxSize;
+  }
+
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    if (spoolFile != null) {
+      try {
+        spool = TimelineMetricsSpool.open(spoolFile, spoolMaxSize);
+        if (spool == null) {
+          LOG.warn("Spool file " + spoolFile + " is used by another sink, " +
+              "metrics will be dropped while the collector is unreachable");
+        }
+      } catch (IOException e) {
+        LOG.warn("Unable to open spool file " + spoolFile + ", metrics will " +
+            "be dropped while the collector is unreachable", e);
+      }
+    }
+    running = true;
+    worker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        work();
+      }
+    }, "timeline-metrics-emitter");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Stops the worker, waiting for it to post or spool the queued batches.
+   */
+  public void stop(long timeoutMillis) throws InterruptedException {
+    Thread thread;
+    synchronized (this) {
+      if (!running) {
+        return;
+      }
+      running = false;
+      thread = worker;
+      worker = null;
+    }
+    thread.join(timeoutMillis);
+    if (thread.isAlive()) {
+      LOG.warn("Timed out waiting for the queued metrics to be posted");
+      thread.interrupt();
+      thread.join(timeoutMillis);
+    }
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Queues a batch to be posted.
+   *
+   * @return false if the queue is full and the batch was dropped
+   */
+  public boolean emit(TimelineMetrics metrics) {
+    if (queue.offer(metrics)) {
+      queuedCount.incrementAndGet();
+      return true;
+    }
+    droppedCount.incrementAndGet();
+    return false;
+  }
+
+  public List<String> getCollectorUris() {
+    return collectorUris;
+  }
+
+  /**
+   * @return the number of batches waiting in the queue
+   */
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  /**
+   * @return the number of batches accepted by {@link #emit}
+   */
+  public long getQueuedCount() {
+    return queuedCount.get();
+  }
+
+  /**
+   * @return the number of batches posted, including replayed ones
+   */
+  public long getSentCount() {
+    return sentCount.get();
+  }
+
+  /**
+   * @return the number of batches dropped because the queue or the spool
+   * was full, no spool is configured or the collector rejected them
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * @return the number of posts no collector accepted
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * @return the number of batches written to the spool
+   */
+  public long getSpooledCount() {
+    return spooledCount.get();
+  }
+
+  /**
+   * @return the number of bytes in the spool waiting to be replayed
+   */
+  public long getSpoolSize() {
+    TimelineMetricsSpool spool = this.spool;
+    try {
+      return spool == null ? 0 : spool.getSize();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * @return the duration of the last accepted post in milliseconds
+   */
+  public long getLastPostLatency() {
+    return lastPostMillis;
+  }
+
+  /**
+   * @return the average duration of the accepted posts in milliseconds
+   */
+  public double getAveragePostLatency() {
+    long posts = postCount.get();
+    return posts == 0 ? 0 : (double) postMillis.get() / posts;
+  }
+
+  private void work() {
+    try {
+      while (running) {
+        TimelineMetrics metrics = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (System.currentTimeMillis() >= retryTime) {
+          replay();
+        }
+        if (metrics != null) {
+          process(metrics);
+        }
+      }
+    } catch (InterruptedException e) {
+      // keep the status so that the remaining batches are spooled
+      Thread.currentThread().interrupt();
+    }
+
+    // the sink is stopping, post what is left without waiting for retries
+    List<TimelineMetrics> remaining = new ArrayList<TimelineMetrics>();
+    queue.drainTo(remaining);
+    for (TimelineMetrics metrics : remaining) {
+      process(metrics);
+    }
+    closeSpool();
+  }
+
+  /**
+   * Posts the batch unless the collector is unreachable or older batches
+   * are still spooled, in which case it is spooled to keep the order.
+   */
+  private void process(TimelineMetrics metrics) {
+    byte[] body;
+    try {
+      if (isSpoolEmpty() && System.currentTimeMillis() >= retryTime &&
+          !Thread.currentThread().isInterrupted()) {
+        if (post(new MetricsRequestEntity(metrics), compress)) {
+          return;
+        }
+      }
+      body = encode(metrics);
+    } catch (IOException e) {
+      LOG.warn("Unable to serialize metrics", e);
+      droppedCount.incrementAndGet();
+      return;
+    }
+    spool(body);
+  }
+
+  /**
+   * Posts the spooled batches in the order they were written until the
+   * spool is empty or a post fails.
+   */
+  private void replay() {
+    if (spool == null) {
+      return;
+    }
+    try {
+      byte[] record;
+      while (running && (record = spool.peek()) != null) {
+        byte[] body = Arrays.copyOfRange(record, 1, record.length);
+        if (!post(new ByteArrayRequestEntity(body, JSON_CONTENT_TYPE), record[0] == GZIP)) {
+          return;
+        }
+        spool.remove();
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to read spool file " + spool.getFile(), e);
+    }
+  }
+
+  private void spool(byte[] record) {
+    if (spool == null) {
+      droppedCount.incrementAndGet();
+      return;
+    }
+    try {
+      if (spool.append(record)) {
+        spooledCount.incrementAndGet();
+      } else {
+        droppedCount.incrementAndGet();
+        LOG.debug("Spool file " + spool.getFile() + " is full, dropping metrics");
+      }
+    } catch (IOException e) {
+      droppedCount.incrementAndGet();
+      LOG.warn("Unable to write to spool file " + spool.getFile(), e);
+    }
+  }
+
+  /**
+   * Posts the body to the collectors in turn, starting with the last one
+   * which accepted a batch.
+   *
+   * @return false if no collector could be reached, true if the batch was
+   * accepted or rejected by a collector and must not be retried
+   */
+  private boolean post(RequestEntity entity, boolean gzip) {
+    for (int i = 0; i < collectorUris.size(); i++) {
+      int index = (collectorIndex + i) % collectorUris.size();
+      String connectUrl = collectorUris.get(index);
+      PostMethod postMethod = new PostMethod(connectUrl);
+      postMethod.setRequestEntity(entity);
+      if (gzip) {
+        postMethod.setRequestHeader("Content-Encoding", "gzip");
+      }
+      try {
+        long start = System.currentTimeMillis();
+        int statusCode = httpClient.executeMethod(postMethod);
+        long latency = System.currentTimeMillis() - start;
+        if (statusCode == 200) {
+          collectorIndex = index;
+          retryInterval = MIN_RETRY_INTERVAL_MILLIS;
+          retryTime = 0;
+          sentCount.incrementAndGet();
+          postCount.incrementAndGet();
+          postMillis.addAndGet(latency);
+          lastPostMillis = latency;
+          LOG.debug("Metrics posted to Collector " + connectUrl);
+          return true;
+        }
+        if (statusCode < 500) {
+          collectorIndex = index;
+          droppedCount.incrementAndGet();
+          LOG.info("Unable to POST metrics to collector, " + connectUrl +
+              ", statusCode = " + statusCode);
+          return true;
+        }
+        LOG.info("Unable to POST metrics to collector, " + connectUrl +
+            ", statusCode = " + statusCode);
+      } catch (IOException e) {
+        LOG.info("Unable to connect to collector, " + connectUrl + ", " + e);
+      } finally {
+        postMethod.releaseConnection();
+      }
+    }
+
+    failedCount.incrementAndGet();
+    retryTime = System.currentTimeMillis() + retryInterval;
+    retryInterval = Math.min(retryInterval * 2, MAX_RETRY_INTERVAL_MILLIS);
+    return false;
+  }
+
+  private byte[] encode(TimelineMetrics metrics) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(compress ? GZIP : PLAIN);
+    writeMetrics(metrics, out);
+    return out.toByteArray();
+  }
+
+  private void writeMetrics(TimelineMetrics metrics, OutputStream out)
+      throws IOException {
+    if (compress) {
+      GZIPOutputStream gzip = new GZIPOutputStream(out);
+      mapper.writeValue(new NonClosingOutputStream(gzip), metrics);
+      gzip.finish();
+    } else {
+      mapper.writeValue(new NonClosingOutputStream(out), metrics);
+    }
+  }
+
+  private boolean isSpoolEmpty() throws IOException {
+    return spool == null || spool.isEmpty();
+  }
+
+  private void closeSpool() {
+    if (spool != null) {
+      try {
+        spool.close();
+      } catch (IOException e) {
+        LOG.warn("Unable to close spool file " + spool.getFile(), e);
+      }
+      spool = null;
+    }
+  }
+
+  /**
+   * Serializes the batch while the request is written, so the body is never
+   * held in memory. The body length is not known, so it is sent chunked.
+   */
+  private class MetricsRequestEntity implements RequestEntity {
+    private final TimelineMetrics metrics;
+
+    MetricsRequestEntity(TimelineMetrics metrics) {
+      this.metrics = metrics;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return true;
+    }
+
+    @Override
+    public void writeRequest(OutputStream out) throws IOException {
+      writeMetrics(metrics, out);
+    }
+
+    @Override
+    public long getContentLength() {
+      return -1;
+    }
+
+    @Override
+    public String getContentType() {
+      return JSON_CONTENT_TYPE;
+    }
+  }
+
+  /**
+   * Keeps the mapper from closing the underlying stream, which the gzip
+   * stream and the connection have to finish themselves.
+   */
+  private static class NonClosingOutputStream extends OutputStream {
+    private final OutputStream out;
+
+    NonClosingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.flush();
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * Bounded append only file holding the encoded batches which could not be
+ * posted to a collector. Each record is the length of the batch followed by
+ * its bytes. Records are read back in the order they were written; the
+ * consumed records are only removed from the file when it is compacted, so a
+ * process which dies while replaying posts some batches twice, which the
+ * collector tolerates as the same values are written again.
+ *
+ * The file is locked for as long as the spool is open so that two sinks
+ * configured with the same file do not interleave their records.
+ */
+class TimelineMetricsSpool {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsSpool.class);
+
+  private static final int RECORD_HEADER_SIZE = 4;
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+  private final long maxSize;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+  private final FileLock lock;
+
+  /**
+   * Offset of the first record not yet replayed.
+   */
+  private long readPosition;
+
+  private TimelineMetricsSpool(File file, long maxSize, RandomAccessFile raf,
+                               FileLock lock) {
+    this.file = file;
+    this.maxSize = maxSize;
+    this.raf = raf;
+    this.channel = raf.getChannel();
+    this.lock = lock;
+  }
+
+  /**
+   * Opens the spool file, creating it and its directory if needed. Records
+   * left by a previous run are kept and replayed first.
+   *
+   * @return the spool or null if the file is locked by another sink
+   */
+  static TimelineMetricsSpool open(File file, long maxSize) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Unable to create spool directory " + dir);
+    }
+
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    FileLock lock = null;
+    try {
+      lock = raf.getChannel().tryLock();
+    } catch (OverlappingFileLockException e) {
+      // locked by another sink of this process
+    }
+    if (lock == null) {
+      raf.close();
+      return null;
+    }
+
+    TimelineMetricsSpool spool = new TimelineMetricsSpool(file, maxSize, raf, lock);
+    spool.truncateIncompleteRecord();
+    return spool;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  synchronized boolean isEmpty() throws IOException {
+    return readPosition >= channel.size();
+  }
+
+  /**
+   * @return the number of bytes of the records not yet replayed
+   */
+  synchronized long getSize() throws IOException {
+    return channel.size() - readPosition;
+  }
+
+  /**
+   * Appends a record, compacting the file first if the replayed records make
+   * room for it.
+   *
+   * @return false if the record does not fit and was not written
+   */
+  synchronized boolean append(byte[] record) throws IOException {
+    long recordSize = RECORD_HEADER_SIZE + record.length;
+    if (channel.size() + recordSize > maxSize) {
+      compact();
+      if (channel.size() + recordSize > maxSize) {
+        return false;
+      }
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) recordSize);
+    buffer.putInt(record.length).put(record);
+    buffer.flip();
+
+    long position = channel.size();
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+    return true;
+  }
+
+  /**
+   * @return the oldest record not yet replayed or null if there is none
+   */
+  synchronized byte[] peek() throws IOException {
+    long size = channel.size();
+    if (readPosition + RECORD_HEADER_SIZE > size) {
+      return null;
+    }
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    readFully(header, readPosition);
+    int length = header.getInt(0);
+
+    ByteBuffer record = ByteBuffer.allocate(length);
+    readFully(record, readPosition + RECORD_HEADER_SIZE);
+    return record.array();
+  }
+
+  /**
+   * Marks the record returned by {@link #peek()} as replayed. The file is
+   * truncated once all records are replayed.
+   */
+  synchronized void remove() throws IOException {
+    byte[] record = peek();
+    if (record == null) {
+      return;
+    }
+    readPosition += RECORD_HEADER_SIZE + record.length;
+    if (readPosition >= channel.size()) {
+      channel.truncate(0);
+      readPosition = 0;
+    }
+  }
+
+  synchronized void close() throws IOException {
+    try {
+      compact();
+      channel.force(false);
+      lock.release();
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Moves the records not yet replayed to the start of the file.
+   */
+  private void compact() throws IOException {
+    if (readPosition == 0) {
+      return;
+    }
+    long size = channel.size();
+    ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+    long source = readPosition;
+    long target = 0;
+    while (source < size) {
+      buffer.clear();
+      buffer.limit((int) Math.min(COPY_BUFFER_SIZE, size - source));
+      readFully(buffer, source);
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        target += channel.write(buffer, target);
+      }
+      source += buffer.limit();
+    }
+    channel.truncate(target);
+    readPosition = 0;
+  }
+
+  /**
+   * Drops a record left incomplete by a process which died while writing it.
+   */
+  private void truncateIncompleteRecord() throws IOException {
+    long size = channel.size();
+    long position = 0;
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    while (position + RECORD_HEADER_SIZE <= size) {
+      header.clear();
+      readFully(header, position);
+      int length = header.getInt(0);
+      if (length < 0 || position + RECORD_HEADER_SIZE + length > size) {
+        break;
+      }
+      position += RECORD_HEADER_SIZE + length;
+    }
+    if (position < size) {
+      LOG.warn("Dropping " + (size - position) + " bytes of an incomplete " +
+          "record from " + file);
+      channel.truncate(position);
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of spool file " + file);
+      }
+      position += read;
+    }
+  }
+}
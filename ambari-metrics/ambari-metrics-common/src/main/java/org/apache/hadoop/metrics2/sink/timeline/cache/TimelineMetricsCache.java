@@ -21,38 +21,93 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.metrics2.sink.timeline.MetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Holds the values of each metric until they span the eviction time and are
+ * sent. The cache may be used by several reporter threads at once.
+ *
+ * The cache is bounded both by the number of metrics and by the total number
+ * of values they hold. When the bound on values is exceeded the metrics
+ * holding the most values are dropped first, otherwise the oldest, until the
+ * cache is back under nine tenths of the bounds.
+ */
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
 public class TimelineMetricsCache {
 
-  private final TimelineMetricHolder timelineMetricCache = new TimelineMetricHolder();
   private static final Log LOG = LogFactory.getLog(TimelineMetric.class);
   public static final int MAX_RECS_PER_NAME_DEFAULT = 10000;
   public static final int MAX_EVICTION_TIME_MILLIS = 59000; // ~ 1 min
+  public static final long MAX_DATA_POINTS_DEFAULT = 1000000;
+
+  /**
+   * The state of a metric which is not updated for this many eviction times
+   * is forgotten.
+   */
+  private static final int STATE_EXPIRY_FACTOR = 10;
+
   private final int maxRecsPerName;
   private final int maxEvictionTimeInMillis;
-  private final Map<String, Double> counterMetricLastValue = new HashMap<String, Double>();
+  private final long maxDataPoints;
+
+  private final ConcurrentMap<String, TimelineMetricWrapper> timelineMetricCache =
+    new ConcurrentHashMap<String, TimelineMetricWrapper>();
+  // Last timestamp and counter value of each metric, kept across evictions
+  private final ConcurrentMap<String, MetricState> metricStates =
+    new ConcurrentHashMap<String, MetricState>();
+
+  private final AtomicLong dataPoints = new AtomicLong();
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicLong overflowCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final ReentrantLock trimLock = new ReentrantLock();
+  private volatile boolean gotOverflow = false;
+  private volatile long lastStatePurge = System.currentTimeMillis();
 
   public TimelineMetricsCache(int maxRecsPerName, int maxEvictionTimeInMillis) {
+    this(maxRecsPerName, maxEvictionTimeInMillis, MAX_DATA_POINTS_DEFAULT);
+  }
+
+  /**
+   * @param maxRecsPerName          the maximum number of metrics
+   * @param maxEvictionTimeInMillis the time span of the values of a metric
+   *                                after which they are sent
+   * @param maxDataPoints           the maximum number of values of all
+   *                                metrics
+   */
+  public TimelineMetricsCache(int maxRecsPerName, int maxEvictionTimeInMillis,
+                              long maxDataPoints) {
     this.maxRecsPerName = maxRecsPerName;
     this.maxEvictionTimeInMillis = maxEvictionTimeInMillis;
+    this.maxDataPoints = maxDataPoints;
   }
 
   class TimelineMetricWrapper {
     private long timeDiff = -1;
     private long oldestTimestamp = -1;
     private TimelineMetric timelineMetric;
+    private final long sequenceNumber = sequence.incrementAndGet();
+    private int weight;
+    // set once the wrapper is no longer in the cache
+    private boolean removed;
 
     TimelineMetricWrapper(TimelineMetric timelineMetric) {
       this.timelineMetric = timelineMetric;
       this.oldestTimestamp = timelineMetric.getStartTime();
+      this.weight = timelineMetric.getMetricSeries().size();
     }
 
     private void updateTimeDiff(long timestamp) {
@@ -63,9 +118,16 @@ public class TimelineMetricsCache {
       }
     }
 
-    public void putMetric(TimelineMetric metric) {
+    /**
+     * @return the number of values added
+     */
+    public int putMetric(TimelineMetric metric) {
       this.timelineMetric.addMetricValues(metric.getMetricValues());
       updateTimeDiff(metric.getStartTime());
+      int size = timelineMetric.getMetricSeries().size();
+      int added = size - weight;
+      weight = size;
+      return added;
     }
 
     public long getTimeDiff() {
@@ -77,97 +139,129 @@ public class TimelineMetricsCache {
     }
   }
 
-  // TODO: Change to ConcurentHashMap with weighted eviction
-  class TimelineMetricHolder extends LinkedHashMap<String, TimelineMetricWrapper> {
-    private static final long serialVersionUID = 1L;
-    private boolean gotOverflow = false;
-    // To avoid duplication at the end of the buffer and beginning of the next
-    // segment of values
-    private Map<String, Long> endOfBufferTimestamps = new HashMap<String, Long>();
+  /**
+   * The values of a metric which outlive its cache entry.
+   */
+  private static class MetricState {
+    private Long lastTimestamp;
+    private Double lastCounterValue;
+    private volatile long lastUpdate;
+  }
 
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<String, TimelineMetricWrapper> eldest) {
-      boolean overflow = size() > maxRecsPerName;
-      if (overflow && !gotOverflow) {
-        LOG.warn("Metrics cache overflow at "+ size() +" for "+ eldest);
-        gotOverflow = true;
-      }
-      return overflow;
+  public TimelineMetric getTimelineMetric(String metricName) {
+    TimelineMetricWrapper metricWrapper = timelineMetricCache.get(metricName);
+    if (metricWrapper == null) {
+      return null;
     }
 
-    public TimelineMetric evict(String metricName) {
-      TimelineMetricWrapper metricWrapper = this.get(metricName);
-
-      if (metricWrapper == null
+    synchronized (metricWrapper) {
+      if (metricWrapper.removed
         || metricWrapper.getTimeDiff() < getMaxEvictionTimeInMillis()) {
         return null;
       }
+      remove(metricName, metricWrapper);
+    }
+    evictionCount.incrementAndGet();
+    return metricWrapper.getTimelineMetric();
+  }
 
-      TimelineMetric timelineMetric = metricWrapper.getTimelineMetric();
-      this.remove(metricName);
+  /**
+   * Getter method to help testing eviction
+   * @return @int
+   */
+  public int getMaxEvictionTimeInMillis() {
+    return maxEvictionTimeInMillis;
+  }
 
-      return timelineMetric;
-    }
+  /**
+   * @return the number of metrics in the cache
+   */
+  public int size() {
+    return timelineMetricCache.size();
+  }
+
+  /**
+   * @return the number of values of all metrics in the cache
+   */
+  public long getDataPointCount() {
+    return dataPoints.get();
+  }
 
-    public void put(String metricName, TimelineMetric timelineMetric) {
-      if (isDuplicate(timelineMetric)) {
+  /**
+   * @return the number of metrics dropped because the cache was full
+   */
+  public long getOverflowCount() {
+    return overflowCount.get();
+  }
+
+  /**
+   * @return the number of metrics handed out to be sent
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  public void putTimelineMetric(TimelineMetric timelineMetric) {
+    String metricName = timelineMetric.getMetricName();
+    MetricState state = getMetricState(metricName);
+    // To avoid duplication at the end of the buffer and beginning of the
+    // next segment of values
+    synchronized (state) {
+      if (isDuplicate(state, timelineMetric)) {
         return;
       }
-      TimelineMetricWrapper metric = this.get(metricName);
+      state.lastTimestamp = timelineMetric.getStartTime();
+    }
+
+    while (true) {
+      TimelineMetricWrapper metric = timelineMetricCache.get(metricName);
       if (metric == null) {
-        this.put(metricName, new TimelineMetricWrapper(timelineMetric));
+        TimelineMetricWrapper wrapper = new TimelineMetricWrapper(timelineMetric);
+        if (timelineMetricCache.putIfAbsent(metricName, wrapper) == null) {
+          dataPoints.addAndGet(wrapper.weight);
+          break;
+        }
       } else {
-        metric.putMetric(timelineMetric);
+        synchronized (metric) {
+          // retry if the metric was evicted meanwhile
+          if (!metric.removed) {
+            dataPoints.addAndGet(metric.putMetric(timelineMetric));
+            break;
+          }
+        }
       }
-      // Buffer last ts value
-      endOfBufferTimestamps.put(metricName, timelineMetric.getStartTime());
-    }
-
-    /**
-     * Test whether last buffered timestamp is same as the newly received.
-     * @param timelineMetric @TimelineMetric
-     * @return true/false
-     */
-    private boolean isDuplicate(TimelineMetric timelineMetric) {
-      return endOfBufferTimestamps.containsKey(timelineMetric.getMetricName())
-        && endOfBufferTimestamps.get(timelineMetric.getMetricName()).equals(timelineMetric.getStartTime());
     }
-  }
 
-  public TimelineMetric getTimelineMetric(String metricName) {
-    if (timelineMetricCache.containsKey(metricName)) {
-      return timelineMetricCache.evict(metricName);
+    if (timelineMetricCache.size() > maxRecsPerName || dataPoints.get() > maxDataPoints) {
+      trim();
     }
-
-    return null;
+    purgeMetricStates();
   }
 
   /**
-   * Getter method to help testing eviction
-   * @return @int
+   * Test whether last buffered timestamp is same as the newly received.
+   * @param timelineMetric @TimelineMetric
+   * @return true/false
    */
-  public int getMaxEvictionTimeInMillis() {
-    return maxEvictionTimeInMillis;
-  }
-
-  public void putTimelineMetric(TimelineMetric timelineMetric) {
-    timelineMetricCache.put(timelineMetric.getMetricName(), timelineMetric);
+  private boolean isDuplicate(MetricState state, TimelineMetric timelineMetric) {
+    return state.lastTimestamp != null
+      && state.lastTimestamp.equals(timelineMetric.getStartTime());
   }
 
   private void transformMetricValuesToDerivative(TimelineMetric timelineMetric) {
-    String metricName = timelineMetric.getMetricName();
-    double firstValue = timelineMetric.getMetricValues().size() > 0
-        ? timelineMetric.getMetricValues().entrySet().iterator().next().getValue() : 0;
-    Double value = counterMetricLastValue.get(metricName);
-    double previousValue = value != null ? value : firstValue;
-    Map<Long, Double> metricValues = timelineMetric.getMetricValues();
-    Map<Long, Double>   newMetricValues = new TreeMap<Long, Double>();
-    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
-      newMetricValues.put(entry.getKey(), entry.getValue() - previousValue);
-      previousValue = entry.getValue();
+    MetricState state = getMetricState(timelineMetric.getMetricName());
+    MetricSeries metricValues = timelineMetric.getMetricSeries();
+    synchronized (state) {
+      double firstValue = metricValues.size() > 0 ? metricValues.getValue(0) : 0;
+      Double value = state.lastCounterValue;
+      double previousValue = value != null ? value : firstValue;
+      for (int i = 0; i < metricValues.size(); i++) {
+        double currentValue = metricValues.getValue(i);
+        metricValues.setValue(i, currentValue - previousValue);
+        previousValue = currentValue;
+      }
+      state.lastCounterValue = previousValue;
     }
-    timelineMetric.setMetricValues(newMetricValues);
-    counterMetricLastValue.put(metricName, previousValue);
   }
 
   public void putTimelineMetric(TimelineMetric timelineMetric, boolean isCounter) {
@@ -176,4 +270,135 @@ public class TimelineMetricsCache {
     }
     putTimelineMetric(timelineMetric);
   }
+
+  private MetricState getMetricState(String metricName) {
+    MetricState state = metricStates.get(metricName);
+    if (state == null) {
+      MetricState newState = new MetricState();
+      state = metricStates.putIfAbsent(metricName, newState);
+      if (state == null) {
+        state = newState;
+      }
+    }
+    state.lastUpdate = System.currentTimeMillis();
+    return state;
+  }
+
+  private void remove(String metricName, TimelineMetricWrapper metricWrapper) {
+    metricWrapper.removed = true;
+    timelineMetricCache.remove(metricName, metricWrapper);
+    dataPoints.addAndGet(-metricWrapper.weight);
+  }
+
+  /**
+   * Drops metrics until the cache is back under nine tenths of its bounds:
+   * the heaviest first while there are too many values, so that as few
+   * metrics as possible are lost, and else the oldest. Only one thread trims
+   * at a time, the others carry on.
+   */
+  private void trim() {
+    if (!trimLock.tryLock()) {
+      return;
+    }
+    try {
+      int maxSize = maxRecsPerName - maxRecsPerName / 10;
+      long maxWeight = maxDataPoints - maxDataPoints / 10;
+      if (timelineMetricCache.size() <= maxSize && dataPoints.get() <= maxWeight) {
+        return;
+      }
+
+      List<EvictionCandidate> candidates =
+        new ArrayList<EvictionCandidate>(timelineMetricCache.size());
+      for (Map.Entry<String, TimelineMetricWrapper> entry : timelineMetricCache.entrySet()) {
+        candidates.add(new EvictionCandidate(entry.getKey(), entry.getValue()));
+      }
+      Collections.sort(candidates,
+        dataPoints.get() > maxWeight ? WEIGHT_COMPARATOR : AGE_COMPARATOR);
+
+      int dropped = 0;
+      for (EvictionCandidate candidate : candidates) {
+        if (timelineMetricCache.size() <= maxSize && dataPoints.get() <= maxWeight) {
+          break;
+        }
+        TimelineMetricWrapper metricWrapper = candidate.metricWrapper;
+        synchronized (metricWrapper) {
+          if (!metricWrapper.removed) {
+            remove(candidate.metricName, metricWrapper);
+            dropped++;
+          }
+        }
+      }
+      overflowCount.addAndGet(dropped);
+
+      if (!gotOverflow) {
+        LOG.warn("Metrics cache overflow at " + (timelineMetricCache.size() + dropped) +
+          " metrics, dropped " + dropped);
+        gotOverflow = true;
+      }
+    } finally {
+      trimLock.unlock();
+    }
+  }
+
+  /**
+   * Forgets the metrics which were not updated for a while, at most once per
+   * eviction time.
+   */
+  private void purgeMetricStates() {
+    long now = System.currentTimeMillis();
+    if (now - lastStatePurge < maxEvictionTimeInMillis || !trimLock.tryLock()) {
+      return;
+    }
+    try {
+      lastStatePurge = now;
+      long expiry = now - (long) STATE_EXPIRY_FACTOR * maxEvictionTimeInMillis;
+      for (Iterator<MetricState> iterator = metricStates.values().iterator(); iterator.hasNext();) {
+        if (iterator.next().lastUpdate < expiry) {
+          iterator.remove();
+        }
+      }
+    } finally {
+      trimLock.unlock();
+    }
+  }
+
+  /**
+   * A metric of the cache with its weight when the trim started, so that the
+   * order does not change while sorting.
+   */
+  private static class EvictionCandidate {
+    private final String metricName;
+    private final TimelineMetricWrapper metricWrapper;
+    private final long sequenceNumber;
+    private final int weight;
+
+    EvictionCandidate(String metricName, TimelineMetricWrapper metricWrapper) {
+      this.metricName = metricName;
+      this.metricWrapper = metricWrapper;
+      this.sequenceNumber = metricWrapper.sequenceNumber;
+      this.weight = metricWrapper.weight;
+    }
+  }
+
+  private static final Comparator<EvictionCandidate> AGE_COMPARATOR =
+    new Comparator<EvictionCandidate>() {
+      @Override
+      public int compare(EvictionCandidate c1, EvictionCandidate c2) {
+        long s1 = c1.sequenceNumber;
+        long s2 = c2.sequenceNumber;
+        return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+      }
+    };
+
+  // heaviest first, the oldest of equally heavy metrics first
+  private static final Comparator<EvictionCandidate> WEIGHT_COMPARATOR =
+    new Comparator<EvictionCandidate>() {
+      @Override
+      public int compare(EvictionCandidate c1, EvictionCandidate c2) {
+        if (c1.weight != c2.weight) {
+          return c1.weight > c2.weight ? -1 : 1;
+        }
+        return AGE_COMPARATOR.compare(c1, c2);
+      }
+    };
 }
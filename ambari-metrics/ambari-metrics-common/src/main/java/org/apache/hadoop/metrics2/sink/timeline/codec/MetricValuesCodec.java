@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline.codec;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.metrics2.sink.timeline.MetricSeries;
+
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the values of a timeline metric, based on the
+ * Gorilla time series compression scheme: timestamps are stored as
+ * delta-of-deltas and values as the XOR with the previous value, both with
+ * variable length bit packing.
+ *
+ * The encoded form starts with a version byte and the number of data points,
+ * followed by the first timestamp and value in full. Timestamps are written
+ * in ascending order. Null values are written as NaN; the decoded
+ * {@link MetricSeries} returns them as null from the {@link Map} methods and
+ * as NaN from {@link MetricSeries#getValue(int)}. A NaN value can therefore
+ * not be told apart from a null value after a round trip.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class MetricValuesCodec {
+
+  /**
+   * Version of the encoding written by {@link #encode(Map)}.
+   */
+  public static final byte VERSION = 1;
+
+  private static final long NULL_VALUE_BITS = Double.doubleToRawLongBits(Double.NaN);
+
+  private MetricValuesCodec() {
+  }
+
+  /**
+   * Encode the given metric values.
+   *
+   * @param values  timestamp to value map; need not be sorted
+   *
+   * @return the encoded values
+   */
+  public static byte[] encode(Map<Long, Double> values) {
+    MetricSeries sortedValues = values instanceof MetricSeries ?
+      (MetricSeries) values : new MetricSeries(values);
+
+    BitWriter writer = new BitWriter(8 + sortedValues.size() * 4);
+    writer.writeBits(VERSION, 8);
+    writer.writeBits(sortedValues.size(), 32);
+
+    long previousTimestamp = 0;
+    long previousDelta = 0;
+    long previousValue = 0;
+    int previousLeadingZeros = -1;
+    int previousTrailingZeros = 0;
+    boolean first = true;
+
+    for (int i = 0; i < sortedValues.size(); i++) {
+      long timestamp = sortedValues.getTimestamp(i);
+      double value = sortedValues.getValue(i);
+      long valueBits = Double.isNaN(value) ? NULL_VALUE_BITS : Double.doubleToRawLongBits(value);
+
+      if (first) {
+        writer.writeBits(timestamp, 64);
+        writer.writeBits(valueBits, 64);
+        first = false;
+      } else {
+        long delta = timestamp - previousTimestamp;
+        writeDeltaOfDelta(writer, delta - previousDelta);
+        previousDelta = delta;
+
+        long xor = valueBits ^ previousValue;
+        if (xor == 0) {
+          writer.writeBit(false);
+        } else {
+          writer.writeBit(true);
+          int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+          int trailingZeros = Long.numberOfTrailingZeros(xor);
+
+          if (previousLeadingZeros != -1 && leadingZeros >= previousLeadingZeros
+              && trailingZeros >= previousTrailingZeros) {
+            // Meaningful bits fit in the previous window
+            writer.writeBit(false);
+            writer.writeBits(xor >>> previousTrailingZeros,
+              64 - previousLeadingZeros - previousTrailingZeros);
+          } else {
+            int significantBits = 64 - leadingZeros - trailingZeros;
+            writer.writeBit(true);
+            writer.writeBits(leadingZeros, 5);
+            writer.writeBits(significantBits - 1, 6);
+            writer.writeBits(xor >>> trailingZeros, significantBits);
+            previousLeadingZeros = leadingZeros;
+            previousTrailingZeros = trailingZeros;
+          }
+        }
+      }
+      previousTimestamp = timestamp;
+      previousValue = valueBits;
+    }
+
+    return writer.toByteArray();
+  }
+
+  /**
+   * Decode metric values written by {@link #encode(Map)}.
+   *
+   * @param encoded  the encoded values
+   *
+   * @return the values sorted by timestamp; null values are read back as
+   *         null through the {@link Map} methods
+   *
+   * @throws IllegalArgumentException if the given bytes are not valid encoded
+   *                                  metric values
+   */
+  public static MetricSeries decode(byte[] encoded) {
+    if (encoded == null || encoded.length == 0) {
+      throw new IllegalArgumentException("No encoded metric values.");
+    }
+    if (encoded[0] != VERSION) {
+      throw new IllegalArgumentException("Unsupported metric values encoding " +
+        "version " + encoded[0]);
+    }
+
+    BitReader reader = new BitReader(encoded, 1);
+    int count = (int) reader.readBits(32);
+    MetricSeries values = new MetricSeries(count);
+    if (count == 0) {
+      return values;
+    }
+
+    long timestamp = reader.readBits(64);
+    long valueBits = reader.readBits(64);
+    values.add(timestamp, Double.longBitsToDouble(valueBits));
+
+    long delta = 0;
+    int leadingZeros = 0;
+    int trailingZeros = 0;
+
+    for (int i = 1; i < count; i++) {
+      delta += readDeltaOfDelta(reader);
+      timestamp += delta;
+
+      if (reader.readBit()) {
+        if (reader.readBit()) {
+          leadingZeros = (int) reader.readBits(5);
+          int significantBits = (int) reader.readBits(6) + 1;
+          trailingZeros = 64 - leadingZeros - significantBits;
+        }
+        int significantBits = 64 - leadingZeros - trailingZeros;
+        valueBits ^= reader.readBits(significantBits) << trailingZeros;
+      }
+      values.add(timestamp, Double.longBitsToDouble(valueBits));
+    }
+
+    return values;
+  }
+
+  // Delta-of-delta buckets : '0', '10' + 7 bits, '110' + 9 bits,
+  // '1110' + 12 bits and '1111' + 64 bits
+  private static void writeDeltaOfDelta(BitWriter writer, long deltaOfDelta) {
+    if (deltaOfDelta == 0) {
+      writer.writeBit(false);
+    } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+      writer.writeBits(0x2, 2);
+      writer.writeBits(deltaOfDelta + 63, 7);
+    } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+      writer.writeBits(0x6, 3);
+      writer.writeBits(deltaOfDelta + 255, 9);
+    } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+      writer.writeBits(0xE, 4);
+      writer.writeBits(deltaOfDelta + 2047, 12);
+    } else {
+      writer.writeBits(0xF, 4);
+      writer.writeBits(deltaOfDelta, 64);
+    }
+  }
+
+  private static long readDeltaOfDelta(BitReader reader) {
+    if (!reader.readBit()) {
+      return 0;
+    }
+    if (!reader.readBit()) {
+      return reader.readBits(7) - 63;
+    }
+    if (!reader.readBit()) {
+      return reader.readBits(9) - 255;
+    }
+    if (!reader.readBit()) {
+      return reader.readBits(12) - 2047;
+    }
+    return reader.readBits(64);
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.codehaus.jackson.map.AnnotationIntrospector;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class MetricSeriesTest {
+
+  @Test
+  public void testAdd() throws Exception {
+    MetricSeries series = new MetricSeries();
+    TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+    long[] timestamps = { 30, 10, 50, 20, 40, 10, 60 };
+    for (int i = 0; i < timestamps.length; i++) {
+      series.add(timestamps[i], i);
+      expected.put(timestamps[i], (double) i);
+    }
+
+    Assert.assertEquals(expected, series);
+    Assert.assertEquals(expected.toString(), series.toString());
+    Assert.assertEquals(6, series.size());
+    Assert.assertEquals(10, series.firstTimestamp());
+    Assert.assertEquals(60, series.lastTimestamp());
+    Assert.assertEquals(5.0, series.getValue(0), 0);
+    Assert.assertEquals(2, series.indexOf(30));
+    Assert.assertEquals(-3, series.indexOf(25));
+  }
+
+  @Test
+  public void testMapView() throws Exception {
+    Map<Long, Double> series = new MetricSeries();
+    Assert.assertNull(series.put(2L, 2.0));
+    Assert.assertNull(series.put(1L, null));
+    Assert.assertEquals(Double.valueOf(2.0), series.put(2L, 3.0));
+
+    Assert.assertTrue(series.containsKey(1L));
+    Assert.assertNull(series.get(1L));
+    Assert.assertEquals(Double.valueOf(3.0), series.get(2L));
+    Assert.assertEquals(Double.NaN, ((MetricSeries) series).getValue(0), 0);
+
+    Iterator<Map.Entry<Long, Double>> iterator = series.entrySet().iterator();
+    iterator.next().setValue(1.0);
+    iterator.next();
+    iterator.remove();
+    Assert.assertEquals(1, series.size());
+    Assert.assertEquals(Double.valueOf(1.0), series.get(1L));
+    Assert.assertEquals(Double.valueOf(1.0), series.remove(1L));
+    Assert.assertTrue(series.isEmpty());
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    MetricSeries series = new MetricSeries();
+    series.add(10, 1.0);
+    series.add(30, 3.0);
+
+    MetricSeries appended = new MetricSeries();
+    appended.add(40, 4.0);
+    series.merge(appended);
+    Assert.assertEquals(3, series.size());
+
+    MetricSeries interleaved = new MetricSeries();
+    interleaved.add(20, 2.0);
+    interleaved.add(30, 30.0);
+    interleaved.add(50, 5.0);
+    series.merge(interleaved);
+
+    TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+    expected.put(10L, 1.0);
+    expected.put(20L, 2.0);
+    expected.put(30L, 30.0);
+    expected.put(40L, 4.0);
+    expected.put(50L, 5.0);
+    Assert.assertEquals(expected, series);
+  }
+
+  @Test
+  public void testSlice() throws Exception {
+    MetricSeries series = new MetricSeries();
+    for (long i = 0; i < 10; i++) {
+      series.add(i * 10, i);
+    }
+
+    MetricSeries slice = series.slice(15, 50);
+    Assert.assertEquals(3, slice.size());
+    Assert.assertEquals(20, slice.firstTimestamp());
+    Assert.assertEquals(40, slice.lastTimestamp());
+
+    Assert.assertEquals(10, series.slice(0, 100).size());
+    Assert.assertTrue(series.slice(100, 200).isEmpty());
+    Assert.assertTrue(series.slice(50, 50).isEmpty());
+  }
+
+  @Test
+  public void testJson() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    AnnotationIntrospector introspector = new JaxbAnnotationIntrospector();
+    mapper.setAnnotationIntrospector(introspector);
+
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("cpu_user");
+    metric.getMetricValues().put(1000L, 1.5);
+    metric.getMetricValues().put(2000L, null);
+
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>(metric.getMetricValues());
+    Assert.assertEquals(mapper.writeValueAsString(values),
+      mapper.writeValueAsString(metric.getMetricSeries()));
+
+    String json = mapper.writeValueAsString(metric);
+    Assert.assertTrue(json.contains("\"metrics\":{\"1000\":1.5,\"2000\":null}"));
+    Assert.assertFalse(json.contains("metricSeries"));
+
+    TimelineMetric read = mapper.readValue(json, TimelineMetric.class);
+    Assert.assertEquals(values, read.getMetricValues());
+    Assert.assertTrue(read.getMetricValues() instanceof MetricSeries);
+  }
+}
@@ -0,0 +1,242 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+public class TimelineMetricsEmitterTest {
+
+  private static final String COLLECTOR1 = "http://c1:6188/ws/v1/timeline/metrics";
+  private static final String COLLECTOR2 = "http://c2:6188/ws/v1/timeline/metrics";
+
+  private ObjectMapper mapper;
+  private TestHttpClient httpClient;
+  private File spoolDir;
+
+  @Before
+  public void setUp() throws Exception {
+    mapper = new ObjectMapper();
+    mapper.setAnnotationIntrospector(new JaxbAnnotationIntrospector());
+    httpClient = new TestHttpClient();
+    spoolDir = File.createTempFile("spool", "");
+    spoolDir.delete();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = spoolDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    spoolDir.delete();
+  }
+
+  @Test
+  public void testCompressedPost() throws Exception {
+    TimelineMetricsEmitter emitter = createEmitter(Collections.singletonList(COLLECTOR1), 10, null);
+    emitter.start();
+    Assert.assertTrue(emitter.emit(createMetrics(1000L)));
+    emitter.stop(5000);
+
+    Assert.assertEquals(1, httpClient.posts.size());
+    Assert.assertEquals(COLLECTOR1, httpClient.posts.get(0).uri);
+    Assert.assertEquals(Arrays.asList(1000L), httpClient.posts.get(0).timestamps);
+    Assert.assertEquals(1, emitter.getQueuedCount());
+    Assert.assertEquals(1, emitter.getSentCount());
+    Assert.assertEquals(0, emitter.getDroppedCount());
+  }
+
+  @Test
+  public void testFailover() throws Exception {
+    httpClient.unreachable.add(COLLECTOR1);
+    TimelineMetricsEmitter emitter = createEmitter(Arrays.asList(COLLECTOR1, COLLECTOR2), 10, null);
+    emitter.start();
+    emitter.emit(createMetrics(1000L));
+    emitter.emit(createMetrics(2000L));
+    emitter.stop(5000);
+
+    // the second batch goes straight to the collector which accepted the first
+    Assert.assertEquals(Arrays.asList(COLLECTOR1, COLLECTOR2, COLLECTOR2), httpClient.attempts);
+    Assert.assertEquals(2, emitter.getSentCount());
+    Assert.assertEquals(0, emitter.getFailedCount());
+  }
+
+  @Test
+  public void testQueueFull() throws Exception {
+    TimelineMetricsEmitter emitter = createEmitter(Collections.singletonList(COLLECTOR1), 2, null);
+    Assert.assertTrue(emitter.emit(createMetrics(1000L)));
+    Assert.assertTrue(emitter.emit(createMetrics(2000L)));
+    Assert.assertFalse(emitter.emit(createMetrics(3000L)));
+
+    Assert.assertEquals(2, emitter.getQueueSize());
+    Assert.assertEquals(2, emitter.getQueuedCount());
+    Assert.assertEquals(1, emitter.getDroppedCount());
+  }
+
+  @Test
+  public void testSpoolAndReplayInOrder() throws Exception {
+    httpClient.unreachable.add(COLLECTOR1);
+    File spoolFile = new File(spoolDir, "test.spool");
+    TimelineMetricsEmitter emitter = createEmitter(Collections.singletonList(COLLECTOR1), 10, spoolFile);
+    emitter.start();
+    emitter.emit(createMetrics(1000L));
+    emitter.emit(createMetrics(2000L));
+    waitFor(emitter, 2);
+
+    Assert.assertEquals(1, emitter.getFailedCount());
+    Assert.assertTrue(emitter.getSpoolSize() > 0);
+    Assert.assertTrue(httpClient.posts.isEmpty());
+
+    // the collector recovers, the spooled batches are posted before the new one
+    httpClient.unreachable.clear();
+    emitter.emit(createMetrics(3000L));
+    long timeout = System.currentTimeMillis() + 10000;
+    while (emitter.getSentCount() < 3 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(50);
+    }
+    emitter.stop(5000);
+
+    Assert.assertEquals(3, emitter.getSentCount());
+    Assert.assertEquals(0, emitter.getSpoolSize());
+    List<Long> timestamps = new ArrayList<Long>();
+    for (Post post : httpClient.posts) {
+      timestamps.addAll(post.timestamps);
+    }
+    Assert.assertEquals(Arrays.asList(1000L, 2000L, 3000L), timestamps);
+  }
+
+  @Test
+  public void testSpoolKeptOnStop() throws Exception {
+    httpClient.unreachable.add(COLLECTOR1);
+    File spoolFile = new File(spoolDir, "test.spool");
+    TimelineMetricsEmitter emitter = createEmitter(Collections.singletonList(COLLECTOR1), 10, spoolFile);
+    emitter.start();
+    emitter.emit(createMetrics(1000L));
+    waitFor(emitter, 1);
+    emitter.emit(createMetrics(2000L));
+    emitter.stop(5000);
+
+    Assert.assertEquals(2, emitter.getSpooledCount());
+    Assert.assertTrue(spoolFile.length() > 0);
+
+    // a new emitter replays what the previous one spooled
+    httpClient.unreachable.clear();
+    emitter = createEmitter(Collections.singletonList(COLLECTOR1), 10, spoolFile);
+    emitter.start();
+    long timeout = System.currentTimeMillis() + 10000;
+    while (emitter.getSentCount() < 2 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(50);
+    }
+    emitter.stop(5000);
+
+    Assert.assertEquals(2, httpClient.posts.size());
+    Assert.assertEquals(Arrays.asList(1000L), httpClient.posts.get(0).timestamps);
+    Assert.assertEquals(Arrays.asList(2000L), httpClient.posts.get(1).timestamps);
+  }
+
+  private TimelineMetricsEmitter createEmitter(List<String> collectors, int queueCapacity,
+                                               File spoolFile) {
+    return new TimelineMetricsEmitter(httpClient, mapper, collectors, queueCapacity,
+        true, spoolFile, TimelineMetricsEmitter.DEFAULT_SPOOL_MAX_SIZE);
+  }
+
+  private static void waitFor(TimelineMetricsEmitter emitter, long spooled)
+      throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10000;
+    while (emitter.getSpooledCount() + emitter.getSentCount() < spooled &&
+        System.currentTimeMillis() < timeout) {
+      Thread.sleep(50);
+    }
+  }
+
+  private static TimelineMetrics createMetrics(long timestamp) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("cpu_user");
+    metric.setAppId("HOST");
+    metric.setHostName("h1");
+    metric.setStartTime(timestamp);
+    metric.getMetricSeries().add(timestamp, 1.0);
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(metric);
+    return metrics;
+  }
+
+  private static class Post {
+    private final String uri;
+    private final List<Long> timestamps = new ArrayList<Long>();
+
+    Post(String uri) {
+      this.uri = uri;
+    }
+  }
+
+  /**
+   * Records the decompressed body of the posts instead of sending them.
+   */
+  private class TestHttpClient extends HttpClient {
+    private final Set<String> unreachable = Collections.synchronizedSet(new HashSet<String>());
+    private final List<String> attempts = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Post> posts = Collections.synchronizedList(new ArrayList<Post>());
+
+    @Override
+    public int executeMethod(HttpMethod method) throws IOException {
+      String uri = method.getURI().toString();
+      attempts.add(uri);
+      if (unreachable.contains(uri)) {
+        throw new ConnectException("Connection refused");
+      }
+
+      Assert.assertEquals("gzip", method.getRequestHeader("Content-Encoding").getValue());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ((PostMethod) method).getRequestEntity().writeRequest(out);
+      InputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()));
+      TimelineMetrics metrics = mapper.readValue(in, TimelineMetrics.class);
+
+      Post post = new Post(uri);
+      for (TimelineMetric metric : metrics.getMetrics()) {
+        post.timestamps.addAll(metric.getMetricValues().keySet());
+      }
+      posts.add(post);
+      return 200;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+public class TimelineMetricsSpoolTest {
+
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile("metrics", ".spool");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void testAppendAndRemove() throws Exception {
+    TimelineMetricsSpool spool = TimelineMetricsSpool.open(file, 1024);
+    Assert.assertTrue(spool.isEmpty());
+    Assert.assertNull(spool.peek());
+
+    Assert.assertTrue(spool.append(new byte[] { 1, 2 }));
+    Assert.assertTrue(spool.append(new byte[] { 3 }));
+    Assert.assertEquals(11, spool.getSize());
+
+    Assert.assertArrayEquals(new byte[] { 1, 2 }, spool.peek());
+    spool.remove();
+    Assert.assertArrayEquals(new byte[] { 3 }, spool.peek());
+    spool.remove();
+
+    Assert.assertTrue(spool.isEmpty());
+    Assert.assertEquals(0, file.length());
+    spool.close();
+  }
+
+  @Test
+  public void testMaxSize() throws Exception {
+    TimelineMetricsSpool spool = TimelineMetricsSpool.open(file, 20);
+    Assert.assertTrue(spool.append(new byte[8]));
+    Assert.assertFalse(spool.append(new byte[9]));
+
+    // the replayed records are compacted to make room
+    Assert.assertTrue(spool.append(new byte[4]));
+    spool.remove();
+    Assert.assertTrue(spool.append(new byte[8]));
+    Assert.assertArrayEquals(new byte[4], spool.peek());
+    Assert.assertEquals(20, file.length());
+    spool.close();
+  }
+
+  @Test
+  public void testReopen() throws Exception {
+    TimelineMetricsSpool spool = TimelineMetricsSpool.open(file, 1024);
+    spool.append(new byte[] { 1 });
+    spool.append(new byte[] { 2 });
+    spool.remove();
+
+    // the file is locked while the spool is open
+    Assert.assertNull(TimelineMetricsSpool.open(file, 1024));
+    spool.close();
+
+    // a record left incomplete is dropped
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    raf.seek(raf.length());
+    raf.writeInt(10);
+    raf.write(3);
+    raf.close();
+
+    spool = TimelineMetricsSpool.open(file, 1024);
+    Assert.assertArrayEquals(new byte[] { 2 }, spool.peek());
+    spool.remove();
+    Assert.assertNull(spool.peek());
+    spool.close();
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TimelineMetricsTest {
+
+  @Test
+  public void testAddOrMergeTimelineMetric() throws Exception {
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.addOrMergeTimelineMetric(createMetric("cpu_user", "h1", 2000L, 2.0));
+    metrics.addOrMergeTimelineMetric(createMetric("cpu_user", "h2", 1000L, 1.0));
+    metrics.addOrMergeTimelineMetric(createMetric("cpu_user", "h1", 1000L, 1.0));
+    metrics.addOrMergeTimelineMetric(createMetric("cpu_user", null, 1000L, 1.0));
+    metrics.addOrMergeTimelineMetric(createMetric("cpu_user", null, 3000L, 3.0));
+
+    List<TimelineMetric> allMetrics = metrics.getMetrics();
+    Assert.assertEquals(3, allMetrics.size());
+
+    // order of the first occurrence is kept
+    Assert.assertEquals("h1", allMetrics.get(0).getHostName());
+    Assert.assertEquals("h2", allMetrics.get(1).getHostName());
+    Assert.assertNull(allMetrics.get(2).getHostName());
+
+    Assert.assertEquals(2, allMetrics.get(0).getMetricValues().size());
+    Assert.assertEquals(1000L, allMetrics.get(0).getTimestamp());
+    Assert.assertEquals(1000L, allMetrics.get(0).getStartTime());
+    Assert.assertEquals(2, allMetrics.get(2).getMetricValues().size());
+  }
+
+  @Test
+  public void testAddOrMergeSingleValuedTimelineMetric() throws Exception {
+    TimelineMetrics metrics = new TimelineMetrics();
+    for (int i = 0; i < 10; i++) {
+      for (String hostName : new String[] { "h1", "h2" }) {
+        SingleValuedTimelineMetric metric = new SingleValuedTimelineMetric(
+          "mem_free", "HOST", null, hostName, 1000L * i, 1000L * i, null);
+        metric.setSingleTimeseriesValue(1000L * i, (double) i);
+        metrics.addOrMergeTimelineMetric(metric);
+      }
+    }
+
+    Assert.assertEquals(2, metrics.getMetrics().size());
+    Assert.assertEquals(10, metrics.getMetrics().get(0).getMetricValues().size());
+    Assert.assertEquals(0L, metrics.getMetrics().get(1).getStartTime());
+  }
+
+  @Test
+  public void testMergeWithMetricsAddedToList() throws Exception {
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(createMetric("cpu_user", "h1", 1000L, 1.0));
+    metrics.addOrMergeTimelineMetric(createMetric("cpu_user", "h1", 2000L, 2.0));
+    Assert.assertEquals(1, metrics.getMetrics().size());
+    Assert.assertEquals(2, metrics.getMetrics().get(0).getMetricValues().size());
+
+    List<TimelineMetric> list = new ArrayList<TimelineMetric>();
+    list.add(createMetric("cpu_user", "h2", 1000L, 1.0));
+    metrics.setMetrics(list);
+    metrics.addOrMergeTimelineMetric(createMetric("cpu_user", "h1", 3000L, 3.0));
+    metrics.addOrMergeTimelineMetric(createMetric("cpu_user", "h2", 3000L, 3.0));
+    Assert.assertEquals(2, list.size());
+    Assert.assertEquals(2, list.get(0).getMetricValues().size());
+
+    list.clear();
+    metrics.addOrMergeTimelineMetric(createMetric("cpu_user", "h1", 4000L, 4.0));
+    Assert.assertEquals(1, list.size());
+    Assert.assertEquals(1, list.get(0).getMetricValues().size());
+  }
+
+  @Test
+  public void testAddOrMergeManySeries() throws Exception {
+    int series = 10000;
+    int valuesPerSeries = 10;
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    for (int i = 0; i < valuesPerSeries; i++) {
+      for (int j = 0; j < series; j++) {
+        SingleValuedTimelineMetric metric = new SingleValuedTimelineMetric(
+          "metric" + (j % 100), "HOST", j % 2 == 0 ? null : "instance",
+          "host" + (j / 100), 1000L * i, 1000L * i, null);
+        metric.setSingleTimeseriesValue(1000L * i, (double) i);
+        metrics.addOrMergeTimelineMetric(metric);
+      }
+    }
+
+    // one metric per series, in the order of the first occurrence, and the
+    // instance id tells series with the same name and host apart
+    List<TimelineMetric> allMetrics = metrics.getMetrics();
+    Assert.assertEquals(series, allMetrics.size());
+    for (int j = 0; j < series; j++) {
+      TimelineMetric metric = allMetrics.get(j);
+      Assert.assertEquals("metric" + (j % 100), metric.getMetricName());
+      Assert.assertEquals("host" + (j / 100), metric.getHostName());
+      Assert.assertEquals(j % 2 == 0 ? null : "instance", metric.getInstanceId());
+      Assert.assertEquals(0L, metric.getStartTime());
+      Assert.assertEquals(valuesPerSeries, metric.getMetricValues().size());
+      Assert.assertEquals(valuesPerSeries - 1,
+        metric.getMetricValues().get(1000L * (valuesPerSeries - 1)), 0.0);
+    }
+  }
+
+  static TimelineMetric createMetric(String metricName, String hostName,
+                                     long timestamp, double value) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setAppId("HOST");
+    metric.setHostName(hostName);
+    metric.setTimestamp(timestamp);
+    metric.setStartTime(timestamp);
+    metric.getMetricValues().put(timestamp, value);
+    return metric;
+  }
+}
@@ -20,10 +20,19 @@ package org.apache.hadoop.metrics2.sink.timeline.cache;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TimelineMetricsCacheTest {
 
@@ -72,6 +81,153 @@ public class TimelineMetricsCacheTest {
     assertEquals(70, cachedMetric.getMetricValues().get(8L), delta);
   }
 
+  @Test
+  public void testOverflowDropsOldestMetrics() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(10, 1000, 50);
+    for (int i = 0; i < 10; i++) {
+      cache.putTimelineMetric(createTimelineMetric("metric" + i, 1000L * i, 5));
+    }
+    assertEquals(10, cache.size());
+    assertEquals(50, cache.getDataPointCount());
+    assertEquals(0, cache.getOverflowCount());
+
+    // one more value exceeds the bound on values, the oldest metrics go
+    cache.putTimelineMetric(createTimelineMetric("metric10", 10000L, 1));
+    assertEquals(2, cache.getOverflowCount());
+    assertEquals(9, cache.size());
+    assertEquals(41, cache.getDataPointCount());
+
+    cache.putTimelineMetric(createTimelineMetric("metric0", 20000L, 1));
+    cache.putTimelineMetric(createTimelineMetric("metric2", 20000L, 1));
+    assertNull(cache.getTimelineMetric("metric0"));
+    assertNotNull(cache.getTimelineMetric("metric2"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testOverflowDropsHeaviestMetrics() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(10, 1000, 50);
+    for (int i = 0; i < 4; i++) {
+      cache.putTimelineMetric(createTimelineMetric("metric" + i, 1000L * i, 1));
+    }
+    cache.putTimelineMetric(createTimelineMetric("heavy", 4000L, 40));
+    assertEquals(44, cache.getDataPointCount());
+
+    // dropping the one heavy metric is enough, the older light ones stay
+    cache.putTimelineMetric(createTimelineMetric("metric4", 5000L, 10));
+    assertEquals(1, cache.getOverflowCount());
+    assertEquals(5, cache.size());
+    assertEquals(14, cache.getDataPointCount());
+
+    cache.putTimelineMetric(createTimelineMetric("metric0", 20000L, 1));
+    cache.putTimelineMetric(createTimelineMetric("heavy", 20000L, 1));
+    assertNotNull(cache.getTimelineMetric("metric0"));
+    assertNull(cache.getTimelineMetric("heavy"));
+  }
+
+  @Test
+  public void testOverflowOnMetricCount() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(10, 1000, 1000000);
+    for (int i = 0; i <= 10; i++) {
+      cache.putTimelineMetric(createTimelineMetric("metric" + i, 1000L * i, 1));
+    }
+    // trimmed to nine tenths of the bound on metrics
+    assertEquals(2, cache.getOverflowCount());
+    assertEquals(9, cache.size());
+    assertEquals(9, cache.getDataPointCount());
+
+    // the oldest metrics were dropped, the others kept their values
+    for (int i = 2; i <= 10; i++) {
+      cache.putTimelineMetric(createTimelineMetric("metric" + i, 100000L, 1));
+      TimelineMetric metric = cache.getTimelineMetric("metric" + i);
+      assertNotNull(metric);
+      assertEquals(2, metric.getMetricValues().size());
+    }
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getDataPointCount());
+    for (int i = 0; i < 2; i++) {
+      cache.putTimelineMetric(createTimelineMetric("metric" + i, 100000L, 1));
+      assertNull(cache.getTimelineMetric("metric" + i));
+    }
+    assertEquals(2, cache.size());
+    assertEquals(9, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testEvictionAfterEvictionTime() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(10, 1000);
+    cache.putTimelineMetric(createTimelineMetric("metric", 0L, 2));
+    assertNull(cache.getTimelineMetric("metric"));
+    cache.putTimelineMetric(createTimelineMetric("metric", 500L, 2));
+    assertNull(cache.getTimelineMetric("metric"));
+    assertEquals(1, cache.size());
+    assertEquals(4, cache.getDataPointCount());
+
+    // a repeated start time is not added again
+    cache.putTimelineMetric(createTimelineMetric("metric", 500L, 3));
+    assertEquals(4, cache.getDataPointCount());
+
+    // sent once the values span the eviction time
+    cache.putTimelineMetric(createTimelineMetric("metric", 1000L, 2));
+    TimelineMetric metric = cache.getTimelineMetric("metric");
+    assertNotNull(metric);
+    assertEquals(6, metric.getMetricValues().size());
+    assertEquals(0L, metric.getStartTime());
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getDataPointCount());
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(0, cache.getOverflowCount());
+    assertNull(cache.getTimelineMetric("metric"));
+  }
+
+  @Test
+  public void testConcurrentPut() throws Exception {
+    final TimelineMetricsCache cache = new TimelineMetricsCache(
+      TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT, 100000);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int t = 0; t < 4; t++) {
+      final int thread = t;
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int i = 0; i < 1000; i++) {
+            cache.putTimelineMetric(createTimelineMetric("metric" + (i % 10),
+              1000L * (i * 4 + thread), 1));
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertEquals(10, cache.size());
+    assertTrue(cache.getDataPointCount() > 0);
+    long values = 0;
+    for (int i = 0; i < 10; i++) {
+      cache.putTimelineMetric(createTimelineMetric("metric" + i, 1000000000L, 1));
+      TimelineMetric metric = cache.getTimelineMetric("metric" + i);
+      values += metric.getMetricValues().size();
+    }
+    assertEquals(4010, values);
+    assertEquals(0, cache.getDataPointCount());
+  }
+
+  private static TimelineMetric createTimelineMetric(String metricName, long startTime,
+                                                     int values) {
+    TimelineMetric timelineMetric = new TimelineMetric();
+    timelineMetric.setMetricName(metricName);
+    timelineMetric.setAppId("test serviceName");
+    timelineMetric.setStartTime(startTime);
+    for (int i = 0; i < values; i++) {
+      timelineMetric.getMetricSeries().add(startTime + i, (double) i);
+    }
+    return timelineMetric;
+  }
+
   private TimelineMetric createTimelineMetric(Map<Long, Double> metricValues,
                                               long startTime) {
     TimelineMetric timelineMetric = new TimelineMetric();
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline.codec;
+
+import org.apache.hadoop.metrics2.sink.timeline.MetricSeries;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class MetricValuesCodecTest {
+
+  @Test
+  public void testEncodeDecodeRegularInterval() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    long timestamp = 1416445244801L;
+    for (int i = 0; i < 100; i++) {
+      values.put(timestamp + i * 10000, 4006.0 + (i % 3) * 0.25);
+    }
+
+    byte[] encoded = MetricValuesCodec.encode(values);
+    Assert.assertEquals(values, MetricValuesCodec.decode(encoded));
+
+    String json = new ObjectMapper().writeValueAsString(values);
+    Assert.assertTrue(encoded.length * 10 < json.length());
+  }
+
+  @Test
+  public void testEncodeDecodeIrregularInterval() throws Exception {
+    Random random = new Random(42);
+    Map<Long, Double> values = new HashMap<Long, Double>();
+    long timestamp = 1416445244801L;
+    for (int i = 0; i < 1000; i++) {
+      // Jitter, gaps and large jumps in time
+      timestamp += 10000 + random.nextInt(200) - 100;
+      if (i % 50 == 0) {
+        timestamp += random.nextInt(Integer.MAX_VALUE);
+      }
+      values.put(timestamp, random.nextDouble() * 1000000);
+    }
+
+    Assert.assertEquals(values, MetricValuesCodec.decode(MetricValuesCodec.encode(values)));
+  }
+
+  @Test
+  public void testEncodeDecodeSpecialValues() throws Exception {
+    Map<Long, Double> values = new HashMap<Long, Double>();
+    values.put(1L, 0.0);
+    values.put(2L, -0.0);
+    values.put(3L, null);
+    values.put(4L, Double.MAX_VALUE);
+    values.put(5L, Double.MIN_VALUE);
+    values.put(6L, Double.NEGATIVE_INFINITY);
+    values.put(7L, -1.5);
+    values.put(8L, -1.5);
+    values.put(Long.MAX_VALUE, 1.0);
+
+    Assert.assertEquals(values, MetricValuesCodec.decode(MetricValuesCodec.encode(values)));
+  }
+
+  @Test
+  public void testEncodeDecodeNullValue() throws Exception {
+    Map<Long, Double> values = new HashMap<Long, Double>();
+    values.put(1000L, 1.0);
+    values.put(2000L, null);
+    values.put(3000L, Double.NaN);
+    values.put(4000L, 4.0);
+
+    MetricSeries decoded = MetricValuesCodec.decode(MetricValuesCodec.encode(values));
+
+    Assert.assertEquals(4, decoded.size());
+    Assert.assertTrue(decoded.containsKey(2000L));
+    Assert.assertNull(decoded.get(2000L));
+    Assert.assertNull(decoded.get(3000L));
+    Assert.assertTrue(Double.isNaN(decoded.getValue(1)));
+    Assert.assertEquals(1.0, decoded.get(1000L), 0.0);
+    Assert.assertEquals(4.0, decoded.get(4000L), 0.0);
+  }
+
+  @Test
+  public void testEncodeDecodeEmpty() throws Exception {
+    Map<Long, Double> values = new HashMap<Long, Double>();
+    Assert.assertTrue(MetricValuesCodec.decode(MetricValuesCodec.encode(values)).isEmpty());
+
+    values.put(1416445244801L, 1.0);
+    Assert.assertEquals(values, MetricValuesCodec.decode(MetricValuesCodec.encode(values)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecodeUnsupportedVersion() throws Exception {
+    MetricValuesCodec.decode("{\"1\":1.0}".getBytes("UTF-8"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecodeTruncated() throws Exception {
+    Map<Long, Double> values = new HashMap<Long, Double>();
+    values.put(1L, 1.0);
+    values.put(2L, 2.0);
+    byte[] encoded = MetricValuesCodec.encode(values);
+    byte[] truncated = new byte[encoded.length - 4];
+    System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+    MetricValuesCodec.decode(truncated);
+  }
+}
@@ -26,6 +26,7 @@ import org.apache.flume.instrumentation.MonitorService;
 import org.apache.flume.instrumentation.util.JMXPollUtil;
 import org.apache.hadoop.metrics2.sink.timeline.AbstractTimelineMetricsSink;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricsEmitter;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.metrics2.sink.timeline.UnableToConnectException;
 import org.apache.hadoop.metrics2.sink.timeline.cache.TimelineMetricsCache;
@@ -69,6 +70,7 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   public void stop() {
     LOG.info("Stopping Flume Metrics Sink");
     scheduledExecutorService.shutdown();
+    stopEmitter();
   }
 
   @Override
@@ -90,7 +92,17 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     metricsCache = new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval);
     String collectorHostname = configuration.getProperty(COLLECTOR_HOST_PROPERTY);
     String port = configuration.getProperty(COLLECTOR_PORT_PROPERTY);
-    collectorUri = "http://" + collectorHostname + ":" + port + "/ws/v1/timeline/metrics";
+    List<String> collectorUris = getCollectorUris(collectorHostname, port);
+    collectorUri = collectorUris.get(0);
+    int queueCapacity = Integer.parseInt(configuration.getProperty(EMITTER_QUEUE_CAPACITY,
+        String.valueOf(TimelineMetricsEmitter.DEFAULT_QUEUE_CAPACITY)));
+    if (queueCapacity > 0) {
+      startEmitter(collectorUris, queueCapacity,
+          Boolean.parseBoolean(configuration.getProperty(EMITTER_COMPRESS, "true")),
+          configuration.getProperty(SPOOL_DIR_PROPERTY), "flume",
+          Long.parseLong(configuration.getProperty(SPOOL_MAX_SIZE,
+              String.valueOf(TimelineMetricsEmitter.DEFAULT_SPOOL_MAX_SIZE))));
+    }
     pollFrequency = Long.parseLong(configuration.getProperty("collectionFrequency"));
 
     String[] metrics = configuration.getProperty(COUNTER_METRICS_PROPERTY).trim().split(",");
@@ -164,7 +176,7 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
       if (!metricList.isEmpty()) {
         TimelineMetrics timelineMetrics = new TimelineMetrics();
         timelineMetrics.setMetrics(metricList);
-        emitMetrics(timelineMetrics);
+        queueMetrics(timelineMetrics);
       }
     }
 
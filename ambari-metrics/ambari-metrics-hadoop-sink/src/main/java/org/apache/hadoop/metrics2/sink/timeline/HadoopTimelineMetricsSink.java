@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.metrics2.sink.timeline;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
@@ -47,13 +48,15 @@ import org.apache.hadoop.net.DNS;
 
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
-public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink implements MetricsSink {
+public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink
+    implements MetricsSink, Closeable {
   private Map<String, Set<String>> useTagsMap = new HashMap<String, Set<String>>();
   private TimelineMetricsCache metricsCache;
   private String hostName = "UNKNOWN.example.com";
   private String serviceName = "";
   private List<? extends SocketAddress> metricsServers;
   private String collectorUri;
+  private List<String> collectorUris;
   private static final String SERVICE_NAME_PREFIX = "serviceName-prefix";
   private static final String SERVICE_NAME = "serviceName";
   private int timeoutSeconds = 10;
@@ -86,14 +89,23 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
     if (metricsServers == null || metricsServers.isEmpty()) {
       LOG.error("No Metric collector configured.");
     } else {
-      collectorUri = "http://" + conf.getString(COLLECTOR_HOST_PROPERTY).trim()
-          + "/ws/v1/timeline/metrics";
+      collectorUris = getCollectorUris(conf.getString(COLLECTOR_HOST_PROPERTY), "6188");
+      collectorUri = collectorUris.get(0);
     }
 
-    LOG.info("Collector Uri: " + collectorUri);
+    LOG.info("Collector Uri: " + collectorUris);
 
     timeoutSeconds = conf.getInt(METRICS_POST_TIMEOUT_SECONDS, DEFAULT_POST_TIMEOUT_SECONDS);
 
+    // a queue capacity of 0 posts the metrics from the metrics system thread
+    int queueCapacity = conf.getInt(EMITTER_QUEUE_CAPACITY,
+      TimelineMetricsEmitter.DEFAULT_QUEUE_CAPACITY);
+    if (queueCapacity > 0 && collectorUris != null) {
+      startEmitter(collectorUris, queueCapacity, conf.getBoolean(EMITTER_COMPRESS, true),
+        conf.getString(SPOOL_DIR_PROPERTY), serviceName,
+        conf.getLong(SPOOL_MAX_SIZE, TimelineMetricsEmitter.DEFAULT_SPOOL_MAX_SIZE));
+    }
+
     int maxRowCacheSize = conf.getInt(MAX_METRIC_ROW_CACHE_SIZE,
       TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT);
     int metricsSendInterval = conf.getInt(METRICS_SEND_INTERVAL,
@@ -208,7 +220,7 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
       timelineMetrics.setMetrics(metricList);
 
       if (!metricList.isEmpty()) {
-        emitMetrics(timelineMetrics);
+        queueMetrics(timelineMetrics);
       }
     } catch (UnableToConnectException uce) {
       LOG.warn("Unable to send metrics to collector by address:" + uce.getConnectUrl());
@@ -244,4 +256,13 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
   public void flush() {
     // TODO: Buffering implementation
   }
+
+  /**
+   * Called by the metrics system when the sink is stopped, posts or spools
+   * the queued metrics.
+   */
+  @Override
+  public void close() {
+    stopEmitter();
+  }
 }
@@ -40,6 +40,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.metrics2.sink.timeline.AbstractTimelineMetricsSink;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricsEmitter;
 import org.apache.hadoop.metrics2.sink.timeline.cache.TimelineMetricsCache;
 
 import java.io.IOException;
@@ -64,6 +65,10 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
   private static final String TIMELINE_HOST_PROPERTY = "kafka.timeline.metrics.host";
   private static final String TIMELINE_PORT_PROPERTY = "kafka.timeline.metrics.port";
   private static final String TIMELINE_REPORTER_ENABLED_PROPERTY = "kafka.timeline.metrics.reporter.enabled";
+  private static final String TIMELINE_QUEUE_CAPACITY_PROPERTY = "kafka.timeline.metrics.queueCapacity";
+  private static final String TIMELINE_COMPRESS_PROPERTY = "kafka.timeline.metrics.compress";
+  private static final String TIMELINE_SPOOL_DIR_PROPERTY = "kafka.timeline.metrics.spoolDir";
+  private static final String TIMELINE_SPOOL_MAX_SIZE_PROPERTY = "kafka.timeline.metrics.spoolMaxSize";
   private static final String TIMELINE_DEFAULT_HOST = "localhost";
   private static final String TIMELINE_DEFAULT_PORT = "8188";
 
@@ -71,6 +76,11 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
   private boolean running = false;
   private final Object lock = new Object();
   private String collectorUri;
+  private List<String> collectorUris;
+  private int queueCapacity;
+  private boolean compress;
+  private String spoolDir;
+  private long spoolMaxSize;
   private String hostname;
   private TimelineScheduledReporter reporter;
   private TimelineMetricsCache metricsCache;
@@ -107,7 +117,12 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
         String metricCollectorHost = props.getString(TIMELINE_HOST_PROPERTY, TIMELINE_DEFAULT_HOST);
         String metricCollectorPort = props.getString(TIMELINE_PORT_PROPERTY, TIMELINE_DEFAULT_PORT);
         setMetricsCache(new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval));
-        collectorUri = "http://" + metricCollectorHost + ":" + metricCollectorPort + "/ws/v1/timeline/metrics";
+        collectorUris = getCollectorUris(metricCollectorHost, metricCollectorPort);
+        collectorUri = collectorUris.get(0);
+        queueCapacity = props.getInt(TIMELINE_QUEUE_CAPACITY_PROPERTY, TimelineMetricsEmitter.DEFAULT_QUEUE_CAPACITY);
+        compress = props.getBoolean(TIMELINE_COMPRESS_PROPERTY, true);
+        spoolDir = props.getString(TIMELINE_SPOOL_DIR_PROPERTY, null);
+        spoolMaxSize = props.getLong(TIMELINE_SPOOL_MAX_SIZE_PROPERTY, TimelineMetricsEmitter.DEFAULT_SPOOL_MAX_SIZE);
         initializeReporter();
         if (props.getBoolean(TIMELINE_REPORTER_ENABLED_PROPERTY, false)) {
           startReporter(metricsConfig.pollingIntervalSecs());
@@ -128,6 +143,9 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
   public synchronized void startReporter(long period) {
     synchronized (lock) {
       if (initialized && !running) {
+        if (queueCapacity > 0) {
+          startEmitter(collectorUris, queueCapacity, compress, spoolDir, "kafka_broker", spoolMaxSize);
+        }
         reporter.start(period, TimeUnit.SECONDS);
         running = true;
         LOG.info(String.format("Started Kafka Timeline metrics reporter with polling period %d seconds", period));
@@ -139,6 +157,7 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
     synchronized (lock) {
       if (initialized && running) {
         reporter.stop();
+        stopEmitter();
         running = false;
         LOG.info("Stopped Kafka Timeline metrics reporter");
         initializeReporter();
@@ -206,7 +225,7 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
         TimelineMetrics timelineMetrics = new TimelineMetrics();
         timelineMetrics.setMetrics(metricsList);
         try {
-          emitMetrics(timelineMetrics);
+          queueMetrics(timelineMetrics);
         } catch (IOException e) {
           LOG.error("Unexpected error", e);
         } catch (Throwable t) {
@@ -29,6 +29,7 @@ import org.apache.commons.lang.Validate;
 import org.apache.hadoop.metrics2.sink.timeline.AbstractTimelineMetricsSink;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricsEmitter;
 import org.apache.hadoop.metrics2.sink.timeline.UnableToConnectException;
 
 import java.net.InetAddress;
@@ -85,7 +86,19 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
         Integer.parseInt(cf.get(METRICS_POST_TIMEOUT_SECONDS).toString()) :
         DEFAULT_POST_TIMEOUT_SECONDS;
       applicationId = cf.get(APP_ID).toString();
-      collectorUri = "http://" + collectorHostname + ":" + port + "/ws/v1/timeline/metrics";
+      List<String> collectorUris = getCollectorUris(collectorHostname, port);
+      collectorUri = collectorUris.get(0);
+      int queueCapacity = cf.get(EMITTER_QUEUE_CAPACITY) != null ?
+        Integer.parseInt(cf.get(EMITTER_QUEUE_CAPACITY).toString()) :
+        TimelineMetricsEmitter.DEFAULT_QUEUE_CAPACITY;
+      if (queueCapacity > 0) {
+        startEmitter(collectorUris, queueCapacity,
+          cf.get(EMITTER_COMPRESS) == null || Boolean.parseBoolean(cf.get(EMITTER_COMPRESS).toString()),
+          cf.get(SPOOL_DIR_PROPERTY) != null ? cf.get(SPOOL_DIR_PROPERTY).toString() : null,
+          "storm-nimbus",
+          cf.get(SPOOL_MAX_SIZE) != null ? Long.parseLong(cf.get(SPOOL_MAX_SIZE).toString()) :
+            TimelineMetricsEmitter.DEFAULT_SPOOL_MAX_SIZE);
+      }
     } catch (Exception e) {
       LOG.warn("Could not initialize metrics collector, please specify host, " +
         "port under $STORM_HOME/conf/config.yaml ", e);
@@ -136,7 +149,7 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
     timelineMetrics.setMetrics(totalMetrics);
 
     try {
-      emitMetrics(timelineMetrics);
+      queueMetrics(timelineMetrics);
     } catch (UnableToConnectException e) {
       LOG.warn("Unable to connect to Metrics Collector " + e.getConnectUrl() + ". " + e.getMessage());
     }
@@ -27,6 +27,7 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.metrics2.sink.timeline.AbstractTimelineMetricsSink;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricsEmitter;
 import org.apache.hadoop.metrics2.sink.timeline.UnableToConnectException;
 import org.apache.hadoop.metrics2.sink.timeline.cache.TimelineMetricsCache;
 import org.apache.hadoop.metrics2.sink.timeline.configuration.Configuration;
@@ -74,7 +75,19 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     int metricsSendInterval = Integer.parseInt(configuration.getProperty(METRICS_SEND_INTERVAL,
         String.valueOf(MAX_EVICTION_TIME_MILLIS)));
     metricsCache = new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval);
-    collectorUri = "http://" + configuration.getProperty(COLLECTOR_HOST_PROPERTY) + ":" + configuration.getProperty(COLLECTOR_PORT_PROPERTY) + "/ws/v1/timeline/metrics";
+    List<String> collectorUris = getCollectorUris(configuration.getProperty(COLLECTOR_HOST_PROPERTY),
+        configuration.getProperty(COLLECTOR_PORT_PROPERTY));
+    collectorUri = collectorUris.get(0);
+    int queueCapacity = Integer.parseInt(configuration.getProperty(EMITTER_QUEUE_CAPACITY,
+        String.valueOf(TimelineMetricsEmitter.DEFAULT_QUEUE_CAPACITY)));
+    if (queueCapacity > 0) {
+      startEmitter(collectorUris, queueCapacity,
+          Boolean.parseBoolean(configuration.getProperty(EMITTER_COMPRESS, "true")),
+          configuration.getProperty(SPOOL_DIR_PROPERTY),
+          "storm-" + topologyContext.getStormId() + "-" + topologyContext.getThisTaskId(),
+          Long.parseLong(configuration.getProperty(SPOOL_MAX_SIZE,
+              String.valueOf(TimelineMetricsEmitter.DEFAULT_SPOOL_MAX_SIZE))));
+    }
   }
 
   @Override
@@ -100,7 +113,7 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
       TimelineMetrics timelineMetrics = new TimelineMetrics();
       timelineMetrics.setMetrics(metricList);
       try {
-        emitMetrics(timelineMetrics);
+        queueMetrics(timelineMetrics);
       } catch (UnableToConnectException uce) {
         LOG.warn("Unable to send metrics to collector by address:" + uce.getConnectUrl());
       } catch (IOException e) {
@@ -112,6 +125,7 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   @Override
   public void cleanup() {
     LOG.info("Stopping Storm Metrics Sink");
+    stopEmitter();
   }
 
   private TimelineMetric createTimelineMetric(long currentTimeMillis, String component, String attributeName, String attributeValue) {
@@ -21,6 +21,7 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.MetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.service.AbstractService;
@@ -38,7 +39,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 public class HBaseTimelineMetricStore extends AbstractService
     implements TimelineMetricStore {
@@ -46,6 +46,7 @@ public class HBaseTimelineMetricStore extends AbstractService
   static final Log LOG = LogFactory.getLog(HBaseTimelineMetricStore.class);
   private final TimelineMetricConfiguration configuration;
   private PhoenixHBaseAccessor hBaseAccessor;
+  private TimelineMetricsWriter metricsWriter;
 
   /**
    * Construct the service.
@@ -67,6 +68,9 @@ public class HBaseTimelineMetricStore extends AbstractService
     hBaseAccessor = new PhoenixHBaseAccessor(hbaseConf, metricsConf);
     hBaseAccessor.initMetricSchema();
 
+    metricsWriter = new TimelineMetricsWriter(hBaseAccessor, metricsConf);
+    metricsWriter.start();
+
     // Start the cluster aggregator minute
     TimelineMetricAggregator minuteClusterAggregator =
       TimelineMetricAggregatorFactory.createTimelineClusterAggregatorMinute(hBaseAccessor, metricsConf);
@@ -118,12 +122,15 @@ public class HBaseTimelineMetricStore extends AbstractService
 
   @Override
   protected void serviceStop() throws Exception {
+    if (metricsWriter != null) {
+      metricsWriter.stop();
+    }
     super.serviceStop();
   }
 
   @Override
   public TimelineMetrics getTimelineMetrics(List<String> metricNames,
-      String hostname, String applicationId, String instanceId,
+      List<String> hostnames, String applicationId, String instanceId,
       Long startTime, Long endTime, Precision precision, Integer limit,
       boolean groupedByHosts) throws SQLException, IOException {
 
@@ -142,10 +149,10 @@ public class HBaseTimelineMetricStore extends AbstractService
 
     Condition condition = new DefaultCondition(
       new ArrayList<String>(metricFunctions.keySet()),
-      hostname, applicationId, instanceId, startTime, endTime,
+      hostnames, applicationId, instanceId, startTime, endTime,
       precision, limit, groupedByHosts);
 
-    if (hostname == null) {
+    if (hostnames == null || hostnames.isEmpty()) {
       TimelineMetrics metrics = hBaseAccessor.getAggregateMetricRecords
         (condition,  metricFunctions);
 
@@ -162,27 +169,24 @@ public class HBaseTimelineMetricStore extends AbstractService
     for (TimelineMetric metric: metricsList){
       String name = metric.getMetricName();
       if (name.contains("._rate")){
-        updateValueAsRate(metric.getMetricValues());
+        updateValueAsRate(metric.getMetricSeries());
       }
     }
 
     return metrics;
   }
 
-  private Map<Long, Double> updateValueAsRate(Map<Long, Double> metricValues) {
-    Long prevTime = null;
-    long step;
+  private MetricSeries updateValueAsRate(MetricSeries metricValues) {
+    long prevTime = 0;
 
-    for (Map.Entry<Long, Double> timeValueEntry : metricValues.entrySet()) {
-      Long currTime = timeValueEntry.getKey();
-      Double currVal = timeValueEntry.getValue();
+    for (int i = 0; i < metricValues.size(); i++) {
+      long currTime = metricValues.getTimestamp(i);
 
-      if (prevTime != null) {
-        step = currTime - prevTime;
-        Double rate = currVal / step;
-        timeValueEntry.setValue(rate);
+      if (i > 0) {
+        long step = currTime - prevTime;
+        metricValues.setValue(i, metricValues.getValue(i) / step);
       } else {
-        timeValueEntry.setValue(0.0);
+        metricValues.setValue(i, 0.0);
       }
 
       prevTime = currTime;
@@ -247,8 +251,9 @@ public class HBaseTimelineMetricStore extends AbstractService
       parseMetricNamesToAggregationFunctions(Collections.singletonList(metricName));
 
     Condition condition = new DefaultCondition(
-      new ArrayList<String>(metricFunctions.keySet()), hostname, applicationId,
-      instanceId, startTime, endTime, precision, limit, true);
+      new ArrayList<String>(metricFunctions.keySet()),
+      hostname == null ? null : Collections.singletonList(hostname),
+      applicationId, instanceId, startTime, endTime, precision, limit, true);
     TimelineMetrics metrics = hBaseAccessor.getMetricRecords(condition,
       metricFunctions);
 
@@ -264,9 +269,9 @@ public class HBaseTimelineMetricStore extends AbstractService
       metric.setHostName(metricList.get(0).getHostName());
       // Assumption that metrics are ordered by start time
       metric.setStartTime(metricList.get(0).getStartTime());
-      Map<Long, Double> metricRecords = new TreeMap<Long, Double>();
+      MetricSeries metricRecords = new MetricSeries();
       for (TimelineMetric timelineMetric : metricList) {
-        metricRecords.putAll(timelineMetric.getMetricValues());
+        metricRecords.merge(timelineMetric.getMetricSeries());
       }
       metric.setMetricValues(metricRecords);
     }
@@ -279,10 +284,11 @@ public class HBaseTimelineMetricStore extends AbstractService
   public TimelinePutResponse putMetrics(TimelineMetrics metrics)
     throws SQLException, IOException {
 
-    // Error indicated by the Sql exception
+    // Metrics are written asynchronously, a full write queue is reported
+    // with MetricsQueueFullException
     TimelinePutResponse response = new TimelinePutResponse();
 
-    hBaseAccessor.insertMetricRecords(metrics);
+    metricsWriter.putMetrics(metrics);
 
     return response;
   }
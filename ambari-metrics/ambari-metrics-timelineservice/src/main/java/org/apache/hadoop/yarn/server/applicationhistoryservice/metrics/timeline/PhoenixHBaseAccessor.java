@@ -22,9 +22,11 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.util.RetryCounter;
 import org.apache.hadoop.hbase.util.RetryCounterFactory;
+import org.apache.hadoop.metrics2.sink.timeline.MetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.SingleValuedTimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.metrics2.sink.timeline.codec.MetricValuesCodec;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.AggregatorUtils;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.MetricClusterAggregate;
@@ -46,8 +48,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -63,13 +65,16 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_DAILY_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_HOUR_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_MINUTE_TABLE_TTL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.METRIC_VALUES_ENCODING;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_TTL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_METRICS_TABLE_ADD_ENCODED_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_AGGREGATE_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_CLUSTER_AGGREGATE_HOURLY_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_CLUSTER_AGGREGATE_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.DEFAULT_ENCODING;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.DEFAULT_METRIC_VALUES_ENCODING;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.DEFAULT_TABLE_COMPRESSION;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_DAILY_TABLE_NAME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_HOURLY_TABLE_NAME;
@@ -78,6 +83,7 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_HOURLY_TABLE_NAME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_TABLE_NAME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_RECORD_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRIC_VALUES_ENCODING_BINARY;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.UPSERT_AGGREGATE_RECORD_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.UPSERT_CLUSTER_AGGREGATE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.UPSERT_CLUSTER_AGGREGATE_TIME_SQL;
@@ -104,6 +110,7 @@ public class PhoenixHBaseAccessor {
   private final Configuration metricsConf;
   private final RetryCounterFactory retryCounterFactory;
   private final ConnectionProvider dataSource;
+  private final boolean binaryMetricValues;
 
   public PhoenixHBaseAccessor(Configuration hbaseConf,
                               Configuration metricsConf){
@@ -126,12 +133,14 @@ public class PhoenixHBaseAccessor {
     this.retryCounterFactory = new RetryCounterFactory(
       metricsConf.getInt(GLOBAL_MAX_RETRIES, 10),
       (int) SECONDS.toMillis(metricsConf.getInt(GLOBAL_RETRY_INTERVAL, 5)));
+    this.binaryMetricValues = METRIC_VALUES_ENCODING_BINARY.equalsIgnoreCase(
+      metricsConf.get(METRIC_VALUES_ENCODING, DEFAULT_METRIC_VALUES_ENCODING));
   }
 
   private static TimelineMetric getLastTimelineMetricFromResultSet(ResultSet rs)
     throws SQLException, IOException {
     TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    metric.setMetricValues(readLastMetricValue(rs));
     return metric;
   }
 
@@ -174,14 +183,33 @@ public class PhoenixHBaseAccessor {
     return metric;
   }
 
-  private static Map<Long, Double> readLastMetricValueFromJSON(String json)
-    throws IOException {
-    Map<Long, Double> values = readMetricFromJSON(json);
-    Long lastTimeStamp = Collections.max(values.keySet());
+  private static MetricSeries readLastMetricValue(ResultSet rs)
+    throws SQLException, IOException {
+    MetricSeries values = readMetricValues(rs);
+    long lastTimeStamp = values.lastTimestamp();
 
-    HashMap<Long, Double> valueMap = new HashMap<Long, Double>(1);
-    valueMap.put(lastTimeStamp, values.get(lastTimeStamp));
-    return valueMap;
+    MetricSeries lastValue = new MetricSeries(1);
+    lastValue.add(lastTimeStamp, values.getValue(values.size() - 1));
+    return lastValue;
+  }
+
+  /**
+   * Read the values of a metric record, stored either in the binary
+   * encoding or as JSON by earlier versions.
+   *
+   * @return the values sorted by timestamp
+   */
+  public static MetricSeries readMetricValues(ResultSet rs)
+    throws SQLException, IOException {
+    byte[] encoded = rs.getBytes("METRICS_ENCODED");
+    if (encoded != null) {
+      try {
+        return MetricValuesCodec.decode(encoded);
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Unable to decode metric values.", e);
+      }
+    }
+    return new MetricSeries(readMetricFromJSON(rs.getString("METRICS")));
   }
 
   @SuppressWarnings("unchecked")
@@ -241,6 +269,7 @@ public class PhoenixHBaseAccessor {
       // Host level
       stmt.executeUpdate(String.format(CREATE_METRICS_TABLE_SQL,
         encoding, precisionTtl, compression));
+      stmt.executeUpdate(ALTER_METRICS_TABLE_ADD_ENCODED_SQL);
       stmt.executeUpdate(String.format(CREATE_METRICS_AGGREGATE_TABLE_SQL,
         METRICS_AGGREGATE_MINUTE_TABLE_NAME, encoding, hostMinTtl, compression));
       stmt.executeUpdate(String.format(CREATE_METRICS_AGGREGATE_TABLE_SQL,
@@ -328,9 +357,11 @@ public class PhoenixHBaseAccessor {
     try {
       metricRecordStmt = conn.prepareStatement(String.format(
         UPSERT_METRICS_SQL, METRICS_RECORD_TABLE_NAME));
+      int rowCount = 0;
 
       for (TimelineMetric metric : timelineMetrics) {
         metricRecordStmt.clearParameters();
+        rowCount++;
 
         if (LOG.isTraceEnabled()) {
           LOG.trace("host: " + metric.getHostName() + ", " +
@@ -351,16 +382,27 @@ public class PhoenixHBaseAccessor {
         metricRecordStmt.setDouble(9, aggregates[1]);
         metricRecordStmt.setDouble(10, aggregates[2]);
         metricRecordStmt.setLong(11, (long) aggregates[3]);
-        String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-        metricRecordStmt.setString(12, json);
+        if (binaryMetricValues) {
+          metricRecordStmt.setNull(12, Types.VARCHAR);
+          metricRecordStmt.setBytes(13, MetricValuesCodec.encode(metric.getMetricValues()));
+        } else {
+          String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
+          metricRecordStmt.setString(12, json);
+          metricRecordStmt.setNull(13, Types.VARBINARY);
+        }
 
-        try {
-          metricRecordStmt.executeUpdate();
-        } catch (SQLException sql) {
-          LOG.error(sql);
+        metricRecordStmt.addBatch();
+
+        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
+          metricRecordStmt.executeBatch();
+          conn.commit();
+          rowCount = 0;
         }
       }
 
+      if (rowCount > 0) {
+        metricRecordStmt.executeBatch();
+      }
       conn.commit();
 
     } finally {
@@ -475,23 +517,35 @@ public class PhoenixHBaseAccessor {
     SplitByMetricNamesCondition splitCondition =
       new SplitByMetricNamesCondition(condition);
 
+    // the latest record of each metric is read for every host separately
+    List<String> hostnames = splitCondition.getOriginalHostnames();
+    if (hostnames == null) {
+      hostnames = Collections.singletonList(null);
+    }
+
     for (String metricName: splitCondition.getOriginalMetricNames()) {
       splitCondition.setCurrentMetric(metricName);
-      stmt = PhoenixTransactSQL.prepareGetLatestMetricSqlStmt(conn,
-        splitCondition);
-      ResultSet rs = null;
-      try {
-        rs = stmt.executeQuery();
-        while (rs.next()) {
-          TimelineMetric metric = getLastTimelineMetricFromResultSet(rs);
-          metrics.getMetrics().add(metric);
+      for (String hostname : hostnames) {
+        splitCondition.setCurrentHostname(hostname);
+        if (stmt != null) {
+          stmt.close();
         }
-      } finally {
-        if (rs != null) {
-          try {
-            rs.close();
-          } catch (SQLException e) {
-            // Ignore
+        stmt = PhoenixTransactSQL.prepareGetLatestMetricSqlStmt(conn,
+          splitCondition);
+        ResultSet rs = null;
+        try {
+          rs = stmt.executeQuery();
+          while (rs.next()) {
+            TimelineMetric metric = getLastTimelineMetricFromResultSet(rs);
+            metrics.getMetrics().add(metric);
+          }
+        } finally {
+          if (rs != null) {
+            try {
+              rs.close();
+            } catch (SQLException e) {
+              // Ignore
+            }
           }
         }
       }
@@ -715,19 +769,19 @@ public class PhoenixHBaseAccessor {
         stmt.setDouble(9, hostAggregate.getMin());
         stmt.setDouble(10, hostAggregate.getNumberOfSamples());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          LOG.error(sql);
-        }
+        stmt.addBatch();
 
         if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
+          stmt.executeBatch();
           conn.commit();
           rowCount = 0;
         }
 
       }
 
+      if (rowCount > 0) {
+        stmt.executeBatch();
+      }
       conn.commit();
 
     } finally {
@@ -798,19 +852,18 @@ public class PhoenixHBaseAccessor {
         stmt.setDouble(8, aggregate.getMax());
         stmt.setDouble(9, aggregate.getMin());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
+        stmt.addBatch();
 
         if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
+          stmt.executeBatch();
           conn.commit();
           rowCount = 0;
         }
       }
 
+      if (rowCount > 0) {
+        stmt.executeBatch();
+      }
       conn.commit();
 
     } finally {
@@ -878,19 +931,18 @@ public class PhoenixHBaseAccessor {
         stmt.setDouble(8, aggregate.getMax());
         stmt.setDouble(9, aggregate.getMin());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
+        stmt.addBatch();
 
         if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
+          stmt.executeBatch();
           conn.commit();
           rowCount = 0;
         }
       }
 
+      if (rowCount > 0) {
+        stmt.executeBatch();
+      }
       conn.commit();
 
     } finally {
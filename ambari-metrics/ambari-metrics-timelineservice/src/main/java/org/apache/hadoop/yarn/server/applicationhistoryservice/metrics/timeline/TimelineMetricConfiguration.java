@@ -82,6 +82,27 @@ public class TimelineMetricConfiguration {
   public static final String RESULTSET_FETCH_SIZE =
     "timeline.metrics.service.resultset.fetchSize";
 
+  public static final String METRIC_VALUES_ENCODING =
+    "timeline.metrics.service.metric.values.encoding";
+
+  public static final String WRITER_THREADS =
+    "timeline.metrics.service.writer.threads";
+
+  public static final String WRITER_QUEUE_SIZE =
+    "timeline.metrics.service.writer.queue.size";
+
+  public static final String WRITER_BATCH_SIZE =
+    "timeline.metrics.service.writer.batch.size";
+
+  public static final String WRITER_FLUSH_INTERVAL =
+    "timeline.metrics.service.writer.flush.interval";
+
+  public static final String WRITER_MAX_RETRIES =
+    "timeline.metrics.service.writer.max.retries";
+
+  public static final String WRITER_STATS_INTERVAL =
+    "timeline.metrics.service.writer.stats.interval";
+
   public static final String HOST_AGGREGATOR_MINUTE_SLEEP_INTERVAL =
     "timeline.metrics.host.aggregator.minute.interval";
 
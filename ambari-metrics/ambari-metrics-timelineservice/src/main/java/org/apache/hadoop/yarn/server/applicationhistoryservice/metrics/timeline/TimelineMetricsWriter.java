@@ -0,0 +1,415 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_FLUSH_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_MAX_RETRIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_STATS_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_THREADS;
+
+/**
+ * Writes incoming metrics to the store in the background. Metrics are
+ * queued per writer thread, sharded by metric name so that rows sharing a
+ * row key prefix end up in the same batch, and upserted in batches once
+ * either the batch size or the flush interval is reached. When the number
+ * of queued metrics exceeds the configured queue size new requests are
+ * rejected with a {@link MetricsQueueFullException}. A batch that fails
+ * to be written stays queued and is retried on the next flush interval, up
+ * to the configured number of retries, after which it is dropped and
+ * counted. Failed writes are counted as well and logged at most once per
+ * minute.
+ *
+ * The writer periodically stores its own queue size, flush latency, write
+ * rate, failed writes and dropped metrics as metrics of the collector.
+ */
+public class TimelineMetricsWriter {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsWriter.class);
+
+  /**
+   * App id under which the writer reports its own metrics.
+   */
+  static final String COLLECTOR_APP_ID = "ams-collector";
+  static final String QUEUE_SIZE_METRIC = "timeline.metrics.writer.queue.size";
+  static final String FLUSH_LATENCY_METRIC = "timeline.metrics.writer.flush.latency";
+  static final String ROWS_PER_SECOND_METRIC = "timeline.metrics.writer.rows.per.second";
+  static final String DROPPED_METRICS_METRIC = "timeline.metrics.writer.dropped";
+  static final String WRITE_FAILURES_METRIC = "timeline.metrics.writer.write.failures";
+
+  private static final int MAX_RETRY_AFTER_SECONDS = 60;
+  private static final long ERROR_LOG_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final int maxQueueSize;
+  private final int batchSize;
+  private final long flushIntervalMillis;
+  private final int maxRetries;
+  private final long statsIntervalMillis;
+  private final List<LinkedBlockingQueue<TimelineMetric>> queues;
+  private final List<Thread> writerThreads;
+  private final AtomicInteger queuedMetrics = new AtomicInteger();
+  private final AtomicLong rowsWritten = new AtomicLong();
+  private final AtomicLong droppedMetrics = new AtomicLong();
+  private final AtomicLong failedWrites = new AtomicLong();
+  private final AtomicLong lastErrorLogTime = new AtomicLong();
+  private final AtomicLong suppressedErrors = new AtomicLong();
+  private final AtomicLong flushCount = new AtomicLong();
+  private final AtomicLong flushTimeMillis = new AtomicLong();
+  private final String hostname;
+  private Thread statsThread;
+  private volatile boolean running = false;
+  private volatile double rowsPerSecond = 0;
+
+  public TimelineMetricsWriter(PhoenixHBaseAccessor hBaseAccessor,
+                               Configuration metricsConf) {
+    this.hBaseAccessor = hBaseAccessor;
+    this.maxQueueSize = metricsConf.getInt(WRITER_QUEUE_SIZE, 100000);
+    this.batchSize = metricsConf.getInt(WRITER_BATCH_SIZE, 1000);
+    this.flushIntervalMillis = TimeUnit.SECONDS.toMillis(
+      metricsConf.getLong(WRITER_FLUSH_INTERVAL, 1));
+    this.maxRetries = Math.max(0, metricsConf.getInt(WRITER_MAX_RETRIES, 3));
+    this.statsIntervalMillis = TimeUnit.SECONDS.toMillis(
+      metricsConf.getLong(WRITER_STATS_INTERVAL, 60));
+
+    int threads = Math.max(1, metricsConf.getInt(WRITER_THREADS, 4));
+    queues = new ArrayList<LinkedBlockingQueue<TimelineMetric>>(threads);
+    writerThreads = new ArrayList<Thread>(threads);
+    for (int i = 0; i < threads; i++) {
+      LinkedBlockingQueue<TimelineMetric> queue =
+        new LinkedBlockingQueue<TimelineMetric>();
+      queues.add(queue);
+      Thread thread = new Thread(new Writer(queue), "timeline-metrics-writer-" + i);
+      thread.setDaemon(true);
+      writerThreads.add(thread);
+    }
+    hostname = getLocalHostName();
+  }
+
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    for (Thread thread : writerThreads) {
+      thread.start();
+    }
+    if (statsIntervalMillis > 0) {
+      statsThread = new Thread(new StatsReporter(), "timeline-metrics-writer-stats");
+      statsThread.setDaemon(true);
+      statsThread.start();
+    }
+  }
+
+  /**
+   * Stop accepting metrics and wait for the writer threads to flush what is
+   * already queued.
+   */
+  public synchronized void stop() throws InterruptedException {
+    if (!running) {
+      return;
+    }
+    running = false;
+    if (statsThread != null) {
+      statsThread.interrupt();
+    }
+    for (Thread thread : writerThreads) {
+      thread.join();
+    }
+  }
+
+  /**
+   * Queue the metrics for writing.
+   *
+   * @throws MetricsQueueFullException if the queue cannot take the metrics
+   */
+  public void putMetrics(TimelineMetrics metrics) throws MetricsQueueFullException {
+    List<TimelineMetric> timelineMetrics = metrics.getMetrics();
+    if (timelineMetrics == null || timelineMetrics.isEmpty()) {
+      LOG.debug("Empty metrics insert request.");
+      return;
+    }
+    if (!running) {
+      throw new MetricsQueueFullException("Metrics writer is not running.",
+        getRetryAfterSeconds());
+    }
+
+    // Reserve room for the whole request so that it is either queued
+    // completely or rejected. A request bigger than the queue is still
+    // accepted when nothing else is queued.
+    int size = timelineMetrics.size();
+    int current;
+    do {
+      current = queuedMetrics.get();
+      if (current > 0 && current + size > maxQueueSize) {
+        throw new MetricsQueueFullException("Metrics queue is full, queued = "
+          + current + ", requested = " + size, getRetryAfterSeconds());
+      }
+    } while (!queuedMetrics.compareAndSet(current, current + size));
+
+    for (TimelineMetric metric : timelineMetrics) {
+      getQueue(metric).add(metric);
+    }
+  }
+
+  /**
+   * @return number of metrics waiting to be written
+   */
+  public int getQueueSize() {
+    return queuedMetrics.get();
+  }
+
+  /**
+   * @return number of metrics dropped after the retries were exhausted
+   */
+  public long getDroppedMetrics() {
+    return droppedMetrics.get();
+  }
+
+  /**
+   * @return number of batches that failed to be written, including retries
+   */
+  public long getFailedWrites() {
+    return failedWrites.get();
+  }
+
+  int getRetryAfterSeconds() {
+    long flushSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(flushIntervalMillis));
+    if (rowsPerSecond <= 0) {
+      return (int) Math.min(MAX_RETRY_AFTER_SECONDS, flushSeconds);
+    }
+    long drainSeconds = (long) Math.ceil(queuedMetrics.get() / rowsPerSecond);
+    return (int) Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(flushSeconds, drainSeconds));
+  }
+
+  private LinkedBlockingQueue<TimelineMetric> getQueue(TimelineMetric metric) {
+    String metricName = metric.getMetricName();
+    int hash = metricName == null ? 0 : metricName.hashCode();
+    return queues.get((hash & Integer.MAX_VALUE) % queues.size());
+  }
+
+  /**
+   * Write the batch. The metrics of a batch that could not be written stay
+   * counted as queued.
+   *
+   * @return true if the batch was written
+   */
+  private boolean flush(List<TimelineMetric> batch) {
+    if (batch.isEmpty()) {
+      return true;
+    }
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(batch);
+
+    long start = System.currentTimeMillis();
+    try {
+      hBaseAccessor.insertMetricRecords(metrics);
+      rowsWritten.addAndGet(batch.size());
+      queuedMetrics.addAndGet(-batch.size());
+      return true;
+    } catch (Exception e) {
+      failedWrites.incrementAndGet();
+      logWriteError("Unable to write " + batch.size() + " metrics.", e);
+      return false;
+    } finally {
+      flushTimeMillis.addAndGet(System.currentTimeMillis() - start);
+      flushCount.incrementAndGet();
+    }
+  }
+
+  private void drop(List<TimelineMetric> batch) {
+    logWriteError("Dropping " + batch.size() + " metrics after " + maxRetries +
+      " failed retries.", null);
+    droppedMetrics.addAndGet(batch.size());
+    queuedMetrics.addAndGet(-batch.size());
+  }
+
+  /**
+   * Log a write error unless one was logged within the last minute. The
+   * number of errors not logged in the meantime is added to the message.
+   */
+  private void logWriteError(String message, Exception e) {
+    long now = System.currentTimeMillis();
+    long last = lastErrorLogTime.get();
+    if (now - last < ERROR_LOG_INTERVAL_MILLIS || !lastErrorLogTime.compareAndSet(last, now)) {
+      suppressedErrors.incrementAndGet();
+      return;
+    }
+    long suppressed = suppressedErrors.getAndSet(0);
+    if (suppressed > 0) {
+      message += " " + suppressed + " more write errors since the last report.";
+    }
+    LOG.warn(message, e);
+  }
+
+  private static String getLocalHostName() {
+    try {
+      return InetAddress.getLocalHost().getCanonicalHostName();
+    } catch (UnknownHostException e) {
+      LOG.warn("Unable to resolve local host name.", e);
+      return "localhost";
+    }
+  }
+
+  /**
+   * Drains a single queue, flushing on batch size or flush interval. A
+   * batch that failed to be written is retried on the next flush interval
+   * and is not extended in the meantime.
+   */
+  private class Writer implements Runnable {
+    private final LinkedBlockingQueue<TimelineMetric> queue;
+    private List<TimelineMetric> batch = new ArrayList<TimelineMetric>(batchSize);
+    private int failedAttempts = 0;
+
+    Writer(LinkedBlockingQueue<TimelineMetric> queue) {
+      this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+      long flushTime = System.currentTimeMillis() + flushIntervalMillis;
+      boolean interrupted = false;
+
+      while (!interrupted && (running || !queue.isEmpty())) {
+        long wait = flushTime - System.currentTimeMillis();
+        try {
+          if (failedAttempts > 0) {
+            if (wait > 0) {
+              Thread.sleep(wait);
+            }
+          } else {
+            TimelineMetric metric = wait > 0 ?
+              queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+            if (metric != null) {
+              batch.add(metric);
+              queue.drainTo(batch, batchSize - batch.size());
+            }
+          }
+        } catch (InterruptedException e) {
+          LOG.warn("Metrics writer interrupted, flushing queued metrics.");
+          Thread.currentThread().interrupt();
+          interrupted = true;
+        }
+
+        if (batch.size() >= batchSize || System.currentTimeMillis() >= flushTime) {
+          write();
+          flushTime = System.currentTimeMillis() + flushIntervalMillis;
+        }
+      }
+
+      // stopped or interrupted, write what is left without waiting
+      do {
+        queue.drainTo(batch, batchSize - batch.size());
+        while (!batch.isEmpty() && !write()) {
+          // retried until written or dropped
+        }
+      } while (!queue.isEmpty());
+    }
+
+    /**
+     * Write the current batch, keeping it for a retry if that fails and
+     * retries are left.
+     *
+     * @return false if the batch was kept for a retry
+     */
+    private boolean write() {
+      if (!flush(batch)) {
+        if (++failedAttempts <= maxRetries) {
+          return false;
+        }
+        drop(batch);
+      }
+      batch = new ArrayList<TimelineMetric>(batchSize);
+      failedAttempts = 0;
+      return true;
+    }
+  }
+
+  /**
+   * Stores queue size, average flush latency and write rate of the last
+   * interval.
+   */
+  private class StatsReporter implements Runnable {
+    @Override
+    public void run() {
+      long lastRows = 0;
+      long lastFlushes = 0;
+      long lastFlushTime = 0;
+      long lastReport = System.currentTimeMillis();
+
+      while (running) {
+        try {
+          Thread.sleep(statsIntervalMillis);
+        } catch (InterruptedException e) {
+          return;
+        }
+
+        long now = System.currentTimeMillis();
+        long rows = rowsWritten.get();
+        long flushes = flushCount.get();
+        long flushTime = flushTimeMillis.get();
+
+        rowsPerSecond = (rows - lastRows) * 1000.0 / Math.max(1, now - lastReport);
+        double flushLatency = flushes == lastFlushes ? 0 :
+          (double) (flushTime - lastFlushTime) / (flushes - lastFlushes);
+
+        TimelineMetrics metrics = new TimelineMetrics();
+        metrics.getMetrics().add(createMetric(QUEUE_SIZE_METRIC, now, queuedMetrics.get()));
+        metrics.getMetrics().add(createMetric(FLUSH_LATENCY_METRIC, now, flushLatency));
+        metrics.getMetrics().add(createMetric(ROWS_PER_SECOND_METRIC, now, rowsPerSecond));
+        metrics.getMetrics().add(createMetric(DROPPED_METRICS_METRIC, now, droppedMetrics.get()));
+        metrics.getMetrics().add(createMetric(WRITE_FAILURES_METRIC, now, failedWrites.get()));
+        try {
+          hBaseAccessor.insertMetricRecords(metrics);
+        } catch (Exception e) {
+          LOG.warn("Unable to store metrics writer statistics.", e);
+        }
+
+        lastRows = rows;
+        lastFlushes = flushes;
+        lastFlushTime = flushTime;
+        lastReport = now;
+      }
+    }
+
+    private TimelineMetric createMetric(String name, long timestamp, double value) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName(name);
+      metric.setAppId(COLLECTOR_APP_ID);
+      metric.setHostName(hostname);
+      metric.setStartTime(timestamp);
+      metric.getMetricSeries().add(timestamp, value);
+      return metric;
+    }
+  }
+}
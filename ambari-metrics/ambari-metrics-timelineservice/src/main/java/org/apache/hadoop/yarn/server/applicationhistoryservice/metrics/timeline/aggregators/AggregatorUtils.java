@@ -20,40 +20,78 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 
 import java.util.Map;
 
+import org.apache.hadoop.metrics2.sink.timeline.MetricSeries;
+
 /**
  *
  */
 public class AggregatorUtils {
 
   public static double[] calculateAggregates(Map<Long, Double> metricValues) {
-    double[] values = new double[4];
-    double max = Double.MIN_VALUE;
-    double min = Double.MAX_VALUE;
-    double sum = 0.0;
+    if (metricValues instanceof MetricSeries) {
+      return calculateAggregates((MetricSeries) metricValues);
+    }
+
+    Aggregates aggregates = new Aggregates();
     int metricCount = 0;
 
     if (metricValues != null && !metricValues.isEmpty()) {
       for (Double value : metricValues.values()) {
         // TODO: Some nulls in data - need to investigate null values from host
-        if (value != null) {
-          if (value > max) {
-            max = value;
-          }
-          if (value < min) {
-            min = value;
-          }
-          sum += value;
-        }
+        aggregates.add(value != null ? value : Double.NaN);
       }
       metricCount = metricValues.values().size();
     }
-    // BR: WHY ZERO is a good idea?
-    values[0] = sum;
-    values[1] = max != Double.MIN_VALUE ? max : 0.0;
-    values[2] = min != Double.MAX_VALUE ? min : 0.0;
-    values[3] = metricCount;
 
-    return values;
+    return aggregates.toArray(metricCount);
   }
 
+  /**
+   * Same as {@link #calculateAggregates(Map)}, reading the values of the
+   * series without boxing them. Null values are stored as NaN.
+   */
+  public static double[] calculateAggregates(MetricSeries metricValues) {
+    Aggregates aggregates = new Aggregates();
+    int metricCount = 0;
+
+    if (metricValues != null) {
+      for (int i = 0; i < metricValues.size(); i++) {
+        aggregates.add(metricValues.getValue(i));
+      }
+      metricCount = metricValues.size();
+    }
+
+    return aggregates.toArray(metricCount);
+  }
+
+  /**
+   * The sum, maximum and minimum of the values added, skipping NaN.
+   */
+  private static final class Aggregates {
+    private double max = Double.MIN_VALUE;
+    private double min = Double.MAX_VALUE;
+    private double sum = 0.0;
+
+    void add(double value) {
+      if (!Double.isNaN(value)) {
+        if (value > max) {
+          max = value;
+        }
+        if (value < min) {
+          min = value;
+        }
+        sum += value;
+      }
+    }
+
+    double[] toArray(int metricCount) {
+      double[] values = new double[4];
+      // BR: WHY ZERO is a good idea?
+      values[0] = sum;
+      values[1] = max != Double.MIN_VALUE ? max : 0.0;
+      values[2] = min != Double.MAX_VALUE ? min : 0.0;
+      values[3] = metricCount;
+      return values;
+    }
+  }
 }
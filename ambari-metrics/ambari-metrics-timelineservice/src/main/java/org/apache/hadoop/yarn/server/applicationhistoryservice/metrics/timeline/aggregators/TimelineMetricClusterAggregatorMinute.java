@@ -21,6 +21,7 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.MetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
@@ -131,7 +132,7 @@ public class TimelineMetricClusterAggregatorMinute extends AbstractTimelineAggre
         // avoids issues across rows that belong to same hosts but get
         // counted as coming from different ones.
         if (metric.equalsExceptTime(nextMetric)) {
-          metric.addMetricValues(nextMetric.getMetricValues());
+          metric.getMetricSeries().merge(nextMetric.getMetricSeries());
         } else {
           // Process the current metric
           processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
@@ -186,7 +187,7 @@ public class TimelineMetricClusterAggregatorMinute extends AbstractTimelineAggre
   private Map<TimelineClusterMetric, Double> sliceFromTimelineMetric(
       TimelineMetric timelineMetric, List<Long[]> timeSlices) {
 
-    if (timelineMetric.getMetricValues().isEmpty()) {
+    if (timelineMetric.getMetricSeries().size() == 0) {
       return null;
     }
 
@@ -200,13 +201,16 @@ public class TimelineMetricClusterAggregatorMinute extends AbstractTimelineAggre
       timeShift = 0l;
     }
 
-    for (Map.Entry<Long, Double> metric : timelineMetric.getMetricValues().entrySet()) {
+    MetricSeries metricValues = timelineMetric.getMetricSeries();
+    for (int i = 0; i < metricValues.size(); i++) {
+      double value = metricValues.getValue(i);
       // TODO: investigate null values - pre filter
-      if (metric.getValue() == null) {
+      if (Double.isNaN(value)) {
         continue;
       }
 
-      Long timestamp = getSliceTimeForMetric(timeSlices, Long.parseLong(metric.getKey().toString()));
+      long metricTimestamp = metricValues.getTimestamp(i);
+      Long timestamp = getSliceTimeForMetric(timeSlices, metricTimestamp);
       if (timestamp != -1) {
         // Metric is within desired time range
         TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
@@ -220,18 +224,18 @@ public class TimelineMetricClusterAggregatorMinute extends AbstractTimelineAggre
         int count = 1;
         Double sum;
         if (!timelineClusterMetricMap.containsKey(clusterMetric)) {
-          sum = metric.getValue();
+          sum = value;
         } else {
           count++;
           Double oldValue = timelineClusterMetricMap.get(clusterMetric);
-          sum = oldValue + metric.getValue();
+          sum = oldValue + value;
         }
         timelineClusterMetricMap.put(clusterMetric, (sum / count));
       } else {
         if (timelineMetric.getMetricName().equals("tserver.general.entries")) {
           LOG.info("--- Fallen off: serverTs = " + timelineMetric.getTimestamp() +
             ", timeShift: " + timeShift +
-            ", timestamp: " + Long.parseLong(metric.getKey().toString()) +
+            ", timestamp: " + metricTimestamp +
             ", host = " + timelineMetric.getHostName());
         }
       }
@@ -243,7 +247,7 @@ public class TimelineMetricClusterAggregatorMinute extends AbstractTimelineAggre
   /**
    * Return beginning of the time slice into which the metric fits.
    */
-  private Long getSliceTimeForMetric(List<Long[]> timeSlices, Long timestamp) {
+  private Long getSliceTimeForMetric(List<Long[]> timeSlices, long timestamp) {
     for (Long[] timeSlice : timeSlices) {
       if (timestamp >= timeSlice[0] && timestamp < timeSlice[1]) {
         return timeSlice[0];
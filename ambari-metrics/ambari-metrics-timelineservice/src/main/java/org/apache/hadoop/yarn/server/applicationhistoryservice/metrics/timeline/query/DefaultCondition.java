@@ -25,7 +25,7 @@ import java.util.Set;
 
 public class DefaultCondition implements Condition {
   List<String> metricNames;
-  String hostname;
+  List<String> hostnames;
   String appId;
   String instanceId;
   Long startTime;
@@ -38,11 +38,11 @@ public class DefaultCondition implements Condition {
   String statement;
   Set<String> orderByColumns = new LinkedHashSet<String>();
 
-  public DefaultCondition(List<String> metricNames, String hostname, String appId,
+  public DefaultCondition(List<String> metricNames, List<String> hostnames, String appId,
                    String instanceId, Long startTime, Long endTime, Precision precision,
                    Integer limit, boolean grouped) {
     this.metricNames = metricNames;
-    this.hostname = hostname;
+    this.hostnames = hostnames;
     this.appId = appId;
     this.instanceId = instanceId;
     this.startTime = startTime;
@@ -107,7 +107,7 @@ public class DefaultCondition implements Condition {
       }
     }
 
-    appendConjunction = append(sb, appendConjunction, getHostname(), " HOSTNAME = ?");
+    appendConjunction = appendHostnames(sb, appendConjunction, getHostnames());
     appendConjunction = append(sb, appendConjunction, getAppId(), " APP_ID = ?");
     appendConjunction = append(sb, appendConjunction, getInstanceId(), " INSTANCE_ID = ?");
     appendConjunction = append(sb, appendConjunction, getStartTime(), " SERVER_TIME >= ?");
@@ -130,8 +130,35 @@ public class DefaultCondition implements Condition {
     return appendConjunction;
   }
 
-  public String getHostname() {
-    return hostname == null || hostname.isEmpty() ? null : hostname;
+  protected static boolean appendHostnames(StringBuilder sb,
+                                           boolean appendConjunction,
+                                           List<String> hostnames) {
+    if (hostnames == null) {
+      return appendConjunction;
+    }
+    if (hostnames.size() == 1) {
+      return append(sb, appendConjunction, hostnames.get(0), " HOSTNAME = ?");
+    }
+
+    StringBuilder hostnamesIn = new StringBuilder(" HOSTNAME IN (");
+    for (int i = 0; i < hostnames.size(); i++) {
+      if (i > 0) {
+        hostnamesIn.append(", ");
+      }
+      hostnamesIn.append("?");
+    }
+    hostnamesIn.append(")");
+    return append(sb, appendConjunction, hostnames, hostnamesIn.toString());
+  }
+
+  public List<String> getHostnames() {
+    if (hostnames == null || hostnames.isEmpty()) {
+      return null;
+    }
+    if (hostnames.size() == 1 && (hostnames.get(0) == null || hostnames.get(0).isEmpty())) {
+      return null;
+    }
+    return hostnames;
   }
 
   public Precision getPrecision() {
@@ -202,7 +229,7 @@ public class DefaultCondition implements Condition {
 
   public boolean isEmpty() {
     return (metricNames == null || metricNames.isEmpty())
-      && (hostname == null || hostname.isEmpty())
+      && getHostnames() == null
       && (appId == null || appId.isEmpty())
       && (instanceId == null || instanceId.isEmpty())
       && startTime == null
@@ -244,7 +271,7 @@ public class DefaultCondition implements Condition {
   public String toString() {
     return "Condition{" +
       "metricNames=" + metricNames +
-      ", hostname='" + hostname + '\'' +
+      ", hostnames=" + hostnames +
       ", appId='" + appId + '\'' +
       ", instanceId='" + instanceId + '\'' +
       ", startTime=" + startTime +
@@ -53,7 +53,8 @@ public class PhoenixTransactSQL {
     "METRIC_COUNT UNSIGNED_INT, " +
     "METRIC_MAX DOUBLE, " +
     "METRIC_MIN DOUBLE, " +
-    "METRICS VARCHAR CONSTRAINT pk " +
+    "METRICS VARCHAR, " +
+    "METRICS_ENCODED VARBINARY CONSTRAINT pk " +
     "PRIMARY KEY (METRIC_NAME, HOSTNAME, SERVER_TIME, APP_ID, " +
     "INSTANCE_ID)) DATA_BLOCK_ENCODING='%s', IMMUTABLE_ROWS=true, " +
     "TTL=%s, COMPRESSION='%s'";
@@ -110,6 +111,13 @@ public class PhoenixTransactSQL {
    */
   public static final String ALTER_SQL = "ALTER TABLE %s SET TTL=%s";
 
+  /**
+   * Add the binary metric values column to metric records tables created
+   * before it was introduced.
+   */
+  public static final String ALTER_METRICS_TABLE_ADD_ENCODED_SQL =
+    "ALTER TABLE METRIC_RECORD ADD IF NOT EXISTS METRICS_ENCODED VARBINARY";
+
   /**
    * Insert into metric records table.
    */
@@ -120,8 +128,9 @@ public class PhoenixTransactSQL {
     "METRIC_MAX, " +
     "METRIC_MIN, " +
     "METRIC_COUNT, " +
-    "METRICS) VALUES " +
-    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    "METRICS, " +
+    "METRICS_ENCODED) VALUES " +
+    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
   public static final String UPSERT_CLUSTER_AGGREGATE_SQL = "UPSERT INTO " +
     "%s (METRIC_NAME, APP_ID, INSTANCE_ID, SERVER_TIME, " +
@@ -160,7 +169,8 @@ public class PhoenixTransactSQL {
     "METRIC_MAX, " +
     "METRIC_MIN, " +
     "METRIC_COUNT, " +
-    "METRICS " +
+    "METRICS, " +
+    "METRICS_ENCODED " +
     "FROM %s";
 
   public static final String GET_METRIC_AGGREGATE_ONLY_SQL = "SELECT %s " +
@@ -207,6 +217,16 @@ public class PhoenixTransactSQL {
     "METRIC_AGGREGATE_DAILY";
   public static final String DEFAULT_TABLE_COMPRESSION = "SNAPPY";
   public static final String DEFAULT_ENCODING = "FAST_DIFF";
+
+  /**
+   * Storage formats of the values of a metric record. JSON values are kept
+   * in the METRICS column, binary values in the METRICS_ENCODED column.
+   * Binary is opt-in, since collectors which only read the METRICS column
+   * can't read the records written with it.
+   */
+  public static final String METRIC_VALUES_ENCODING_JSON = "json";
+  public static final String METRIC_VALUES_ENCODING_BINARY = "binary";
+  public static final String DEFAULT_METRIC_VALUES_ENCODING = METRIC_VALUES_ENCODING_JSON;
   public static final long NATIVE_TIME_RANGE_DELTA = 120000; // 2 minutes
   public static final long HOUR = 3600000; // 1 hour
   public static final long DAY = 86400000; // 1 day
@@ -307,11 +327,13 @@ public class PhoenixTransactSQL {
         stmt.setString(pos, condition.getMetricNames().get(pos - 1));
       }
     }
-    if (condition.getHostname() != null) {
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Setting pos: " + pos + ", value: " + condition.getHostname());
+    if (condition.getHostnames() != null) {
+      for (String hostname : condition.getHostnames()) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Setting pos: " + pos + ", value: " + hostname);
+        }
+        stmt.setString(pos++, hostname);
       }
-      stmt.setString(pos++, condition.getHostname());
     }
     if (condition.getAppId() != null) {
       if (LOG.isDebugEnabled()) {
@@ -385,6 +407,12 @@ public class PhoenixTransactSQL {
       throw new IllegalArgumentException("Point in time query without " +
         "metric names not supported ");
     }
+    // a LIMIT can't pick the latest record of every host
+    if (condition.getHostnames() != null
+      && condition.getHostnames().size() > 1) {
+      throw new IllegalArgumentException("Point in time query for more " +
+        "than one host not supported, query each host separately");
+    }
 
     String stmtStr;
     if (condition.getStatement() != null) {
@@ -421,11 +449,13 @@ public class PhoenixTransactSQL {
         stmt.setString(pos, condition.getMetricNames().get(pos - 1));
       }
     }
-    if (condition.getHostname() != null) {
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Setting pos: " + pos + ", value: " + condition.getHostname());
+    if (condition.getHostnames() != null) {
+      for (String hostname : condition.getHostnames()) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Setting pos: " + pos + ", value: " + hostname);
+        }
+        stmt.setString(pos++, hostname);
       }
-      stmt.setString(pos++, condition.getHostname());
     }
     if (condition.getAppId() != null) {
       if (LOG.isDebugEnabled()) {
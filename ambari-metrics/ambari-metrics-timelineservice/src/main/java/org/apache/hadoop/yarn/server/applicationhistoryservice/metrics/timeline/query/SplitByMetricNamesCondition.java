@@ -25,6 +25,7 @@ import java.util.List;
 public class SplitByMetricNamesCondition implements Condition {
   private final Condition adaptee;
   private String currentMetric;
+  private String currentHostname;
 
   public SplitByMetricNamesCondition(Condition condition){
     this.adaptee = condition;
@@ -56,8 +57,11 @@ public class SplitByMetricNamesCondition implements Condition {
   }
 
   @Override
-  public String getHostname() {
-    return adaptee.getHostname();
+  public List<String> getHostnames() {
+    if (currentHostname != null) {
+      return Collections.singletonList(currentHostname);
+    }
+    return adaptee.getHostnames();
   }
 
   @Override
@@ -96,8 +100,8 @@ public class SplitByMetricNamesCondition implements Condition {
       appendConjunction = true;
     }
 
-    appendConjunction = DefaultCondition.append(sb, appendConjunction,
-      getHostname(), " HOSTNAME = ?");
+    appendConjunction = DefaultCondition.appendHostnames(sb, appendConjunction,
+      getHostnames());
     appendConjunction = DefaultCondition.append(sb, appendConjunction,
       getAppId(), " APP_ID = ?");
     appendConjunction = DefaultCondition.append(sb, appendConjunction,
@@ -162,4 +166,16 @@ public class SplitByMetricNamesCondition implements Condition {
   public void setCurrentMetric(String currentMetric) {
     this.currentMetric = currentMetric;
   }
+
+  public List<String> getOriginalHostnames() {
+    return adaptee.getHostnames();
+  }
+
+  /**
+   * Restricts the condition to a single host of the original hostnames;
+   * null to use all of them.
+   */
+  public void setCurrentHostname(String currentHostname) {
+    this.currentHostname = currentHostname;
+  }
 }
@@ -31,6 +31,7 @@ import org.apache.hadoop.yarn.api.records.timeline.TimelineEvents;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricsQueueFullException;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.Precision;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricStore;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.EntityIdentifier;
@@ -275,6 +276,12 @@ public class TimelineWebServices {
 
       return timelineMetricStore.putMetrics(metrics);
 
+    } catch (MetricsQueueFullException e) {
+      LOG.warn("Rejecting metrics: " + e.getMessage());
+      throw new WebApplicationException(e,
+        Response.status(Response.Status.SERVICE_UNAVAILABLE)
+          .header("Retry-After", e.getRetryAfterSeconds())
+          .entity(e.getMessage()).build());
     } catch (Exception e) {
       LOG.error("Error saving metrics.", e);
       throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
@@ -337,7 +344,8 @@ public class TimelineWebServices {
    * @param metricNames Comma separated list of metrics to retrieve.
    * @param appId Application Id for the requested metrics.
    * @param instanceId Application instance id.
-   * @param hostname Hostname where the metrics originated.
+   * @param hostname Comma separated list of hostnames where the metrics
+   *                 originated.
    * @param startTime Start time for the metric records retrieved.
    * @param precision Precision [ seconds, minutes, hours ]
    * @param limit limit on total number of {@link TimelineMetric} records
@@ -371,7 +379,7 @@ public class TimelineWebServices {
       }
 
       return timelineMetricStore.getTimelineMetrics(
-        parseListStr(metricNames, ","), hostname, appId, instanceId,
+        parseListStr(metricNames, ","), parseListStr(hostname, ","), appId, instanceId,
         parseLongStr(startTime), parseLongStr(endTime),
         Precision.getPrecision(precision), parseIntStr(limit),
         parseBoolean(grouped));
@@ -33,14 +33,18 @@ import org.junit.Before;
 import org.junit.Test;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricTestHelper.createEmptyTimelineClusterMetric;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricTestHelper.createEmptyTimelineMetric;
@@ -98,7 +102,7 @@ public class ITPhoenixHBaseAccessor extends AbstractMiniHBaseClusterTest {
     // WHEN
     long endTime = ctime + minute;
     Condition condition = new DefaultCondition(
-      Collections.singletonList("disk_free"), "local1", null, null, startTime,
+      Collections.singletonList("disk_free"), Collections.singletonList("local1"), null, null, startTime,
       endTime, Precision.SECONDS, null, true);
     TimelineMetrics timelineMetrics = hdb.getMetricRecords(condition,
       singletonValueFunctionMap("disk_free"));
@@ -112,6 +116,77 @@ public class ITPhoenixHBaseAccessor extends AbstractMiniHBaseClusterTest {
     assertEquals(8, metric.getMetricValues().size());
   }
 
+  @Test
+  public void testGetLatestMetricRecordsMultipleHosts() throws IOException, SQLException {
+    // GIVEN
+    long startTime = System.currentTimeMillis();
+    long ctime = startTime;
+    long minute = 60 * 1000;
+    hdb.insertMetricRecords(prepareSingleTimelineMetric(ctime, "local1",
+      "disk_free", 1));
+    hdb.insertMetricRecords(prepareSingleTimelineMetric(ctime, "local2",
+      "disk_free", 2));
+    hdb.insertMetricRecords(prepareSingleTimelineMetric(ctime, "local3",
+      "disk_free", 3));
+    ctime += minute;
+    hdb.insertMetricRecords(prepareSingleTimelineMetric(ctime, "local1",
+      "disk_free", 4));
+    hdb.insertMetricRecords(prepareSingleTimelineMetric(ctime, "local2",
+      "disk_free", 5));
+
+    // WHEN
+    Condition condition = new DefaultCondition(
+      Collections.singletonList("disk_free"),
+      Arrays.asList("local1", "local2", "local3"), null, null, null, null,
+      Precision.SECONDS, null, true);
+    TimelineMetrics timelineMetrics = hdb.getMetricRecords(condition,
+      singletonValueFunctionMap("disk_free"));
+
+    //THEN
+    assertEquals(3, timelineMetrics.getMetrics().size());
+    Map<String, TimelineMetric> byHost = new HashMap<String, TimelineMetric>();
+    for (TimelineMetric metric : timelineMetrics.getMetrics()) {
+      assertEquals("disk_free", metric.getMetricName());
+      byHost.put(metric.getHostName(), metric);
+    }
+    assertEquals(ctime, byHost.get("local1").getStartTime());
+    assertEquals(ctime, byHost.get("local2").getStartTime());
+    assertEquals(startTime, byHost.get("local3").getStartTime());
+  }
+
+  @Test
+  public void testReadJsonAndBinaryMetricValues() throws IOException, SQLException {
+    // GIVEN
+    long startTime = System.currentTimeMillis();
+    TimelineMetrics metrics = prepareSingleTimelineMetric(startTime, "local1",
+      "disk_free", 1);
+    insertMetricRecords(conn, metrics, startTime);
+    hdb.insertMetricRecords(prepareSingleTimelineMetric(startTime, "local2",
+      "disk_free", 2));
+
+    Condition condition = new DefaultCondition(
+      Collections.singletonList("disk_free"), null, null, null,
+      startTime, startTime + 60000, Precision.SECONDS, null, true);
+
+    // WHEN
+    TimelineMetrics result = hdb.getMetricRecords(condition,
+      singletonValueFunctionMap("disk_free"));
+
+    // THEN
+    assertEquals(2, result.getMetrics().size());
+    assertEquals(metrics.getMetrics().get(0).getMetricValues(),
+      result.getMetrics().get(0).getMetricValues());
+
+    Statement stmt = conn.createStatement();
+    ResultSet rs = stmt.executeQuery("SELECT METRICS, METRICS_ENCODED " +
+      "FROM METRIC_RECORD WHERE HOSTNAME = 'local2'");
+    assertTrue(rs.next());
+    assertNull(rs.getString("METRICS"));
+    assertNotNull(rs.getBytes("METRICS_ENCODED"));
+    rs.close();
+    stmt.close();
+  }
+
   @Test
   public void testGetMetricRecordsMinutes() throws IOException, SQLException {
     // GIVEN
@@ -133,7 +208,7 @@ public class ITPhoenixHBaseAccessor extends AbstractMiniHBaseClusterTest {
 
     // WHEN
     Condition condition = new DefaultCondition(
-        Collections.singletonList("disk_free"), "local1", null, null, startTime,
+        Collections.singletonList("disk_free"), Collections.singletonList("local1"), null, null, startTime,
         endTime, Precision.MINUTES, null, false);
     TimelineMetrics timelineMetrics = hdb.getMetricRecords(condition,
       singletonValueFunctionMap("disk_free"));
@@ -184,7 +259,7 @@ public class ITPhoenixHBaseAccessor extends AbstractMiniHBaseClusterTest {
 
     // WHEN
     Condition condition = new DefaultCondition(
-        Collections.singletonList("disk_used"), "test_host", "test_app", null,
+        Collections.singletonList("disk_used"), Collections.singletonList("test_host"), "test_app", null,
         startTime, endTime, Precision.HOURS, null, true);
     TimelineMetrics timelineMetrics = hdb.getMetricRecords(condition,
       singletonValueFunctionMap("disk_used"));
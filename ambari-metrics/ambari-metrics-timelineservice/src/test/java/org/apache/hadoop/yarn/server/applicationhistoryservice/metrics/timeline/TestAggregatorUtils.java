@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.metrics2.sink.timeline.MetricSeries;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.AggregatorUtils;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestAggregatorUtils {
+
+  @Test
+  public void testCalculateAggregatesOfSeries() throws Exception {
+    // given
+    Map<Long, Double> values = new HashMap<Long, Double>();
+    values.put(1000L, 2.0);
+    values.put(2000L, null);
+    values.put(3000L, 5.0);
+    values.put(4000L, 1.0);
+
+    //when
+    double[] fromMap = AggregatorUtils.calculateAggregates(values);
+    double[] fromSeries = AggregatorUtils.calculateAggregates(new MetricSeries(values));
+
+    //then
+    assertThat(fromSeries).isEqualTo(new double[] { 8.0, 5.0, 1.0, 4 });
+    assertThat(fromSeries).isEqualTo(fromMap);
+  }
+
+  @Test
+  public void testCalculateAggregatesOfEmptySeries() throws Exception {
+    assertThat(AggregatorUtils.calculateAggregates(new MetricSeries()))
+      .isEqualTo(new double[] { 0.0, 0.0, 0.0, 0 });
+  }
+}
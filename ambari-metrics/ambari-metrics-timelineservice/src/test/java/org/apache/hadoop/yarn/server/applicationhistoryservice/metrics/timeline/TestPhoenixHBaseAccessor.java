@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.MetricHostAggregate;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.ConnectionProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+public class TestPhoenixHBaseAccessor {
+
+  @Test
+  public void testInsertMetricRecordsInBatch() throws Exception {
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+    expect(connection.prepareStatement((String) anyObject())).andReturn(stmt);
+    stmt.addBatch();
+    expectLastCall().times(3);
+    expect(stmt.executeBatch()).andReturn(new int[] { 1, 1, 1 }).once();
+    connection.commit();
+    expectLastCall().once();
+    replay(connection, stmt);
+
+    getAccessor(connection).insertMetricRecords(
+      getMetrics("cpu_user", "cpu_system", "mem_free"));
+
+    verify(connection, stmt);
+  }
+
+  @Test
+  public void testInsertMetricRecordsBatchFailure() throws Exception {
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+    expect(connection.prepareStatement((String) anyObject())).andReturn(stmt);
+    expect(stmt.executeBatch()).andThrow(new SQLException("Region unavailable"));
+    connection.close();
+    expectLastCall().once();
+    replay(connection, stmt);
+
+    try {
+      getAccessor(connection).insertMetricRecords(getMetrics("cpu_user"));
+      Assert.fail("The failed batch should reach the writer");
+    } catch (SQLException e) {
+      Assert.assertEquals("Region unavailable", e.getMessage());
+    }
+
+    verify(connection);
+  }
+
+  @Test
+  public void testSaveHostAggregateRecordsBatchFailure() throws Exception {
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+    expect(connection.prepareStatement((String) anyObject())).andReturn(stmt);
+    stmt.addBatch();
+    expectLastCall().times(1);
+    expect(stmt.executeBatch()).andThrow(new SQLException("Region unavailable"));
+    replay(connection, stmt);
+
+    Map<TimelineMetric, MetricHostAggregate> aggregates =
+      new HashMap<TimelineMetric, MetricHostAggregate>();
+    aggregates.put(getMetrics("cpu_user").getMetrics().get(0),
+      new MetricHostAggregate(1.0, 1, 0.0, 1.0, 1.0));
+
+    try {
+      getAccessor(connection).saveHostAggregateRecords(aggregates,
+        "METRIC_RECORD_MINUTE");
+      Assert.fail("The failed batch should reach the aggregator");
+    } catch (SQLException e) {
+      // the aggregator keeps its checkpoint and aggregates the period again
+    }
+
+    verify(stmt);
+  }
+
+  private static PhoenixHBaseAccessor getAccessor(final Connection connection) {
+    return new PhoenixHBaseAccessor(new Configuration(false),
+      new Configuration(false), new ConnectionProvider() {
+        @Override
+        public Connection getConnection() throws SQLException {
+          return connection;
+        }
+      });
+  }
+
+  private static TimelineMetrics getMetrics(String... metricNames) {
+    TimelineMetrics metrics = new TimelineMetrics();
+    long now = System.currentTimeMillis();
+    for (String metricName : metricNames) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName(metricName);
+      metric.setHostName("host1");
+      metric.setAppId("HOST");
+      metric.setStartTime(now);
+      metric.setTimestamp(now);
+      metric.getMetricValues().put(now, 1.0);
+      metrics.getMetrics().add(metric);
+    }
+    return metrics;
+  }
+}
@@ -39,7 +39,7 @@ public class TestPhoenixTransactSQL {
   @Test
   public void testConditionClause() throws Exception {
     Condition condition = new DefaultCondition(
-      Arrays.asList("cpu_user", "mem_free"), "h1", "a1", "i1",
+      Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, null, null, false);
 
     String preparedClause = condition.getConditionClause().toString();
@@ -50,10 +50,24 @@ public class TestPhoenixTransactSQL {
     Assert.assertEquals(expectedClause, preparedClause);
   }
 
+  @Test
+  public void testConditionClauseMultipleHosts() throws Exception {
+    Condition condition = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), Arrays.asList("h1", "h2"), "a1", "i1",
+        1407959718L, 1407959918L, null, null, false);
+
+    String preparedClause = condition.getConditionClause().toString();
+    String expectedClause = "(METRIC_NAME IN (?, ?)) AND HOSTNAME IN (?, ?) AND " +
+      "APP_ID = ? AND INSTANCE_ID = ? AND SERVER_TIME >= ? AND SERVER_TIME < ?";
+
+    Assert.assertNotNull(preparedClause);
+    Assert.assertEquals(expectedClause, preparedClause);
+  }
+
   @Test
   public void testSplitByMetricNamesCondition() throws Exception {
     Condition c = new DefaultCondition(
-      Arrays.asList("cpu_user", "mem_free"), "h1", "a1", "i1",
+      Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"), "a1", "i1",
       1407959718L, 1407959918L, null, null, false);
 
     SplitByMetricNamesCondition condition = new SplitByMetricNamesCondition(c);
@@ -70,7 +84,7 @@ public class TestPhoenixTransactSQL {
   @Test
   public void testLikeConditionClause() throws Exception {
     Condition condition = new DefaultCondition(
-        Arrays.asList("cpu_user", "some=%.metric"), "h1", "a1", "i1",
+        Arrays.asList("cpu_user", "some=%.metric"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, null, null, false);
 
     String preparedClause = condition.getConditionClause().toString();
@@ -82,7 +96,7 @@ public class TestPhoenixTransactSQL {
 
 
     condition = new DefaultCondition(
-        Collections.<String>emptyList(), "h1", "a1", "i1",
+        Collections.<String>emptyList(), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, null, null, false);
 
     preparedClause = condition.getConditionClause().toString();
@@ -94,7 +108,7 @@ public class TestPhoenixTransactSQL {
 
 
     condition = new DefaultCondition(
-        null, "h1", "a1", "i1",
+        null, Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, null, null, false);
 
     preparedClause = condition.getConditionClause().toString();
@@ -106,7 +120,7 @@ public class TestPhoenixTransactSQL {
 
 
     condition = new DefaultCondition(
-        Arrays.asList("some=%.metric"), "h1", "a1", "i1",
+        Arrays.asList("some=%.metric"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, null, null, false);
 
     preparedClause = condition.getConditionClause().toString();
@@ -118,7 +132,7 @@ public class TestPhoenixTransactSQL {
 
 
     condition = new DefaultCondition(
-        Arrays.asList("some=%.metric1", "some=%.metric2", "some=%.metric3"), "h1", "a1", "i1",
+        Arrays.asList("some=%.metric1", "some=%.metric2", "some=%.metric3"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, null, null, false);
 
     preparedClause = condition.getConditionClause().toString();
@@ -129,10 +143,62 @@ public class TestPhoenixTransactSQL {
     Assert.assertEquals(expectedClause, preparedClause);
   }
 
+  @Test
+  public void testSplitByMetricNamesConditionCurrentHostname() throws Exception {
+    Condition c = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), Arrays.asList("h1", "h2"), "a1", "i1",
+      null, null, null, null, true);
+
+    SplitByMetricNamesCondition condition = new SplitByMetricNamesCondition(c);
+    condition.setCurrentMetric(c.getMetricNames().get(0));
+    condition.setCurrentHostname("h2");
+
+    String preparedClause = condition.getConditionClause().toString();
+    String expectedClause = "METRIC_NAME = ? AND HOSTNAME = ? AND " +
+      "APP_ID = ? AND INSTANCE_ID = ?";
+
+    Assert.assertEquals(expectedClause, preparedClause);
+    Assert.assertEquals(Collections.singletonList("h2"), condition.getHostnames());
+    Assert.assertEquals(Arrays.asList("h1", "h2"), condition.getOriginalHostnames());
+  }
+
+  @Test
+  public void testPrepareGetLatestMetricSingleHost() throws SQLException {
+    Condition c = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), Arrays.asList("h1", "h2"), "a1", "i1",
+      null, null, null, null, true);
+    SplitByMetricNamesCondition condition = new SplitByMetricNamesCondition(c);
+    condition.setCurrentMetric("cpu_user");
+    condition.setCurrentHostname("h1");
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
+    Capture<String> stmtCapture = new Capture<String>();
+    expect(connection.prepareStatement(EasyMock.and(EasyMock.anyString(), EasyMock.capture(stmtCapture))))
+        .andReturn(preparedStatement);
+
+    replay(connection, preparedStatement);
+    PhoenixTransactSQL.prepareGetLatestMetricSqlStmt(connection, condition);
+    String stmt = stmtCapture.getValue();
+    Assert.assertTrue(stmt.contains("HOSTNAME = ?"));
+    Assert.assertTrue(stmt.endsWith(" LIMIT 1"));
+    verify(connection, preparedStatement);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrepareGetLatestMetricMultipleHosts() throws SQLException {
+    Condition condition = new DefaultCondition(
+      Arrays.asList("cpu_user"), Arrays.asList("h1", "h2"), "a1", "i1",
+      null, null, null, null, true);
+    Connection connection = createNiceMock(Connection.class);
+    replay(connection);
+
+    PhoenixTransactSQL.prepareGetLatestMetricSqlStmt(connection, condition);
+  }
+
   @Test
   public void testPrepareGetAggregatePrecisionMINUTES() throws SQLException {
     Condition condition = new DefaultCondition(
-        Arrays.asList("cpu_user", "mem_free"), "h1", "a1", "i1",
+        Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, Precision.MINUTES, null, false);
     Connection connection = createNiceMock(Connection.class);
     PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
@@ -150,7 +216,7 @@ public class TestPhoenixTransactSQL {
   @Test
   public void testPrepareGetAggregateNoPrecision() throws SQLException {
     Condition condition = new DefaultCondition(
-        Arrays.asList("cpu_user", "mem_free"), "h1", "a1", "i1",
+        Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, null, null, false);
     Connection connection = createNiceMock(Connection.class);
     PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
@@ -168,7 +234,7 @@ public class TestPhoenixTransactSQL {
   @Test
   public void testPrepareGetAggregatePrecisionHours() throws SQLException {
     Condition condition = new DefaultCondition(
-        Arrays.asList("cpu_user", "mem_free"), "h1", "a1", "i1",
+        Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, Precision.HOURS, null, false);
     Connection connection = createNiceMock(Connection.class);
     PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
@@ -186,7 +252,7 @@ public class TestPhoenixTransactSQL {
   @Test
   public void testPrepareGetMetricsPrecisionMinutes() throws SQLException {
     Condition condition = new DefaultCondition(
-        Arrays.asList("cpu_user", "mem_free"), "h1", "a1", "i1",
+        Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, Precision.MINUTES, null, false);
     Connection connection = createNiceMock(Connection.class);
     PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
@@ -204,7 +270,7 @@ public class TestPhoenixTransactSQL {
   @Test
   public void testPrepareGetMetricsNoPrecision() throws SQLException {
     Condition condition = new DefaultCondition(
-        Arrays.asList("cpu_user", "mem_free"), "h1", "a1", "i1",
+        Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, null, null, false);
     Connection connection = createNiceMock(Connection.class);
     PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
@@ -222,7 +288,7 @@ public class TestPhoenixTransactSQL {
   @Test
   public void testPrepareGetMetricsPrecisionHours() throws SQLException {
     Condition condition = new DefaultCondition(
-        Arrays.asList("cpu_user", "mem_free"), "h1", "a1", "i1",
+        Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"), "a1", "i1",
         1407959718L, 1407959918L, Precision.HOURS, null, false);
     Connection connection = createNiceMock(Connection.class);
     PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.IAnswer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_FLUSH_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_MAX_RETRIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_STATS_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_THREADS;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+
+public class TestTimelineMetricsWriter {
+
+  @Test
+  public void testFlushOnBatchSize() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    final CountDownLatch latch = new CountDownLatch(2);
+    Capture<TimelineMetrics> batches = new Capture<TimelineMetrics>(CaptureType.ALL);
+    hBaseAccessor.insertMetricRecords(capture(batches));
+    expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        latch.countDown();
+        return null;
+      }
+    }).anyTimes();
+    replay(hBaseAccessor);
+
+    TimelineMetricsWriter writer = new TimelineMetricsWriter(hBaseAccessor,
+      getConfiguration(1, 2, 100));
+    writer.start();
+    writer.putMetrics(getMetrics("cpu_user", "cpu_system", "mem_free", "mem_total"));
+
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    writer.stop();
+
+    Assert.assertEquals(2, batches.getValues().size());
+    for (TimelineMetrics batch : batches.getValues()) {
+      Assert.assertEquals(2, batch.getMetrics().size());
+    }
+    Assert.assertEquals(0, writer.getQueueSize());
+  }
+
+  @Test
+  public void testFlushOnStop() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    Capture<TimelineMetrics> batches = new Capture<TimelineMetrics>(CaptureType.ALL);
+    hBaseAccessor.insertMetricRecords(capture(batches));
+    expectLastCall().anyTimes();
+    replay(hBaseAccessor);
+
+    TimelineMetricsWriter writer = new TimelineMetricsWriter(hBaseAccessor,
+      getConfiguration(2, 1000, 100));
+    writer.start();
+    writer.putMetrics(getMetrics("cpu_user", "cpu_system", "mem_free"));
+    writer.stop();
+
+    int written = 0;
+    for (TimelineMetrics batch : batches.getValues()) {
+      written += batch.getMetrics().size();
+    }
+    Assert.assertEquals(3, written);
+    Assert.assertEquals(0, writer.getQueueSize());
+  }
+
+  @Test
+  public void testRetryFailedBatch() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    final CountDownLatch latch = new CountDownLatch(2);
+    Capture<TimelineMetrics> batches = new Capture<TimelineMetrics>(CaptureType.ALL);
+    hBaseAccessor.insertMetricRecords(capture(batches));
+    expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        latch.countDown();
+        if (latch.getCount() > 0) {
+          throw new SQLException("Write failed");
+        }
+        return null;
+      }
+    }).anyTimes();
+    replay(hBaseAccessor);
+
+    Configuration metricsConf = getConfiguration(1, 2, 1);
+    metricsConf.setInt(WRITER_MAX_RETRIES, 1);
+    TimelineMetricsWriter writer = new TimelineMetricsWriter(hBaseAccessor, metricsConf);
+    writer.start();
+    writer.putMetrics(getMetrics("cpu_user", "cpu_system"));
+
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    writer.stop();
+
+    Assert.assertEquals(2, batches.getValues().size());
+    Assert.assertEquals(batches.getValues().get(0).getMetrics(),
+      batches.getValues().get(1).getMetrics());
+    Assert.assertEquals(0, writer.getDroppedMetrics());
+    Assert.assertEquals(1, writer.getFailedWrites());
+    Assert.assertEquals(0, writer.getQueueSize());
+  }
+
+  @Test
+  public void testDropAfterRetries() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    final CountDownLatch latch = new CountDownLatch(2);
+    hBaseAccessor.insertMetricRecords(anyObject(TimelineMetrics.class));
+    expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        latch.countDown();
+        throw new SQLException("Write failed");
+      }
+    }).anyTimes();
+    replay(hBaseAccessor);
+
+    Configuration metricsConf = getConfiguration(1, 2, 1);
+    metricsConf.setInt(WRITER_MAX_RETRIES, 1);
+    TimelineMetricsWriter writer = new TimelineMetricsWriter(hBaseAccessor, metricsConf);
+    writer.start();
+    writer.putMetrics(getMetrics("cpu_user", "cpu_system"));
+
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    writer.stop();
+
+    Assert.assertEquals(2, writer.getDroppedMetrics());
+    Assert.assertEquals(2, writer.getFailedWrites());
+    Assert.assertEquals(0, writer.getQueueSize());
+  }
+
+  @Test
+  public void testQueueFull() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    replay(hBaseAccessor);
+
+    Configuration metricsConf = getConfiguration(1, 1000, 100);
+    metricsConf.setInt(WRITER_QUEUE_SIZE, 2);
+    TimelineMetricsWriter writer = new TimelineMetricsWriter(hBaseAccessor, metricsConf);
+    writer.start();
+
+    writer.putMetrics(getMetrics("cpu_user", "cpu_system"));
+    try {
+      writer.putMetrics(getMetrics("mem_free"));
+      Assert.fail("Expected MetricsQueueFullException");
+    } catch (MetricsQueueFullException e) {
+      Assert.assertTrue(e.getRetryAfterSeconds() > 0);
+    }
+    Assert.assertEquals(2, writer.getQueueSize());
+    writer.stop();
+  }
+
+  @Test(expected = MetricsQueueFullException.class)
+  public void testPutMetricsNotRunning() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    replay(hBaseAccessor);
+
+    TimelineMetricsWriter writer = new TimelineMetricsWriter(hBaseAccessor,
+      getConfiguration(1, 1000, 100));
+    writer.putMetrics(getMetrics("cpu_user"));
+  }
+
+  private static Configuration getConfiguration(int threads, int batchSize,
+                                                long flushInterval) {
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(WRITER_THREADS, threads);
+    metricsConf.setInt(WRITER_BATCH_SIZE, batchSize);
+    metricsConf.setLong(WRITER_FLUSH_INTERVAL, flushInterval);
+    metricsConf.setLong(WRITER_STATS_INTERVAL, 0);
+    return metricsConf;
+  }
+
+  private static TimelineMetrics getMetrics(String... metricNames) {
+    TimelineMetrics metrics = new TimelineMetrics();
+    long now = System.currentTimeMillis();
+    for (String metricName : metricNames) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName(metricName);
+      metric.setHostName("host1");
+      metric.setAppId("HOST");
+      metric.setStartTime(now);
+      metric.getMetricValues().put(now, 1.0);
+      metrics.getMetrics().add(metric);
+    }
+    return metrics;
+  }
+}
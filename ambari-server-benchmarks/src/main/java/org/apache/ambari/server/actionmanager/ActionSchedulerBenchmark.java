@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.Role;
+import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.agent.ActionQueue;
+import org.apache.ambari.server.benchmarks.ClusterFixture;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.controller.HostsMap;
+import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.svccomphost.ServiceComponentHostStartEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Injector;
+import com.google.inject.persist.UnitOfWork;
+
+/**
+ * Measures a pass of {@link ActionScheduler#doWork()} over many in progress
+ * requests. Each request has several stages with a {@code DATANODE} start
+ * command for every host of the cluster.
+ * <p/>
+ * The first pass dispatches the commands of the first stage of every request;
+ * the following passes find the same commands queued and within their
+ * timeout, which is what the scheduler does every second while a large
+ * operation is running. The agents never report back, so the requests stay
+ * in progress for the whole trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ActionSchedulerBenchmark {
+
+  /**
+   * The number of hosts, which is also the number of commands per stage.
+   */
+  @Param({ "100" })
+  public int hosts;
+
+  /**
+   * The number of requests in progress.
+   */
+  @Param({ "10", "100" })
+  public int requests;
+
+  /**
+   * The number of stages of each request.
+   */
+  @Param({ "3" })
+  public int stages;
+
+  private ClusterFixture m_fixture;
+
+  private ActionScheduler m_scheduler;
+
+  @Setup
+  public void setup() throws Exception {
+    m_fixture = new ClusterFixture();
+    Cluster cluster = m_fixture.createCluster(hosts);
+
+    Injector injector = m_fixture.getInjector();
+    Clusters clusters = injector.getInstance(Clusters.class);
+    ActionDBAccessor db = injector.getInstance(ActionDBAccessor.class);
+    ActionManager actionManager = injector.getInstance(ActionManager.class);
+    StageFactory stageFactory = injector.getInstance(StageFactory.class);
+
+    for (int i = 0; i < requests; i++) {
+      long requestId = actionManager.getNextRequestId();
+
+      List<Stage> requestStages = new ArrayList<Stage>(stages);
+      for (int stageId = 1; stageId <= stages; stageId++) {
+        Stage stage = stageFactory.createNew(requestId, "/tmp/ambari",
+            cluster.getClusterName(), cluster.getClusterId(),
+            "Benchmark request " + requestId, "{}", "{}", "{}");
+        stage.setStageId(stageId);
+
+        for (String hostName : m_fixture.getHostNames()) {
+          stage.addHostRoleExecutionCommand(hostName, Role.DATANODE,
+              RoleCommand.START, new ServiceComponentHostStartEvent(
+                  Role.DATANODE.toString(), hostName, System.currentTimeMillis()),
+              cluster.getClusterName(), "HDFS", false);
+        }
+
+        requestStages.add(stage);
+      }
+
+      db.persistActions(new Request(requestStages, clusters));
+    }
+
+    m_scheduler = new ActionScheduler(1000, TimeUnit.HOURS.toMillis(1), db,
+        injector.getInstance(ActionQueue.class), clusters, 2,
+        new HostsMap((String) null), injector.getInstance(UnitOfWork.class),
+        injector.getInstance(AmbariEventPublisher.class),
+        injector.getInstance(Configuration.class));
+  }
+
+  @TearDown
+  public void tearDown() {
+    m_fixture.tearDown();
+  }
+
+  @Benchmark
+  public void doWork() throws Exception {
+    m_scheduler.doWork();
+  }
+}
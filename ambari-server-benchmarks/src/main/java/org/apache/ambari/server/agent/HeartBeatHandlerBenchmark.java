@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.benchmarks.ClusterFixture;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.state.SecurityState;
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link HeartBeatHandler#handleHeartBeat(HeartBeat)} for synthetic
+ * agents which report the live status of their components, as every agent
+ * does every few seconds. The agents are registered once and then heartbeat
+ * in turn, so the benchmark can be run with several threads to simulate
+ * agents heartbeating concurrently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class HeartBeatHandlerBenchmark {
+
+  /**
+   * The number of agents.
+   */
+  @Param({ "100", "1000" })
+  public int hosts;
+
+  private ClusterFixture m_fixture;
+
+  private HeartBeatHandler m_handler;
+
+  private List<Agent> m_agents;
+
+  private final AtomicInteger m_next = new AtomicInteger();
+
+  @Setup
+  public void setup() throws Exception {
+    m_fixture = new ClusterFixture();
+    m_fixture.createCluster(hosts);
+
+    m_handler = m_fixture.getInjector().getInstance(HeartBeatHandler.class);
+    String agentVersion = m_fixture.getInjector().getInstance(
+        AmbariMetaInfo.class).getServerVersion();
+
+    m_agents = new ArrayList<Agent>(hosts);
+    for (String hostName : m_fixture.getHostNames()) {
+      Agent agent = new Agent(hostName);
+      agent.register(agentVersion);
+      m_agents.add(agent);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    m_fixture.tearDown();
+  }
+
+  @Benchmark
+  public HeartBeatResponse handleHeartBeat() throws Exception {
+    int index = (m_next.getAndIncrement() & Integer.MAX_VALUE) % m_agents.size();
+    return m_agents.get(index).heartbeat();
+  }
+
+  /**
+   * A synthetic agent which tracks its own response id.
+   */
+  private final class Agent {
+    private final String m_hostName;
+    private final List<ComponentStatus> m_componentStatus = new ArrayList<ComponentStatus>();
+    private long m_responseId;
+
+    private Agent(String hostName) throws Exception {
+      m_hostName = hostName;
+
+      for (ServiceComponentHost hostComponent : m_fixture.getCluster().getServiceComponentHosts(hostName)) {
+        ComponentStatus componentStatus = new ComponentStatus();
+        componentStatus.setClusterName(ClusterFixture.CLUSTER_NAME);
+        componentStatus.setServiceName(hostComponent.getServiceName());
+        componentStatus.setComponentName(hostComponent.getServiceComponentName());
+        componentStatus.setStatus(hostComponent.getState().name());
+        componentStatus.setSecurityState(SecurityState.UNSECURED.name());
+        m_componentStatus.add(componentStatus);
+      }
+    }
+
+    private void register(String agentVersion) throws Exception {
+      HostInfo hostInfo = new HostInfo();
+      hostInfo.setHostName(m_hostName);
+      hostInfo.setOS("centos5");
+
+      Register register = new Register();
+      register.setHostname(m_hostName);
+      register.setCurrentPingPort(8670);
+      register.setHardwareProfile(hostInfo);
+      register.setAgentVersion(agentVersion);
+      register.setPrefix(Configuration.PREFIX_DIR);
+      register.setTimestamp(System.currentTimeMillis());
+
+      m_responseId = m_handler.handleRegistration(register).getResponseId();
+    }
+
+    private synchronized HeartBeatResponse heartbeat() throws Exception {
+      HeartBeat heartbeat = new HeartBeat();
+      heartbeat.setHostname(m_hostName);
+      heartbeat.setResponseId(m_responseId);
+      heartbeat.setTimestamp(System.currentTimeMillis());
+      heartbeat.setNodeStatus(new HostStatus(HostStatus.Status.HEALTHY, ""));
+      heartbeat.setReports(new ArrayList<CommandReport>());
+      heartbeat.setComponentStatus(m_componentStatus);
+
+      HeartBeatResponse response = m_handler.handleHeartBeat(heartbeat);
+      m_responseId = response.getResponseId();
+      return response;
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.api.query;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.api.query.render.DefaultRenderer;
+import org.apache.ambari.server.api.resources.HostComponentResourceDefinition;
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultStatus;
+import org.apache.ambari.server.api.services.serializers.JsonSerializer;
+import org.apache.ambari.server.benchmarks.ClusterFixture;
+import org.apache.ambari.server.controller.internal.AbstractResourceProvider;
+import org.apache.ambari.server.controller.internal.ClusterControllerImpl;
+import org.apache.ambari.server.controller.internal.ResourceImpl;
+import org.apache.ambari.server.controller.spi.ClusterController;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.PropertyProvider;
+import org.apache.ambari.server.controller.spi.ProviderModule;
+import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.spi.RequestStatus;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.ResourceProvider;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link QueryImpl#execute()} and the serialization of the result for
+ * a large number of host components created in memory, so that only the
+ * building of the resources, the query processing and the JSON output are
+ * timed. {@link QueryBenchmark} measures the same queries against the
+ * resource providers and the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class HostComponentQueryBenchmark {
+
+  private static final String[] COMPONENT_NAMES = { "DATANODE", "NODEMANAGER", "HBASE_REGIONSERVER",
+      "ZOOKEEPER_CLIENT", "HDFS_CLIENT", "YARN_CLIENT", "MAPREDUCE2_CLIENT", "HBASE_CLIENT",
+      "METRICS_MONITOR", "GANGLIA_MONITOR" };
+
+  /**
+   * The number of hosts, each with a host component of every name.
+   */
+  @Param({ "1000", "5000" })
+  public int hosts;
+
+  private ClusterController m_clusterController;
+
+  private final JsonSerializer m_serializer = new JsonSerializer();
+
+  @Setup
+  public void setup() {
+    m_clusterController = new ClusterControllerImpl(new InMemoryProviderModule(hosts));
+  }
+
+  /**
+   * {@code GET /clusters/c1/host_components?fields=HostRoles}
+   */
+  @Benchmark
+  public Result queryHostComponents() throws Exception {
+    return createQuery().execute();
+  }
+
+  /**
+   * {@code GET /clusters/c1/host_components?fields=HostRoles} including the
+   * JSON response.
+   */
+  @Benchmark
+  public int queryAndSerializeHostComponents() throws Exception {
+    Result result = createQuery().execute();
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    return m_serializer.serialize(result).toString().length();
+  }
+
+  private QueryImpl createQuery() {
+    Map<Resource.Type, String> keys = new HashMap<Resource.Type, String>();
+    keys.put(Resource.Type.Cluster, ClusterFixture.CLUSTER_NAME);
+    keys.put(Resource.Type.HostComponent, null);
+
+    QueryImpl query = new QueryImpl(keys, new HostComponentResourceDefinition(),
+        m_clusterController);
+    query.setRenderer(new DefaultRenderer());
+    query.addProperty("HostRoles", null);
+    return query;
+  }
+
+  /**
+   * Provides the host components from memory and no resources of any other
+   * type.
+   */
+  private static final class InMemoryProviderModule implements ProviderModule {
+    private final int m_hosts;
+
+    private InMemoryProviderModule(int hosts) {
+      m_hosts = hosts;
+    }
+
+    @Override
+    public ResourceProvider getResourceProvider(Resource.Type type) {
+      return new InMemoryResourceProvider(type,
+          type == Resource.Type.HostComponent ? m_hosts : 0);
+    }
+
+    @Override
+    public List<PropertyProvider> getPropertyProviders(Resource.Type type) {
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Creates the host components of the given number of hosts on every call,
+   * the way a resource provider builds its resources for each request.
+   */
+  private static final class InMemoryResourceProvider extends AbstractResourceProvider {
+    private final int m_hosts;
+
+    private InMemoryResourceProvider(Resource.Type type, int hosts) {
+      super(PropertyHelper.getPropertyIds(type), PropertyHelper.getKeyPropertyIds(type));
+      m_hosts = hosts;
+    }
+
+    @Override
+    public Set<Resource> getResources(Request request, Predicate predicate) {
+      Set<Resource> resources = new HashSet<Resource>();
+      for (int i = 0; i < m_hosts; ++i) {
+        for (String componentName : COMPONENT_NAMES) {
+          Resource resource = new ResourceImpl(Resource.Type.HostComponent);
+          resource.setProperty("HostRoles/cluster_name", ClusterFixture.CLUSTER_NAME);
+          resource.setProperty("HostRoles/host_name", ClusterFixture.getHostName(i));
+          resource.setProperty("HostRoles/component_name", componentName);
+          resource.setProperty("HostRoles/service_name", "SERVICE");
+          resource.setProperty("HostRoles/state", "STARTED");
+          resource.setProperty("HostRoles/desired_state", "STARTED");
+          resource.setProperty("HostRoles/stack_id", "HDP-2.2");
+          resource.setProperty("HostRoles/maintenance_state", "OFF");
+          resource.setProperty("HostRoles/stale_configs", null);
+          resources.add(resource);
+        }
+      }
+      return resources;
+    }
+
+    @Override
+    public RequestStatus createResources(Request request) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public RequestStatus updateResources(Request request, Predicate predicate) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public RequestStatus deleteResources(Predicate predicate) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Set<String> getPKPropertyIds() {
+      return Collections.emptySet();
+    }
+  }
+}
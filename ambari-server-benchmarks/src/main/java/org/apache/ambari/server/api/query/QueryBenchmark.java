@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.api.query;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.api.query.render.DefaultRenderer;
+import org.apache.ambari.server.api.resources.HostComponentResourceDefinition;
+import org.apache.ambari.server.api.resources.HostResourceDefinition;
+import org.apache.ambari.server.api.resources.ResourceDefinition;
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.benchmarks.ClusterFixture;
+import org.apache.ambari.server.controller.internal.PageRequestImpl;
+import org.apache.ambari.server.controller.internal.SortRequestImpl;
+import org.apache.ambari.server.controller.spi.ClusterController;
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link QueryImpl#execute()} for the host and host component
+ * queries the web client issues most often, from the resource providers down
+ * to the database. Metrics are not requested and no property providers are
+ * registered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class QueryBenchmark {
+
+  /**
+   * The number of hosts.
+   */
+  @Param({ "100", "1000" })
+  public int hosts;
+
+  private ClusterFixture m_fixture;
+
+  private ClusterController m_clusterController;
+
+  @Setup
+  public void setup() throws Exception {
+    m_fixture = new ClusterFixture();
+    m_fixture.createCluster(hosts);
+    m_clusterController = m_fixture.createClusterController();
+  }
+
+  @TearDown
+  public void tearDown() {
+    m_fixture.tearDown();
+  }
+
+  /**
+   * {@code GET /clusters/c1/hosts?fields=Hosts/host_name,Hosts/host_status,
+   * host_components/HostRoles/component_name}
+   */
+  @Benchmark
+  public Result queryHosts() throws Exception {
+    Map<Resource.Type, String> keys = new HashMap<Resource.Type, String>();
+    keys.put(Resource.Type.Cluster, ClusterFixture.CLUSTER_NAME);
+    keys.put(Resource.Type.Host, null);
+
+    QueryImpl query = createQuery(keys, new HostResourceDefinition());
+    query.addProperty("Hosts/host_name", null);
+    query.addProperty("Hosts/host_status", null);
+    query.addProperty("host_components/HostRoles/component_name", null);
+
+    return query.execute();
+  }
+
+  /**
+   * {@code GET /clusters/c1/host_components?fields=HostRoles/state
+   * &sortBy=HostRoles/host_name.desc&page_size=50&from=<hosts>}
+   */
+  @Benchmark
+  public Result queryHostComponentsPage() throws Exception {
+    Map<Resource.Type, String> keys = new HashMap<Resource.Type, String>();
+    keys.put(Resource.Type.Cluster, ClusterFixture.CLUSTER_NAME);
+    keys.put(Resource.Type.Host, null);
+    keys.put(Resource.Type.HostComponent, null);
+
+    QueryImpl query = createQuery(keys, new HostComponentResourceDefinition());
+    query.addProperty("HostRoles/host_name", null);
+    query.addProperty("HostRoles/component_name", null);
+    query.addProperty("HostRoles/state", null);
+    query.setSortRequest(new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty("HostRoles/host_name", SortRequest.Order.DESC))));
+    query.setPageRequest(new PageRequestImpl(PageRequest.StartingPoint.OffsetStart,
+        50, hosts, null, null));
+
+    return query.execute();
+  }
+
+  private QueryImpl createQuery(Map<Resource.Type, String> keys,
+      ResourceDefinition resourceDefinition) {
+    QueryImpl query = new QueryImpl(keys, resourceDefinition, m_clusterController);
+    query.setRenderer(new DefaultRenderer());
+    return query;
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.api.services.serializers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultImpl;
+import org.apache.ambari.server.api.services.ResultStatus;
+import org.apache.ambari.server.api.util.TreeNode;
+import org.apache.ambari.server.api.util.TreeNodeImpl;
+import org.apache.ambari.server.benchmarks.ClusterFixture;
+import org.apache.ambari.server.controller.internal.ResourceImpl;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the {@link JsonSerializer} writing a collection of hosts with their
+ * host components, both into a string as the non streaming response does and
+ * directly to an output stream.
+ * <p/>
+ * The allocations matter as much as the time here, so {@link #main(String[])}
+ * runs the benchmark with the GC profiler. From the benchmarks jar the same is
+ * done with {@code java -jar benchmarks.jar JsonSerializerBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class JsonSerializerBenchmark {
+
+  /**
+   * The number of hosts in the result.
+   */
+  @Param({ "1000", "10000" })
+  public int hosts;
+
+  private Result m_result;
+
+  private final JsonSerializer m_serializer = new JsonSerializer();
+
+  @Setup
+  public void setup() {
+    m_result = new ResultImpl(true);
+    m_result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+
+    TreeNode<Resource> tree = m_result.getResultTree();
+    tree.setName("items");
+    tree.setProperty("isCollection", "true");
+
+    for (int i = 0; i < hosts; i++) {
+      String hostName = ClusterFixture.getHostName(i);
+
+      Resource host = new ResourceImpl(Resource.Type.Host);
+      host.setProperty("Hosts/cluster_name", ClusterFixture.CLUSTER_NAME);
+      host.setProperty("Hosts/host_name", hostName);
+      host.setProperty("Hosts/host_status", "HEALTHY");
+      host.setProperty("Hosts/cpu_count", 16L);
+      host.setProperty("Hosts/total_mem", 65536L * 1024);
+      host.setProperty("Hosts/last_heartbeat_time", System.currentTimeMillis());
+      host.setProperty("metrics/cpu/cpu_idle", 92.5);
+      host.setProperty("metrics/memory/mem_free", i * 1024L);
+
+      TreeNode<Resource> hostNode = tree.addChild(host, "Host:" + i);
+      hostNode.setProperty("href", "http://localhost:8080/api/v1/clusters/c1/hosts/" + hostName);
+
+      // sub-resources are added the way QueryImpl adds them
+      TreeNode<Resource> components = new TreeNodeImpl<Resource>(null, null, "host_components");
+      components.setProperty("isCollection", "false");
+      for (String componentName : new String[] { "DATANODE", "NODEMANAGER" }) {
+        Resource component = new ResourceImpl(Resource.Type.HostComponent);
+        component.setProperty("HostRoles/cluster_name", ClusterFixture.CLUSTER_NAME);
+        component.setProperty("HostRoles/host_name", hostName);
+        component.setProperty("HostRoles/component_name", componentName);
+        component.setProperty("HostRoles/state", "STARTED");
+        components.addChild(component, "HostComponent:" + componentName);
+      }
+      hostNode.addChild(components);
+    }
+  }
+
+  /**
+   * Runs this benchmark with the GC profiler, which reports the bytes
+   * allocated per operation and the collections.
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(JsonSerializerBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(options).run();
+  }
+
+  @Benchmark
+  public int serializeToString() throws IOException {
+    CountingOutputStream out = new CountingOutputStream();
+    out.write(m_serializer.serialize(m_result).toString().getBytes("UTF-8"));
+    return out.m_count;
+  }
+
+  @Benchmark
+  public int serializeToStream() throws IOException {
+    CountingOutputStream out = new CountingOutputStream();
+    m_serializer.serialize(m_result, out);
+    return out.m_count;
+  }
+
+  /**
+   * Discards the output, counting the bytes written.
+   */
+  private static final class CountingOutputStream extends OutputStream {
+    private int m_count;
+
+    @Override
+    public void write(int b) {
+      m_count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      m_count += len;
+    }
+  }
+}
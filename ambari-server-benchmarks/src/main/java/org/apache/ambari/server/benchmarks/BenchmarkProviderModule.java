@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ambari.server.controller.AmbariManagementController;
+import org.apache.ambari.server.controller.internal.AbstractControllerResourceProvider;
+import org.apache.ambari.server.controller.spi.PropertyProvider;
+import org.apache.ambari.server.controller.spi.ProviderModule;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.ResourceProvider;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+
+/**
+ * The {@link BenchmarkProviderModule} creates the same resource providers as
+ * the server but has no property providers, so that benchmarks of the API
+ * measure the query processing and the database instead of metrics and JMX
+ * requests to hosts which do not exist.
+ */
+public class BenchmarkProviderModule implements ProviderModule {
+
+  /**
+   * The management controller used by the resource providers.
+   */
+  private final AmbariManagementController m_managementController;
+
+  /**
+   * The resource providers by type.
+   */
+  private final Map<Resource.Type, ResourceProvider> m_resourceProviders =
+      new ConcurrentHashMap<Resource.Type, ResourceProvider>();
+
+  /**
+   * Constructor.
+   *
+   * @param managementController
+   *          the management controller.
+   */
+  public BenchmarkProviderModule(AmbariManagementController managementController) {
+    m_managementController = managementController;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ResourceProvider getResourceProvider(Resource.Type type) {
+    ResourceProvider resourceProvider = m_resourceProviders.get(type);
+    if (null == resourceProvider) {
+      resourceProvider = AbstractControllerResourceProvider.getResourceProvider(type,
+          PropertyHelper.getPropertyIds(type), PropertyHelper.getKeyPropertyIds(type),
+          m_managementController);
+
+      m_resourceProviders.put(type, resourceProvider);
+    }
+
+    return resourceProvider;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<PropertyProvider> getPropertyProviders(Resource.Type type) {
+    return Collections.emptyList();
+  }
+}
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.controller.AmbariManagementController;
+import org.apache.ambari.server.controller.ResourceProviderFactory;
+import org.apache.ambari.server.controller.internal.AbstractControllerResourceProvider;
+import org.apache.ambari.server.controller.internal.ClusterControllerImpl;
+import org.apache.ambari.server.controller.spi.ClusterController;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.dao.RepositoryVersionDAO;
+import org.apache.ambari.server.orm.dao.StackDAO;
+import org.apache.ambari.server.orm.entities.StackEntity;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.RepositoryVersionState;
+import org.apache.ambari.server.state.Service;
+import org.apache.ambari.server.state.ServiceComponent;
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.StackId;
+import org.apache.ambari.server.state.State;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * The {@link ClusterFixture} creates a server backed by an embedded in-memory
+ * database and populates it with a single cluster of synthetic hosts. Every
+ * host runs a {@code DATANODE} and a {@code NODEMANAGER}; the first host also
+ * runs the {@code NAMENODE}, {@code SECONDARY_NAMENODE} and
+ * {@code RESOURCEMANAGER}. All components are {@code STARTED}.
+ * <p/>
+ * Fixtures are expensive to build and should be created once per trial.
+ */
+public class ClusterFixture {
+
+  /**
+   * The name of the cluster.
+   */
+  public static final String CLUSTER_NAME = "c1";
+
+  /**
+   * The stack of the cluster, from the test stacks of ambari-server.
+   */
+  public static final StackId STACK_ID = new StackId("HDP-2.0.6");
+
+  /**
+   * The components installed on every host, by service.
+   */
+  private static final String[][] SLAVE_COMPONENTS = {
+      { "HDFS", "DATANODE" }, { "YARN", "NODEMANAGER" } };
+
+  /**
+   * The components installed on the first host, by service.
+   */
+  private static final String[][] MASTER_COMPONENTS = {
+      { "HDFS", "NAMENODE" }, { "HDFS", "SECONDARY_NAMENODE" },
+      { "YARN", "RESOURCEMANAGER" } };
+
+  private final Injector m_injector;
+
+  private final List<String> m_hostNames = new ArrayList<String>();
+
+  private Cluster m_cluster;
+
+  /**
+   * Constructor. Starts the persistence service and loads the stacks.
+   *
+   * @param module
+   *          the module to create the injector from.
+   */
+  public ClusterFixture(InMemoryBenchmarkModule module) {
+    m_injector = Guice.createInjector(module);
+    m_injector.getInstance(GuiceJpaInitializer.class);
+
+    // populates the stacks into the database
+    m_injector.getInstance(AmbariMetaInfo.class);
+
+    AbstractControllerResourceProvider.init(
+        m_injector.getInstance(ResourceProviderFactory.class));
+  }
+
+  /**
+   * Constructor. Starts the persistence service with the default properties
+   * of {@link InMemoryBenchmarkModule}.
+   */
+  public ClusterFixture() {
+    this(new InMemoryBenchmarkModule());
+  }
+
+  /**
+   * Creates the cluster with the given number of hosts.
+   *
+   * @param hostCount
+   *          the number of hosts.
+   * @return the cluster.
+   * @throws Exception
+   *           if the cluster could not be created.
+   */
+  public Cluster createCluster(int hostCount) throws Exception {
+    Clusters clusters = m_injector.getInstance(Clusters.class);
+
+    clusters.addCluster(CLUSTER_NAME, STACK_ID);
+    m_cluster = clusters.getCluster(CLUSTER_NAME);
+    m_cluster.setDesiredStackVersion(STACK_ID);
+
+    StackEntity stackEntity = m_injector.getInstance(StackDAO.class).find(
+        STACK_ID.getStackName(), STACK_ID.getStackVersion());
+
+    m_injector.getInstance(RepositoryVersionDAO.class).create(stackEntity,
+        STACK_ID.getStackVersion(), STACK_ID.getStackId(), "pack", "");
+
+    m_cluster.createClusterVersion(STACK_ID, STACK_ID.getStackVersion(),
+        "admin", RepositoryVersionState.UPGRADING);
+    m_cluster.transitionClusterVersion(STACK_ID, STACK_ID.getStackVersion(),
+        RepositoryVersionState.CURRENT);
+
+    Map<String, String> hostAttributes = new HashMap<String, String>();
+    hostAttributes.put("os_family", "redhat");
+    hostAttributes.put("os_release_version", "6.4");
+
+    for (int i = 0; i < hostCount; i++) {
+      String hostName = getHostName(i);
+      clusters.addHost(hostName);
+
+      Host host = clusters.getHost(hostName);
+      host.setIPv4("192.168." + (i / 250) + "." + (i % 250 + 1));
+      host.setHostAttributes(hostAttributes);
+      host.persist();
+
+      m_hostNames.add(hostName);
+    }
+
+    clusters.mapHostsToCluster(new HashSet<String>(m_hostNames), CLUSTER_NAME);
+
+    for (String hostName : m_hostNames) {
+      for (String[] component : SLAVE_COMPONENTS) {
+        addComponent(component[0], component[1], hostName);
+      }
+    }
+
+    for (String[] component : MASTER_COMPONENTS) {
+      addComponent(component[0], component[1], m_hostNames.get(0));
+    }
+
+    return m_cluster;
+  }
+
+  /**
+   * Stops the persistence service.
+   */
+  public void tearDown() {
+    m_injector.getInstance(PersistService.class).stop();
+  }
+
+  /**
+   * @return the injector.
+   */
+  public Injector getInjector() {
+    return m_injector;
+  }
+
+  /**
+   * @return the cluster, or {@code null} if not created yet.
+   */
+  public Cluster getCluster() {
+    return m_cluster;
+  }
+
+  /**
+   * @return the names of the hosts of the cluster.
+   */
+  public List<String> getHostNames() {
+    return m_hostNames;
+  }
+
+  /**
+   * Creates a cluster controller whose resource providers are backed by this
+   * fixture's database.
+   *
+   * @return the cluster controller.
+   */
+  public ClusterController createClusterController() {
+    return new ClusterControllerImpl(new BenchmarkProviderModule(
+        m_injector.getInstance(AmbariManagementController.class)));
+  }
+
+  /**
+   * Gets the name of a synthetic host.
+   *
+   * @param index
+   *          the index of the host.
+   * @return the host name.
+   */
+  public static String getHostName(int index) {
+    return String.format("host%05d.example.com", index);
+  }
+
+  /**
+   * Adds a started component to a host, creating the service and service
+   * component as needed.
+   */
+  private void addComponent(String serviceName, String componentName,
+      String hostName) throws Exception {
+    Service service = m_cluster.getServices().get(serviceName);
+    if (null == service) {
+      service = m_cluster.addService(serviceName);
+      service.setDesiredState(State.STARTED);
+      service.persist();
+    }
+
+    ServiceComponent component = service.getServiceComponents().get(componentName);
+    if (null == component) {
+      component = service.addServiceComponent(componentName);
+      component.setDesiredState(State.STARTED);
+      component.persist();
+    }
+
+    ServiceComponentHost hostComponent = component.addServiceComponentHost(hostName);
+    hostComponent.setDesiredState(State.STARTED);
+    hostComponent.setState(State.STARTED);
+    hostComponent.persist();
+  }
+}
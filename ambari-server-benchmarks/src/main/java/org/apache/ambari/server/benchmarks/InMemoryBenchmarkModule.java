@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.controller.ControllerModule;
+
+import com.google.inject.AbstractModule;
+
+/**
+ * The {@link InMemoryBenchmarkModule} binds the server the same way
+ * {@link ControllerModule} does, but against an embedded in-memory Derby
+ * database and the test stacks of ambari-server.
+ * <p/>
+ * The location of the test resources of ambari-server is read from the
+ * {@value #SERVER_RESOURCES_DIR_PROPERTY} system property and defaults to the
+ * value in {@value #BENCHMARKS_PROPERTIES}, which is resolved on the classpath
+ * when this module is built, so benchmarks can be started from any directory.
+ */
+public class InMemoryBenchmarkModule extends AbstractModule {
+
+  /**
+   * The system property with the location of the test resources of
+   * ambari-server.
+   */
+  public static final String SERVER_RESOURCES_DIR_PROPERTY = "ambari.server.resources.dir";
+
+  /**
+   * The classpath resource with the default location of the test resources.
+   */
+  static final String BENCHMARKS_PROPERTIES = "benchmarks.properties";
+
+  /**
+   * The server properties.
+   */
+  private final Properties m_properties = new Properties();
+
+  /**
+   * Constructor.
+   */
+  public InMemoryBenchmarkModule() {
+    File resourcesDir = getResourcesDir();
+
+    m_properties.setProperty(Configuration.SERVER_PERSISTENCE_TYPE_KEY, "in-memory");
+    m_properties.setProperty(Configuration.METADETA_DIR_PATH,
+        new File(resourcesDir, "stacks").getPath());
+    m_properties.setProperty(Configuration.SERVER_VERSION_FILE,
+        new File(resourcesDir, "version").getPath());
+    m_properties.setProperty(Configuration.OS_VERSION_KEY, "centos5");
+    m_properties.setProperty(Configuration.SHARED_RESOURCES_DIR_KEY,
+        resourcesDir.getPath());
+  }
+
+  /**
+   * Gets the location of the test resources of ambari-server, either from the
+   * system property or from {@value #BENCHMARKS_PROPERTIES}.
+   *
+   * @return the directory with the stacks and the version file.
+   */
+  private static File getResourcesDir() {
+    String resourcesDir = System.getProperty(SERVER_RESOURCES_DIR_PROPERTY);
+    if (null == resourcesDir) {
+      Properties defaults = new Properties();
+      InputStream stream = InMemoryBenchmarkModule.class.getClassLoader().getResourceAsStream(
+          BENCHMARKS_PROPERTIES);
+
+      if (null == stream) {
+        throw new IllegalStateException(BENCHMARKS_PROPERTIES + " is not on the classpath");
+      }
+
+      try {
+        defaults.load(stream);
+        stream.close();
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to read " + BENCHMARKS_PROPERTIES, e);
+      }
+
+      resourcesDir = defaults.getProperty(SERVER_RESOURCES_DIR_PROPERTY);
+    }
+
+    File directory = new File(resourcesDir);
+    if (!directory.isDirectory()) {
+      throw new IllegalStateException("The test resources of ambari-server were not found at "
+          + directory.getAbsolutePath() + ", set -D" + SERVER_RESOURCES_DIR_PROPERTY);
+    }
+
+    return directory;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void configure() {
+    try {
+      install(new ControllerModule(m_properties));
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Gets the server properties. Changes must be made before the injector is
+   * created.
+   *
+   * @return the properties.
+   */
+  public Properties getProperties() {
+    return m_properties;
+  }
+}
@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.benchmarks.ClusterFixture;
+import org.apache.ambari.server.controller.AmbariManagementController;
+import org.apache.ambari.server.topology.Blueprint;
+import org.apache.ambari.server.topology.BlueprintImpl;
+import org.apache.ambari.server.topology.ClusterTopology;
+import org.apache.ambari.server.topology.ClusterTopologyImpl;
+import org.apache.ambari.server.topology.Configuration;
+import org.apache.ambari.server.topology.HostGroup;
+import org.apache.ambari.server.topology.HostGroupImpl;
+import org.apache.ambari.server.topology.HostGroupInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BlueprintConfigurationProcessor#doUpdateForClusterCreate()}
+ * for a blueprint with a master host group and a worker host group on top of
+ * the default configuration of the stack. The processor updates the
+ * configuration in place, so a new topology is created before every
+ * invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class BlueprintConfigurationProcessorBenchmark {
+
+  /**
+   * The number of worker hosts.
+   */
+  @Param({ "100", "1000" })
+  public int hosts;
+
+  private static final Collection<String> MASTER_COMPONENTS = Arrays.asList(
+      "NAMENODE", "SECONDARY_NAMENODE", "RESOURCEMANAGER", "HISTORYSERVER",
+      "ZOOKEEPER_SERVER", "HBASE_MASTER");
+
+  private static final Collection<String> WORKER_COMPONENTS = Arrays.asList(
+      "DATANODE", "NODEMANAGER", "HBASE_REGIONSERVER", "HDFS_CLIENT",
+      "ZOOKEEPER_CLIENT");
+
+  private ClusterFixture m_fixture;
+
+  private Stack m_stack;
+
+  private ClusterTopology m_topology;
+
+  @Setup
+  public void setup() throws Exception {
+    m_fixture = new ClusterFixture();
+    m_stack = new Stack(ClusterFixture.STACK_ID.getStackName(),
+        ClusterFixture.STACK_ID.getStackVersion(),
+        m_fixture.getInjector().getInstance(AmbariManagementController.class));
+  }
+
+  @Setup(Level.Invocation)
+  public void createTopology() throws Exception {
+    List<HostGroup> hostGroups = new ArrayList<HostGroup>();
+    hostGroups.add(new HostGroupImpl("master", "benchmark", m_stack,
+        MASTER_COMPONENTS, createConfiguration(null), "1"));
+    hostGroups.add(new HostGroupImpl("worker", "benchmark", m_stack,
+        WORKER_COMPONENTS, createConfiguration(null), "1+"));
+
+    Configuration blueprintConfiguration = createConfiguration(null);
+    blueprintConfiguration.setProperty("core-site", "fs.defaultFS",
+        "hdfs://%HOSTGROUP::master%:8020");
+    blueprintConfiguration.setProperty("hdfs-site", "dfs.namenode.http-address",
+        "%HOSTGROUP::master%:50070");
+    blueprintConfiguration.setProperty("hdfs-site", "dfs.namenode.https-address",
+        "%HOSTGROUP::master%:50470");
+    blueprintConfiguration.setProperty("hdfs-site", "dfs.namenode.rpc-address",
+        "%HOSTGROUP::master%:8020");
+    blueprintConfiguration.setProperty("hdfs-site", "dfs.namenode.secondary.http-address",
+        "%HOSTGROUP::master%:50090");
+    blueprintConfiguration.setProperty("yarn-site", "yarn.resourcemanager.hostname",
+        "%HOSTGROUP::master%");
+    blueprintConfiguration.setProperty("yarn-site", "yarn.log.server.url",
+        "http://%HOSTGROUP::master%:19888/jobhistory/logs");
+    blueprintConfiguration.setProperty("mapred-site", "mapreduce.jobhistory.address",
+        "%HOSTGROUP::master%:10020");
+    blueprintConfiguration.setProperty("hbase-site", "hbase.rootdir",
+        "hdfs://%HOSTGROUP::master%:8020/apps/hbase/data");
+    blueprintConfiguration.setProperty("hbase-site", "hbase.zookeeper.quorum",
+        "%HOSTGROUP::master%");
+
+    Blueprint blueprint = new BlueprintImpl("benchmark", hostGroups, m_stack,
+        blueprintConfiguration);
+
+    Map<String, HostGroupInfo> hostGroupInfo = new HashMap<String, HostGroupInfo>();
+
+    HostGroupInfo master = new HostGroupInfo("master");
+    master.addHost(ClusterFixture.getHostName(0));
+    master.setConfiguration(createConfiguration(null));
+    hostGroupInfo.put(master.getHostGroupName(), master);
+
+    HostGroupInfo worker = new HostGroupInfo("worker");
+    for (int i = 1; i <= hosts; i++) {
+      worker.addHost(ClusterFixture.getHostName(i));
+    }
+    worker.setConfiguration(createConfiguration(null));
+    hostGroupInfo.put(worker.getHostGroupName(), worker);
+
+    m_topology = new ClusterTopologyImpl(null, ClusterFixture.CLUSTER_NAME,
+        blueprint, createConfiguration(blueprintConfiguration), hostGroupInfo);
+  }
+
+  @TearDown
+  public void tearDown() {
+    m_fixture.tearDown();
+  }
+
+  @Benchmark
+  public Configuration doUpdateForClusterCreate() throws Exception {
+    new BlueprintConfigurationProcessor(m_topology).doUpdateForClusterCreate();
+    return m_topology.getConfiguration();
+  }
+
+  private static Configuration createConfiguration(Configuration parent) {
+    return new Configuration(new HashMap<String, Map<String, String>>(),
+        new HashMap<String, Map<String, Map<String, String>>>(), parent);
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.benchmarks.ClusterFixture;
+import org.apache.ambari.server.controller.spi.ClusterController;
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.PageResponse;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
+import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
+import org.apache.ambari.server.controller.utilities.PredicateBuilder;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the sorting, filtering and paging done by
+ * {@link ClusterControllerImpl#getPage} over the unsorted resources returned
+ * by a provider. The resources are synthetic hosts, so only the database is
+ * used to create the resource provider.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ClusterControllerBenchmark {
+
+  /**
+   * The number of resources returned by the provider.
+   */
+  @Param({ "1000", "10000" })
+  public int resources;
+
+  private ClusterFixture m_fixture;
+
+  private ClusterController m_clusterController;
+
+  private QueryResponse m_queryResponse;
+
+  private Request m_request;
+
+  private SortRequest m_sortRequest;
+
+  private Predicate m_predicate;
+
+  @Setup
+  public void setup() throws Exception {
+    m_fixture = new ClusterFixture();
+    m_clusterController = m_fixture.createClusterController();
+
+    Set<Resource> hosts = new LinkedHashSet<Resource>();
+    for (int i = 0; i < resources; i++) {
+      Resource host = new ResourceImpl(Resource.Type.Host);
+      host.setProperty(HostResourceProvider.HOST_CLUSTER_NAME_PROPERTY_ID,
+          ClusterFixture.CLUSTER_NAME);
+      host.setProperty(HostResourceProvider.HOST_NAME_PROPERTY_ID,
+          ClusterFixture.getHostName((i * 7919) % resources));
+      host.setProperty(HostResourceProvider.HOST_HOST_STATUS_PROPERTY_ID,
+          i % 10 == 0 ? "UNHEALTHY" : "HEALTHY");
+      host.setProperty(HostResourceProvider.HOST_CPU_COUNT_PROPERTY_ID,
+          (long) (i % 32 + 1));
+      hosts.add(host);
+    }
+
+    m_queryResponse = new QueryResponseImpl(hosts);
+    m_request = PropertyHelper.getReadRequest(
+        HostResourceProvider.HOST_NAME_PROPERTY_ID,
+        HostResourceProvider.HOST_HOST_STATUS_PROPERTY_ID,
+        HostResourceProvider.HOST_CPU_COUNT_PROPERTY_ID);
+
+    m_sortRequest = new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty(HostResourceProvider.HOST_NAME_PROPERTY_ID,
+            SortRequest.Order.DESC)));
+
+    m_predicate = new PredicateBuilder().property(
+        HostResourceProvider.HOST_HOST_STATUS_PROPERTY_ID).equals("HEALTHY").toPredicate();
+  }
+
+  @TearDown
+  public void tearDown() {
+    m_fixture.tearDown();
+  }
+
+  /**
+   * The first page in the default order.
+   */
+  @Benchmark
+  public void firstPage(Blackhole blackhole) throws Exception {
+    consume(blackhole, m_clusterController.getPage(Resource.Type.Host,
+        m_queryResponse, m_request, null,
+        new PageRequestImpl(PageRequest.StartingPoint.Beginning, 50, 0, null, null),
+        null));
+  }
+
+  /**
+   * A page from the middle of the results sorted by host name.
+   */
+  @Benchmark
+  public void sortedPage(Blackhole blackhole) throws Exception {
+    consume(blackhole, m_clusterController.getPage(Resource.Type.Host,
+        m_queryResponse, m_request, null,
+        new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 50,
+            resources / 2, null, null), m_sortRequest));
+  }
+
+  /**
+   * The last page of the healthy hosts sorted by host name.
+   */
+  @Benchmark
+  public void filteredSortedLastPage(Blackhole blackhole) throws Exception {
+    consume(blackhole, m_clusterController.getPage(Resource.Type.Host,
+        m_queryResponse, m_request, m_predicate,
+        new PageRequestImpl(PageRequest.StartingPoint.End, 50, 0, null, null),
+        m_sortRequest));
+  }
+
+  /**
+   * All results sorted by host name, without paging.
+   */
+  @Benchmark
+  public void sortedUnpaged(Blackhole blackhole) throws Exception {
+    consume(blackhole, m_clusterController.getPage(Resource.Type.Host,
+        m_queryResponse, m_request, null, null, m_sortRequest));
+  }
+
+  /**
+   * Iterates the page, which is when the predicate is applied.
+   */
+  private static void consume(Blackhole blackhole, PageResponse page) {
+    for (Resource resource : page.getIterable()) {
+      blackhole.consume(resource);
+    }
+    blackhole.consume(page.getTotalResourceCount());
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.events.AmbariEvent.AmbariEventType;
+import org.apache.ambari.server.events.ClusterEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Measures the time the {@link PartitionedEventBus} takes to handle a burst
+ * of events for several clusters with one and with several lanes, when the
+ * handlers block as listeners doing database work do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PartitionedEventBusBenchmark {
+
+  private static final int CLUSTERS = 16;
+
+  private static final int EVENTS = 500;
+
+  /**
+   * The number of lanes of the bus.
+   */
+  @Param({ "1", "2", "4", "8" })
+  public int lanes;
+
+  /**
+   * The time each handler blocks, in milliseconds.
+   */
+  @Param({ "0", "1" })
+  public long handlerMillis;
+
+  private PartitionedEventBus m_eventBus;
+
+  private volatile CountDownLatch m_latch;
+
+  @Setup
+  public void setup() {
+    m_eventBus = new PartitionedEventBus("benchmark-event-bus", lanes);
+    m_eventBus.register(new Object() {
+      @Subscribe
+      @AllowConcurrentEvents
+      public void onEvent(ClusterEvent event) throws InterruptedException {
+        if (handlerMillis > 0) {
+          Thread.sleep(handlerMillis);
+        }
+        m_latch.countDown();
+      }
+    });
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    m_eventBus.shutdown(1000);
+  }
+
+  @Benchmark
+  public void postAndHandle() throws InterruptedException {
+    m_latch = new CountDownLatch(EVENTS);
+    for (int i = 0; i < EVENTS; i++) {
+      m_eventBus.post(new ClusterEvent(AmbariEventType.HOST_ADDED, i % CLUSTERS));
+    }
+
+    m_latch.await();
+  }
+}
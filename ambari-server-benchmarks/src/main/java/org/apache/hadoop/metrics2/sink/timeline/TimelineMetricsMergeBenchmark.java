@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TimelineMetrics#addOrMergeTimelineMetric(TimelineMetric)}
+ * merging two batches of the same series, as the collector does when a sink
+ * posts a series again, against the linear scan of the list which the
+ * {@code MetricKey} index replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TimelineMetricsMergeBenchmark {
+
+  private static final int METRICS_PER_HOST = 100;
+
+  /**
+   * The number of distinct series merged.
+   */
+  @Param({ "10000", "25000" })
+  public int series;
+
+  private TimelineMetric[] m_first;
+
+  private TimelineMetric[] m_second;
+
+  /**
+   * Creates both batches once. Merging the second batch into the first is
+   * idempotent, so the same metrics are reused by every invocation.
+   */
+  @Setup
+  public void setup() {
+    m_first = createMetrics(0L);
+    m_second = createMetrics(60000L);
+  }
+
+  @Benchmark
+  public TimelineMetrics indexedMerge() {
+    TimelineMetrics metrics = new TimelineMetrics();
+    for (TimelineMetric metric : m_first) {
+      metrics.addOrMergeTimelineMetric(metric);
+    }
+    for (TimelineMetric metric : m_second) {
+      metrics.addOrMergeTimelineMetric(metric);
+    }
+    return metrics;
+  }
+
+  @Benchmark
+  public TimelineMetrics linearScanMerge() {
+    TimelineMetrics metrics = new TimelineMetrics();
+    for (TimelineMetric metric : m_first) {
+      linearScanMerge(metrics.getMetrics(), metric);
+    }
+    for (TimelineMetric metric : m_second) {
+      linearScanMerge(metrics.getMetrics(), metric);
+    }
+    return metrics;
+  }
+
+  /**
+   * The merge done by {@link TimelineMetrics} before the index was added.
+   */
+  private static void linearScanMerge(List<TimelineMetric> allMetrics,
+      TimelineMetric metric) {
+    TimelineMetric metricToMerge = null;
+
+    for (TimelineMetric timelineMetric : allMetrics) {
+      if (timelineMetric.equalsExceptTime(metric)) {
+        metricToMerge = timelineMetric;
+        break;
+      }
+    }
+
+    if (metricToMerge != null) {
+      metricToMerge.addMetricValues(metric.getMetricValues());
+      if (metricToMerge.getTimestamp() > metric.getTimestamp()) {
+        metricToMerge.setTimestamp(metric.getTimestamp());
+      }
+      if (metricToMerge.getStartTime() > metric.getStartTime()) {
+        metricToMerge.setStartTime(metric.getStartTime());
+      }
+    } else {
+      allMetrics.add(metric);
+    }
+  }
+
+  private TimelineMetric[] createMetrics(long startTime) {
+    TimelineMetric[] metrics = new TimelineMetric[series];
+    for (int i = 0; i < series; i++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("metric." + (i % METRICS_PER_HOST));
+      metric.setHostName("host" + (i / METRICS_PER_HOST));
+      metric.setAppId("datanode");
+      metric.setStartTime(startTime);
+      metric.setTimestamp(startTime);
+
+      TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+      for (int j = 0; j < 6; j++) {
+        values.put(startTime + j * 10000L, (double) i);
+      }
+      metric.setMetricValues(values);
+      metrics[i] = metric;
+    }
+    return metrics;
+  }
+}
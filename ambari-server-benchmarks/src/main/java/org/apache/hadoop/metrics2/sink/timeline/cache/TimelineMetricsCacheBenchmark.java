@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TimelineMetricsCache#putTimelineMetric(TimelineMetric)}
+ * from several reporter threads at once with the default bounds. With more
+ * series than the cache holds it keeps trimming the oldest metrics, with
+ * fewer it fills up with values and trims the heaviest ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TimelineMetricsCacheBenchmark {
+
+  private static final int VALUES_PER_PUT = 6;
+
+  /**
+   * The number of distinct series put.
+   */
+  @Param({ "5000", "50000" })
+  public int series;
+
+  private TimelineMetricsCache m_cache;
+
+  private String[] m_metricNames;
+
+  private final AtomicInteger m_threads = new AtomicInteger();
+
+  /**
+   * The position of a reporter thread in the series and in time.
+   */
+  @State(Scope.Thread)
+  public static class Reporter {
+    private int m_index;
+    private long m_startTime;
+
+    @Setup
+    public void setup(TimelineMetricsCacheBenchmark benchmark) {
+      // threads report different series and never repeat a start time
+      int thread = benchmark.m_threads.getAndIncrement();
+      m_index = thread * 7919 % benchmark.series;
+      m_startTime = thread * 1000000000L;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    m_cache = new TimelineMetricsCache(
+        TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT,
+        TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+
+    m_metricNames = new String[series];
+    for (int i = 0; i < series; i++) {
+      m_metricNames[i] = "regionserver.Server.metric" + i;
+    }
+  }
+
+  @Benchmark
+  public void putTimelineMetric(Reporter reporter) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(m_metricNames[reporter.m_index]);
+    metric.setAppId("hbase");
+    metric.setStartTime(reporter.m_startTime);
+    for (int i = 0; i < VALUES_PER_PUT; i++) {
+      metric.getMetricSeries().add(reporter.m_startTime + i, (double) i);
+    }
+    reporter.m_index = (reporter.m_index + 1) % series;
+    reporter.m_startTime += VALUES_PER_PUT;
+
+    m_cache.putTimelineMetric(metric);
+  }
+}
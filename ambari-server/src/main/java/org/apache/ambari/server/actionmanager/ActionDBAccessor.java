@@ -222,6 +222,15 @@ public interface ActionDBAccessor {
    */
   public void resubmitTasks(List<Long> taskIds);
 
+  /**
+   * Drops tasks which were removed from the database without going through
+   * this accessor from the task cache.
+   *
+   * @param taskIds
+   *          the IDs of the removed tasks
+   */
+  public void invalidateCachedTasks(Collection<Long> taskIds);
+
 
 
 }
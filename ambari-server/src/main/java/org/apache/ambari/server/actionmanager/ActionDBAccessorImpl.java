@@ -373,7 +373,6 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     long now = System.currentTimeMillis();
 
     List<Long> requestsToCheck = new ArrayList<Long>();
-    List<Long> abortedCommandUpdates = new ArrayList<Long>();
 
     List<HostRoleCommandEntity> commandEntities = hostRoleCommandDAO.findByPKs(taskReports.keySet());
     for (HostRoleCommandEntity commandEntity : commandEntities) {
@@ -387,8 +386,6 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
           status = HostRoleStatus.HOLDING_FAILED;
         }
         commandEntity.setStatus(status);
-      } else {
-        abortedCommandUpdates.add(commandEntity.getTaskId());
       }
       commandEntity.setStdOut(report.getStdOut().getBytes());
       commandEntity.setStdError(report.getStdErr().getBytes());
@@ -410,8 +407,9 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
 
     hostRoleCommandDAO.mergeAll(commandEntities);
-    // Invalidate cache because of updates to ABORTED commands
-    hostRoleCommandCache.invalidateAll(abortedCommandUpdates);
+    // Invalidate cache because of updates to ABORTED commands and to the
+    // output which cached commands keep once loaded
+    hostRoleCommandCache.invalidateAll(taskReports.keySet());
 
     for (Long requestId : requestsToCheck) {
       endRequestIfCompleted(requestId);
@@ -448,6 +446,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         }
       }
       command.setExitcode(report.getExitCode());
+      hostRoleCommandCache.invalidate(command.getTaskId());
     }
     hostRoleCommandDAO.mergeAll(commands);
 
@@ -646,6 +645,11 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     return requests;
   }
 
+  @Override
+  public void invalidateCachedTasks(Collection<Long> taskIds) {
+    hostRoleCommandCache.invalidateAll(taskIds);
+  }
+
   @Override
   public void resubmitTasks(List<Long> taskIds) {
     hostRoleCommandCache.invalidateAll(taskIds);
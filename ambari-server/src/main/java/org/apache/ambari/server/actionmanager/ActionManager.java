@@ -166,6 +166,15 @@ public class ActionManager {
     }
 
     db.updateHostRoleStates(reportsToProcess);
+
+    // completed commands may allow the next stage to start, so let the
+    // scheduler react now rather than on its next iteration
+    for (CommandReport report : reportsToProcess) {
+      if (HostRoleStatus.valueOf(report.getStatus()).isCompletedState()) {
+        scheduler.awake();
+        break;
+      }
+    }
   }
 
   /**
@@ -184,10 +193,9 @@ public class ActionManager {
   }
 
   public void handleLostHost(String host) {
-    //Do nothing, the task will timeout anyway.
-    //The actions can be failed faster as an optimization
-    //if action timeout happens to be much larger than
-    //heartbeat timeout.
+    // the scheduler fails the tasks of a host which lost its heartbeat on its
+    // next iteration, which it would otherwise only run when a task times out
+    scheduler.awake();
   }
 
   public long getNextRequestId() {
@@ -259,6 +267,16 @@ public class ActionManager {
 
   public void resubmitTasks(List<Long> taskIds) {
     db.resubmitTasks(taskIds);
+    scheduler.awake();
+  }
+
+  /**
+   * Wakes the scheduler after the status of tasks was changed without going
+   * through the action manager, so that an idle scheduler does not wait for
+   * the reconcile interval to pick them up.
+   */
+  public void awake() {
+    scheduler.awake();
   }
 
 }
@@ -72,7 +72,11 @@ import com.google.inject.persist.UnitOfWork;
 /**
  * This class encapsulates the action scheduler thread.
  * Action schedule frequently looks at action database and determines if
- * there is an action that can be scheduled.
+ * there is an action that can be scheduled. While nothing is in progress the
+ * scheduler sleeps until it is woken up by {@link #awake()}, checking the
+ * database only every reconcile interval. While commands are in progress it
+ * only reads the stages again when it is woken up, when a command may have
+ * timed out, while a server action runs, or once per reconcile interval.
  */
 class ActionScheduler implements Runnable {
 
@@ -118,8 +122,30 @@ class ActionScheduler implements Runnable {
    * true if scheduler should run ASAP.
    * We need this flag to avoid sleep in situations, when
    * we receive awake() request during running a scheduler iteration.
+   * Initially set so that requests persisted before the scheduler started
+   * are picked up without waiting for the reconcile interval.
    */
-  private boolean activeAwakeRequest = false;
+  private boolean activeAwakeRequest = true;
+
+  /**
+   * true if the last scheduler iteration found no commands in progress. An
+   * idle scheduler relies on {@link #awake()} to learn about new work and
+   * only falls back to checking the database every reconcile interval. While
+   * there are commands in progress the scheduler checks every sleepTime
+   * whether it is due to run, see {@link #nextPollTime}, and skips the in
+   * progress count query.
+   */
+  private volatile boolean idle = true;
+
+  /**
+   * The time at which an active scheduler reads the stages in progress even
+   * if it was not woken up: the earliest time a command in progress may time
+   * out, bounded by the reconcile interval. Server actions update their
+   * commands without waking the scheduler, so it stays due while one runs.
+   * Only used by the scheduler thread.
+   */
+  private long nextPollTime;
+
   //Cache for clusterHostinfo, key - stageId-requestId
   private Cache<String, Map<String, Set<String>>> clusterHostInfoCache;
   private Cache<String, Map<String, String>> commandParamsStageCache;
@@ -184,15 +210,20 @@ class ActionScheduler implements Runnable {
 
   @Override
   public void run() {
+    long idleWaitTime = getIdleWaitTime();
     while (shouldRun) {
       try {
+        boolean workAvailable;
         synchronized (wakeupSyncObject) {
           if (!activeAwakeRequest) {
-              wakeupSyncObject.wait(sleepTime);
+              wakeupSyncObject.wait(idle ? idleWaitTime : sleepTime);
           }
+          workAvailable = activeAwakeRequest;
           activeAwakeRequest = false;
         }
-        doWork();
+        if (workAvailable || isPollDue(System.currentTimeMillis())) {
+          doWork();
+        }
       } catch (InterruptedException ex) {
         LOG.warn("Scheduler thread is interrupted going to stop", ex);
         shouldRun = false;
@@ -206,6 +237,39 @@ class ActionScheduler implements Runnable {
     }
   }
 
+  /**
+   * Gets the time to wait between iterations while there are no commands in
+   * progress. Falls back to the regular sleep time if the reconcile interval
+   * is not configured or is shorter than the sleep time.
+   *
+   * @return the idle wait time in milliseconds
+   */
+  long getIdleWaitTime() {
+    long reconcileInterval = null == configuration ? 0 :
+        configuration.getActionSchedulerReconcileInterval();
+    return Math.max(reconcileInterval, sleepTime);
+  }
+
+  /**
+   * @return {@code true} if the last iteration found no commands in progress
+   */
+  boolean isIdle() {
+    return idle;
+  }
+
+  /**
+   * Gets whether the scheduler has to check the database although it was not
+   * woken up. An idle scheduler only waits for the reconcile interval, an
+   * active one waits until {@link #nextPollTime}.
+   *
+   * @param now
+   *          the current time in milliseconds
+   * @return {@code true} if the next iteration should run
+   */
+  boolean isPollDue(long now) {
+    return idle || now >= nextPollTime;
+  }
+
   public void doWork() throws AmbariException {
     try {
       unitOfWork.begin();
@@ -215,8 +279,9 @@ class ActionScheduler implements Runnable {
 
       // !!! getting the stages in progress could be a very expensive call due
       // to the join being used; there's no need to make it if there are
-      // no commands in progress
-      if (db.getCommandsInProgressCount() == 0) {
+      // no commands in progress. The count is only needed when the scheduler
+      // was idle, an active scheduler reads the stages directly
+      if (idle && db.getCommandsInProgressCount() == 0) {
         // Nothing to do
         if (LOG.isDebugEnabled()) {
           LOG.debug("There are no stages currently in progress.");
@@ -239,10 +304,14 @@ class ActionScheduler implements Runnable {
           LOG.debug("There are no stages currently in progress.");
         }
 
+        idle = true;
         actionQueue.updateListOfHostsWithPendingTask(null);
         return;
       }
 
+      idle = false;
+      nextPollTime = System.currentTimeMillis() + getIdleWaitTime();
+
       int i_stage = 0;
 
       HashSet<String> hostsWithTasks = getListOfHostsWithPendingTask(stages);
@@ -312,6 +381,8 @@ class ActionScheduler implements Runnable {
               + stage.getRequestId());
           cancelHostRoleCommands(stage.getOrderedHostRoleCommands(), FAILED_TASK_ABORT_REASONING);
           abortOperationsForStage(stage);
+          // stages held back by this request may run now
+          nextPollTime = 0;
           return;
         }
 
@@ -637,6 +708,7 @@ class ActionScheduler implements Runnable {
           LOG.trace("===>commandsToSchedule(first_time)=" + commandsToSchedule.size());
         }
 
+        updateNextPollTime(s, host, roleStr, status, now, commandTimeout);
         updateRoleStats(status, roleStats.get(roleStr));
       }
     }
@@ -750,6 +822,28 @@ class ActionScheduler implements Runnable {
     return roleStats;
   }
 
+  /**
+   * Brings {@link #nextPollTime} forward to the time the command may time out,
+   * or to now if it is a server action which is not done yet.
+   */
+  private void updateNextPollTime(Stage stage, String host, String role,
+      HostRoleStatus status, long now, long commandTimeout) {
+    if (status != HostRoleStatus.PENDING && status != HostRoleStatus.QUEUED
+        && status != HostRoleStatus.IN_PROGRESS) {
+      return;
+    }
+
+    if (Role.AMBARI_SERVER_ACTION.name().equals(role)) {
+      nextPollTime = now;
+    } else if (status == HostRoleStatus.PENDING) {
+      // scheduled in this iteration
+      nextPollTime = Math.min(nextPollTime, now + commandTimeout);
+    } else {
+      nextPollTime = Math.min(nextPollTime,
+          stage.getLastAttemptTime(host, role) + commandTimeout);
+    }
+  }
+
   private boolean timeOutActionNeeded(HostRoleStatus status, Stage stage,
       Host host, String role, long currentTime, long taskTimeout) throws
     AmbariException {
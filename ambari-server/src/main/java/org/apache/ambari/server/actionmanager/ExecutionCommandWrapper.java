@@ -20,6 +20,7 @@ package org.apache.ambari.server.actionmanager;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.ClusterNotFoundException;
 import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.state.Cluster;
@@ -65,17 +66,13 @@ public class ExecutionCommandWrapper {
         // Configurations from the tag is always expanded and then over-written by the actual
         // global:version1:{a1:A1,b1:B1,d1:D1} + global:{a1:A2,c1:C1,DELETED_d1:x} ==>
         // global:{a1:A2,b1:B1,c1:C1}
-        Clusters clusters = injector.getInstance(Clusters.class);
-        HostRoleCommandDAO hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
-        Long clusterId = hostRoleCommandDAO.findByPK(
-            executionCommand.getTaskId()).getStage().getClusterId();
-
         try {
-          Cluster cluster = clusters.getClusterById(clusterId);
+          Cluster cluster = getCluster();
           ConfigHelper configHelper = injector.getInstance(ConfigHelper.class);
 
+          // the commands of a stage share their tags so the expanded configs are cached
           Map<String, Map<String, String>> configProperties = configHelper
-            .getEffectiveConfigProperties(cluster,
+            .getCachedEffectiveConfigProperties(cluster,
               executionCommand.getConfigurationTags());
 
           // Apply the configurations saved with the Execution Cmd on top of
@@ -97,7 +94,7 @@ public class ExecutionCommandWrapper {
             }
           }
 
-          Map<String, Map<String, Map<String, String>>> configAttributes = configHelper.getEffectiveConfigAttributes(cluster,
+          Map<String, Map<String, Map<String, String>>> configAttributes = configHelper.getCachedEffectiveConfigAttributes(cluster,
               executionCommand.getConfigurationTags());
 
           for (Map.Entry<String, Map<String, Map<String, String>>> attributesOccurrence : configAttributes.entrySet()) {
@@ -125,6 +122,29 @@ public class ExecutionCommandWrapper {
     }
   }
 
+  /**
+   * Get the cluster of the command by name which avoids a database lookup for
+   * every command, falling back to the stage of the command's task.
+   *
+   * @return the cluster
+   * @throws AmbariException if the cluster can't be found
+   */
+  private Cluster getCluster() throws AmbariException {
+    Clusters clusters = injector.getInstance(Clusters.class);
+    String clusterName = executionCommand.getClusterName();
+    if (clusterName != null) {
+      try {
+        return clusters.getCluster(clusterName);
+      } catch (ClusterNotFoundException e) {
+        // the cluster may have been renamed since the command was created
+      }
+    }
+    HostRoleCommandDAO hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
+    Long clusterId = hostRoleCommandDAO.findByPK(
+        executionCommand.getTaskId()).getStage().getClusterId();
+    return clusters.getClusterById(clusterId);
+  }
+
   public String getJson() {
     if (jsonExecutionCommand != null) {
       return jsonExecutionCommand;
@@ -17,11 +17,18 @@
  */
 package org.apache.ambari.server.actionmanager;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import com.google.inject.Inject;
 import org.apache.ambari.server.Role;
 import org.apache.ambari.server.RoleCommand;
 import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
 import org.apache.ambari.server.orm.dao.HostDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandOutputDTO;
 import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
 import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
@@ -68,6 +75,9 @@ public class HostRoleCommand {
   @Inject
   private HostDAO hostDAO;
 
+  @Inject
+  private HostRoleCommandDAO hostRoleCommandDAO;
+
   /**
    * Simple constructor, should be created using the Factory class.
    * @param hostName Host name
@@ -117,10 +127,20 @@ public class HostRoleCommand {
     this.hostEntity = hostDAO.findById(host.getHostId());
   }
 
+  /**
+   * Constructor for an existing task. The output of the task is only loaded
+   * when it is first needed.
+   * @param hostRoleCommandEntity the task
+   * @param hostDAO {@link org.apache.ambari.server.orm.dao.HostDAO} instance being injected
+   * @param executionCommandDAO {@link org.apache.ambari.server.orm.dao.ExecutionCommandDAO} instance being injected
+   * @param hostRoleCommandDAO {@link org.apache.ambari.server.orm.dao.HostRoleCommandDAO} instance being injected
+   */
   @AssistedInject
-  public HostRoleCommand(@Assisted HostRoleCommandEntity hostRoleCommandEntity, HostDAO hostDAO, ExecutionCommandDAO executionCommandDAO) {
+  public HostRoleCommand(@Assisted HostRoleCommandEntity hostRoleCommandEntity, HostDAO hostDAO,
+                         ExecutionCommandDAO executionCommandDAO, HostRoleCommandDAO hostRoleCommandDAO) {
     this.hostDAO = hostDAO;
     this.executionCommandDAO = executionCommandDAO;
+    this.hostRoleCommandDAO = hostRoleCommandDAO;
 
     taskId = hostRoleCommandEntity.getTaskId();
     stageId = hostRoleCommandEntity.getStage().getStageId();
@@ -128,11 +148,11 @@ public class HostRoleCommand {
     this.hostEntity = hostRoleCommandEntity.getHostEntity();
     role = hostRoleCommandEntity.getRole();
     status = hostRoleCommandEntity.getStatus();
-    stdout = hostRoleCommandEntity.getStdOut() != null ? new String(hostRoleCommandEntity.getStdOut()) : "";
-    stderr = hostRoleCommandEntity.getStdError() != null ? new String(hostRoleCommandEntity.getStdError()) : "";
+    stdout = null;
+    stderr = null;
     outputLog = hostRoleCommandEntity.getOutputLog();
     errorLog = hostRoleCommandEntity.getErrorLog();
-    structuredOut = hostRoleCommandEntity.getStructuredOut() != null ? new String(hostRoleCommandEntity.getStructuredOut()) : "";
+    structuredOut = null;
     exitCode = hostRoleCommandEntity.getExitcode();
     startTime = hostRoleCommandEntity.getStartTime();
     endTime = hostRoleCommandEntity.getEndTime() != null ? hostRoleCommandEntity.getEndTime() : -1L;
@@ -152,10 +172,10 @@ public class HostRoleCommand {
     hostRoleCommandEntity.setHostEntity(hostEntity);
     hostRoleCommandEntity.setRole(role);
     hostRoleCommandEntity.setStatus(status);
-    hostRoleCommandEntity.setStdError(stderr.getBytes());
+    hostRoleCommandEntity.setStdError(getStderr().getBytes());
     hostRoleCommandEntity.setExitcode(exitCode);
-    hostRoleCommandEntity.setStdOut(stdout.getBytes());
-    hostRoleCommandEntity.setStructuredOut(structuredOut.getBytes());
+    hostRoleCommandEntity.setStdOut(getStdout().getBytes());
+    hostRoleCommandEntity.setStructuredOut(getStructuredOut().getBytes());
     hostRoleCommandEntity.setStartTime(startTime);
     hostRoleCommandEntity.setEndTime(endTime);
     hostRoleCommandEntity.setLastAttemptTime(lastAttemptTime);
@@ -244,6 +264,9 @@ public class HostRoleCommand {
   }
 
   public String getStdout() {
+    if (null == stdout) {
+      loadOutput();
+    }
     return stdout;
   }
 
@@ -252,6 +275,9 @@ public class HostRoleCommand {
   }
 
   public String getStderr() {
+    if (null == stderr) {
+      loadOutput();
+    }
     return stderr;
   }
 
@@ -308,9 +334,88 @@ public class HostRoleCommand {
   }
 
   public String getStructuredOut() {
+    if (null == structuredOut) {
+      loadOutput();
+    }
     return structuredOut;
   }
 
+  /**
+   * Loads the output of an existing task which hasn't been loaded or set yet.
+   * The output of a task which isn't persisted or no longer exists is empty.
+   */
+  private synchronized void loadOutput() {
+    if (taskId != -1 && null != hostRoleCommandDAO) {
+      for (HostRoleCommandOutputDTO output : hostRoleCommandDAO.findOutputsByPKs(
+          Collections.singletonList(taskId))) {
+        setOutput(output);
+      }
+    }
+
+    if (null == stdout) {
+      stdout = "";
+    }
+    if (null == stderr) {
+      stderr = "";
+    }
+    if (null == structuredOut) {
+      structuredOut = "";
+    }
+  }
+
+  /**
+   * Sets the output which hasn't been loaded or set yet from the persisted
+   * output of the task.
+   *
+   * @param output  the persisted output
+   */
+  private synchronized void setOutput(HostRoleCommandOutputDTO output) {
+    if (null == stdout) {
+      stdout = new String(output.getStdout());
+    }
+    if (null == stderr) {
+      stderr = new String(output.getStderr());
+    }
+    if (null == structuredOut) {
+      structuredOut = new String(output.getStructuredOut());
+    }
+  }
+
+  /**
+   * @return {@code true} if the output has been loaded or set
+   */
+  private synchronized boolean isOutputLoaded() {
+    return null != stdout && null != stderr && null != structuredOut;
+  }
+
+  /**
+   * Loads the output of the given existing tasks which hasn't been loaded or
+   * set yet with a single query, instead of one query per task when the output
+   * of each task is first read.
+   *
+   * @param commands  the tasks
+   */
+  public static void loadOutput(Collection<HostRoleCommand> commands) {
+    Map<Long, HostRoleCommand> unloaded = new HashMap<Long, HostRoleCommand>();
+    HostRoleCommandDAO hostRoleCommandDAO = null;
+
+    for (HostRoleCommand command : commands) {
+      if (command.taskId != -1 && null != command.hostRoleCommandDAO && !command.isOutputLoaded()) {
+        unloaded.put(command.taskId, command);
+        hostRoleCommandDAO = command.hostRoleCommandDAO;
+      }
+    }
+
+    if (null != hostRoleCommandDAO) {
+      for (HostRoleCommandOutputDTO output : hostRoleCommandDAO.findOutputsByPKs(unloaded.keySet())) {
+        HostRoleCommand command = unloaded.get(output.getTaskId());
+        if (null != command) {
+          command.setOutput(output);
+        }
+      }
+    }
+  }
+
   public void setStructuredOut(String structuredOut) {
     this.structuredOut = structuredOut;
   }
@@ -382,8 +487,9 @@ public class HostRoleCommand {
     builder.append("  Event: ").append(event).append("\n");
     builder.append("  Output log: ").append(outputLog).append("\n");
     builder.append("  Error log: ").append(errorLog).append("\n");
-    builder.append("  stdout: ").append(stdout).append("\n");
-    builder.append("  stderr: ").append(stderr).append("\n");
+    // the output isn't loaded just to log the task
+    builder.append("  stdout: ").append(null != stdout ? stdout : "<not loaded>").append("\n");
+    builder.append("  stderr: ").append(null != stderr ? stderr : "<not loaded>").append("\n");
     builder.append("  exitcode: ").append(exitCode).append("\n");
     builder.append("  Start time: ").append(startTime).append("\n");
     builder.append("  Last attempt time: ").append(lastAttemptTime).append("\n");
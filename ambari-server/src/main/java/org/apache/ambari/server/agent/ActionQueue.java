@@ -42,6 +42,12 @@ public class ActionQueue {
 
   final ConcurrentMap<String, Queue<AgentCommand>> hostQueues;
 
+  /**
+   * Callbacks waiting for commands to be queued, keyed by host name.
+   */
+  private final ConcurrentMap<String, Queue<Runnable>> hostCommandCallbacks =
+      new ConcurrentHashMap<String, Queue<Runnable>>();
+
   HashSet<String> hostsWithPendingTask = new HashSet<String>();
 
   public ActionQueue() {
@@ -71,6 +77,75 @@ public class ActionQueue {
     }
 
     q.add(cmd);
+
+    Queue<Runnable> callbacks = hostCommandCallbacks.get(hostname);
+    if (callbacks != null) {
+      Runnable callback;
+      while ((callback = callbacks.poll()) != null) {
+        runCallback(callback);
+      }
+    }
+  }
+
+  /**
+   * Registers a callback to run once when a command is next queued for the
+   * given host.  The callback is run right away if commands are already queued
+   * for the host.  Callbacks are run by the thread queueing the command so
+   * they should return quickly.
+   *
+   * @param hostname  the host name
+   * @param callback  the callback
+   */
+  public void notifyOnCommand(String hostname, Runnable callback) {
+    Queue<Runnable> callbacks = hostCommandCallbacks.get(hostname);
+    if (callbacks == null) {
+      callbacks = new ConcurrentLinkedQueue<Runnable>();
+      Queue<Runnable> existingCallbacks = hostCommandCallbacks.putIfAbsent(hostname, callbacks);
+      if (existingCallbacks != null) {
+        callbacks = existingCallbacks;
+      }
+    }
+    callbacks.add(callback);
+
+    // a command queued before the callback was registered won't run it
+    if (size(hostname) > 0 && callbacks.remove(callback)) {
+      runCallback(callback);
+    }
+  }
+
+  /**
+   * Removes a callback registered with {@link #notifyOnCommand(String, Runnable)}
+   * which hasn't run yet.
+   *
+   * @param hostname  the host name
+   * @param callback  the callback
+   *
+   * @return true if the callback was removed before it ran
+   */
+  public boolean cancelNotifyOnCommand(String hostname, Runnable callback) {
+    Queue<Runnable> callbacks = hostCommandCallbacks.get(hostname);
+    return callbacks != null && callbacks.remove(callback);
+  }
+
+  /**
+   * Get the number of callbacks registered with
+   * {@link #notifyOnCommand(String, Runnable)} which haven't run yet.
+   *
+   * @param hostname  the host name
+   *
+   * @return the number of callbacks waiting for a command for the host
+   */
+  public int getCommandCallbackCount(String hostname) {
+    Queue<Runnable> callbacks = hostCommandCallbacks.get(hostname);
+    return callbacks == null ? 0 : callbacks.size();
+  }
+
+  private void runCallback(Runnable callback) {
+    try {
+      callback.run();
+    } catch (RuntimeException e) {
+      LOG.warn("Unable to notify of queued command", e);
+    }
   }
 
   /**
@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.server.utils.StageUtils;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.google.inject.Singleton;
+
+/**
+ * The {@link CommandPayloadReferences} replaces the payloads that the commands
+ * of a stage share, {@code clusterHostInfo}, {@code configurations} and
+ * {@code hostLevelParams}, with references once an agent was sent them. Each
+ * command sent carries the hashes of its payloads in
+ * {@link ExecutionCommand#getPayloadHashes()}; a payload is only included the
+ * first time the agent sees its hash, so the commands of a stage fanned out to
+ * a host after the first carry only their own fields.
+ * <p/>
+ * Agents declare on registration whether they cache payloads. The agent keeps
+ * at least the {@link #HOST_PAYLOAD_LIMIT} payloads it used last, and the
+ * payloads sent to a host are forgotten when it registers again, such as after
+ * the agent restarted.
+ */
+@Singleton
+public class CommandPayloadReferences {
+
+  /**
+   * The number of payloads remembered for each host. Agents keep twice as
+   * many so that payloads are not evicted by the agent first when responses
+   * are handled in a different order than they were sent.
+   */
+  static final int HOST_PAYLOAD_LIMIT = 16;
+
+  /**
+   * The hashes of the payloads sent to each host which caches payloads, in
+   * the order they were last used.
+   */
+  private final ConcurrentMap<String, Map<String, Boolean>> m_sentPayloads =
+      new ConcurrentHashMap<String, Map<String, Boolean>>();
+
+  private final AtomicLong m_referencedPayloads = new AtomicLong();
+
+  private final AtomicLong m_sentPayloadCount = new AtomicLong();
+
+  /**
+   * Forgets the payloads sent to a host which registered.
+   *
+   * @param hostname
+   *          the host.
+   * @param cachesPayloads
+   *          whether the agent of the host caches payloads.
+   */
+  public void register(String hostname, boolean cachesPayloads) {
+    if (!cachesPayloads) {
+      m_sentPayloads.remove(hostname);
+      return;
+    }
+
+    m_sentPayloads.put(hostname, new LinkedHashMap<String, Boolean>(HOST_PAYLOAD_LIMIT, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > HOST_PAYLOAD_LIMIT;
+      }
+    });
+  }
+
+  /**
+   * Gets the command to send to a host. If the agent caches payloads, this is
+   * a copy of the command which references the payloads the agent already
+   * has.
+   *
+   * @param hostname
+   *          the host the command is sent to.
+   * @param command
+   *          the command, which is not changed.
+   * @return the command to send.
+   */
+  public ExecutionCommand reference(String hostname, ExecutionCommand command) {
+    Map<String, Boolean> sent = m_sentPayloads.get(hostname);
+    if (null == sent) {
+      return command;
+    }
+
+    ExecutionCommand copy = command.copy();
+    Map<String, String> hashes = new HashMap<String, String>();
+
+    synchronized (sent) {
+      if (isSent(sent, hashes, "clusterHostInfo", command.getClusterHostInfo())) {
+        copy.setClusterHostInfo(null);
+      }
+
+      if (isSent(sent, hashes, "configurations", command.getConfigurations())) {
+        copy.setConfigurations(null);
+      }
+
+      if (isSent(sent, hashes, "hostLevelParams", command.getHostLevelParams())) {
+        copy.setHostLevelParams(null);
+      }
+    }
+
+    copy.setPayloadHashes(hashes);
+    return copy;
+  }
+
+  /**
+   * @return the number of payloads which were left out of commands because
+   *         the agent already had them.
+   */
+  public long getReferencedPayloadCount() {
+    return m_referencedPayloads.get();
+  }
+
+  /**
+   * @return the number of payloads which were sent along with commands.
+   */
+  public long getSentPayloadCount() {
+    return m_sentPayloadCount.get();
+  }
+
+  /**
+   * Records the hash of a payload and whether the host already has it.
+   */
+  private boolean isSent(Map<String, Boolean> sent, Map<String, String> hashes,
+      String name, Map<String, ?> payload) {
+    if (null == payload || payload.isEmpty()) {
+      return false;
+    }
+
+    // payload maps may be changed between commands, so the hash is taken
+    // from the content sent rather than cached for the instance
+    String hash = DigestUtils.sha1Hex(StageUtils.getGson().toJson(payload));
+    hashes.put(name, hash);
+
+    if (null != sent.get(hash)) {
+      m_referencedPayloads.incrementAndGet();
+      return true;
+    }
+
+    sent.put(hash, Boolean.TRUE);
+    m_sentPayloadCount.incrementAndGet();
+    return false;
+  }
+}
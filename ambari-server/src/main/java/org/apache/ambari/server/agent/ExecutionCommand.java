@@ -102,6 +102,14 @@ public class ExecutionCommand extends AgentCommand {
   @SerializedName("kerberosCommandParams")
   private List<Map<String, String>> kerberosCommandParams = new ArrayList<Map<String, String>>();
 
+  /**
+   * The hashes of the payloads shared by the commands of a stage, by the name
+   * of the field carrying them. A payload which the agent was already sent is
+   * left out and only referenced by its hash.
+   */
+  @SerializedName("payloadHashes")
+  private Map<String, String> payloadHashes;
+
   public String getCommandId() {
     return commandId;
   }
@@ -293,6 +301,56 @@ public class ExecutionCommand extends AgentCommand {
     kerberosCommandParams =  params;
   }
 
+  /**
+   * @return the hashes of the shared payloads by field name, or {@code null}
+   *         if the payloads are not referenced.
+   * @see CommandPayloadReferences
+   */
+  public Map<String, String> getPayloadHashes() {
+    return payloadHashes;
+  }
+
+  /**
+   * @param payloadHashes
+   *          the hashes of the shared payloads by field name.
+   */
+  public void setPayloadHashes(Map<String, String> payloadHashes) {
+    this.payloadHashes = payloadHashes;
+  }
+
+  /**
+   * Creates a copy of this command which shares all of its fields, so that
+   * the copy sent to an agent can leave out payloads without changing the
+   * command kept by its stage.
+   *
+   * @return the copy.
+   */
+  public ExecutionCommand copy() {
+    ExecutionCommand copy = new ExecutionCommand();
+    copy.setCommandType(getCommandType());
+    copy.clusterName = clusterName;
+    copy.requestId = requestId;
+    copy.stageId = stageId;
+    copy.taskId = taskId;
+    copy.commandId = commandId;
+    copy.hostname = hostname;
+    copy.role = role;
+    copy.hostLevelParams = hostLevelParams;
+    copy.roleParams = roleParams;
+    copy.roleCommand = roleCommand;
+    copy.clusterHostInfo = clusterHostInfo;
+    copy.configurations = configurations;
+    copy.configurationAttributes = configurationAttributes;
+    copy.configurationTags = configurationTags;
+    copy.forceRefreshConfigTags = forceRefreshConfigTags;
+    copy.commandParams = commandParams;
+    copy.serviceName = serviceName;
+    copy.componentName = componentName;
+    copy.kerberosCommandParams = kerberosCommandParams;
+    copy.payloadHashes = payloadHashes;
+    return copy;
+  }
+
   /**
    * Contains key name strings. These strings are used inside maps
    * incapsulated inside command.
@@ -161,6 +161,12 @@ public class HeartBeatHandler {
   @Inject
   private VersionEventPublisher versionEventPublisher;
 
+  /**
+   * Leaves out the payloads which agents were already sent.
+   */
+  @Inject
+  private CommandPayloadReferences payloadReferences;
+
 
   /**
    * KerberosPrincipalHostDAO used to set and get Kerberos principal details
@@ -293,9 +299,55 @@ public class HeartBeatHandler {
   }
 
   /**
-   * Extracts all of the {@link Alert}s from the heartbeat and fires
-   * {@link AlertEvent}s for each one. If there is a problem looking up the
-   * cluster, then alerts will not be processed.
+   * Determine whether {@link #handleCommands(String)} would send the commands
+   * queued for the given host.  Commands are only sent to healthy hosts;
+   * a host which isn't registered is sent a register command instead.
+   *
+   * @param hostname  the host name
+   *
+   * @return false if the host is registered but not healthy
+   *
+   * @throws AmbariException if the host can't be found
+   */
+  public boolean isReadyForCommands(String hostname) throws AmbariException {
+    if (hostResponseIds.get(hostname) == null) {
+      return true;
+    }
+    return clusterFsm.getHost(hostname).getState().equals(HostState.HEALTHY);
+  }
+
+  /**
+   * Get the commands queued for the given host outside of a heartbeat.  The
+   * response carries the host's current response id, so the heartbeat
+   * sequence isn't affected.
+   *
+   * @param hostname  the host name
+   *
+   * @return the response with the queued commands, or a register command if
+   *         the host isn't registered
+   *
+   * @throws AmbariException if the commands can't be sent
+   */
+  public HeartBeatResponse handleCommands(String hostname) throws AmbariException {
+    Long currentResponseId = hostResponseIds.get(hostname);
+    if (currentResponseId == null) {
+      return createRegisterCommand();
+    }
+
+    HeartBeatResponse response = new HeartBeatResponse();
+    response.setResponseId(currentResponseId);
+
+    Host hostObject = clusterFsm.getHost(hostname);
+    if (hostObject.getState().equals(HostState.HEALTHY)) {
+      sendCommands(hostname, response);
+    }
+    return response;
+  }
+
+  /**
+   * Extracts all of the {@link Alert}s from the heartbeat and fires a single
+   * {@link AlertReceivedEvent} for the alerts of each cluster. If there is a
+   * problem looking up the cluster, then its alerts will not be processed.
    *
    * @param heartbeat
    *          the heartbeat to process.
@@ -309,6 +361,7 @@ public class HeartBeatHandler {
     }
 
     if (null != heartbeat.getAlerts()) {
+      Map<Long, List<Alert>> alertsByCluster = new HashMap<Long, List<Alert>>();
       for (Alert alert : heartbeat.getAlerts()) {
         if (null == alert.getHostName()) {
           alert.setHostName(hostname);
@@ -316,15 +369,24 @@ public class HeartBeatHandler {
 
         try {
           Cluster cluster = clusterFsm.getCluster(alert.getCluster());
-          AlertEvent event = new AlertReceivedEvent(cluster.getClusterId(),
-              alert);
-          alertEventPublisher.publish(event);
+          List<Alert> clusterAlerts = alertsByCluster.get(cluster.getClusterId());
+          if (null == clusterAlerts) {
+            clusterAlerts = new ArrayList<Alert>();
+            alertsByCluster.put(cluster.getClusterId(), clusterAlerts);
+          }
+
+          clusterAlerts.add(alert);
         } catch (AmbariException ambariException) {
           LOG.warn(
               "Unable to process alerts because the cluster {} does not exist",
               alert.getCluster());
         }
       }
+
+      for (Map.Entry<Long, List<Alert>> entry : alertsByCluster.entrySet()) {
+        AlertEvent event = new AlertReceivedEvent(entry.getKey(), entry.getValue());
+        alertEventPublisher.publish(event);
+      }
     }
   }
 
@@ -827,7 +889,7 @@ public class HeartBeatHandler {
                 }
               }
             }
-            response.addExecutionCommand((ExecutionCommand) ac);
+            response.addExecutionCommand(payloadReferences.reference(hostname, ec));
             break;
           }
           case STATUS_COMMAND: {
@@ -976,6 +1038,8 @@ public class HeartBeatHandler {
       LOG.debug("Recovery configuration set to " + response.getRecoveryConfig().toString());
     }
 
+    payloadReferences.register(hostname, register.isCachesPayloads());
+
     Long requestId = 0L;
     hostResponseIds.put(hostname, requestId);
     response.setResponseId(requestId);
@@ -35,6 +35,7 @@ public class Register {
   private AgentEnv agentEnv;
   private String agentVersion;
   private String prefix;
+  private boolean cachesPayloads;
 
   @JsonProperty("responseId")
   public int getResponseId() {
@@ -98,6 +99,21 @@ public class Register {
     this.agentVersion = agentVersion;
   }
 
+  /**
+   * @return whether the agent caches the payloads shared by commands, so that
+   *         they can be sent by reference.
+   * @see CommandPayloadReferences
+   */
+  @JsonProperty("cachesPayloads")
+  public boolean isCachesPayloads() {
+    return cachesPayloads;
+  }
+
+  @JsonProperty("cachesPayloads")
+  public void setCachesPayloads(boolean cachesPayloads) {
+    this.cachesPayloads = cachesPayloads;
+  }
+
   public int getCurrentPingPort() {
     return currentPingPort;
   }
@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.agent.rest;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.agent.ActionQueue;
+import org.apache.ambari.server.agent.HeartBeatHandler;
+import org.apache.ambari.server.agent.HeartBeatResponse;
+import org.apache.ambari.server.configuration.Configuration;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationListener;
+import org.eclipse.jetty.continuation.ContinuationSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Delivers the commands queued for a host as soon as they are queued rather
+ * than with the host's next heartbeat (Internal API to be used by Ambari
+ * agent).  A request for the commands of a host without queued commands is
+ * suspended, without holding a thread, until a command is queued for the host
+ * or the poll times out.  A request of a host which isn't healthy, and so
+ * can't be sent its queued commands, is suspended until the poll times out.
+ * <p/>
+ * The response has the same format as a heartbeat response and carries the
+ * host's current response id.
+ */
+@Singleton
+public class AgentCommandsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Logger LOG = LoggerFactory.getLogger(AgentCommandsServlet.class);
+
+  private final HeartBeatHandler heartBeatHandler;
+  private final ActionQueue actionQueue;
+
+  /**
+   * The time in milliseconds a request waits for a command to be queued.
+   */
+  private final long pollTimeout;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Inject
+  public AgentCommandsServlet(HeartBeatHandler heartBeatHandler, ActionQueue actionQueue,
+                              Configuration configuration) {
+    this.heartBeatHandler = heartBeatHandler;
+    this.actionQueue = actionQueue;
+    pollTimeout = TimeUnit.SECONDS.toMillis(configuration.getAgentCommandsPollTimeout());
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    String hostname = getHostName(req);
+    if (hostname == null) {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+      return;
+    }
+
+    Continuation continuation = ContinuationSupport.getContinuation(req);
+    HeartBeatResponse response;
+    try {
+      if (continuation.isInitial()) {
+        if (actionQueue.size(hostname) == 0) {
+          suspend(hostname, continuation);
+          return;
+        }
+        if (!heartBeatHandler.isReadyForCommands(hostname)) {
+          // the queued commands are held back until the host is healthy
+          // again, the request waits for the poll timeout rather than
+          // returning right away without them
+          continuation.setTimeout(pollTimeout);
+          continuation.suspend();
+          return;
+        }
+      }
+
+      response = heartBeatHandler.handleCommands(hostname);
+    } catch (AmbariException e) {
+      LOG.warn("Error getting the commands for host " + hostname, e);
+      resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      return;
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Sending commands response " + response);
+    }
+    resp.setContentType(MediaType.APPLICATION_JSON);
+    mapper.writeValue(resp.getOutputStream(), response);
+  }
+
+  /**
+   * Suspend the request until a command is queued for the given host.  The
+   * request is dispatched again when it's resumed or expires.  The callback
+   * is cancelled once the request expires or completes, including when that
+   * happens before the callback is registered.
+   *
+   * @param hostname      the host name
+   * @param continuation  the continuation of the request
+   */
+  private void suspend(final String hostname, final Continuation continuation) {
+    final Runnable callback = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          continuation.resume();
+        } catch (IllegalStateException e) {
+          // the request expired while the command was being queued
+          LOG.debug("Unable to resume the commands request for host {}", hostname);
+        }
+      }
+    };
+    final AtomicBoolean finished = new AtomicBoolean();
+
+    continuation.setTimeout(pollTimeout);
+    continuation.addContinuationListener(new ContinuationListener() {
+      @Override
+      public void onComplete(Continuation continuation) {
+        finished.set(true);
+        actionQueue.cancelNotifyOnCommand(hostname, callback);
+      }
+
+      @Override
+      public void onTimeout(Continuation continuation) {
+        finished.set(true);
+        actionQueue.cancelNotifyOnCommand(hostname, callback);
+      }
+    });
+    continuation.suspend();
+
+    actionQueue.notifyOnCommand(hostname, callback);
+
+    // the request expired or completed before the callback was registered
+    if (finished.get()) {
+      actionQueue.cancelNotifyOnCommand(hostname, callback);
+    }
+  }
+
+  /**
+   * Get the host name from the path of the request.
+   *
+   * @param req  the request
+   *
+   * @return the host name or null if the path doesn't contain one
+   */
+  private String getHostName(HttpServletRequest req) {
+    String pathInfo = req.getPathInfo();
+    if (pathInfo == null) {
+      return null;
+    }
+    String hostname = pathInfo.startsWith("/") ? pathInfo.substring(1) : pathInfo;
+    return hostname.isEmpty() || hostname.contains("/") ? null : hostname;
+  }
+}
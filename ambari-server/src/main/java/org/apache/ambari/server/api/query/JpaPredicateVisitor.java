@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.persistence.criteria.AbstractQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Path;
@@ -58,7 +59,8 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
   private Root<T> m_root;
 
   /**
-   * The query to submit to JPA.
+   * The query to submit to JPA, or {@code null} if the visitor was created
+   * against the root of another query.
    */
   private CriteriaQuery<T> m_query;
 
@@ -67,6 +69,12 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
    */
   private javax.persistence.criteria.Predicate m_lastPredicate = null;
 
+  /**
+   * {@code true} until a part of the Ambari {@link Predicate} is encountered
+   * which cannot be converted.
+   */
+  private boolean m_translated = true;
+
   /**
    * A queue of lists of {@link javax.persistence.criteria.Predicate}. Every
    * time an {@code OR} or {@code AND} is encountered, a new chain (list) is
@@ -91,6 +99,24 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
     m_root = m_query.from(entityClass);
   }
 
+  /**
+   * Constructor which builds the JPA predicate against a new root of the
+   * supplied query, such as a query which only counts the matching entities.
+   *
+   * @param entityManager
+   *          the EM used to get a {@link CriteriaBuilder}.
+   * @param query
+   *          the query to add the root to.
+   * @param entityClass
+   *          the entity class being queried from.
+   */
+  public JpaPredicateVisitor(EntityManager entityManager,
+      AbstractQuery<?> query, Class<T> entityClass) {
+    m_entityManager = entityManager;
+    m_builder = m_entityManager.getCriteriaBuilder();
+    m_root = query.from(entityClass);
+  }
+
   /**
    * Gets the entity class that is the root type in the JPA {@code from} clause.
    *
@@ -120,15 +146,55 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
     return m_lastPredicate;
   }
 
+  /**
+   * Gets whether the JPA predicate matches exactly the entities that the
+   * visited Ambari {@link Predicate} would. Comparisons which cannot be
+   * converted, as well as {@code NOT} and category predicates, are left out of
+   * the JPA predicate; it then matches a superset of the entities and the
+   * results must still be filtered in memory, which also means that they
+   * cannot be counted or paged by JPA.
+   *
+   * @return {@code true} if the entire predicate was converted.
+   */
+  public boolean isTranslated() {
+    return m_translated;
+  }
+
   /**
    * Gets the query to use along with {@link #getJpaPredicate()}.
    *
-   * @return the query (not {@code null}).
+   * @return the query, or {@code null} if the visitor was created against the
+   *         root of another query.
    */
   public CriteriaQuery<T> getCriteriaQuery() {
     return m_query;
   }
 
+  /**
+   * Gets the root that the predicate paths are built from.
+   *
+   * @return the root (never {@code null}).
+   */
+  public Root<T> getRoot() {
+    return m_root;
+  }
+
+  /**
+   * Converts a comparison of an Ambari-style property which has no
+   * {@link SingularAttribute} mapping, such as a cluster name which is stored
+   * as a cluster ID or a property backed by a collection. By default such
+   * comparisons are not converted.
+   *
+   * @param predicate
+   *          the comparison (not {@code null}).
+   * @return the JPA predicate, or {@code null} if the comparison cannot be
+   *         converted.
+   */
+  protected javax.persistence.criteria.Predicate getUnmappedPredicate(
+      ComparisonPredicate<?> predicate) {
+    return null;
+  }
+
   /**
    * Gets the criteria builder used to construct the query and predicates.
    *
@@ -149,6 +215,7 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
     List<? extends SingularAttribute<?, ?>> singularAttributes = getPredicateMapping(propertyId);
 
     if (null == singularAttributes || singularAttributes.size() == 0) {
+      addJpaPredicate(getUnmappedPredicate(predicate));
       return;
     }
 
@@ -167,19 +234,34 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
       }
     }
 
-    if (null == path) {
-      return;
-    }
-
     String operator = predicate.getOperator();
     Comparable<?> value = predicate.getValue();
 
-    // convert string to enum for proper JPA comparisons
+    if (null == path || null == value) {
+      m_translated = false;
+      return;
+    }
+
+    // convert strings to enums and numbers for proper JPA comparisons
     if (lastSingularAttribute != null) {
       Class<?> clazz = lastSingularAttribute.getJavaType();
-      if (clazz.isEnum()) {
-        Class<? extends Enum> enumClass = (Class<? extends Enum>) clazz;
-        value = Enum.valueOf(enumClass, value.toString());
+      try {
+        if (clazz.isEnum()) {
+          Class<? extends Enum> enumClass = (Class<? extends Enum>) clazz;
+          value = Enum.valueOf(enumClass, value.toString());
+        } else if (value instanceof String) {
+          if (clazz == Long.class || clazz == long.class) {
+            value = Long.valueOf((String) value);
+          } else if (clazz == Integer.class || clazz == int.class) {
+            value = Integer.valueOf((String) value);
+          } else if (clazz == Short.class || clazz == short.class) {
+            value = Short.valueOf((String) value);
+          }
+        }
+      } catch (IllegalArgumentException exception) {
+        // the value can never match the attribute; let the caller filter
+        m_translated = false;
+        return;
       }
     }
 
@@ -196,15 +278,7 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
       jpaPredicate = m_builder.greaterThanOrEqualTo(path, value);
     }
 
-    if (null == jpaPredicate) {
-      return;
-    }
-
-    if (null == m_queue.peekLast()) {
-      m_lastPredicate = jpaPredicate;
-    } else {
-      m_queue.peekLast().add(jpaPredicate);
-    }
+    addJpaPredicate(jpaPredicate);
   }
 
   /**
@@ -230,6 +304,14 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
     javax.persistence.criteria.Predicate jpaPredicate = null;
     // the list is done; deque and apply logical AND or OR
     predicateList = m_queue.pollLast();
+
+    // a child that could not be converted matches everything, which makes an
+    // OR match everything as well; leave the whole chain out in that case
+    if (predicateList != null && (predicateList.isEmpty()
+        || (!"AND".equals(operator) && predicateList.size() < predicates.length))) {
+      predicateList = null;
+    }
+
     if (predicateList != null) {
       javax.persistence.criteria.Predicate[] array = new javax.persistence.criteria.Predicate[predicateList.size()];
       array = predicateList.toArray(array);
@@ -253,6 +335,7 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
    */
   @Override
   public void acceptUnaryPredicate(UnaryPredicate predicate) {
+    m_translated = false;
   }
 
   /**
@@ -267,5 +350,27 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
    */
   @Override
   public void acceptCategoryPredicate(CategoryPredicate predicate) {
+    m_translated = false;
+  }
+
+  /**
+   * Adds the converted comparison to the current chain, or makes it the final
+   * predicate if there is no chain.
+   *
+   * @param jpaPredicate
+   *          the converted comparison, or {@code null} if it could not be
+   *          converted.
+   */
+  private void addJpaPredicate(javax.persistence.criteria.Predicate jpaPredicate) {
+    if (null == jpaPredicate) {
+      m_translated = false;
+      return;
+    }
+
+    if (null == m_queue.peekLast()) {
+      m_lastPredicate = jpaPredicate;
+    } else {
+      m_queue.peekLast().add(jpaPredicate);
+    }
   }
-}
\ No newline at end of file
+}
@@ -22,7 +22,8 @@ import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Path;
 import javax.persistence.metamodel.SingularAttribute;
@@ -38,6 +39,9 @@ import org.apache.ambari.server.controller.spi.SortRequestProperty;
  * <p/>
  * This classes uses the {@link JpaPredicateVisitor} for the entity being
  * queried in order to convert the entity fields into {@link Path} expressions.
+ * Sorting on a field of an associated entity joins the association with a
+ * {@link JoinType#LEFT} join, so entities without the association (such as
+ * tasks without a host) are sorted instead of dropped from the results.
  */
 public class JpaSortBuilder<T> {
 
@@ -81,17 +85,14 @@ public class JpaSortBuilder<T> {
         continue;
       }
 
-      Path<?> path = null;
-      for (SingularAttribute<?, ?> singularAttribute : singularAttributes) {
-        if (null == path) {
-          CriteriaQuery<T> query = visitor.getCriteriaQuery();
-          path = query.from(visitor.getEntityClass()).get(
-              singularAttribute.getName());
-        } else {
-          path = path.get(singularAttribute.getName());
-        }
+      From<?, ?> from = visitor.getRoot();
+      int last = singularAttributes.size() - 1;
+      for (SingularAttribute<?, ?> singularAttribute : singularAttributes.subList(0, last)) {
+        from = from.join(singularAttribute.getName(), JoinType.LEFT);
       }
 
+      Path<?> path = from.get(singularAttributes.get(last).getName());
+
       Order sortOrder = null;
       if (sort.getOrder() == org.apache.ambari.server.controller.spi.SortRequest.Order.ASC) {
         sortOrder = builder.asc(path);
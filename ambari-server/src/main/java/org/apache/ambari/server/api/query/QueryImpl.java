@@ -18,11 +18,13 @@
 
 package org.apache.ambari.server.api.query;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -40,6 +42,8 @@ import org.apache.ambari.server.api.util.TreeNodeImpl;
 import org.apache.ambari.server.controller.internal.QueryResponseImpl;
 import org.apache.ambari.server.controller.predicate.AndPredicate;
 import org.apache.ambari.server.controller.predicate.EqualsPredicate;
+import org.apache.ambari.server.controller.predicate.OrPredicate;
+import org.apache.ambari.server.controller.spi.BatchResourceProvider;
 import org.apache.ambari.server.controller.spi.ClusterController;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
@@ -157,6 +161,12 @@ public class QueryImpl implements Query, ResourceInstance {
    */
   private Predicate processedPredicate;
 
+  /**
+   * The maximum number of parent resources whose sub-resources are
+   * requested with a single batched query.
+   */
+  private static final int SUB_RESOURCE_BATCH_SIZE = 500;
+
   /**
    * The logger.
    */
@@ -423,31 +433,180 @@ public class QueryImpl implements Query, ResourceInstance {
       Request       request             = subResource.createRequest();
       Set<Resource> providerResourceSet = new HashSet<Resource>();
 
-      for (QueryResult queryResult : populatedQueryResults.values()) {
-        for (Resource resource : queryResult.getQueryResponse().getResources()) {
-          Map<Resource.Type, String> map = getKeyValueMap(resource, queryResult.getKeyValueMap());
+      if (!isBatchQuerySupported(resourceType) ||
+          !batchQueryForSubResources(subResource, request, providerResourceSet)) {
+        queryForSubResources(subResource, request, providerResourceSet);
+      }
+      clusterController.populateResources(resourceType, providerResourceSet, request, subResourcePredicate);
+      subResource.queryForSubResources();
+    }
+  }
+
+  /**
+   * Query the cluster controller for the given sub-resource once for each of
+   * the resources associated with this query object.
+   *
+   * @param subResource          the sub-resource query
+   * @param request              the sub-resource request
+   * @param providerResourceSet  the set to add all of the sub-resources to
+   */
+  private void queryForSubResources(QueryImpl subResource, Request request, Set<Resource> providerResourceSet)
+      throws UnsupportedPropertyException,
+      SystemException,
+      NoSuchResourceException,
+      NoSuchParentResourceException {
+
+    Resource.Type resourceType = subResource.getResourceDefinition().getType();
 
-          Predicate     queryPredicate = subResource.createPredicate(map, subResource.processedPredicate);
-          Set<Resource> resourceSet    = new LinkedHashSet<Resource>();
+    for (QueryResult queryResult : populatedQueryResults.values()) {
+      for (Resource resource : queryResult.getQueryResponse().getResources()) {
+        Map<Resource.Type, String> map = getKeyValueMap(resource, queryResult.getKeyValueMap());
 
-          try {
-            Set<Resource> queryResources =
-                subResource.doQuery(resourceType, request, queryPredicate, false).getResources();
+        Predicate     queryPredicate = subResource.createPredicate(map, subResource.processedPredicate);
+        Set<Resource> resourceSet    = new LinkedHashSet<Resource>();
 
-            providerResourceSet.addAll(queryResources);
-            resourceSet.addAll(queryResources);
-          } catch (NoSuchResourceException e) {
-            // do nothing ...
-          }
-          subResource.queryResults.put(resource,
-              new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
-          subResource.populatedQueryResults.put(resource,
+        try {
+          Set<Resource> queryResources =
+              subResource.doQuery(resourceType, request, queryPredicate, false).getResources();
+
+          providerResourceSet.addAll(queryResources);
+          resourceSet.addAll(queryResources);
+        } catch (NoSuchResourceException e) {
+          // do nothing ...
+        }
+        subResource.queryResults.put(resource,
             new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
+        subResource.populatedQueryResults.put(resource,
+          new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
+      }
+    }
+  }
+
+  /**
+   * Query the cluster controller for the given sub-resource of all of the
+   * resources associated with this query object using a single OR predicate
+   * over the parent keys for every {@link #SUB_RESOURCE_BATCH_SIZE} parents.
+   * The returned sub-resources are assigned back to their parents by
+   * matching their key property values.
+   *
+   * @param subResource          the sub-resource query
+   * @param request              the sub-resource request
+   * @param providerResourceSet  the set to add all of the sub-resources to
+   *
+   * @return false if the sub-resources could not be batched and must be
+   *         queried individually for each parent; true otherwise
+   */
+  private boolean batchQueryForSubResources(QueryImpl subResource, Request request,
+                                            Set<Resource> providerResourceSet)
+      throws UnsupportedPropertyException,
+      SystemException {
+
+    Resource.Type resourceType = subResource.getResourceDefinition().getType();
+
+    List<Resource>                   parents       = new ArrayList<Resource>();
+    List<Map<Resource.Type, String>> parentKeyMaps = new ArrayList<Map<Resource.Type, String>>();
+
+    for (QueryResult queryResult : populatedQueryResults.values()) {
+      for (Resource resource : queryResult.getQueryResponse().getResources()) {
+        parents.add(resource);
+        parentKeyMaps.add(getKeyValueMap(resource, queryResult.getKeyValueMap()));
+      }
+    }
+
+    // nothing to gain from batching a single parent
+    if (parents.size() < 2) {
+      return false;
+    }
+
+    Map<Resource, Set<Resource>> parentResourceSets = new HashMap<Resource, Set<Resource>>();
+    Set<Resource>                batchResources     = new HashSet<Resource>();
+
+    for (int start = 0; start < parents.size(); start += SUB_RESOURCE_BATCH_SIZE) {
+      int end = Math.min(start + SUB_RESOURCE_BATCH_SIZE, parents.size());
+
+      Map<Map<String, String>, List<Resource>> parentsByKey   = new HashMap<Map<String, String>, List<Resource>>();
+      Set<Set<String>>                         keyPropertyIds = new HashSet<Set<String>>();
+      List<Predicate>                          keyPredicates  = new ArrayList<Predicate>();
+
+      for (int i = start; i < end; ++i) {
+        Map<String, String> keyProperties = subResource.getKeyPropertyValues(parentKeyMaps.get(i));
+        if (keyProperties.isEmpty()) {
+          // the sub-resources of this parent can't be told apart from the others
+          return false;
+        }
+        List<Resource> keyParents = parentsByKey.get(keyProperties);
+        if (keyParents == null) {
+          keyParents = new ArrayList<Resource>();
+          parentsByKey.put(keyProperties, keyParents);
+          keyPropertyIds.add(keyProperties.keySet());
+          keyPredicates.add(subResource.createInternalPredicate(parentKeyMaps.get(i)));
         }
+        keyParents.add(parents.get(i));
       }
-      clusterController.populateResources(resourceType, providerResourceSet, request, subResourcePredicate);
-      subResource.queryForSubResources();
+
+      Predicate keyPredicate   = OrPredicate.instance(keyPredicates.toArray(new Predicate[keyPredicates.size()]));
+      Predicate queryPredicate = subResource.processedPredicate == null ?
+          keyPredicate : new AndPredicate(subResource.processedPredicate, keyPredicate);
+
+      Set<Resource> queryResources;
+      try {
+        queryResources = subResource.doQuery(resourceType, request, queryPredicate, false).getResources();
+      } catch (NoSuchResourceException e) {
+        LOG.debug("Falling back to individual sub-resource queries for " + resourceType, e);
+        return false;
+      } catch (NoSuchParentResourceException e) {
+        LOG.debug("Falling back to individual sub-resource queries for " + resourceType, e);
+        return false;
+      }
+
+      // split the results back out to their parents by key
+      for (Resource queryResource : queryResources) {
+        for (Set<String> propertyIds : keyPropertyIds) {
+          List<Resource> keyParents = parentsByKey.get(getKeyPropertyValues(queryResource, propertyIds));
+          if (keyParents != null) {
+            for (Resource parent : keyParents) {
+              Set<Resource> resourceSet = parentResourceSets.get(parent);
+              if (resourceSet == null) {
+                resourceSet = new LinkedHashSet<Resource>();
+                parentResourceSets.put(parent, resourceSet);
+              }
+              resourceSet.add(queryResource);
+            }
+            batchResources.add(queryResource);
+          }
+        }
+      }
+    }
+
+    for (int i = 0; i < parents.size(); ++i) {
+      Resource                   resource = parents.get(i);
+      Map<Resource.Type, String> map      = parentKeyMaps.get(i);
+
+      Predicate     queryPredicate = subResource.createPredicate(map, subResource.processedPredicate);
+      Set<Resource> resourceSet    = parentResourceSets.get(resource);
+
+      if (resourceSet == null) {
+        resourceSet = new LinkedHashSet<Resource>();
+      }
+      subResource.queryResults.put(resource,
+          new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
+      subResource.populatedQueryResults.put(resource,
+          new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
     }
+    providerResourceSet.addAll(batchResources);
+    return true;
+  }
+
+  /**
+   * Determine whether the resource provider for the given type is able to
+   * answer a single query for the sub-resources of many parents.
+   *
+   * @param type  the resource type
+   *
+   * @return true if the sub-resources of the given type may be queried in batches
+   */
+  private boolean isBatchQuerySupported(Resource.Type type) {
+    return clusterController.ensureResourceProvider(type) instanceof BatchResourceProvider;
   }
 
   /**
@@ -867,6 +1026,38 @@ public class QueryImpl implements Query, ResourceInstance {
     }
   }
 
+  // Get the values of the key properties of this query's resource type
+  // for the given map of resource ids, keyed by property id.
+  private Map<String, String> getKeyPropertyValues(Map<Resource.Type, String> mapResourceIds) {
+    Resource.Type resourceType = getResourceDefinition().getType();
+    Schema schema = clusterController.getSchema(resourceType);
+
+    Map<String, String> keyPropertyValues = new HashMap<String, String>();
+    for (Map.Entry<Resource.Type, String> entry : mapResourceIds.entrySet()) {
+      if (entry.getValue() != null) {
+        String keyPropertyId = schema.getKeyPropertyId(entry.getKey());
+        if (keyPropertyId != null) {
+          keyPropertyValues.put(keyPropertyId, entry.getValue());
+        }
+      }
+    }
+    return keyPropertyValues;
+  }
+
+  // Get the values of the given key properties from the given resource, keyed by
+  // property id.  Returns null if any of the key properties are not set.
+  private static Map<String, String> getKeyPropertyValues(Resource resource, Set<String> keyPropertyIds) {
+    Map<String, String> keyPropertyValues = new HashMap<String, String>();
+    for (String propertyId : keyPropertyIds) {
+      Object value = resource.getPropertyValue(propertyId);
+      if (value == null) {
+        return null;
+      }
+      keyPropertyValues.put(propertyId, value.toString());
+    }
+    return keyPropertyValues;
+  }
+
   private Predicate createPredicate() {
     return createPredicate(getKeyValueMap(), userPredicate);
   }
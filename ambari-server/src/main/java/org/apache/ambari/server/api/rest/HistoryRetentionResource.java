@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.api.rest;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.ambari.server.state.HistoryRetention;
+import org.apache.ambari.server.state.HistoryRetentionStatus;
+
+import com.google.inject.Inject;
+
+/**
+ * Triggers and reports the purge of completed requests and alert history
+ * which are outside of the configured retention.
+ */
+@Path("/retention")
+public class HistoryRetentionResource {
+
+  private static HistoryRetention retention;
+
+  @Inject
+  public static void init(HistoryRetention instance) {
+    retention = instance;
+  }
+
+  /**
+   * Gets the progress of the running purge and the totals since the server
+   * started.
+   * @response.representation.200.doc
+   *
+   * @response.representation.200.mediaType application/json
+   */
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public HistoryRetentionStatus getStatus() {
+    return retention.getStatus();
+  }
+
+  /**
+   * Starts a purge in the background.
+   * @response.representation.202.doc the purge was started
+   * @response.representation.409.doc a purge is already running
+   *
+   * @response.representation.202.mediaType application/json
+   */
+  @POST
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response purge() {
+    Response.Status status = retention.submitPurge() ? Response.Status.ACCEPTED
+        : Response.Status.CONFLICT;
+
+    return Response.status(status).entity(retention.getStatus()).build();
+  }
+}
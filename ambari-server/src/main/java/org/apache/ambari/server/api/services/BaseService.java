@@ -27,13 +27,18 @@ import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
 import org.apache.ambari.server.api.services.serializers.CsvSerializer;
 import org.apache.ambari.server.api.services.serializers.JsonSerializer;
 import org.apache.ambari.server.api.services.serializers.ResultSerializer;
+import org.apache.ambari.server.api.services.serializers.StreamingResultSerializer;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.eclipse.jetty.util.ajax.JSON;
 
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -111,7 +116,7 @@ public abstract class BaseService {
     ResultSerializer serializer = mediaType == null ? getResultSerializer() : getResultSerializer(mediaType);
 
     Response.ResponseBuilder builder = Response.status(result.getStatus().getStatusCode()).entity(
-        serializer.serialize(result));
+        getResponseEntity(serializer, result));
 
     if (mediaType != null) {
       builder.type(mediaType);
@@ -120,6 +125,31 @@ public abstract class BaseService {
     return builder.build();
   }
 
+  /**
+   * Get the response entity for the given result.  If the serializer supports
+   * streaming, the entity writes the result straight to the response output
+   * stream so that large results are not rendered into memory before being
+   * sent to the client.
+   *
+   * @param serializer  the result serializer
+   * @param result      the result to serialize
+   *
+   * @return the response entity
+   */
+  protected Object getResponseEntity(ResultSerializer serializer, final Result result) {
+    if (serializer instanceof StreamingResultSerializer) {
+      final StreamingResultSerializer streamingSerializer = (StreamingResultSerializer) serializer;
+
+      return new StreamingOutput() {
+        @Override
+        public void write(OutputStream out) throws IOException, WebApplicationException {
+          streamingSerializer.serialize(result, out);
+        }
+      };
+    }
+    return serializer.serialize(result);
+  }
+
   /**
    * Obtain the factory from which to create Request instances.
    *
@@ -25,7 +25,12 @@ import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -36,7 +41,7 @@ import java.util.Set;
 /**
  * CSV serializer used to generate a CSV-formatted document from a result.
  */
-public class CsvSerializer implements ResultSerializer {
+public class CsvSerializer implements StreamingResultSerializer {
   /**
    * Property name for the CsvSerializer-specific column map where the value of this property
    * contains a map of resource property names to header descriptive names.
@@ -79,34 +84,62 @@ public class CsvSerializer implements ResultSerializer {
     } else {
 
       try {
-        // A StringBuffer to store the CSV-formatted document while building it.  It may be
-        // necessary to use file-based storage if the data set is expected to be really large.
-        StringBuffer buffer = new StringBuffer();
+        // A StringBuilder to store the CSV-formatted document while building it.  Use
+        // serialize(Result, OutputStream) to avoid holding large data sets in memory.
+        StringBuilder buffer = new StringBuilder();
+        serialize(result.getResultTree(), buffer);
+        return buffer.toString();
+      } catch (IOException e) {
+        //todo: exception handling.  Create ResultStatus 500 and call serializeError
+        throw new RuntimeException("Unable to serialize to csv: " + e, e);
+      }
+    }
+  }
 
-        TreeNode<Resource> root = result.getResultTree();
+  /**
+   * Serialize the result into a CSV-formatted text document written to the given stream.  Each
+   * record is written to the stream as the collection is walked.
+   *
+   * @param result internal result
+   * @param out    the stream to write the UTF-8 encoded document to
+   * @throws IOException if an error occurs writing the document
+   * @see #serialize(Result)
+   */
+  @Override
+  public void serialize(Result result, OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")));
 
-        if (root != null) {
-          CSVPrinter csvPrinter = new CSVPrinter(buffer, CSVFormat.DEFAULT);
+    if (result.getStatus().isErrorState()) {
+      writer.write(serializeError(result.getStatus()).toString());
+    } else {
+      serialize(result.getResultTree(), writer);
+    }
+    writer.flush();
+  }
 
-          // TODO: recursively handle tree structure, for now only handle single level of detail
-          if ("true".equalsIgnoreCase(root.getStringProperty("isCollection"))) {
-            List<String> fieldNameOrder = processHeader(csvPrinter, root);
+  /**
+   * Write the records of the given result tree to the given appendable.
+   *
+   * @param root        the root of the result tree; may be null
+   * @param appendable  the destination of the CSV-formatted document
+   * @throws IOException if an error occurs creating a CSV record
+   */
+  private void serialize(TreeNode<Resource> root, Appendable appendable) throws IOException {
+    if (root != null) {
+      CSVPrinter csvPrinter = new CSVPrinter(appendable, CSVFormat.DEFAULT);
 
-            Collection<TreeNode<Resource>> children = root.getChildren();
-            if (children != null) {
-              // Iterate over the child nodes of the collection an add each as a new record in the
-              // CSV document.
-              for (TreeNode<Resource> child : children) {
-                processRecord(csvPrinter, child, fieldNameOrder);
-              }
-            }
+      // TODO: recursively handle tree structure, for now only handle single level of detail
+      if ("true".equalsIgnoreCase(root.getStringProperty("isCollection"))) {
+        List<String> fieldNameOrder = processHeader(csvPrinter, root);
+
+        Collection<TreeNode<Resource>> children = root.getChildren();
+        if (children != null) {
+          // Iterate over the child nodes of the collection an add each as a new record in the
+          // CSV document.
+          for (TreeNode<Resource> child : children) {
+            processRecord(csvPrinter, child, fieldNameOrder);
           }
         }
-
-        return buffer.toString();
-      } catch (IOException e) {
-        //todo: exception handling.  Create ResultStatus 500 and call serializeError
-        throw new RuntimeException("Unable to serialize to csv: " + e, e);
       }
     }
   }
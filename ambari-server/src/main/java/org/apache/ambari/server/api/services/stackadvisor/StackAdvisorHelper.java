@@ -20,6 +20,7 @@ package org.apache.ambari.server.api.services.stackadvisor;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest.StackAdvisorRequestType;
@@ -44,7 +45,7 @@ public class StackAdvisorHelper {
   private final AmbariMetaInfo metaInfo;
 
   /* Monotonically increasing requestid */
-  private int requestId = 0;
+  private final AtomicInteger requestId = new AtomicInteger();
   private StackAdvisorRunner saRunner;
 
   @Inject
@@ -64,10 +65,8 @@ public class StackAdvisorHelper {
    * @return {@link ValidationResponse} instance
    * @throws StackAdvisorException in case of stack advisor script errors
    */
-  public synchronized ValidationResponse validate(StackAdvisorRequest request)
+  public ValidationResponse validate(StackAdvisorRequest request)
       throws StackAdvisorException {
-    requestId += 1;
-
     StackAdvisorCommand<ValidationResponse> command = createValidationCommand(request
         .getRequestType());
 
@@ -76,6 +75,8 @@ public class StackAdvisorHelper {
 
   StackAdvisorCommand<ValidationResponse> createValidationCommand(
       StackAdvisorRequestType requestType) throws StackAdvisorException {
+    // each command runs in the directory of its own request id
+    int requestId = this.requestId.incrementAndGet();
     StackAdvisorCommand<ValidationResponse> command;
     if (requestType == StackAdvisorRequestType.HOST_GROUPS) {
       command = new ComponentLayoutValidationCommand(recommendationsDir, stackAdvisorScript,
@@ -99,10 +100,8 @@ public class StackAdvisorHelper {
    * @return {@link RecommendationResponse} instance
    * @throws StackAdvisorException in case of stack advisor script errors
    */
-  public synchronized RecommendationResponse recommend(StackAdvisorRequest request)
+  public RecommendationResponse recommend(StackAdvisorRequest request)
       throws StackAdvisorException {
-    requestId += 1;
-
     StackAdvisorCommand<RecommendationResponse> command = createRecommendationCommand(request
         .getRequestType());
 
@@ -111,6 +110,8 @@ public class StackAdvisorHelper {
 
   StackAdvisorCommand<RecommendationResponse> createRecommendationCommand(
       StackAdvisorRequestType requestType) throws StackAdvisorException {
+    // each command runs in the directory of its own request id
+    int requestId = this.requestId.incrementAndGet();
     StackAdvisorCommand<RecommendationResponse> command;
     if (requestType == StackAdvisorRequestType.HOST_GROUPS) {
       command = new ComponentLayoutRecommendationCommand(recommendationsDir, stackAdvisorScript,
@@ -22,12 +22,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.api.services.stackadvisor.commands.StackAdvisorCommandType;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Singleton;
 
 @Singleton
@@ -35,6 +38,34 @@ public class StackAdvisorRunner {
 
   private final static Logger LOG = LoggerFactory.getLogger(StackAdvisorRunner.class);
 
+  /**
+   * Results of earlier script runs keyed by the command type and input of the
+   * script.  The script gives the same result for the same input, so a
+   * repeated request doesn't need to start it again.
+   */
+  private final Cache<String, String> resultCache = CacheBuilder.newBuilder()
+      .maximumSize(100).expireAfterWrite(10, TimeUnit.MINUTES).build();
+
+  /**
+   * Gets the result of an earlier script run.
+   *
+   * @param key the key of the script's command type and input
+   * @return the result or {@code null} if it isn't cached
+   */
+  public String getCachedResult(String key) {
+    return resultCache.getIfPresent(key);
+  }
+
+  /**
+   * Caches the result of a script run.
+   *
+   * @param key the key of the script's command type and input
+   * @param result the result of the script
+   */
+  public void cacheResult(String key, String result) {
+    resultCache.put(key, result);
+  }
+
   /**
    * Runs stack_advisor.py script in the specified {@code actionDirectory}.
    *
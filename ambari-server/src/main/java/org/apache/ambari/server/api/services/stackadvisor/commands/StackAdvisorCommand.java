@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -39,11 +40,14 @@ import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.api.services.BaseService;
 import org.apache.ambari.server.api.services.LocalUriInfo;
 import org.apache.ambari.server.api.services.Request;
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.serializers.ResultSerializer;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorException;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorResponse;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRunner;
 import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
@@ -88,6 +92,14 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
   private static final String CONFIGURATIONS_PROPERTY = "configurations";
   private static final String CHANGED_CONFIGURATIONS_PROPERTY = "changed-configurations";
 
+  /**
+   * Host properties which change with the heartbeats but aren't used by the
+   * stack advisor, they are left out of the key of cached results.
+   */
+  private static final Set<String> VOLATILE_HOST_PROPERTIES = new HashSet<String>(Arrays.asList(
+      "last_heartbeat_time", "last_registration_time", "last_agent_env", "host_status",
+      "host_health_report", "host_state", "recovery_report", "recovery_summary"));
+
   private File recommendationsDir;
   private String stackAdvisorScript;
 
@@ -237,14 +249,22 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
     StackAdvisorData adjusted = adjust(new StackAdvisorData(hostsJSON, servicesJSON), request);
 
     try {
-      createRequestDirectory();
+      String cacheKey = getResultCacheKey(request, adjusted);
+      String result = saRunner.getCachedResult(cacheKey);
+
+      if (result == null) {
+        createRequestDirectory();
 
-      FileUtils.writeStringToFile(new File(requestDirectory, "hosts.json"), adjusted.hostsJSON);
-      FileUtils.writeStringToFile(new File(requestDirectory, "services.json"),
-          adjusted.servicesJSON);
+        FileUtils.writeStringToFile(new File(requestDirectory, "hosts.json"), adjusted.hostsJSON);
+        FileUtils.writeStringToFile(new File(requestDirectory, "services.json"),
+            adjusted.servicesJSON);
 
-      saRunner.runScript(stackAdvisorScript, getCommandType(), requestDirectory);
-      String result = FileUtils.readFileToString(new File(requestDirectory, getResultFileName()));
+        saRunner.runScript(stackAdvisorScript, getCommandType(), requestDirectory);
+        result = FileUtils.readFileToString(new File(requestDirectory, getResultFileName()));
+        saRunner.cacheResult(cacheKey, result);
+      } else {
+        LOG.debug("Using the cached stack advisor result for request " + requestId);
+      }
 
       T response = this.mapper.readValue(result, this.type);
       return updateResponse(request, setRequestId(response));
@@ -259,6 +279,83 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
 
   protected abstract T updateResponse(StackAdvisorRequest request, T response);
 
+  /**
+   * Get the key of the script result for the given input.  Host properties
+   * which change with the heartbeats are ignored so that repeated requests
+   * for the same hosts, services and configurations share a result.  The
+   * stack and the content of the stack advisor files loaded for it are part
+   * of the key, so a changed stack advisor is run again.
+   *
+   * @param request the stack advisor request
+   * @param data the hosts and services information passed to the script
+   * @return the key
+   */
+  String getResultCacheKey(StackAdvisorRequest request, StackAdvisorData data) {
+    String hostsJSON = data.hostsJSON;
+    try {
+      JsonNode root = mapper.readTree(hostsJSON);
+      JsonNode items = root.get("items");
+      if (items != null) {
+        for (JsonNode item : items) {
+          JsonNode hostInfo = item.get("Hosts");
+          if (hostInfo instanceof ObjectNode) {
+            ((ObjectNode) hostInfo).remove(VOLATILE_HOST_PROPERTIES);
+          }
+        }
+      }
+      hostsJSON = mapper.writeValueAsString(root);
+    } catch (IOException e) {
+      LOG.debug("Unable to parse the hosts information, using it as is for the result key", e);
+    }
+
+    String stackName = request.getStackName();
+    String stackVersion = request.getStackVersion();
+    return getCommandType() + ":" + stackName + ":" + stackVersion + ":" + DigestUtils.sha1Hex(
+        getScriptDigest(stackName, stackVersion) + "\n" + hostsJSON + "\n" + data.servicesJSON);
+  }
+
+  /**
+   * Get the digest of the content of the stack advisor files which the script
+   * loads for the given stack: the script itself, the base stack advisor and
+   * the stack advisor of the stack version and of each of its parents.
+   *
+   * @param stackName the stack name
+   * @param stackVersion the stack version
+   * @return the digest of the files, using the path of a file that can't be
+   *         read instead of its content
+   */
+  private String getScriptDigest(String stackName, String stackVersion) {
+    File script = new File(stackAdvisorScript).getAbsoluteFile();
+    File stacksDir = new File(script.getParentFile().getParentFile(), "stacks");
+
+    List<File> files = new ArrayList<File>();
+    files.add(script);
+    files.add(new File(stacksDir, "stack_advisor.py"));
+
+    List<String> versions = new ArrayList<String>();
+    versions.add(stackVersion);
+    versions.addAll(metaInfo.getStackParentVersions(stackName, stackVersion));
+    for (String version : versions) {
+      files.add(new File(stacksDir, stackName + File.separator + version
+          + File.separator + "services" + File.separator + "stack_advisor.py"));
+    }
+
+    StringBuilder digest = new StringBuilder();
+    for (File file : files) {
+      if (!file.isFile()) {
+        continue;
+      }
+      digest.append(file.getPath()).append('=');
+      try {
+        digest.append(DigestUtils.sha1Hex(FileUtils.readFileToByteArray(file)));
+      } catch (IOException e) {
+        LOG.debug("Unable to read " + file + ", using its path for the result key", e);
+      }
+      digest.append('\n');
+    }
+    return digest.toString();
+  }
+
   private T setRequestId(T response) {
     response.setId(requestId);
     return response;
@@ -359,6 +456,15 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
     return servicesJSON;
   }
 
+  /**
+   * The hosts and services information is consumed in-process as a string,
+   * so always serialize the result into memory rather than streaming it.
+   */
+  @Override
+  protected Object getResponseEntity(ResultSerializer serializer, Result result) {
+    return serializer.serialize(result);
+  }
+
   private ResourceInstance createHostResource() {
     Map<Resource.Type, String> mapIds = new HashMap<Resource.Type, String>();
     return createResource(Resource.Type.Host, mapIds);
@@ -356,6 +356,10 @@ public class Configuration {
   private static final int CLIENT_THREADPOOL_SIZE_DEFAULT = 25;
   private static final String AGENT_THREADPOOL_SIZE_KEY = "agent.threadpool.size.max";
   private static final int AGENT_THREADPOOL_SIZE_DEFAULT = 25;
+  private static final String AGENT_COMMANDS_POLL_TIMEOUT_KEY = "agent.commands.poll.timeout";
+  private static final long AGENT_COMMANDS_POLL_TIMEOUT_DEFAULT = 30;
+  private static final String TOPOLOGY_TASK_THREADPOOL_SIZE_KEY = "topology.task.threadpool.size.max";
+  public static final int TOPOLOGY_TASK_THREADPOOL_SIZE_DEFAULT = 10;
 
   private static final String VIEW_EXTRACTION_THREADPOOL_MAX_SIZE_KEY = "view.extraction.threadpool.size.max";
   private static final int VIEW_EXTRACTION_THREADPOOL_MAX_SIZE_DEFAULT = 20;
@@ -383,6 +387,84 @@ public class Configuration {
   public static final String ALERTS_EXECUTION_SCHEDULER_THREADS_KEY = "alerts.execution.scheduler.maxThreads";
   public static final String ALERTS_EXECUTION_SCHEDULER_THREADS_DEFAULT = "2";
 
+  /**
+   * Caching of current alerts. When enabled, alerts which did not change
+   * state only update the cache and are written every flush interval.
+   */
+  public static final String ALERTS_CACHE_ENABLED_KEY = "alerts.cache.enabled";
+  public static final String ALERTS_CACHE_ENABLED_DEFAULT = "false";
+  public static final String ALERTS_CACHE_FLUSH_INTERVAL_KEY = "alerts.cache.flush.interval";
+  public static final String ALERTS_CACHE_FLUSH_INTERVAL_DEFAULT = "10";
+  public static final String ALERTS_CACHE_SIZE_KEY = "alerts.cache.size";
+  public static final String ALERTS_CACHE_SIZE_DEFAULT = "50000";
+
+  /**
+   * Compression of task output and execution commands stored in the
+   * database. Servers which predate it can't read compressed values, so it
+   * should only be enabled once a downgrade is ruled out.
+   */
+  public static final String SERVER_DB_LOB_COMPRESSION_ENABLED_KEY = "server.db.lob.compression.enabled";
+  public static final String SERVER_DB_LOB_COMPRESSION_ENABLED_DEFAULT = "false";
+
+  /**
+   * Write-behind of host and host component state updated by agents.
+   */
+  public static final String SERVER_STATE_WRITE_BEHIND_ENABLED_KEY = "server.state.writebehind.enabled";
+  public static final String SERVER_STATE_WRITE_BEHIND_ENABLED_DEFAULT = "false";
+  public static final String SERVER_STATE_WRITE_BEHIND_INTERVAL_KEY = "server.state.writebehind.interval";
+  public static final String SERVER_STATE_WRITE_BEHIND_INTERVAL_DEFAULT = "5000";
+  public static final String SERVER_STATE_WRITE_BEHIND_MAX_PENDING_KEY = "server.state.writebehind.max.pending";
+  public static final String SERVER_STATE_WRITE_BEHIND_MAX_PENDING_DEFAULT = "5000";
+
+  /**
+   * Retention of completed requests (with their stages and tasks) and of
+   * alert history. An age or count of 0 keeps everything.
+   */
+  public static final String HISTORY_RETENTION_INTERVAL_KEY = "history.retention.interval";
+  public static final String HISTORY_RETENTION_INTERVAL_DEFAULT = "60";
+  public static final String HISTORY_RETENTION_BATCH_SIZE_KEY = "history.retention.batch.size";
+  public static final String HISTORY_RETENTION_BATCH_SIZE_DEFAULT = "100";
+  public static final String HISTORY_RETENTION_REQUESTS_DAYS_KEY = "history.retention.requests.days";
+  public static final String HISTORY_RETENTION_REQUESTS_DAYS_DEFAULT = "0";
+  public static final String HISTORY_RETENTION_REQUESTS_MAX_KEY = "history.retention.requests.max";
+  public static final String HISTORY_RETENTION_REQUESTS_MAX_DEFAULT = "0";
+  public static final String HISTORY_RETENTION_ALERTS_DAYS_KEY = "history.retention.alerts.days";
+  public static final String HISTORY_RETENTION_ALERTS_DAYS_DEFAULT = "0";
+  public static final String HISTORY_RETENTION_ARCHIVE_DIR_KEY = "history.retention.archive.dir";
+
+  /**
+   * The number of threads handling events published through the
+   * {@link org.apache.ambari.server.events.publishers.AmbariEventPublisher}.
+   * With more than one thread, the events of each host and of each cluster
+   * are still handled in order, but cluster wide events are no longer ordered
+   * with the events of the hosts in the cluster.
+   */
+  public static final String EVENT_PUBLISHER_THREADS_KEY = "server.events.publisher.threads";
+  public static final String EVENT_PUBLISHER_THREADS_DEFAULT = "1";
+
+  /**
+   * The interval at which an idle action scheduler checks the database for
+   * commands which were queued without waking it up.
+   */
+  public static final String ACTION_SCHEDULER_RECONCILE_INTERVAL_KEY = "server.action.scheduler.reconcile.interval";
+  public static final String ACTION_SCHEDULER_RECONCILE_INTERVAL_DEFAULT = "30000";
+
+  /**
+   * Caching of the JMX documents fetched from the components. Concurrent
+   * requests for the same document share one fetch.
+   */
+  public static final String JMX_CACHE_TTL_KEY = "jmx.cache.ttl";
+  public static final String JMX_CACHE_TTL_DEFAULT = "5";
+  public static final String JMX_CACHE_SIZE_KEY = "jmx.cache.size";
+  public static final String JMX_CACHE_SIZE_DEFAULT = "1000";
+
+  /**
+   * The maximum number of MBeans fetched one by one with the {@code qry}
+   * parameter of the JMX servlet instead of fetching the whole document.
+   */
+  public static final String JMX_BEAN_QUERY_MAX_KEY = "jmx.bean.query.max";
+  public static final String JMX_BEAN_QUERY_MAX_DEFAULT = "4";
+
 
   /**
    * Rolling upgrade stack and version
@@ -1414,6 +1496,23 @@ public class Configuration {
         AGENT_THREADPOOL_SIZE_KEY, String.valueOf(AGENT_THREADPOOL_SIZE_DEFAULT)));
   }
 
+  /**
+   * @return the time in seconds an agent's request for commands waits for a
+   *         command to be queued, default 30
+   */
+  public long getAgentCommandsPollTimeout() {
+    return Long.parseLong(properties.getProperty(
+        AGENT_COMMANDS_POLL_TIMEOUT_KEY, String.valueOf(AGENT_COMMANDS_POLL_TIMEOUT_DEFAULT)));
+  }
+
+  /**
+   * @return thread pool size for cluster provisioning topology tasks, default 10
+   */
+  public int getTopologyTaskThreadPoolSize() {
+    return Integer.parseInt(properties.getProperty(
+        TOPOLOGY_TASK_THREADPOOL_SIZE_KEY, String.valueOf(TOPOLOGY_TASK_THREADPOOL_SIZE_DEFAULT)));
+  }
+
   /**
    * Get the view extraction thread pool max size.
    *
@@ -1476,6 +1575,172 @@ public class Configuration {
         ALERTS_EXECUTION_SCHEDULER_THREADS_KEY, ALERTS_EXECUTION_SCHEDULER_THREADS_DEFAULT));
   }
 
+  /**
+   * @return {@code true} if current alerts are cached and their latest
+   *         timestamps written periodically, default false
+   */
+  public boolean isAlertCacheEnabled() {
+    return "true".equalsIgnoreCase(properties.getProperty(
+        ALERTS_CACHE_ENABLED_KEY, ALERTS_CACHE_ENABLED_DEFAULT));
+  }
+
+  /**
+   * @return the interval in minutes between writes of cached current alerts,
+   *         default {@value #ALERTS_CACHE_FLUSH_INTERVAL_DEFAULT}
+   */
+  public int getAlertCacheFlushInterval() {
+    return Integer.parseInt(properties.getProperty(
+        ALERTS_CACHE_FLUSH_INTERVAL_KEY, ALERTS_CACHE_FLUSH_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * @return the maximum number of cached current alerts, default
+   *         {@value #ALERTS_CACHE_SIZE_DEFAULT}
+   */
+  public int getAlertCacheSize() {
+    return Integer.parseInt(properties.getProperty(
+        ALERTS_CACHE_SIZE_KEY, ALERTS_CACHE_SIZE_DEFAULT));
+  }
+
+  /**
+   * @return {@code true} if task output and execution commands are
+   *         compressed before they are stored, default false
+   */
+  public boolean isLobCompressionEnabled() {
+    return "true".equalsIgnoreCase(properties.getProperty(
+        SERVER_DB_LOB_COMPRESSION_ENABLED_KEY, SERVER_DB_LOB_COMPRESSION_ENABLED_DEFAULT));
+  }
+
+  /**
+   * @return {@code true} if agent reported host and host component state is
+   *         written to the database in periodic batches, default false
+   */
+  public boolean isStateWriteBehindEnabled() {
+    return "true".equalsIgnoreCase(properties.getProperty(
+        SERVER_STATE_WRITE_BEHIND_ENABLED_KEY, SERVER_STATE_WRITE_BEHIND_ENABLED_DEFAULT));
+  }
+
+  /**
+   * @return the interval in milliseconds between flushes of pending state,
+   *         default {@value #SERVER_STATE_WRITE_BEHIND_INTERVAL_DEFAULT}
+   */
+  public long getStateWriteBehindInterval() {
+    return Long.parseLong(properties.getProperty(
+        SERVER_STATE_WRITE_BEHIND_INTERVAL_KEY, SERVER_STATE_WRITE_BEHIND_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * @return the number of pending state entities which forces a flush,
+   *         default {@value #SERVER_STATE_WRITE_BEHIND_MAX_PENDING_DEFAULT}
+   */
+  public int getStateWriteBehindMaxPending() {
+    return Integer.parseInt(properties.getProperty(
+        SERVER_STATE_WRITE_BEHIND_MAX_PENDING_KEY, SERVER_STATE_WRITE_BEHIND_MAX_PENDING_DEFAULT));
+  }
+
+  /**
+   * @return the interval in minutes between purges of old history, default
+   *         {@value #HISTORY_RETENTION_INTERVAL_DEFAULT}
+   */
+  public long getHistoryRetentionInterval() {
+    return Long.parseLong(properties.getProperty(
+        HISTORY_RETENTION_INTERVAL_KEY, HISTORY_RETENTION_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * @return the number of requests or alert history rows removed in a single
+   *         transaction, default {@value #HISTORY_RETENTION_BATCH_SIZE_DEFAULT}
+   */
+  public int getHistoryRetentionBatchSize() {
+    return Integer.parseInt(properties.getProperty(
+        HISTORY_RETENTION_BATCH_SIZE_KEY, HISTORY_RETENTION_BATCH_SIZE_DEFAULT));
+  }
+
+  /**
+   * @return the number of days completed requests are kept, 0 to keep them
+   *         regardless of their age, default
+   *         {@value #HISTORY_RETENTION_REQUESTS_DAYS_DEFAULT}
+   */
+  public int getRequestRetentionDays() {
+    return Integer.parseInt(properties.getProperty(
+        HISTORY_RETENTION_REQUESTS_DAYS_KEY, HISTORY_RETENTION_REQUESTS_DAYS_DEFAULT));
+  }
+
+  /**
+   * @return the number of most recent requests which are kept, 0 to keep any
+   *         number of them, default
+   *         {@value #HISTORY_RETENTION_REQUESTS_MAX_DEFAULT}
+   */
+  public int getRequestRetentionMaxCount() {
+    return Integer.parseInt(properties.getProperty(
+        HISTORY_RETENTION_REQUESTS_MAX_KEY, HISTORY_RETENTION_REQUESTS_MAX_DEFAULT));
+  }
+
+  /**
+   * @return the number of days alert history is kept, 0 to keep it
+   *         regardless of its age, default
+   *         {@value #HISTORY_RETENTION_ALERTS_DAYS_DEFAULT}
+   */
+  public int getAlertHistoryRetentionDays() {
+    return Integer.parseInt(properties.getProperty(
+        HISTORY_RETENTION_ALERTS_DAYS_KEY, HISTORY_RETENTION_ALERTS_DAYS_DEFAULT));
+  }
+
+  /**
+   * @return the directory purged history is archived to before it is
+   *         removed, or {@code null} to remove it without an archive
+   */
+  public String getHistoryRetentionArchiveDir() {
+    return StringUtils.trimToNull(properties.getProperty(HISTORY_RETENTION_ARCHIVE_DIR_KEY));
+  }
+
+  /**
+   * @return the number of threads handling Ambari events, default
+   *         {@value #EVENT_PUBLISHER_THREADS_DEFAULT}
+   */
+  public int getEventPublisherThreads() {
+    return Integer.parseInt(properties.getProperty(
+        EVENT_PUBLISHER_THREADS_KEY, EVENT_PUBLISHER_THREADS_DEFAULT));
+  }
+
+  /**
+   * @return the interval in milliseconds at which the action scheduler looks
+   *         for new commands while there are none in progress, default
+   *         {@value #ACTION_SCHEDULER_RECONCILE_INTERVAL_DEFAULT}
+   */
+  public long getActionSchedulerReconcileInterval() {
+    return Long.parseLong(properties.getProperty(
+        ACTION_SCHEDULER_RECONCILE_INTERVAL_KEY, ACTION_SCHEDULER_RECONCILE_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * @return the time in seconds a fetched JMX document is reused, 0 to fetch
+   *         it for every request, default {@value #JMX_CACHE_TTL_DEFAULT}
+   */
+  public int getJMXCacheTTL() {
+    return Integer.parseInt(properties.getProperty(
+        JMX_CACHE_TTL_KEY, JMX_CACHE_TTL_DEFAULT));
+  }
+
+  /**
+   * @return the maximum number of cached JMX documents, default
+   *         {@value #JMX_CACHE_SIZE_DEFAULT}
+   */
+  public int getJMXCacheSize() {
+    return Integer.parseInt(properties.getProperty(
+        JMX_CACHE_SIZE_KEY, JMX_CACHE_SIZE_DEFAULT));
+  }
+
+  /**
+   * @return the maximum number of MBeans queried one by one, 0 to always
+   *         fetch the whole JMX document, default
+   *         {@value #JMX_BEAN_QUERY_MAX_DEFAULT}
+   */
+  public int getJMXBeanQueryMax() {
+    return Integer.parseInt(properties.getProperty(
+        JMX_BEAN_QUERY_MAX_KEY, JMX_BEAN_QUERY_MAX_DEFAULT));
+  }
+
   /**
    * Get the node recovery type DEFAULT|AUTO_START|FULL
    * @return
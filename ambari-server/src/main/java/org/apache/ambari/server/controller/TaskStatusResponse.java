@@ -31,6 +31,11 @@ public class TaskStatusResponse extends ShortTaskStatus {
   private Long endTime;
   private short attemptCount;
 
+  /**
+   * The task the output is read from when it is first needed.
+   */
+  private HostRoleCommand hostRoleCommand;
+
   public TaskStatusResponse() {
   }
 
@@ -52,15 +57,21 @@ public class TaskStatusResponse extends ShortTaskStatus {
     super(hostRoleCommand);
     this.requestId = hostRoleCommand.getRequestId();
     this.exitCode = hostRoleCommand.getExitCode();
-    this.stderr = hostRoleCommand.getStderr();
-    this.stdout = hostRoleCommand.getStdout();
+    this.hostRoleCommand = hostRoleCommand;
     this.startTime = hostRoleCommand.getStartTime();
     this.attemptCount = hostRoleCommand.getAttemptCount();
-    this.structuredOut = hostRoleCommand.getStructuredOut();
     this.endTime = hostRoleCommand.getEndTime();
     this.commandDetail = hostRoleCommand.getCommandDetail();
   }
 
+  /**
+   * @return the task the output is read from, or {@code null} if the output
+   *         was given up front
+   */
+  public HostRoleCommand getHostRoleCommand() {
+    return hostRoleCommand;
+  }
+
   public long getRequestId() {
     return requestId;
   }
@@ -78,6 +89,9 @@ public class TaskStatusResponse extends ShortTaskStatus {
   }
 
   public String getStderr() {
+    if (null == stderr && null != hostRoleCommand) {
+      stderr = hostRoleCommand.getStderr();
+    }
     return stderr;
   }
 
@@ -86,6 +100,9 @@ public class TaskStatusResponse extends ShortTaskStatus {
   }
 
   public String getStdout() {
+    if (null == stdout && null != hostRoleCommand) {
+      stdout = hostRoleCommand.getStdout();
+    }
     return stdout;
   }
 
@@ -110,6 +127,9 @@ public class TaskStatusResponse extends ShortTaskStatus {
   }
 
   public String getStructuredOut() {
+    if (null == structuredOut && null != hostRoleCommand) {
+      structuredOut = hostRoleCommand.getStructuredOut();
+    }
     return structuredOut;
   }
 
@@ -253,6 +253,61 @@ public abstract class AbstractResourceProvider extends BaseProvider implements R
     return result;
   }
 
+  /**
+   * Converts the given page request into one which starts at an offset from
+   * the first resource, so that a provider can page its resources in the
+   * database. Pages requested from the end are resolved using the total
+   * number of matching resources, the same way that the cluster controller
+   * pages resources in memory.
+   *
+   * @param pageRequest  the page request; may be {@code null}
+   * @param totalCount   the total number of resources matching the predicate
+   *
+   * @return the equivalent page request starting at an offset, {@code null} if
+   *         the given page request is {@code null} or uses a starting point
+   *         which can't be converted
+   */
+  protected static PageRequest getOffsetPageRequest(PageRequest pageRequest, int totalCount) {
+    if (null == pageRequest) {
+      return null;
+    }
+
+    int pageSize = pageRequest.getPageSize();
+    int offset   = pageRequest.getOffset();
+
+    switch (pageRequest.getStartingPoint()) {
+      case Beginning:
+        return new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, pageSize, 0, null, null);
+      case OffsetStart:
+        return pageRequest;
+      case End:
+      case OffsetEnd:
+        int last = totalCount - 1;
+        if (pageRequest.getStartingPoint() == PageRequest.StartingPoint.OffsetEnd && offset != -1) {
+          last = Math.min(offset, last);
+        }
+        int first = Math.max(0, last - pageSize + 1);
+
+        return new PageRequestImpl(PageRequest.StartingPoint.OffsetStart,
+            Math.max(0, last - first + 1), first, null, null);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Determine whether all of the properties of the given sort request can be
+   * sorted on by a provider.
+   *
+   * @param sortRequest  the sort request; may be {@code null}
+   * @param propertyIds  the property ids which the provider can sort on
+   *
+   * @return true if the sort request is {@code null} or only contains the given properties
+   */
+  protected static boolean isSortSupported(SortRequest sortRequest, Set<String> propertyIds) {
+    return null == sortRequest || propertyIds.containsAll(sortRequest.getPropertyIds());
+  }
+
   /**
    * Invoke a command against the Ambari backend to create resources and map
    * any {@link AmbariException} to the types appropriate for the
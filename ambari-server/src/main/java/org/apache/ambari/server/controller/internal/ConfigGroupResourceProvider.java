@@ -542,6 +542,8 @@ public class ConfigGroupResourceProvider extends
     }
 
     Clusters clusters = getManagementController().getClusters();
+    // config types of the updated groups, before and after the update
+    Set<String> configTypes = new HashSet<String>();
 
     for (ConfigGroupRequest request : requests) {
 
@@ -595,6 +597,8 @@ public class ConfigGroupResourceProvider extends
       configGroup.setHosts(hosts);
 
       // Update Configs
+      configTypes.addAll(configGroup.getConfigurations().keySet());
+      configTypes.addAll(request.getConfigs().keySet());
       configGroup.setConfigurations(request.getConfigs());
 
       // Save
@@ -618,7 +622,7 @@ public class ConfigGroupResourceProvider extends
       }
     }
 
-    getManagementController().getConfigHelper().invalidateStaleConfigsCache();
+    getManagementController().getConfigHelper().invalidateStaleConfigsCache(configTypes);
   }
 
   @SuppressWarnings("unchecked")
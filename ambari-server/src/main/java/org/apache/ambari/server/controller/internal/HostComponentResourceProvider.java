@@ -25,6 +25,7 @@ import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,10 +40,14 @@ import org.apache.ambari.server.controller.ServiceComponentHostResponse;
 import org.apache.ambari.server.controller.predicate.AndPredicate;
 import org.apache.ambari.server.controller.predicate.EqualsPredicate;
 import org.apache.ambari.server.controller.predicate.NotPredicate;
+import org.apache.ambari.server.controller.spi.BatchResourceProvider;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.PropertyProvider;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
@@ -50,7 +55,10 @@ import org.apache.ambari.server.controller.spi.ResourceAlreadyExistsException;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.apache.ambari.server.orm.dao.HostComponentStateDAO;
 import org.apache.ambari.server.orm.dao.HostVersionDAO;
+import org.apache.ambari.server.orm.entities.HostComponentStateEntity;
+import org.apache.ambari.server.orm.entities.HostComponentStateEntity_;
 import org.apache.ambari.server.orm.entities.HostVersionEntity;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
@@ -72,20 +80,21 @@ import com.google.inject.assistedinject.AssistedInject;
 /**
  * Resource provider for host component resources.
  */
-public class HostComponentResourceProvider extends AbstractControllerResourceProvider {
+public class HostComponentResourceProvider extends AbstractControllerResourceProvider
+    implements BatchResourceProvider, ExtendedResourceProvider {
 
   // ----- Property ID constants ---------------------------------------------
 
   // Host Components
-  protected static final String HOST_COMPONENT_CLUSTER_NAME_PROPERTY_ID
+  public static final String HOST_COMPONENT_CLUSTER_NAME_PROPERTY_ID
       = PropertyHelper.getPropertyId("HostRoles", "cluster_name");
-  protected static final String HOST_COMPONENT_SERVICE_NAME_PROPERTY_ID
+  public static final String HOST_COMPONENT_SERVICE_NAME_PROPERTY_ID
       = PropertyHelper.getPropertyId("HostRoles", "service_name");
-  protected static final String HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID
+  public static final String HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID
       = PropertyHelper.getPropertyId("HostRoles", "component_name");
-  protected static final String HOST_COMPONENT_HOST_NAME_PROPERTY_ID
+  public static final String HOST_COMPONENT_HOST_NAME_PROPERTY_ID
       = PropertyHelper.getPropertyId("HostRoles", "host_name");
-  protected static final String HOST_COMPONENT_STATE_PROPERTY_ID
+  public static final String HOST_COMPONENT_STATE_PROPERTY_ID
       = PropertyHelper.getPropertyId("HostRoles", "state");
   protected static final String HOST_COMPONENT_DESIRED_STATE_PROPERTY_ID
       = PropertyHelper.getPropertyId("HostRoles", "desired_state");
@@ -103,7 +112,7 @@ public class HostComponentResourceProvider extends AbstractControllerResourcePro
       = "HostRoles/maintenance_state";
   protected static final String HOST_COMPONENT_HDP_VERSION_PROPERTY_ID
       = PropertyHelper.getPropertyId("HostRoles", "hdp_version");
-  protected static final String HOST_COMPONENT_UPGRADE_STATE_PROPERTY_ID = "HostRoles/upgrade_state";
+  public static final String HOST_COMPONENT_UPGRADE_STATE_PROPERTY_ID = "HostRoles/upgrade_state";
 
   //Component name mappings
   private final Map<String, PropertyProvider> HOST_COMPONENT_PROPERTIES_PROVIDER = new HashMap<String, PropertyProvider>();
@@ -129,6 +138,9 @@ public class HostComponentResourceProvider extends AbstractControllerResourcePro
   @Inject
   private HostVersionDAO hostVersionDAO;
 
+  @Inject
+  private HostComponentStateDAO hostComponentStateDAO;
+
   // ----- Constructors ----------------------------------------------------
 
   /**
@@ -199,6 +211,94 @@ public class HostComponentResourceProvider extends AbstractControllerResourcePro
     return findResources(request, predicate, requests);
   }
 
+  // ----- ExtendedResourceProvider ----------------------------------------
+
+  @Override
+  public QueryResponse queryForResources(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    QueryResponse queryResponse = queryForPage(request, predicate);
+    if (null == queryResponse) {
+      Set<Resource> resources = getResources(request, predicate);
+      queryResponse = new QueryResponseImpl(resources, false, false, resources.size());
+    }
+    return queryResponse;
+  }
+
+  /**
+   * Gets a page of host components, letting the database filter, sort and page
+   * the host components so that only the host components on the page are
+   * converted to resources. This is only possible if every part of the
+   * predicate can be converted into the query and the host components all
+   * belong to the same cluster.
+   *
+   * @param request    the request
+   * @param predicate  the predicate
+   *
+   * @return the sorted host components on the page, or {@code null} if the host
+   *         components must be filtered, sorted and paged in memory
+   */
+  private QueryResponse queryForPage(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    if (null == request.getPageRequest()
+        || !isSortSupported(request.getSortRequest(), HostComponentStateEntity_.getPredicateMapping().keySet())) {
+      return null;
+    }
+
+    Set<String> clusterNames = new HashSet<String>();
+    for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
+      clusterNames.add((String) propertyMap.get(HOST_COMPONENT_CLUSTER_NAME_PROPERTY_ID));
+    }
+
+    if (clusterNames.size() != 1 || clusterNames.contains(null)
+        || !hostComponentStateDAO.isPredicateSupported(predicate)) {
+      return null;
+    }
+
+    // let the in-memory path report missing clusters, hosts and services
+    int totalCount = hostComponentStateDAO.getCount(predicate);
+    PageRequest pageRequest = getOffsetPageRequest(request.getPageRequest(), totalCount);
+    if (0 == totalCount || null == pageRequest) {
+      return null;
+    }
+
+    String clusterName = clusterNames.iterator().next();
+    List<HostComponentStateEntity> entities = hostComponentStateDAO.findAll(predicate,
+        request.getSortRequest(), pageRequest);
+
+    Set<ServiceComponentHostRequest> requests = new HashSet<ServiceComponentHostRequest>();
+    for (HostComponentStateEntity entity : entities) {
+      requests.add(new ServiceComponentHostRequest(clusterName, entity.getServiceName(),
+          entity.getComponentName(), entity.getHostName(), null));
+    }
+
+    // the keys are needed to put the resources back into the sorted order
+    Set<String> requestedIds = getRequestPropertyIds(request, predicate);
+    requestedIds.add(HOST_COMPONENT_SERVICE_NAME_PROPERTY_ID);
+    requestedIds.add(HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID);
+
+    Map<List<Object>, Resource> resourceMap = new HashMap<List<Object>, Resource>();
+    if (!requests.isEmpty()) {
+      for (Resource resource : findResources(request, predicate, requests, requestedIds)) {
+        resourceMap.put(Arrays.asList(
+            resource.getPropertyValue(HOST_COMPONENT_SERVICE_NAME_PROPERTY_ID),
+            resource.getPropertyValue(HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID),
+            resource.getPropertyValue(HOST_COMPONENT_HOST_NAME_PROPERTY_ID)), resource);
+      }
+    }
+
+    Set<Resource> resources = new LinkedHashSet<Resource>();
+    for (HostComponentStateEntity entity : entities) {
+      Resource resource = resourceMap.get(Arrays.<Object>asList(entity.getServiceName(),
+          entity.getComponentName(), entity.getHostName()));
+      if (null != resource) {
+        resources.add(resource);
+      }
+    }
+    return new QueryResponseImpl(resources, true, true, totalCount);
+  }
+
   private Set<Resource> getResourcesForUpdate(Request request, Predicate predicate)
     throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
 
@@ -215,8 +315,14 @@ public class HostComponentResourceProvider extends AbstractControllerResourcePro
   private Set<Resource> findResources(Request request, final Predicate predicate,
                                       final Set<ServiceComponentHostRequest> requests)
           throws SystemException, NoSuchResourceException, NoSuchParentResourceException {
+    return findResources(request, predicate, requests, getRequestPropertyIds(request, predicate));
+  }
+
+  private Set<Resource> findResources(Request request, final Predicate predicate,
+                                      final Set<ServiceComponentHostRequest> requests,
+                                      Set<String> requestedIds)
+          throws SystemException, NoSuchResourceException, NoSuchParentResourceException {
     Set<Resource> resources = new HashSet<Resource>();
-    Set<String> requestedIds = getRequestPropertyIds(request, predicate);
     // We always need host_name for sch
     requestedIds.add(HOST_COMPONENT_HOST_NAME_PROPERTY_ID);
 
@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,9 +40,13 @@ import org.apache.ambari.server.controller.HostRequest;
 import org.apache.ambari.server.controller.HostResponse;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.controller.RequestStatusResponse;
+import org.apache.ambari.server.controller.spi.BatchResourceProvider;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
@@ -49,6 +54,8 @@ import org.apache.ambari.server.controller.spi.ResourceAlreadyExistsException;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.apache.ambari.server.orm.dao.HostDAO;
+import org.apache.ambari.server.orm.entities.HostEntity_;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.Config;
@@ -72,7 +79,8 @@ import com.google.inject.assistedinject.AssistedInject;
 /**
  * Resource provider for host resources.
  */
-public class HostResourceProvider extends AbstractControllerResourceProvider {
+public class HostResourceProvider extends AbstractControllerResourceProvider
+    implements BatchResourceProvider, ExtendedResourceProvider {
 
   // ----- Property ID constants ---------------------------------------------
 
@@ -147,6 +155,9 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
   @Inject
   private OsFamily osFamily;
 
+  @Inject
+  private HostDAO hostDAO;
+
   @Inject
   private static TopologyManager topologyManager;
 
@@ -218,73 +229,25 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
     Set<Resource> resources    = new HashSet<Resource>();
 
     for (HostResponse response : responses) {
-      Resource resource = new ResourceImpl(Resource.Type.Host);
-
-      // TODO : properly handle more than one cluster
-      if (response.getClusterName() != null
-          && !response.getClusterName().isEmpty()) {
-        setResourceProperty(resource, HOST_CLUSTER_NAME_PROPERTY_ID,
-            response.getClusterName(), requestedIds);
-      }
-      setResourceProperty(resource, HOST_NAME_PROPERTY_ID,
-          response.getHostname(), requestedIds);
-      setResourceProperty(resource, HOST_PUBLIC_NAME_PROPERTY_ID,
-          response.getPublicHostName(), requestedIds);
-      setResourceProperty(resource, HOST_IP_PROPERTY_ID,
-          response.getIpv4(), requestedIds);
-      setResourceProperty(resource, HOST_TOTAL_MEM_PROPERTY_ID,
-          response.getTotalMemBytes(), requestedIds);
-      setResourceProperty(resource, HOST_CPU_COUNT_PROPERTY_ID,
-          (long) response.getCpuCount(), requestedIds);
-      setResourceProperty(resource, HOST_PHYSICAL_CPU_COUNT_PROPERTY_ID,
-          (long) response.getPhCpuCount(), requestedIds);      
-      setResourceProperty(resource, HOST_OS_ARCH_PROPERTY_ID,
-          response.getOsArch(), requestedIds);
-      setResourceProperty(resource, HOST_OS_TYPE_PROPERTY_ID,
-          response.getOsType(), requestedIds);
-
-      String hostOsFamily = osFamily.find(response.getOsType());
-      if (hostOsFamily == null) {
-        LOG.error("Can not find host OS family. For OS type = '{}' and host name = '{}'",
-            response.getOsType(), response.getHostname());
-      }
-      setResourceProperty(resource, HOST_OS_FAMILY_PROPERTY_ID,
-          hostOsFamily, requestedIds);
-
-      setResourceProperty(resource, HOST_RACK_INFO_PROPERTY_ID,
-          response.getRackInfo(), requestedIds);
-      setResourceProperty(resource, HOST_LAST_HEARTBEAT_TIME_PROPERTY_ID,
-          response.getLastHeartbeatTime(), requestedIds);
-      setResourceProperty(resource, HOST_LAST_AGENT_ENV_PROPERTY_ID,
-          response.getLastAgentEnv(), requestedIds);
-      setResourceProperty(resource, HOST_LAST_REGISTRATION_TIME_PROPERTY_ID,
-          response.getLastRegistrationTime(), requestedIds);
-      setResourceProperty(resource, HOST_HOST_STATUS_PROPERTY_ID,
-          response.getStatus(),requestedIds);
-      setResourceProperty(resource, HOST_HOST_HEALTH_REPORT_PROPERTY_ID,
-          response.getHealthStatus().getHealthReport(), requestedIds);
-      setResourceProperty(resource, HOST_RECOVERY_REPORT_PROPERTY_ID,
-          response.getRecoveryReport(), requestedIds);
-      setResourceProperty(resource, HOST_RECOVERY_SUMMARY_PROPERTY_ID,
-          response.getRecoverySummary(), requestedIds);
-      setResourceProperty(resource, HOST_DISK_INFO_PROPERTY_ID,
-          response.getDisksInfo(), requestedIds);
-      setResourceProperty(resource, HOST_STATE_PROPERTY_ID,
-          response.getHostState(), requestedIds);
-      setResourceProperty(resource, HOST_DESIRED_CONFIGS_PROPERTY_ID,
-          response.getDesiredHostConfigs(), requestedIds);
-      
-      // only when a cluster request
-      if (null != response.getMaintenanceState()) {
-        setResourceProperty(resource, HOST_MAINTENANCE_STATE_PROPERTY_ID,
-            response.getMaintenanceState(), requestedIds);
-      }
-      
-      resources.add(resource);
+      resources.add(toResource(response, requestedIds));
     }
     return resources;
   }
 
+  // ----- ExtendedResourceProvider ----------------------------------------
+
+  @Override
+  public QueryResponse queryForResources(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    QueryResponse queryResponse = queryForPage(request, predicate);
+    if (null == queryResponse) {
+      Set<Resource> resources = getResources(request, predicate);
+      queryResponse = new QueryResponseImpl(resources, false, false, resources.size());
+    }
+    return queryResponse;
+  }
+
   @Override
   public RequestStatus updateResources(final Request request, Predicate predicate)
       throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
@@ -373,6 +336,175 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
     return isHostGroupRequest;
   }
 
+  /**
+   * Gets a page of hosts, letting the database filter, sort and page the hosts
+   * so that only the hosts on the page are converted to resources. This is
+   * only possible if every part of the predicate can be converted into the
+   * query, the hosts are all requested for the same cluster (or none) and no
+   * specific host is asked for.
+   *
+   * @param request    the request
+   * @param predicate  the predicate
+   *
+   * @return the sorted hosts on the page, or {@code null} if the hosts must be
+   *         filtered, sorted and paged in memory
+   */
+  private QueryResponse queryForPage(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    if (null == request.getPageRequest()
+        || !isSortSupported(request.getSortRequest(), HostEntity_.getPredicateMapping().keySet())) {
+      return null;
+    }
+
+    Set<String> clusterNames = new HashSet<String>();
+    for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
+      if (null != getHostNameFromProperties(propertyMap)) {
+        return null;
+      }
+      clusterNames.add((String) propertyMap.get(HOST_CLUSTER_NAME_PROPERTY_ID));
+    }
+
+    // a predicate without any equality, or none at all, doesn't name a cluster
+    if (clusterNames.isEmpty()) {
+      clusterNames.add(null);
+    }
+
+    if (clusterNames.size() != 1) {
+      return null;
+    }
+
+    final String clusterName = clusterNames.iterator().next();
+    if (null != clusterName) {
+      // validate that the cluster exists, throws exception if it doesn't
+      getResources(new Command<Void>() {
+        @Override
+        public Void invoke() throws AmbariException {
+          try {
+            getManagementController().getClusters().getCluster(clusterName);
+          } catch (ObjectNotFoundException e) {
+            throw new ParentObjectNotFoundException("Parent Cluster resource doesn't exist", e);
+          }
+          return null;
+        }
+      });
+    }
+
+    if (!hostDAO.isPredicateSupported(predicate)) {
+      return null;
+    }
+
+    int totalCount = hostDAO.getCount(predicate);
+    PageRequest pageRequest = getOffsetPageRequest(request.getPageRequest(), totalCount);
+    if (null == pageRequest) {
+      return null;
+    }
+
+    List<String> hostNames = hostDAO.findHostNames(predicate, request.getSortRequest(), pageRequest);
+
+    final Set<HostRequest> requests = new HashSet<HostRequest>();
+    for (String hostName : hostNames) {
+      requests.add(new HostRequest(hostName, clusterName, null));
+    }
+
+    Map<String, HostResponse> responses = new HashMap<String, HostResponse>();
+    if (!requests.isEmpty()) {
+      for (HostResponse response : getResources(new Command<Set<HostResponse>>() {
+        @Override
+        public Set<HostResponse> invoke() throws AmbariException {
+          return getHosts(requests);
+        }
+      })) {
+        responses.put(response.getHostname(), response);
+      }
+    }
+
+    Set<String>   requestedIds = getRequestPropertyIds(request, predicate);
+    Set<Resource> resources    = new LinkedHashSet<Resource>();
+
+    for (String hostName : hostNames) {
+      HostResponse response = responses.get(hostName);
+      if (null != response) {
+        resources.add(toResource(response, requestedIds));
+      }
+    }
+    return new QueryResponseImpl(resources, true, true, totalCount);
+  }
+
+  /**
+   * Converts the host response to a resource.
+   *
+   * @param response      the host response
+   * @param requestedIds  the requested property ids
+   *
+   * @return the host resource
+   */
+  private Resource toResource(HostResponse response, Set<String> requestedIds) {
+    Resource resource = new ResourceImpl(Resource.Type.Host);
+
+    // TODO : properly handle more than one cluster
+    if (response.getClusterName() != null
+        && !response.getClusterName().isEmpty()) {
+      setResourceProperty(resource, HOST_CLUSTER_NAME_PROPERTY_ID,
+          response.getClusterName(), requestedIds);
+    }
+    setResourceProperty(resource, HOST_NAME_PROPERTY_ID,
+        response.getHostname(), requestedIds);
+    setResourceProperty(resource, HOST_PUBLIC_NAME_PROPERTY_ID,
+        response.getPublicHostName(), requestedIds);
+    setResourceProperty(resource, HOST_IP_PROPERTY_ID,
+        response.getIpv4(), requestedIds);
+    setResourceProperty(resource, HOST_TOTAL_MEM_PROPERTY_ID,
+        response.getTotalMemBytes(), requestedIds);
+    setResourceProperty(resource, HOST_CPU_COUNT_PROPERTY_ID,
+        (long) response.getCpuCount(), requestedIds);
+    setResourceProperty(resource, HOST_PHYSICAL_CPU_COUNT_PROPERTY_ID,
+        (long) response.getPhCpuCount(), requestedIds);      
+    setResourceProperty(resource, HOST_OS_ARCH_PROPERTY_ID,
+        response.getOsArch(), requestedIds);
+    setResourceProperty(resource, HOST_OS_TYPE_PROPERTY_ID,
+        response.getOsType(), requestedIds);
+
+    String hostOsFamily = osFamily.find(response.getOsType());
+    if (hostOsFamily == null) {
+      LOG.error("Can not find host OS family. For OS type = '{}' and host name = '{}'",
+          response.getOsType(), response.getHostname());
+    }
+    setResourceProperty(resource, HOST_OS_FAMILY_PROPERTY_ID,
+        hostOsFamily, requestedIds);
+
+    setResourceProperty(resource, HOST_RACK_INFO_PROPERTY_ID,
+        response.getRackInfo(), requestedIds);
+    setResourceProperty(resource, HOST_LAST_HEARTBEAT_TIME_PROPERTY_ID,
+        response.getLastHeartbeatTime(), requestedIds);
+    setResourceProperty(resource, HOST_LAST_AGENT_ENV_PROPERTY_ID,
+        response.getLastAgentEnv(), requestedIds);
+    setResourceProperty(resource, HOST_LAST_REGISTRATION_TIME_PROPERTY_ID,
+        response.getLastRegistrationTime(), requestedIds);
+    setResourceProperty(resource, HOST_HOST_STATUS_PROPERTY_ID,
+        response.getStatus(),requestedIds);
+    setResourceProperty(resource, HOST_HOST_HEALTH_REPORT_PROPERTY_ID,
+        response.getHealthStatus().getHealthReport(), requestedIds);
+    setResourceProperty(resource, HOST_RECOVERY_REPORT_PROPERTY_ID,
+        response.getRecoveryReport(), requestedIds);
+    setResourceProperty(resource, HOST_RECOVERY_SUMMARY_PROPERTY_ID,
+        response.getRecoverySummary(), requestedIds);
+    setResourceProperty(resource, HOST_DISK_INFO_PROPERTY_ID,
+        response.getDisksInfo(), requestedIds);
+    setResourceProperty(resource, HOST_STATE_PROPERTY_ID,
+        response.getHostState(), requestedIds);
+    setResourceProperty(resource, HOST_DESIRED_CONFIGS_PROPERTY_ID,
+        response.getDesiredHostConfigs(), requestedIds);
+    
+    // only when a cluster request
+    if (null != response.getMaintenanceState()) {
+      setResourceProperty(resource, HOST_MAINTENANCE_STATE_PROPERTY_ID,
+          response.getMaintenanceState(), requestedIds);
+    }
+
+    return resource;
+  }
+
   /**
    * Get a host request object from a map of property values.
    *
@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -37,9 +38,12 @@ import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.ExecuteActionRequest;
 import org.apache.ambari.server.controller.RequestRequest;
 import org.apache.ambari.server.controller.RequestStatusResponse;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
@@ -50,6 +54,7 @@ import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.orm.dao.HostRoleCommandStatusSummaryDTO;
 import org.apache.ambari.server.orm.dao.RequestDAO;
 import org.apache.ambari.server.orm.entities.RequestEntity;
+import org.apache.ambari.server.orm.entities.RequestEntity_;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 
@@ -60,7 +65,7 @@ import org.apache.ambari.server.topology.TopologyManager;
  * Resource provider for request resources.
  */
 @StaticallyInject
-public class RequestResourceProvider extends AbstractControllerResourceProvider {
+public class RequestResourceProvider extends AbstractControllerResourceProvider implements ExtendedResourceProvider {
 
   @Inject
   private static RequestDAO s_requestDAO = null;
@@ -77,17 +82,17 @@ public class RequestResourceProvider extends AbstractControllerResourceProvider
   public static final String REQUEST_ID_PROPERTY_ID = "Requests/id";
   protected static final String REQUEST_STATUS_PROPERTY_ID = "Requests/request_status";
   protected static final String REQUEST_ABORT_REASON_PROPERTY_ID = "Requests/abort_reason";
-  protected static final String REQUEST_CONTEXT_ID = "Requests/request_context";
+  public static final String REQUEST_CONTEXT_ID = "Requests/request_context";
   public static final String REQUEST_SOURCE_SCHEDULE = "Requests/request_schedule";
   public static final String REQUEST_SOURCE_SCHEDULE_ID = "Requests/request_schedule/schedule_id";
   public static final String REQUEST_SOURCE_SCHEDULE_HREF = "Requests/request_schedule/href";
-  protected static final String REQUEST_TYPE_ID = "Requests/type";
+  public static final String REQUEST_TYPE_ID = "Requests/type";
   protected static final String REQUEST_INPUTS_ID = "Requests/inputs";
   protected static final String REQUEST_RESOURCE_FILTER_ID = "Requests/resource_filters";
   protected static final String REQUEST_OPERATION_LEVEL_ID = "Requests/operation_level";
-  protected static final String REQUEST_CREATE_TIME_ID = "Requests/create_time";
-  protected static final String REQUEST_START_TIME_ID = "Requests/start_time";
-  protected static final String REQUEST_END_TIME_ID = "Requests/end_time";
+  public static final String REQUEST_CREATE_TIME_ID = "Requests/create_time";
+  public static final String REQUEST_START_TIME_ID = "Requests/start_time";
+  public static final String REQUEST_END_TIME_ID = "Requests/end_time";
   protected static final String REQUEST_EXCLUSIVE_ID = "Requests/exclusive";
   protected static final String REQUEST_TASK_CNT_ID = "Requests/task_count";
   protected static final String REQUEST_FAILED_TASK_CNT_ID = "Requests/failed_task_count";
@@ -205,6 +210,20 @@ public class RequestResourceProvider extends AbstractControllerResourceProvider
     return resources;
   }
 
+  // ----- ExtendedResourceProvider ----------------------------------------
+
+  @Override
+  public QueryResponse queryForResources(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    QueryResponse queryResponse = queryForPage(request, predicate);
+    if (null == queryResponse) {
+      Set<Resource> resources = getResources(request, predicate);
+      queryResponse = new QueryResponseImpl(resources, false, false, resources.size());
+    }
+    return queryResponse;
+  }
+
   @Override
   public RequestStatus updateResources(Request requestInfo, Predicate predicate)
           throws SystemException, UnsupportedPropertyException,
@@ -375,6 +394,89 @@ public class RequestResourceProvider extends AbstractControllerResourceProvider
       params, exclusive);
   }
 
+  /**
+   * Gets a page of requests, letting the database filter, sort and page the
+   * requests so that only the requests on the page are loaded. This is only
+   * possible if every part of the predicate can be converted into the query,
+   * the requests belong to a single cluster (or none), no specific request is
+   * asked for and there are no logical requests which only exist in memory.
+   *
+   * @param request    the request
+   * @param predicate  the predicate
+   *
+   * @return the sorted requests on the page, or {@code null} if the requests
+   *         must be gathered, sorted and paged in memory
+   *
+   * @throws NoSuchParentResourceException if the cluster doesn't exist
+   */
+  private QueryResponse queryForPage(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    if (null == request.getPageRequest()
+        || !isSortSupported(request.getSortRequest(), RequestEntity_.getPredicateMapping().keySet())) {
+      return null;
+    }
+
+    Set<String> clusterNames = new HashSet<String>();
+    for (Map<String, Object> properties : getPropertyMaps(predicate)) {
+      if (null != properties.get(REQUEST_ID_PROPERTY_ID)) {
+        return null;
+      }
+      clusterNames.add((String) properties.get(REQUEST_CLUSTER_NAME_PROPERTY_ID));
+    }
+
+    // a predicate without any equality, or none at all, doesn't name a cluster
+    if (clusterNames.isEmpty()) {
+      clusterNames.add(null);
+    }
+
+    if (clusterNames.size() != 1 || !topologyManager.getRequests(Collections.<Long>emptySet()).isEmpty()) {
+      return null;
+    }
+
+    String clusterName = clusterNames.iterator().next();
+    Long clusterId = null;
+
+    if (clusterName != null) {
+      try {
+        clusterId = getManagementController().getClusters().getCluster(clusterName).getClusterId();
+      } catch (AmbariException e) {
+        throw new NoSuchParentResourceException(e.getMessage(), e);
+      }
+    }
+
+    if (!s_requestDAO.isPredicateSupported(predicate)) {
+      return null;
+    }
+
+    int totalCount = s_requestDAO.getCount(predicate);
+    PageRequest pageRequest = getOffsetPageRequest(request.getPageRequest(), totalCount);
+    if (null == pageRequest) {
+      return null;
+    }
+
+    List<Long> requestIds = s_requestDAO.findRequestIds(predicate,
+        request.getSortRequest(), pageRequest);
+
+    // the id is needed to put the resources back into the sorted order
+    Set<String> requestedIds = getRequestPropertyIds(request, predicate);
+    requestedIds.add(REQUEST_ID_PROPERTY_ID);
+
+    Map<Object, Resource> resourceMap = new HashMap<Object, Resource>();
+    for (Resource resource : getRequestResources(clusterId, clusterName, requestIds, requestedIds)) {
+      resourceMap.put(resource.getPropertyValue(REQUEST_ID_PROPERTY_ID), resource);
+    }
+
+    Set<Resource> resources = new LinkedHashSet<Resource>();
+    for (Long requestId : requestIds) {
+      Resource resource = resourceMap.get(requestId);
+      if (null != resource) {
+        resources.add(resource);
+      }
+    }
+    return new QueryResponseImpl(resources, true, true, totalCount);
+  }
+
   // Get all of the request resources for the given properties
   private Set<Resource> getRequestResources(String clusterName,
                                             Long requestId,
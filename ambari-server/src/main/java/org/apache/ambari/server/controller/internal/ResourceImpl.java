@@ -21,14 +21,32 @@ package org.apache.ambari.server.controller.internal;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
 
-import java.util.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Simple resource implementation.
  */
 public class ResourceImpl implements Resource {
 
+  /**
+   * The maximum number of parsed property ids to keep.  Property ids mostly
+   * come from the resource schemas, but metric ids may embed instance names.
+   */
+  private static final int MAX_PROPERTY_KEYS = 10000;
+
+  /**
+   * Parsed property ids keyed by property id, shared by all resources so that
+   * a property id is only split into its category and name once.
+   */
+  private static final ConcurrentMap<String, PropertyKey> propertyKeys =
+      new ConcurrentHashMap<String, PropertyKey>();
+
   /**
    * The resource type.
    */
@@ -101,33 +119,38 @@ public class ResourceImpl implements Resource {
 
   @Override
   public void setProperty(String id, Object value) {
-    String categoryKey = getCategoryKey(PropertyHelper.getPropertyCategory(id));
-
-    Map<String, Object> properties = propertiesMap.get(categoryKey);
-    if (properties == null) {
-      properties = Collections.synchronizedMap(new TreeMap<String, Object>());
-      propertiesMap.put(categoryKey, properties);
+    PropertyKey propertyKey = getPropertyKey(id);
+
+    Map<String, Object> properties;
+    synchronized (propertiesMap) {
+      properties = propertiesMap.get(propertyKey.category);
+      if (properties == null) {
+        properties = Collections.synchronizedMap(new TreeMap<String, Object>());
+        propertiesMap.put(propertyKey.category, properties);
+      }
     }
-    properties.put(PropertyHelper.getPropertyName(id), value);
+    properties.put(propertyKey.name, value);
   }
 
   @Override
   public void addCategory(String id) {
     String categoryKey = getCategoryKey(id);
 
-    if (!propertiesMap.containsKey(categoryKey)) {
-      propertiesMap.put(categoryKey, new HashMap<String, Object>());
+    synchronized (propertiesMap) {
+      if (!propertiesMap.containsKey(categoryKey)) {
+        propertiesMap.put(categoryKey, new HashMap<String, Object>());
+      }
     }
   }
 
   @Override
   public Object getPropertyValue(String id) {
-    String categoryKey = getCategoryKey(PropertyHelper.getPropertyCategory(id));
+    PropertyKey propertyKey = getPropertyKey(id);
 
-    Map<String, Object> properties = propertiesMap.get(categoryKey);
+    Map<String, Object> properties = propertiesMap.get(propertyKey.category);
 
     return properties == null ?
-        null : properties.get(PropertyHelper.getPropertyName(id));
+        null : properties.get(propertyKey.name);
   }
 
 
@@ -162,7 +185,42 @@ public class ResourceImpl implements Resource {
 
   // ----- utility methods ---------------------------------------------------
 
-  private String getCategoryKey(String category) {
+  private static String getCategoryKey(String category) {
     return category == null ? "" : category;
   }
+
+  /**
+   * Get the parsed category and name of the given property id.
+   *
+   * @param id  the property id
+   *
+   * @return the parsed property id
+   */
+  private static PropertyKey getPropertyKey(String id) {
+    PropertyKey propertyKey = propertyKeys.get(id);
+    if (propertyKey == null) {
+      propertyKey = new PropertyKey(getCategoryKey(PropertyHelper.getPropertyCategory(id)),
+          PropertyHelper.getPropertyName(id));
+      if (propertyKeys.size() < MAX_PROPERTY_KEYS) {
+        propertyKeys.put(id, propertyKey);
+      }
+    }
+    return propertyKey;
+  }
+
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * A property id split into its category key and property name.
+   */
+  private static class PropertyKey {
+    private final String category;
+    private final String name;
+
+    private PropertyKey(String category, String name) {
+      this.category = category;
+      this.name = name;
+    }
+  }
 }
@@ -17,54 +17,74 @@
  */
 package org.apache.ambari.server.controller.internal;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.StaticallyInject;
+import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.TaskStatusRequest;
 import org.apache.ambari.server.controller.TaskStatusResponse;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity_;
+import org.apache.ambari.server.topology.TopologyManager;
 import org.codehaus.jackson.map.ObjectMapper;
 
+import com.google.inject.Inject;
+
 /**
  * Resource provider for task resources.
  */
-class TaskResourceProvider extends AbstractControllerResourceProvider {
+@StaticallyInject
+public class TaskResourceProvider extends AbstractControllerResourceProvider implements ExtendedResourceProvider {
+
+  @Inject
+  private static HostRoleCommandDAO s_hostRoleCommandDAO = null;
+
+  @Inject
+  private static TopologyManager topologyManager;
 
   // ----- Property ID constants ---------------------------------------------
 
   // Tasks
-  protected static final String TASK_CLUSTER_NAME_PROPERTY_ID = PropertyHelper.getPropertyId("Tasks", "cluster_name");
-  protected static final String TASK_REQUEST_ID_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "request_id");
-  protected static final String TASK_ID_PROPERTY_ID           = PropertyHelper.getPropertyId("Tasks", "id");
-  protected static final String TASK_STAGE_ID_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "stage_id");
-  protected static final String TASK_HOST_NAME_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "host_name");
-  protected static final String TASK_ROLE_PROPERTY_ID         = PropertyHelper.getPropertyId("Tasks", "role");
-  protected static final String TASK_COMMAND_PROPERTY_ID      = PropertyHelper.getPropertyId("Tasks", "command");
-  protected static final String TASK_STATUS_PROPERTY_ID       = PropertyHelper.getPropertyId("Tasks", "status");
-  protected static final String TASK_EXIT_CODE_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "exit_code");
-  protected static final String TASK_STDERR_PROPERTY_ID       = PropertyHelper.getPropertyId("Tasks", "stderr");
-  protected static final String TASK_STOUT_PROPERTY_ID        = PropertyHelper.getPropertyId("Tasks", "stdout");
-  protected static final String TASK_OUTPUTLOG_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "output_log");
-  protected static final String TASK_ERRORLOG_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "error_log");
-  protected static final String TASK_STRUCT_OUT_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "structured_out");
-  protected static final String TASK_START_TIME_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "start_time");
-  protected static final String TASK_END_TIME_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "end_time");
-  protected static final String TASK_ATTEMPT_CNT_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "attempt_cnt");
-  protected static final String TASK_COMMAND_DET_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "command_detail");
-  protected static final String TASK_CUST_CMD_NAME_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "custom_command_name");
+  public static final String TASK_CLUSTER_NAME_PROPERTY_ID = PropertyHelper.getPropertyId("Tasks", "cluster_name");
+  public static final String TASK_REQUEST_ID_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "request_id");
+  public static final String TASK_ID_PROPERTY_ID           = PropertyHelper.getPropertyId("Tasks", "id");
+  public static final String TASK_STAGE_ID_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "stage_id");
+  public static final String TASK_HOST_NAME_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "host_name");
+  public static final String TASK_ROLE_PROPERTY_ID         = PropertyHelper.getPropertyId("Tasks", "role");
+  public static final String TASK_COMMAND_PROPERTY_ID      = PropertyHelper.getPropertyId("Tasks", "command");
+  public static final String TASK_STATUS_PROPERTY_ID       = PropertyHelper.getPropertyId("Tasks", "status");
+  public static final String TASK_EXIT_CODE_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "exit_code");
+  public static final String TASK_STDERR_PROPERTY_ID       = PropertyHelper.getPropertyId("Tasks", "stderr");
+  public static final String TASK_STOUT_PROPERTY_ID        = PropertyHelper.getPropertyId("Tasks", "stdout");
+  public static final String TASK_OUTPUTLOG_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "output_log");
+  public static final String TASK_ERRORLOG_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "error_log");
+  public static final String TASK_STRUCT_OUT_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "structured_out");
+  public static final String TASK_START_TIME_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "start_time");
+  public static final String TASK_END_TIME_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "end_time");
+  public static final String TASK_ATTEMPT_CNT_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "attempt_cnt");
+  public static final String TASK_COMMAND_DET_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "command_detail");
+  public static final String TASK_CUST_CMD_NAME_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "custom_command_name");
 
   private static Set<String> pkPropertyIds =
       new HashSet<String>(Arrays.asList(new String[]{
@@ -137,48 +157,38 @@ class TaskResourceProvider extends AbstractControllerResourceProvider {
         }
       }
 
-      resources = new HashSet<Resource>();
-      for (TaskStatusResponse response : responses) {
-        Resource resource = new ResourceImpl(Resource.Type.Task);
-
-        // !!! shocked this isn't broken.  the key can be null for non-cluster tasks
-        if (null != entry.getKey())
-          setResourceProperty(resource, TASK_CLUSTER_NAME_PROPERTY_ID, entry.getKey(), requestedIds);  
-        
-        setResourceProperty(resource, TASK_REQUEST_ID_PROPERTY_ID, response.getRequestId(), requestedIds);
-        setResourceProperty(resource, TASK_ID_PROPERTY_ID, response.getTaskId(), requestedIds);
-        setResourceProperty(resource, TASK_STAGE_ID_PROPERTY_ID, response.getStageId(), requestedIds);
-        setResourceProperty(resource, TASK_HOST_NAME_PROPERTY_ID, response.getHostName(), requestedIds);
-        setResourceProperty(resource, TASK_ROLE_PROPERTY_ID, response.getRole(), requestedIds);
-        setResourceProperty(resource, TASK_COMMAND_PROPERTY_ID, response.getCommand(), requestedIds);
-        setResourceProperty(resource, TASK_STATUS_PROPERTY_ID, response.getStatus(), requestedIds);
-        setResourceProperty(resource, TASK_EXIT_CODE_PROPERTY_ID, response.getExitCode(), requestedIds);
-        setResourceProperty(resource, TASK_STDERR_PROPERTY_ID, response.getStderr(), requestedIds);
-        setResourceProperty(resource, TASK_STOUT_PROPERTY_ID, response.getStdout(), requestedIds);
-        setResourceProperty(resource, TASK_OUTPUTLOG_PROPERTY_ID, response.getOutputLog(), requestedIds);
-        setResourceProperty(resource, TASK_ERRORLOG_PROPERTY_ID, response.getErrorLog(), requestedIds);
-        setResourceProperty(resource, TASK_STRUCT_OUT_PROPERTY_ID, parseStructuredOutput(response.getStructuredOut()), requestedIds);
-        setResourceProperty(resource, TASK_START_TIME_PROPERTY_ID, response.getStartTime(), requestedIds);
-        setResourceProperty(resource, TASK_END_TIME_PROPERTY_ID, response.getEndTime(), requestedIds);
-        setResourceProperty(resource, TASK_ATTEMPT_CNT_PROPERTY_ID, response.getAttemptCount(), requestedIds);
-
-        if (response.getCustomCommandName() != null) {
-          setResourceProperty(resource, TASK_CUST_CMD_NAME_PROPERTY_ID, response.getCustomCommandName(), requestedIds);
-        }
-
-        if (response.getCommandDetail() == null) {
-          setResourceProperty(resource, TASK_COMMAND_DET_PROPERTY_ID,
-              String.format("%s %s", response.getRole(), response.getCommand()), requestedIds);
-        } else {
-          setResourceProperty(resource, TASK_COMMAND_DET_PROPERTY_ID, response.getCommandDetail(), requestedIds);
+      if (isOutputRequested(requestedIds)) {
+        List<HostRoleCommand> commands = new ArrayList<HostRoleCommand>();
+        for (TaskStatusResponse response : responses) {
+          if (null != response.getHostRoleCommand()) {
+            commands.add(response.getHostRoleCommand());
+          }
         }
+        HostRoleCommand.loadOutput(commands);
+      }
 
-        resources.add(resource);
+      resources = new HashSet<Resource>();
+      for (TaskStatusResponse response : responses) {
+        resources.add(toResource(entry.getKey(), response, requestedIds));
       }
     }
     return resources;
   }
 
+  // ----- ExtendedResourceProvider ----------------------------------------
+
+  @Override
+  public QueryResponse queryForResources(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    QueryResponse queryResponse = queryForPage(request, predicate);
+    if (null == queryResponse) {
+      Set<Resource> resources = getResources(request, predicate);
+      queryResponse = new QueryResponseImpl(resources, false, false, resources.size());
+    }
+    return queryResponse;
+  }
+
   /**
    * Converts the specified JSON string into a {@link Map}. For now, use Jackson
    * instead of gson since none of the integers will convert properly without a
@@ -222,6 +232,144 @@ class TaskResourceProvider extends AbstractControllerResourceProvider {
     return pkPropertyIds;
   }
 
+  /**
+   * Gets a page of the tasks of a request, letting the database filter, sort
+   * and page the tasks so that only the tasks on the page are loaded. This is
+   * only possible if every part of the predicate can be converted into the
+   * query, the tasks belong to a single cluster and the request has no
+   * logical tasks which only exist in memory.
+   *
+   * @param request    the request
+   * @param predicate  the predicate
+   *
+   * @return the sorted tasks on the page, or {@code null} if the tasks must be
+   *         filtered, sorted and paged in memory
+   */
+  private QueryResponse queryForPage(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+    if (null == request.getPageRequest()
+        || !isSortSupported(request.getSortRequest(), HostRoleCommandEntity_.getPredicateMapping().keySet())) {
+      return null;
+    }
+
+    Set<Long>   requestIds   = new HashSet<Long>();
+    Set<String> clusterNames = new HashSet<String>();
+
+    for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
+      Object requestId = propertyMap.get(TASK_REQUEST_ID_PROPERTY_ID);
+      if (null == requestId) {
+        return null;
+      }
+      requestIds.add(Long.valueOf(requestId.toString()));
+      clusterNames.add((String) propertyMap.get(TASK_CLUSTER_NAME_PROPERTY_ID));
+    }
+
+    if (clusterNames.size() != 1 || !s_hostRoleCommandDAO.isPredicateSupported(predicate)
+        || !topologyManager.getTasks(requestIds).isEmpty()) {
+      return null;
+    }
+
+    // let the in-memory path report requests without tasks
+    int totalCount = s_hostRoleCommandDAO.getCount(predicate);
+    PageRequest pageRequest = getOffsetPageRequest(request.getPageRequest(), totalCount);
+    if (0 == totalCount || null == pageRequest) {
+      return null;
+    }
+
+    List<Long> taskIds = s_hostRoleCommandDAO.findTaskIds(predicate,
+        request.getSortRequest(), pageRequest);
+
+    Map<Long, HostRoleCommand> commands = new HashMap<Long, HostRoleCommand>();
+    for (HostRoleCommand command : getManagementController().getActionManager().getTasks(taskIds)) {
+      commands.put(command.getTaskId(), command);
+    }
+
+    String clusterName = clusterNames.iterator().next();
+    Set<String> requestedIds = getRequestPropertyIds(request, predicate);
+    if (isOutputRequested(requestedIds)) {
+      HostRoleCommand.loadOutput(commands.values());
+    }
+    Set<Resource> resources = new LinkedHashSet<Resource>();
+
+    for (Long taskId : taskIds) {
+      HostRoleCommand command = commands.get(taskId);
+      if (null != command) {
+        resources.add(toResource(clusterName, new TaskStatusResponse(command), requestedIds));
+      }
+    }
+    return new QueryResponseImpl(resources, true, true, totalCount);
+  }
+
+  /**
+   * Gets whether any of the task output, which is loaded separately from the
+   * rest of the task, is requested.
+   *
+   * @param requestedIds  the requested property ids
+   *
+   * @return {@code true} if stdout, stderr or the structured output is requested
+   */
+  private boolean isOutputRequested(Set<String> requestedIds) {
+    return isPropertyRequested(TASK_STDERR_PROPERTY_ID, requestedIds)
+        || isPropertyRequested(TASK_STOUT_PROPERTY_ID, requestedIds)
+        || isPropertyRequested(TASK_STRUCT_OUT_PROPERTY_ID, requestedIds);
+  }
+
+  /**
+   * Converts the task status response to a resource.
+   *
+   * @param clusterName   the name of the cluster of the task; may be {@code null}
+   * @param response      the task status response
+   * @param requestedIds  the requested property ids
+   *
+   * @return the task resource
+   */
+  private Resource toResource(String clusterName, TaskStatusResponse response, Set<String> requestedIds) {
+    Resource resource = new ResourceImpl(Resource.Type.Task);
+
+    // !!! shocked this isn't broken.  the key can be null for non-cluster tasks
+    if (null != clusterName)
+      setResourceProperty(resource, TASK_CLUSTER_NAME_PROPERTY_ID, clusterName, requestedIds);
+
+    setResourceProperty(resource, TASK_REQUEST_ID_PROPERTY_ID, response.getRequestId(), requestedIds);
+    setResourceProperty(resource, TASK_ID_PROPERTY_ID, response.getTaskId(), requestedIds);
+    setResourceProperty(resource, TASK_STAGE_ID_PROPERTY_ID, response.getStageId(), requestedIds);
+    setResourceProperty(resource, TASK_HOST_NAME_PROPERTY_ID, response.getHostName(), requestedIds);
+    setResourceProperty(resource, TASK_ROLE_PROPERTY_ID, response.getRole(), requestedIds);
+    setResourceProperty(resource, TASK_COMMAND_PROPERTY_ID, response.getCommand(), requestedIds);
+    setResourceProperty(resource, TASK_STATUS_PROPERTY_ID, response.getStatus(), requestedIds);
+    setResourceProperty(resource, TASK_EXIT_CODE_PROPERTY_ID, response.getExitCode(), requestedIds);
+
+    // only read the output of the task if it is asked for
+    if (isPropertyRequested(TASK_STDERR_PROPERTY_ID, requestedIds)) {
+      setResourceProperty(resource, TASK_STDERR_PROPERTY_ID, response.getStderr(), requestedIds);
+    }
+    if (isPropertyRequested(TASK_STOUT_PROPERTY_ID, requestedIds)) {
+      setResourceProperty(resource, TASK_STOUT_PROPERTY_ID, response.getStdout(), requestedIds);
+    }
+    setResourceProperty(resource, TASK_OUTPUTLOG_PROPERTY_ID, response.getOutputLog(), requestedIds);
+    setResourceProperty(resource, TASK_ERRORLOG_PROPERTY_ID, response.getErrorLog(), requestedIds);
+    if (isPropertyRequested(TASK_STRUCT_OUT_PROPERTY_ID, requestedIds)) {
+      setResourceProperty(resource, TASK_STRUCT_OUT_PROPERTY_ID, parseStructuredOutput(response.getStructuredOut()), requestedIds);
+    }
+    setResourceProperty(resource, TASK_START_TIME_PROPERTY_ID, response.getStartTime(), requestedIds);
+    setResourceProperty(resource, TASK_END_TIME_PROPERTY_ID, response.getEndTime(), requestedIds);
+    setResourceProperty(resource, TASK_ATTEMPT_CNT_PROPERTY_ID, response.getAttemptCount(), requestedIds);
+
+    if (response.getCustomCommandName() != null) {
+      setResourceProperty(resource, TASK_CUST_CMD_NAME_PROPERTY_ID, response.getCustomCommandName(), requestedIds);
+    }
+
+    if (response.getCommandDetail() == null) {
+      setResourceProperty(resource, TASK_COMMAND_DET_PROPERTY_ID,
+          String.format("%s %s", response.getRole(), response.getCommand()), requestedIds);
+    } else {
+      setResourceProperty(resource, TASK_COMMAND_DET_PROPERTY_ID, response.getCommandDetail(), requestedIds);
+    }
+
+
+    return resource;
+  }
+
   /**
    * Get a component request object from a map of property values.
    *
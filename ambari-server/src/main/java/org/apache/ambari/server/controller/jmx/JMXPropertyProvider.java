@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.controller.jmx;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.PropertyInfo;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
 import org.apache.ambari.server.controller.metrics.ThreadPoolEnabledPropertyProvider;
@@ -26,6 +27,8 @@ import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.utilities.StreamProvider;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.ObjectReader;
@@ -34,13 +37,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,11 +56,12 @@ import java.util.regex.Pattern;
  */
 public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
 
+  private static final String BEANS_KEY = "beans";
   private static final String NAME_KEY = "name";
   private static final String PORT_KEY = "tag.port";
   private static final String DOT_REPLACEMENT_CHAR = "#";
 
-  private final static ObjectReader jmxObjectReader;
+  private final static ObjectMapper jmxObjectMapper;
   private final static ObjectReader stormObjectReader;
 
   private static final Map<String, String> DEFAULT_JMX_PORTS = new HashMap<String, String>();
@@ -71,9 +79,8 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     DEFAULT_JMX_PORTS.put("JOURNALNODE",         "8480");
     DEFAULT_JMX_PORTS.put("STORM_REST_API",      "8745");
 
-    ObjectMapper jmxObjectMapper = new ObjectMapper();
+    jmxObjectMapper = new ObjectMapper();
     jmxObjectMapper.configure(DeserializationConfig.Feature.USE_ANNOTATIONS, false);
-    jmxObjectReader = jmxObjectMapper.reader(JMXMetricHolder.class);
 
     TypeReference<HashMap<String,Object>> typeRef
             = new TypeReference<
@@ -88,6 +95,18 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
   private static final Pattern dotReplacementCharPattern =
     Pattern.compile(DOT_REPLACEMENT_CHAR);
 
+  private static final Pattern forPortPattern = Pattern.compile("ForPort\\d+");
+
+  /**
+   * The JMX documents shared by all providers.
+   */
+  private static volatile JMXSnapshotCache snapshotCache = new JMXSnapshotCache(
+      Integer.parseInt(Configuration.JMX_CACHE_TTL_DEFAULT),
+      Integer.parseInt(Configuration.JMX_CACHE_SIZE_DEFAULT));
+
+  private static volatile int beanQueryMax =
+      Integer.parseInt(Configuration.JMX_BEAN_QUERY_MAX_DEFAULT);
+
   private final StreamProvider streamProvider;
 
   private final JMXHostProvider jmxHostProvider;
@@ -133,6 +152,27 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     this.statePropertyId          = statePropertyId;
   }
 
+  /**
+   * Static initialization.
+   *
+   * @param configuration  the server configuration
+   */
+  public static void init(Configuration configuration) {
+    snapshotCache = new JMXSnapshotCache(configuration.getJMXCacheTTL(),
+        configuration.getJMXCacheSize());
+    beanQueryMax = configuration.getJMXBeanQueryMax();
+  }
+
+  /**
+   * Get the cache of the JMX documents, which counts its hits, misses and
+   * fetch times.
+   *
+   * @return the JMX document cache
+   */
+  public static JMXSnapshotCache getSnapshotCache() {
+    return snapshotCache;
+  }
+
   // ----- helper methods ----------------------------------------------------
 
   /**
@@ -203,51 +243,179 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
       return resource;
     }
 
-    InputStream in = null;
+    BeanFilter filter = getBeanFilter(componentName, ids);
 
-    try {
+    for (String hostName : hostNames) {
       try {
-        for (String hostName : hostNames) {
-          try {
-            in = streamProvider.readFrom(getSpec(protocol, hostName, port, "/jmx"));
-            // if the ticket becomes invalid (timeout) then bail out
-            if (!ticket.isValid()) {
-              return resource;
-            }
+        Map<String, Map<String, Object>> categories = getCategories(protocol, hostName, port, filter);
+        // if the ticket becomes invalid (timeout) then bail out
+        if (!ticket.isValid()) {
+          return resource;
+        }
+
+        getHadoopMetricValue(categories, ids, resource, request, ticket);
 
-            getHadoopMetricValue(in, ids, resource, request, ticket);
+      } catch (IOException e) {
+        logException(e);
+      }
+    }
+    return resource;
+  }
 
-          } catch (IOException e) {
-            logException(e);
+  /**
+   * Gets the MBeans the requested properties map to, by category. A few
+   * MBeans named in full are queried one by one, otherwise the whole
+   * document is fetched and only the matching MBeans are kept.
+   */
+  private Map<String, Map<String, Object>> getCategories(String protocol, String hostName,
+      String port, BeanFilter filter) throws IOException {
+
+    if (filter.patterns.isEmpty() && filter.categories.size() <= beanQueryMax) {
+      Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
+      for (String category : filter.categories) {
+        // a wildcard matches the MBeans whose name ends with the port
+        String spec = getSpec(protocol, hostName, port,
+            "/jmx?qry=" + URLEncoder.encode(category + "*", "UTF-8"));
+        categories.putAll(getCategories(spec, new BeanFilter(
+            Collections.singleton(category), Collections.<String>emptySet())));
+      }
+      return categories;
+    }
+    return getCategories(getSpec(protocol, hostName, port, "/jmx"), filter);
+  }
+
+  private Map<String, Map<String, Object>> getCategories(final String spec,
+      final BeanFilter filter) throws IOException {
+    return snapshotCache.get(streamProvider, spec, filter,
+        new Callable<Map<String, Map<String, Object>>>() {
+          @Override
+          public Map<String, Map<String, Object>> call() throws IOException {
+            InputStream in = streamProvider.readFrom(spec);
+            try {
+              return readCategories(in, filter);
+            } finally {
+              in.close();
+            }
           }
+        });
+  }
+
+  /**
+   * Reads the MBeans accepted by the filter from a JMX document, skipping
+   * the others without building them.
+   */
+  private static Map<String, Map<String, Object>> readCategories(InputStream in,
+      BeanFilter filter) throws IOException {
+    Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
+    JsonParser parser = jmxObjectMapper.getJsonFactory().createJsonParser(in);
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Unexpected JMX document");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        if (parser.nextToken() == JsonToken.START_ARRAY && BEANS_KEY.equals(field)) {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Map<String, Object> bean = readBean(parser, filter);
+            String category = bean == null ? null : getCategory(bean);
+            if (category != null) {
+              categories.put(category, bean);
+            }
+          }
+        } else {
+          parser.skipChildren();
         }
-      } finally {
-        if (in != null) {
-          in.close();
+      }
+    } finally {
+      parser.close();
+    }
+    return categories;
+  }
+
+  /**
+   * Reads an MBean from the parser positioned at its start.
+   *
+   * @return the MBean or {@code null} if its name is not accepted by the filter
+   */
+  private static Map<String, Object> readBean(JsonParser parser, BeanFilter filter)
+      throws IOException {
+    Map<String, Object> bean = new LinkedHashMap<String, Object>();
+    boolean accepted = true;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (accepted) {
+        Object value = jmxObjectMapper.readValue(parser, Object.class);
+        bean.put(field, value);
+        if (NAME_KEY.equals(field)) {
+          accepted = value instanceof String && filter.accepts((String) value);
         }
+      } else {
+        parser.skipChildren();
       }
-    } catch (IOException e) {
-      logException(e);
     }
-    return resource;
+    return accepted ? bean : null;
   }
 
   /**
-   * Hadoop-specific metrics fetching
+   * Gets the filter matching the MBeans the requested properties map to.
    */
-  private void getHadoopMetricValue(InputStream in, Set<String> ids,
-                       Resource resource, Request request, Ticket ticket) throws IOException {
-    JMXMetricHolder metricHolder = jmxObjectReader.readValue(in);
+  private BeanFilter getBeanFilter(String componentName, Set<String> ids) {
+    Set<String> categories = new HashSet<String>();
+    Set<String> patterns = new HashSet<String>();
+    for (String id : ids) {
+      for (Map.Entry<String, PropertyInfo> entry : getPropertyInfoMap(componentName, id).entrySet()) {
+        PropertyInfo propertyInfo = entry.getValue();
+        if (propertyInfo.isPointInTime()) {
+          String category = getCategoryAndProperty(entry.getKey(), propertyInfo.getPropertyId())[0];
+          if (containsArguments(entry.getKey())) {
+            patterns.add(category);
+          } else {
+            categories.add(category);
+          }
+        }
+      }
+    }
+    return new BeanFilter(categories, patterns);
+  }
 
-    Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
-    String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
+  /**
+   * Splits the JMX property of a metric into the category of its MBean and
+   * the attribute name.
+   *
+   * @return the category, a regular expression if the property id contains
+   *         arguments, and the attribute
+   */
+  private String[] getCategoryAndProperty(String propertyId, String property) {
+    String category = "";
+    int keyStartIndex = property.indexOf('[');
+
+    if (!containsArguments(propertyId)) {
+      int dotIndex = property.indexOf('.', property.indexOf('='));
+      if (-1 != dotIndex) {
+        category = property.substring(0, dotIndex);
+        property = (-1 == keyStartIndex) ?
+                property.substring(dotIndex+1) :
+                property.substring(dotIndex+1, keyStartIndex);
+      }
+    } else {
+      int firstKeyIndex = keyStartIndex > -1 ? keyStartIndex : property.length();
+      int dotIndex = property.lastIndexOf('.', firstKeyIndex);
 
-    for (Map<String, Object> bean : metricHolder.getBeans()) {
-      String category = getCategory(bean);
-      if (category != null) {
-        categories.put(category, bean);
+      if (dotIndex != -1) {
+        category = property.substring(0, dotIndex);
+        property = property.substring(dotIndex + 1, firstKeyIndex);
       }
     }
+    return new String[] { category, property };
+  }
+
+  /**
+   * Hadoop-specific metrics fetching
+   */
+  private void getHadoopMetricValue(Map<String, Map<String, Object>> categories, Set<String> ids,
+                       Resource resource, Request request, Ticket ticket) {
+    String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
 
     for (String propertyId : ids) {
       Map<String, PropertyInfo> propertyInfoMap = getPropertyInfoMap(componentName, propertyId);
@@ -262,7 +430,6 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
         if (propertyInfo.isPointInTime()) {
 
           String property = propertyInfo.getPropertyId();
-          String category = "";
 
           List<String> keyList = new LinkedList<String>();
 
@@ -274,23 +441,9 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
             }
           }
 
-          if (!containsArguments(propertyId)) {
-            int dotIndex = property.indexOf('.', property.indexOf('='));
-            if (-1 != dotIndex) {
-              category = property.substring(0, dotIndex);
-              property = (-1 == keyStartIndex) ?
-                      property.substring(dotIndex+1) :
-                      property.substring(dotIndex+1, keyStartIndex);
-            }
-          } else {
-            int firstKeyIndex = keyStartIndex > -1 ? keyStartIndex : property.length();
-            int dotIndex = property.lastIndexOf('.', firstKeyIndex);
-
-            if (dotIndex != -1) {
-              category = property.substring(0, dotIndex);
-              property = property.substring(dotIndex + 1, firstKeyIndex);
-            }
-          }
+          String[] categoryAndProperty = getCategoryAndProperty(propertyId, property);
+          String category = categoryAndProperty[0];
+          property = categoryAndProperty[1];
 
           if (containsArguments(propertyId)) {
             Pattern pattern = Pattern.compile(category);
@@ -362,7 +515,7 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
             Collections.singleton((String) resource.getPropertyValue(hostNamePropertyId));
   }
 
-  private String getCategory(Map<String, Object> bean) {
+  private static String getCategory(Map<String, Object> bean) {
     if (bean.containsKey(NAME_KEY)) {
       String name = (String) bean.get(NAME_KEY);
 
@@ -374,4 +527,64 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     }
     return null;
   }
+
+  // ----- inner class : BeanFilter ------------------------------------------
+
+  /**
+   * The MBeans to read from a JMX document, by category.
+   */
+  private static final class BeanFilter {
+    /**
+     * The categories named in full.
+     */
+    private final Set<String> categories;
+
+    /**
+     * The regular expressions matching categories.
+     */
+    private final Set<String> patterns;
+
+    private final List<Pattern> compiledPatterns = new ArrayList<Pattern>();
+
+    private BeanFilter(Set<String> categories, Set<String> patterns) {
+      this.categories = categories;
+      this.patterns = patterns;
+      for (String pattern : patterns) {
+        compiledPatterns.add(Pattern.compile(pattern));
+      }
+    }
+
+    /**
+     * Determine whether the MBean with the given name is read.
+     */
+    private boolean accepts(String name) {
+      String category = forPortPattern.matcher(name).replaceAll("");
+      if (categories.contains(category)) {
+        return true;
+      }
+      for (Pattern pattern : compiledPatterns) {
+        if (pattern.matcher(category).matches()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BeanFilter)) {
+        return false;
+      }
+      BeanFilter that = (BeanFilter) o;
+      return categories.equals(that.categories) && patterns.equals(that.patterns);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * categories.hashCode() + patterns.hashCode();
+    }
+  }
 }
@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.jmx;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.server.controller.utilities.StreamProvider;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Caches the MBeans read from the JMX servlet of a component for a short
+ * time, so that the UI polling the same metrics from several sessions does
+ * not fetch and parse the same document again. Concurrent requests for a
+ * document which is not cached wait for a single fetch.
+ *
+ * The MBeans are cached by the stream provider, the URL and the filter the
+ * document was parsed with; the cached maps must not be modified.
+ */
+public class JMXSnapshotCache {
+
+  /**
+   * The cached MBeans, {@code null} if caching is disabled.
+   */
+  private final Cache<SnapshotKey, Map<String, Map<String, Object>>> m_cache;
+
+  private final AtomicLong m_requestCount = new AtomicLong();
+  private final AtomicLong m_fetchCount = new AtomicLong();
+  private final AtomicLong m_fetchMillis = new AtomicLong();
+  private volatile long m_lastFetchMillis;
+
+  /**
+   * Constructor.
+   *
+   * @param ttl
+   *          the time in seconds the MBeans are reused, 0 to fetch them for
+   *          every request.
+   * @param size
+   *          the maximum number of cached documents.
+   */
+  public JMXSnapshotCache(int ttl, int size) {
+    if (ttl > 0) {
+      m_cache = CacheBuilder.newBuilder().expireAfterWrite(ttl, TimeUnit.SECONDS).maximumSize(
+          size).build();
+    } else {
+      m_cache = null;
+    }
+  }
+
+  /**
+   * Gets the MBeans of a document, fetching them if they are not cached.
+   *
+   * @param streamProvider
+   *          the stream provider the document is read from.
+   * @param spec
+   *          the URL of the document.
+   * @param filter
+   *          the filter the document is parsed with, part of the key.
+   * @param fetcher
+   *          reads and parses the document.
+   * @return the MBeans by category.
+   * @throws IOException
+   *           if the document could not be fetched.
+   */
+  public Map<String, Map<String, Object>> get(StreamProvider streamProvider, String spec,
+      Object filter, Callable<Map<String, Map<String, Object>>> fetcher) throws IOException {
+    m_requestCount.incrementAndGet();
+    if (null == m_cache) {
+      return fetch(fetcher);
+    }
+
+    try {
+      return m_cache.get(new SnapshotKey(streamProvider, spec, filter), new TimedFetcher(fetcher));
+    } catch (ExecutionException e) {
+      throw toIOException(e.getCause());
+    } catch (UncheckedExecutionException e) {
+      throw toIOException(e.getCause());
+    }
+  }
+
+  /**
+   * @return the number of requests served from the cache.
+   */
+  public long getHitCount() {
+    return m_requestCount.get() - m_fetchCount.get();
+  }
+
+  /**
+   * @return the number of requests which fetched the document.
+   */
+  public long getMissCount() {
+    return m_fetchCount.get();
+  }
+
+  /**
+   * @return the average time in milliseconds taken to fetch and parse a
+   *         document.
+   */
+  public double getAverageFetchMillis() {
+    long fetches = m_fetchCount.get();
+    return fetches == 0 ? 0 : (double) m_fetchMillis.get() / fetches;
+  }
+
+  /**
+   * @return the time in milliseconds taken to fetch and parse the last
+   *         document.
+   */
+  public long getLastFetchMillis() {
+    return m_lastFetchMillis;
+  }
+
+  /**
+   * @return the number of cached documents.
+   */
+  public long size() {
+    return null == m_cache ? 0 : m_cache.size();
+  }
+
+  /**
+   * Discards all cached documents.
+   */
+  public void invalidateAll() {
+    if (null != m_cache) {
+      m_cache.invalidateAll();
+    }
+  }
+
+  private Map<String, Map<String, Object>> fetch(
+      Callable<Map<String, Map<String, Object>>> fetcher) throws IOException {
+    long start = System.currentTimeMillis();
+    try {
+      return fetcher.call();
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw toIOException(e);
+    } finally {
+      long millis = System.currentTimeMillis() - start;
+      m_fetchCount.incrementAndGet();
+      m_fetchMillis.addAndGet(millis);
+      m_lastFetchMillis = millis;
+    }
+  }
+
+  private static IOException toIOException(Throwable throwable) {
+    return throwable instanceof IOException ? (IOException) throwable : new IOException(throwable);
+  }
+
+  /**
+   * Times the fetch of a document which is not cached.
+   */
+  private final class TimedFetcher implements Callable<Map<String, Map<String, Object>>> {
+    private final Callable<Map<String, Map<String, Object>>> m_fetcher;
+
+    private TimedFetcher(Callable<Map<String, Map<String, Object>>> fetcher) {
+      m_fetcher = fetcher;
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> call() throws IOException {
+      return fetch(m_fetcher);
+    }
+  }
+
+  /**
+   * The key of a cached document.
+   */
+  private static final class SnapshotKey {
+    private final StreamProvider m_streamProvider;
+    private final String m_spec;
+    private final Object m_filter;
+    private final int m_hashCode;
+
+    private SnapshotKey(StreamProvider streamProvider, String spec, Object filter) {
+      m_streamProvider = streamProvider;
+      m_spec = spec;
+      m_filter = filter;
+      m_hashCode = 31 * (31 * System.identityHashCode(streamProvider) + spec.hashCode())
+          + (filter == null ? 0 : filter.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) {
+        return true;
+      }
+      if (!(object instanceof SnapshotKey)) {
+        return false;
+      }
+      SnapshotKey that = (SnapshotKey) object;
+      return m_streamProvider == that.m_streamProvider && m_spec.equals(that.m_spec)
+          && (m_filter == null ? that.m_filter == null : m_filter.equals(that.m_filter));
+    }
+
+    @Override
+    public int hashCode() {
+      return m_hashCode;
+    }
+  }
+}
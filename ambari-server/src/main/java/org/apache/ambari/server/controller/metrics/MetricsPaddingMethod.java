@@ -18,9 +18,8 @@
 package org.apache.ambari.server.controller.metrics;
 
 import org.apache.ambari.server.controller.spi.TemporalInfo;
+import org.apache.hadoop.metrics2.sink.timeline.MetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
-import java.util.Iterator;
-import java.util.TreeMap;
 
 public class MetricsPaddingMethod {
   private final PADDING_STRATEGY strategy;
@@ -51,8 +50,10 @@ public class MetricsPaddingMethod {
       return;
     }
 
-    // TODO: JSON dser returns LinkedHashMap that is not Navigable
-    TreeMap<Long, Double> values = new TreeMap<Long, Double>(metric.getMetricValues());
+    MetricSeries values = metric.getMetricSeries();
+    if (values.size() == 0) {
+      return;
+    }
 
     long dataInterval = getTimelineMetricInterval(values);
 
@@ -66,25 +67,28 @@ public class MetricsPaddingMethod {
 
     long intervalStartTime = longToMillis(temporalInfo.getStartTime());
     long intervalEndTime = longToMillis(temporalInfo.getEndTime());
-    long dataStartTime = longToMillis(values.firstKey());
-    long dataEndTime = longToMillis(values.lastKey());
+    long dataStartTime = longToMillis(values.firstTimestamp());
+    long dataEndTime = longToMillis(values.lastTimestamp());
 
-    Double paddingValue = 0.0d;
+    double paddingValue = 0.0d;
 
     if (strategy.equals(PADDING_STRATEGY.NULLS)) {
-      paddingValue = null;
+      paddingValue = Double.NaN;
     }
+
+    MetricSeries paddedValues = new MetricSeries(values.size());
     // Pad before data interval
     for (long counter = intervalStartTime; counter < dataStartTime; counter += dataInterval) {
       // Until counter approaches or goes past dataStartTime : pad
-      values.put(counter, paddingValue);
+      paddedValues.add(counter, paddingValue);
     }
+    paddedValues.merge(values);
     // Pad after data interval
     for (long counter = dataEndTime + dataInterval; counter <= intervalEndTime; counter += dataInterval) {
-      values.put(counter, paddingValue);
+      paddedValues.add(counter, paddingValue);
     }
     // Put back new + old values
-    metric.setMetricValues(values);
+    metric.setMetricValues(paddedValues);
   }
 
   private long longToMillis(long time) {
@@ -94,11 +98,10 @@ public class MetricsPaddingMethod {
     return time;
   }
 
-  private long getTimelineMetricInterval(TreeMap<Long, Double> values) {
+  private long getTimelineMetricInterval(MetricSeries values) {
     if (values != null && values.size() > 1) {
-      Iterator<Long> tsValuesIterator = values.descendingKeySet().iterator();
-      long lastValue = tsValuesIterator.next();
-      long secondToLastValue = tsValuesIterator.next();
+      long lastValue = values.getTimestamp(values.size() - 1);
+      long secondToLastValue = values.getTimestamp(values.size() - 2);
       return Math.abs(lastValue - secondToLastValue);
     }
     // No values found or only one value found
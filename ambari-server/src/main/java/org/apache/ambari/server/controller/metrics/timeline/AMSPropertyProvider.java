@@ -43,15 +43,29 @@ import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.ConnectException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -69,6 +83,49 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
   private static final String METRIC_REGEXP_PATTERN = "\\([^)]*\\)";
   private static final int COLLECTOR_DEFAULT_PORT = 6188;
 
+  /**
+   * The maximum number of hosts queried with a single call to the collector.
+   */
+  static final int HOSTS_PER_REQUEST = 20;
+
+  /**
+   * Executor service for concurrent calls to the collector, shared between
+   * all AMS providers. Its threads are daemon threads and time out when
+   * idle, so the executor never needs to be shut down.
+   */
+  private static final ExecutorService EXECUTOR_SERVICE = initExecutorService();
+  private static final int THREAD_POOL_SIZE = 10;
+  private static final long THREAD_POOL_TIMEOUT_MILLIS = 30000L;
+
+  /**
+   * Indicates whether the collector accepts a list of host names with a
+   * single call. Cleared once the collector has rejected or ignored such a
+   * call and answered the calls for the single hosts instead.
+   */
+  private volatile boolean multipleHostQueries = true;
+
+  /**
+   * Set once the collector has answered a call for a list of host names with
+   * metrics, after which an empty answer means that the hosts have no
+   * metrics rather than that the collector ignored the list.
+   */
+  private volatile boolean multipleHostQueriesConfirmed = false;
+
+  /**
+   * Latency counters of the calls to the collector made by this provider.
+   */
+  private final AtomicLong collectorRequestCount = new AtomicLong();
+  private final AtomicLong collectorErrorCount = new AtomicLong();
+  private final AtomicLong collectorMillis = new AtomicLong();
+  private volatile long lastCollectorMillis;
+
+  /**
+   * Latency counters of the metrics requests populated by this provider.
+   */
+  private final AtomicLong populateRequestCount = new AtomicLong();
+  private final AtomicLong populateMillis = new AtomicLong();
+  private volatile long lastPopulateMillis;
+
   static {
     TIMELINE_APPID_MAP.put(HBASE_MASTER.name(), "HBASE");
     TIMELINE_APPID_MAP.put(HBASE_REGIONSERVER.name(), "HBASE");
@@ -82,6 +139,31 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
     timelineObjectReader = mapper.reader(TimelineMetrics.class);
   }
 
+  private static ExecutorService initExecutorService() {
+    ThreadPoolExecutor threadPoolExecutor =
+        new ThreadPoolExecutor(
+            THREAD_POOL_SIZE,
+            THREAD_POOL_SIZE,
+            THREAD_POOL_TIMEOUT_MILLIS,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+              private final AtomicInteger threadNumber = new AtomicInteger();
+
+              @Override
+              public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AMS Property Provider Thread-" +
+                    threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+
+    threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+    return threadPoolExecutor;
+  }
+
   public AMSPropertyProvider(Map<String, Map<String, PropertyInfo>> componentPropertyInfoMap,
                              StreamProvider streamProvider,
                              ComponentSSLConfiguration configuration,
@@ -120,6 +202,59 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
     return propertyIds;
   }
 
+  /**
+   * @return the number of calls made to the collector.
+   */
+  public long getCollectorRequestCount() {
+    return collectorRequestCount.get();
+  }
+
+  /**
+   * @return the number of calls to the collector which failed.
+   */
+  public long getCollectorErrorCount() {
+    return collectorErrorCount.get();
+  }
+
+  /**
+   * @return the average time, in milliseconds, of a call to the collector.
+   */
+  public double getAverageCollectorMillis() {
+    long requests = collectorRequestCount.get();
+    return requests == 0 ? 0 : (double) collectorMillis.get() / requests;
+  }
+
+  /**
+   * @return the time, in milliseconds, of the last call to the collector.
+   */
+  public long getLastCollectorMillis() {
+    return lastCollectorMillis;
+  }
+
+  /**
+   * @return the number of metrics requests populated from the collector.
+   */
+  public long getPopulateRequestCount() {
+    return populateRequestCount.get();
+  }
+
+  /**
+   * @return the average time, in milliseconds, taken to populate a metrics
+   *         request, including the calls to the collector.
+   */
+  public double getAveragePopulateMillis() {
+    long requests = populateRequestCount.get();
+    return requests == 0 ? 0 : (double) populateMillis.get() / requests;
+  }
+
+  /**
+   * @return the time, in milliseconds, taken to populate the last metrics
+   *         request.
+   */
+  public long getLastPopulateMillis() {
+    return lastPopulateMillis;
+  }
+
   /**
    * The information required to make a single call to the Metrics service.
    */
@@ -167,26 +302,118 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
     }
 
     private TimelineMetrics getTimelineMetricsForSpec(String spec) {
-      TimelineMetrics timelineMetrics = null;
+      try {
+        return readTimelineMetrics(spec);
+      } catch (IOException io) {
+        logTimelineMetricsError(io);
+        return null;
+      }
+    }
+
+    /**
+     * Make the call to the Metrics service for the given query. The calls
+     * for a query of more than one host are made per host if the collector
+     * rejects the list of host names, or answers it without any metrics
+     * before it ever answered such a call with metrics, as collectors that
+     * predate multiple host queries do.
+     *
+     * @return the metrics of the query; null if the call failed
+     */
+    private TimelineMetrics getTimelineMetricsForQuery(MetricsQuery query) {
+      if (query.hostSpecs.isEmpty()) {
+        return getTimelineMetricsForSpec(query.spec);
+      }
+
+      boolean rejected = false;
+      if (multipleHostQueries) {
+        try {
+          TimelineMetrics timelineMetrics = readTimelineMetrics(query.spec);
+          if (timelineMetrics != null && timelineMetrics.getMetrics() != null
+              && !timelineMetrics.getMetrics().isEmpty()) {
+            multipleHostQueriesConfirmed = true;
+            return timelineMetrics;
+          }
+          if (multipleHostQueriesConfirmed) {
+            return timelineMetrics;
+          }
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Collector returned no metrics for hosts " +
+              query.getHostnames() + ", requesting each host separately.");
+          }
+        } catch (IOException io) {
+          if (io instanceof SocketTimeoutException || io instanceof ConnectException) {
+            logTimelineMetricsError(io);
+            return null;
+          }
+          rejected = true;
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Collector rejected the request for hosts " +
+              query.getHostnames() + ", requesting each host separately.", io);
+          }
+        }
+      }
+
+      List<TimelineMetric> metricList = null;
+      for (String hostSpec : query.hostSpecs.values()) {
+        TimelineMetrics hostMetrics = getTimelineMetricsForSpec(hostSpec);
+        if (hostMetrics != null) {
+          if (metricList == null) {
+            metricList = new ArrayList<TimelineMetric>();
+          }
+          metricList.addAll(hostMetrics.getMetrics());
+        }
+      }
+      if (metricList == null) {
+        return null;
+      }
+
+      // the list of hosts was rejected, or ignored since the single hosts
+      // have metrics
+      if ((rejected || !metricList.isEmpty()) && multipleHostQueries) {
+        multipleHostQueries = false;
+        LOG.info("Metrics collector does not support requests for multiple " +
+          "hosts, requesting each host separately from now on.");
+      }
+      TimelineMetrics timelineMetrics = new TimelineMetrics();
+      timelineMetrics.setMetrics(metricList);
+      return timelineMetrics;
+    }
+
+    private void logTimelineMetricsError(IOException io) {
+      String errorMsg = "Error getting timeline metrics.";
+      if (LOG.isDebugEnabled()) {
+        LOG.error(errorMsg, io);
+      } else {
+        if (io instanceof SocketTimeoutException) {
+          errorMsg += " Can not connect to collector, socket error.";
+        }
+        LOG.error(errorMsg);
+      }
+    }
+
+    private TimelineMetrics readTimelineMetrics(String spec) throws IOException {
+      TimelineMetrics timelineMetrics;
 
       LOG.debug("Metrics request url = " + spec);
+      long startTime = System.currentTimeMillis();
       BufferedReader reader = null;
       try {
         reader = new BufferedReader(new InputStreamReader(streamProvider.readFrom(spec)));
         timelineMetrics = timelineObjectReader.readValue(reader);
-        LOG.debug("Timeline metrics response => " + timelineMetrics);
-
-      } catch (IOException io) {
-        String errorMsg = "Error getting timeline metrics.";
         if (LOG.isDebugEnabled()) {
-          LOG.error(errorMsg, io);
-        } else {
-          if (io instanceof SocketTimeoutException) {
-            errorMsg += " Can not connect to collector, socket error.";
-          }
-          LOG.error(errorMsg);
+          LOG.debug("Timeline metrics response in " +
+            (System.currentTimeMillis() - startTime) + " ms => " + timelineMetrics);
         }
+
+      } catch (IOException io) {
+        collectorErrorCount.incrementAndGet();
+        throw io;
       } finally {
+        long millis = System.currentTimeMillis() - startTime;
+        collectorRequestCount.incrementAndGet();
+        collectorMillis.addAndGet(millis);
+        lastCollectorMillis = millis;
+
         if (reader != null) {
           try {
             reader.close();
@@ -207,7 +434,9 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
 
     /**
      * Populate the associated resources by making a call to the Metrics
-     * service.
+     * service. Resources are grouped by appId and the hosts of each group
+     * are queried together, in chunks of at most
+     * {@link #HOSTS_PER_REQUEST} hosts per call to the collector.
      *
      * @return a collection of populated resources
      * @throws SystemException if unable to populate the resources
@@ -219,55 +448,57 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
         return Collections.emptySet();
       }
 
-      for (Map.Entry<String, Set<Resource>> resourceEntry : resources.entrySet()) {
-        String hostname = resourceEntry.getKey();
-        Set<Resource> resourceSet = resourceEntry.getValue();
-
+      Set<String> clusterNames = new HashSet<String>();
+      for (Set<Resource> resourceSet : resources.values()) {
         for (Resource resource : resourceSet) {
-          String clusterName = (String) resource.getPropertyValue(clusterNamePropertyId);
+          clusterNames.add((String) resource.getPropertyValue(clusterNamePropertyId));
+        }
+      }
 
-          // Check liveliness of host
-          if (!hostProvider.isCollectorHostLive(clusterName, TIMELINE_METRICS)) {
-            LOG.info("METRICS_COLLECTOR host is not live. Skip populating " +
-              "resources with metrics.");
-            return Collections.emptySet();
-          }
+      for (String clusterName : clusterNames) {
+        // Check liveliness of host
+        if (!hostProvider.isCollectorHostLive(clusterName, TIMELINE_METRICS)) {
+          LOG.info("METRICS_COLLECTOR host is not live. Skip populating " +
+            "resources with metrics.");
+          return Collections.emptySet();
+        }
 
-          // Check liveliness of Collector
-          if (!hostProvider.isCollectorComponentLive(clusterName, TIMELINE_METRICS)) {
-            LOG.info("METRICS_COLLECTOR is not live. Skip populating resources" +
-              " with metrics.");
-            return Collections.emptySet();
-          }
+        // Check liveliness of Collector
+        if (!hostProvider.isCollectorComponentLive(clusterName, TIMELINE_METRICS)) {
+          LOG.info("METRICS_COLLECTOR is not live. Skip populating resources" +
+            " with metrics.");
+          return Collections.emptySet();
+        }
+      }
 
-          TimelineMetrics timelineMetrics;
-          // Allow for multiple requests since host metrics for a
-          // hostcomponent need the HOST appId
-          if (hostComponentHostMetrics.isEmpty()) {
-            String spec = getSpec(hostname, resource);
-            timelineMetrics = getTimelineMetricsForSpec(spec);
-          } else {
-            Set<String> specs = getSpecsForHostComponentMetrics(hostname, resource);
-            timelineMetrics = new TimelineMetrics();
-            for (String spec : specs) {
-              if (!StringUtils.isEmpty(spec)) {
-                TimelineMetrics metrics = getTimelineMetricsForSpec(spec);
-                if (metrics != null) {
-                  timelineMetrics.getMetrics().addAll(metrics.getMetrics());
-                }
-              }
-            }
-          }
+      long startTime = System.currentTimeMillis();
+
+      List<MetricsQuery> queries = getMetricsQueries();
+      List<TimelineMetrics> results = getTimelineMetrics(queries);
+
+      Set<String> patterns = createPatterns(metrics.keySet());
 
-          Set<String> patterns = createPatterns(metrics.keySet());
+      for (int i = 0; i < queries.size(); i++) {
+        MetricsQuery query = queries.get(i);
+        TimelineMetrics timelineMetrics = results.get(i);
 
-          if (timelineMetrics != null) {
-            for (TimelineMetric metric : timelineMetrics.getMetrics()) {
-              if (metric.getMetricName() != null
-                  && metric.getMetricValues() != null
-                  && checkMetricName(patterns, metric.getMetricName())) {
-                // Pad zeros or nulls if needed
-                metricsPaddingMethod.applyPaddingStrategy(metric, temporalInfo);
+        if (timelineMetrics != null) {
+          for (TimelineMetric metric : timelineMetrics.getMetrics()) {
+            if (metric.getMetricName() != null
+                && metric.getMetricValues() != null
+                && checkMetricName(patterns, metric.getMetricName())) {
+
+              Set<Resource> resourceSet = query.getResources(metric.getHostName());
+              if (resourceSet.isEmpty()) {
+                if (LOG.isDebugEnabled()) {
+                  LOG.debug("No resources for metric " + metric.getMetricName() +
+                    " from host " + metric.getHostName());
+                }
+                continue;
+              }
+              // Pad zeros or nulls if needed
+              metricsPaddingMethod.applyPaddingStrategy(metric, temporalInfo);
+              for (Resource resource : resourceSet) {
                 populateResource(resource, metric);
               }
             }
@@ -275,36 +506,163 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
         }
       }
 
+      long millis = System.currentTimeMillis() - startTime;
+      populateRequestCount.incrementAndGet();
+      populateMillis.addAndGet(millis);
+      lastPopulateMillis = millis;
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Populated metrics for " + resources.size() + " host(s) with " +
+          queries.size() + " collector request(s) in " + millis + " ms.");
+      }
+
       return Collections.emptySet();
     }
 
     /**
-     * Return separate specs for : host component metrics and host component
-     * host metrics.
-     * @return @Set Urls
+     * Group the resources of this request into the queries to make to the
+     * Metrics service. Host metrics of host components are requested
+     * separately with the HOST appId.
+     *
+     * @return the list of queries
      */
-    private Set<String> getSpecsForHostComponentMetrics(String hostname, Resource resource) {
+    private List<MetricsQuery> getMetricsQueries() {
       Set<String> nonHostComponentMetrics = new HashSet<String>(metrics.keySet());
       nonHostComponentMetrics.removeAll(hostComponentHostMetrics);
 
-      Set<String> specs = new HashSet<String>();
-      if (!hostComponentHostMetrics.isEmpty()) {
-        String hostComponentHostMetricParams = getSetString(processRegexps(hostComponentHostMetrics), -1);
-        setQueryParams(resource, hostComponentHostMetricParams, hostname, "HOST");
-        specs.add(uriBuilder.toString());
+      // appId -> hostname -> resources
+      Map<String, Map<String, Set<Resource>>> appIdResources =
+        new HashMap<String, Map<String, Set<Resource>>>();
+      Map<String, Set<Resource>> hostResources = new TreeMap<String, Set<Resource>>();
+      Map<String, String> componentAppIds = new HashMap<String, String>();
+
+      for (Map.Entry<String, Set<Resource>> resourceEntry : resources.entrySet()) {
+        String hostname = resourceEntry.getKey();
+
+        for (Resource resource : resourceEntry.getValue()) {
+          if (!hostComponentHostMetrics.isEmpty()) {
+            putResource(hostResources, hostname, resource);
+          }
+          if (!nonHostComponentMetrics.isEmpty()) {
+            String appId = getAppId(resource, componentAppIds);
+            Map<String, Set<Resource>> appIdHostResources = appIdResources.get(appId);
+            if (appIdHostResources == null) {
+              appIdHostResources = new TreeMap<String, Set<Resource>>();
+              appIdResources.put(appId, appIdHostResources);
+            }
+            putResource(appIdHostResources, hostname, resource);
+          }
+        }
+      }
+
+      List<MetricsQuery> queries = new ArrayList<MetricsQuery>();
+      if (!hostResources.isEmpty()) {
+        addMetricsQueries(queries, hostComponentHostMetrics, "HOST", hostResources);
+      }
+      for (Map.Entry<String, Map<String, Set<Resource>>> entry : appIdResources.entrySet()) {
+        addMetricsQueries(queries, nonHostComponentMetrics, entry.getKey(), entry.getValue());
+      }
+      return queries;
+    }
+
+    private void addMetricsQueries(List<MetricsQuery> queries, Set<String> metricNames,
+                                   String appId, Map<String, Set<Resource>> hostResources) {
+
+      String metricsParam = getSetString(processRegexps(metricNames), -1);
+
+      // Summary resources are not bound to a host and can't share a query
+      // with host resources
+      Set<Resource> summaryResources = hostResources.remove(dummyHostName);
+      if (summaryResources != null) {
+        MetricsQuery query = new MetricsQuery();
+        query.putResources(dummyHostName, summaryResources);
+        query.spec = getSpec(metricsParam, null, appId);
+        queries.add(query);
+      }
+
+      MetricsQuery query = null;
+      for (Map.Entry<String, Set<Resource>> entry : hostResources.entrySet()) {
+        if (query == null) {
+          query = new MetricsQuery();
+        }
+        query.putResources(entry.getKey(), entry.getValue());
+
+        if (query.hostResources.size() == HOSTS_PER_REQUEST) {
+          setSpecs(query, metricsParam, appId);
+          queries.add(query);
+          query = null;
+        }
+      }
+      if (query != null) {
+        setSpecs(query, metricsParam, appId);
+        queries.add(query);
+      }
+    }
+
+    /**
+     * Set the spec of the given query and, for a query of more than one
+     * host, the specs of its single hosts, which are used if the collector
+     * rejects the list of host names.
+     */
+    private void setSpecs(MetricsQuery query, String metricsParam, String appId) {
+      query.spec = getSpec(metricsParam, query.getHostnames(), appId);
+      if (query.hostResources.size() > 1) {
+        for (String hostname : query.hostResources.keySet()) {
+          query.hostSpecs.put(hostname, getSpec(metricsParam, hostname, appId));
+        }
+      }
+    }
+
+    private void putResource(Map<String, Set<Resource>> hostResources,
+                             String hostname, Resource resource) {
+      Set<Resource> resourceSet = hostResources.get(hostname);
+      if (resourceSet == null) {
+        resourceSet = new HashSet<Resource>();
+        hostResources.put(hostname, resourceSet);
+      }
+      resourceSet.add(resource);
+    }
+
+    /**
+     * Make the calls to the Metrics service for the given queries. More than
+     * one query is run concurrently on the shared executor.
+     *
+     * @return the metrics for each query, in the order of the given queries;
+     *         an entry is null if the call failed
+     */
+    private List<TimelineMetrics> getTimelineMetrics(List<MetricsQuery> queries)
+        throws SystemException {
+
+      if (queries.size() == 1) {
+        return Collections.singletonList(getTimelineMetricsForQuery(queries.get(0)));
       }
 
-      if (!nonHostComponentMetrics.isEmpty()) {
-        String nonHostComponentHostMetricParams = getSetString(processRegexps(nonHostComponentMetrics), -1);
-        setQueryParams(resource, nonHostComponentHostMetricParams, hostname, null);
-        specs.add(uriBuilder.toString());
+      List<Callable<TimelineMetrics>> callables =
+        new ArrayList<Callable<TimelineMetrics>>(queries.size());
+      for (final MetricsQuery query : queries) {
+        callables.add(new Callable<TimelineMetrics>() {
+          @Override
+          public TimelineMetrics call() throws Exception {
+            return getTimelineMetricsForQuery(query);
+          }
+        });
       }
 
-      return specs;
+      List<TimelineMetrics> results = new ArrayList<TimelineMetrics>(queries.size());
+      try {
+        for (Future<TimelineMetrics> future : EXECUTOR_SERVICE.invokeAll(callables)) {
+          results.add(future.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SystemException("Interrupted while waiting for timeline metrics.", e);
+      } catch (ExecutionException e) {
+        throw new SystemException("Error getting timeline metrics.", e.getCause());
+      }
+      return results;
     }
 
-    private void setQueryParams(Resource resource, String metricsParam,
-                                String hostname, String appId) {
+    private String getSpec(String metricsParam, String hostnames, String appId) {
       // Reuse uriBuilder
       uriBuilder.removeQuery();
 
@@ -312,35 +670,12 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
         uriBuilder.setParameter("metricNames", metricsParam);
       }
 
-      if (hostname != null && !hostname.isEmpty() && !hostname.equals(dummyHostName)) {
-        uriBuilder.setParameter("hostname", hostname);
+      if (hostnames != null && !hostnames.isEmpty()) {
+        uriBuilder.setParameter("hostname", hostnames);
       }
 
       if (appId != null) {
         uriBuilder.setParameter("appId", appId);
-      } else {
-        String componentName = getComponentName(resource);
-        if (componentName != null && !componentName.isEmpty()) {
-          String clusterName = (String) resource.getPropertyValue(clusterNamePropertyId);
-          StackId stackId;
-          try {
-            AmbariManagementController managementController = AmbariServer.getController();
-            stackId = managementController.getClusters().getCluster(clusterName).getCurrentStackVersion();
-            if (stackId != null) {
-              String stackName = stackId.getStackName();
-              String version = stackId.getStackVersion();
-              AmbariMetaInfo ambariMetaInfo = managementController.getAmbariMetaInfo();
-              String serviceName = ambariMetaInfo.getComponentToService(stackName,version,componentName);
-              String timeLineAppId = ambariMetaInfo.getComponent(stackName, version, serviceName, componentName).getTimelineAppid();
-              if (timeLineAppId != null){
-                componentName = timeLineAppId;
-              }
-            }
-          } catch (Exception e) {
-            e.printStackTrace();
-          }
-          uriBuilder.setParameter("appId", componentName);
-        }
       }
 
       if (temporalInfo != null) {
@@ -354,14 +689,50 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
           uriBuilder.setParameter("endTime", String.valueOf(endTime));
         }
       }
+
+      return uriBuilder.toString();
     }
 
-    private String getSpec(String hostname, Resource resource) {
-      String metricsParam = getSetString(processRegexps(metrics.keySet()), -1);
+    /**
+     * Get the timeline appId of the component of the given resource.
+     *
+     * @param resource         the resource
+     * @param componentAppIds  the appIds already resolved for this request
+     *
+     * @return the appId or null if the resource has no component
+     */
+    private String getAppId(Resource resource, Map<String, String> componentAppIds) {
+      String componentName = getComponentName(resource);
+      if (componentName == null || componentName.isEmpty()) {
+        return null;
+      }
 
-      setQueryParams(resource, metricsParam, hostname, null);
+      String clusterName = (String) resource.getPropertyValue(clusterNamePropertyId);
+      String key = clusterName + "/" + componentName;
+      if (componentAppIds.containsKey(key)) {
+        return componentAppIds.get(key);
+      }
 
-      return uriBuilder.toString();
+      String appId = componentName;
+      StackId stackId;
+      try {
+        AmbariManagementController managementController = AmbariServer.getController();
+        stackId = managementController.getClusters().getCluster(clusterName).getCurrentStackVersion();
+        if (stackId != null) {
+          String stackName = stackId.getStackName();
+          String version = stackId.getStackVersion();
+          AmbariMetaInfo ambariMetaInfo = managementController.getAmbariMetaInfo();
+          String serviceName = ambariMetaInfo.getComponentToService(stackName,version,componentName);
+          String timeLineAppId = ambariMetaInfo.getComponent(stackName, version, serviceName, componentName).getTimelineAppid();
+          if (timeLineAppId != null){
+            appId = timeLineAppId;
+          }
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      componentAppIds.put(key, appId);
+      return appId;
     }
 
     private Set<String> createPatterns(Set<String> rawNames) {
@@ -445,6 +816,43 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
     }
   }
 
+  /**
+   * A single call to the Metrics service for the resources of one or more hosts.
+   */
+  private static class MetricsQuery {
+    private final Map<String, Set<Resource>> hostResources =
+      new LinkedHashMap<String, Set<Resource>>();
+    private final Map<String, String> hostSpecs = new LinkedHashMap<String, String>();
+    private String spec;
+
+    private void putResources(String hostname, Set<Resource> resources) {
+      hostResources.put(hostname, resources);
+    }
+
+    private String getHostnames() {
+      return StringUtils.join(hostResources.keySet(), ",");
+    }
+
+    /**
+     * Get the resources to populate with a metric reported by the given host.
+     * All metrics returned by a single host query belong to its resources.
+     */
+    private Set<Resource> getResources(String hostname) {
+      if (hostResources.size() == 1) {
+        return hostResources.values().iterator().next();
+      }
+      Set<Resource> resources = hostResources.get(hostname);
+      if (resources == null && hostname != null) {
+        for (Map.Entry<String, Set<Resource>> entry : hostResources.entrySet()) {
+          if (hostname.equalsIgnoreCase(entry.getKey())) {
+            return entry.getValue();
+          }
+        }
+      }
+      return resources == null ? Collections.<Resource>emptySet() : resources;
+    }
+  }
+
   @Override
   public Set<Resource> populateResourcesWithProperties(Set<Resource> resources,
                Request request, Set<String> propertyIds) throws SystemException {
@@ -0,0 +1,31 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.spi;
+
+/**
+ * Marker interface for resource providers that are able to answer a single
+ * query whose predicate is an OR of the key predicates of many resources.
+ *
+ * The API query layer uses this to fetch the sub-resources of many parent
+ * resources with one call to the provider (e.g. the host components of all
+ * of the hosts of a cluster) instead of issuing one call per parent.  If the
+ * batched call fails because one of the parent resources no longer exists,
+ * the query layer falls back to querying each parent individually.
+ */
+public interface BatchResourceProvider extends ResourceProvider {
+}
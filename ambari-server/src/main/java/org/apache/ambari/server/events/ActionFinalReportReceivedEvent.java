@@ -66,6 +66,17 @@ public final class ActionFinalReportReceivedEvent extends AmbariEvent {
     return role;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Events are ordered by cluster, or by host for actions outside of a
+   * cluster.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return null != clusterId ? clusterId : hostname;
+  }
+
   @Override
   public String toString() {
     return "ActionFinalReportReceivedEvent{" +
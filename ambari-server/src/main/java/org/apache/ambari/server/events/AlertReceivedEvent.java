@@ -17,14 +17,24 @@
  */
 package org.apache.ambari.server.events;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.ambari.server.state.Alert;
 
 /**
  * The {@link AlertReceivedEvent} is fired when an {@link Alert} is received or
- * generated.
+ * generated. Alerts which are received together, such as those in a single
+ * agent heartbeat, are fired as one event so that they can be stored in a
+ * single transaction.
  */
 public final class AlertReceivedEvent extends AlertEvent {
 
+  /**
+   * The alerts received, including {@link #getAlert()}.
+   */
+  private final List<Alert> m_alerts;
+
   /**
    * Constructor.
    *
@@ -33,6 +43,28 @@ public final class AlertReceivedEvent extends AlertEvent {
    */
   public AlertReceivedEvent(long clusterId, Alert alert) {
     super(clusterId, alert);
+    m_alerts = Collections.singletonList(alert);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param clusterId
+   * @param alerts
+   *          the alerts received for the cluster (not {@code null} or empty).
+   */
+  public AlertReceivedEvent(long clusterId, List<Alert> alerts) {
+    super(clusterId, alerts.get(0));
+    m_alerts = alerts;
+  }
+
+  /**
+   * Gets all of the alerts that this event is created for.
+   *
+   * @return the alerts (never {@code null}).
+   */
+  public List<Alert> getAlerts() {
+    return m_alerts;
   }
 
   /**
@@ -42,7 +74,7 @@ public final class AlertReceivedEvent extends AlertEvent {
   public String toString() {
     StringBuilder buffer = new StringBuilder("AlertReceivedEvent{ ");
     buffer.append("cluserId=").append(m_clusterId);
-    buffer.append(", alert=").append(m_alert);
+    buffer.append(", alerts=").append(m_alerts);
 
     buffer.append("}");
     return buffer.toString();
@@ -126,4 +126,16 @@ public abstract class AmbariEvent {
   public AmbariEventType getType() {
     return m_eventType;
   }
+
+  /**
+   * Gets the key which orders this event relative to other events. Events
+   * with equal keys are handled in the order in which they were published,
+   * while events with different keys may be handled concurrently.
+   *
+   * @return the partition key, or {@code null} to order the event with all
+   *         other events without a key.
+   */
+  public Object getPartitionKey() {
+    return null;
+  }
 }
@@ -47,4 +47,14 @@ public class ClusterEvent extends AmbariEvent {
     return m_clusterId;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Events are ordered by cluster.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return Long.valueOf(m_clusterId);
+  }
+
 }
@@ -48,4 +48,15 @@ public class HostAddedEvent extends ClusterEvent {
   public String getHostName() {
     return m_hostName;
   }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Ordered by host, like the removal of the host and the installs and
+   * uninstalls of its components.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return m_hostName;
+  }
 }
@@ -46,4 +46,14 @@ public abstract class HostEvent extends AmbariEvent {
   public String getHostName() {
     return m_hostName;
   }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Events are ordered by host.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return m_hostName;
+  }
 }
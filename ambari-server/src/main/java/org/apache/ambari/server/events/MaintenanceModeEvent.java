@@ -151,6 +151,23 @@ public class MaintenanceModeEvent extends AmbariEvent {
     return m_state;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Service events are ordered by cluster, host and host component events by
+   * host.
+   */
+  @Override
+  public Object getPartitionKey() {
+    if (null != m_service) {
+      return Long.valueOf(m_service.getClusterId());
+    } else if (null != m_serviceComponentHost) {
+      return m_serviceComponentHost.getHostName();
+    }
+
+    return null != m_host ? m_host.getHostName() : null;
+  }
+
   /**
    * {@inheritDoc}
    */
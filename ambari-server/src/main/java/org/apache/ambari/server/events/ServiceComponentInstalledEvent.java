@@ -54,6 +54,17 @@ public class ServiceComponentInstalledEvent extends ServiceEvent {
     return m_hostName;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Ordered by host, so that the install is handled after the host was added
+   * and before it is removed.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return m_hostName;
+  }
+
   /**
    * {@inheritDoc}
    */
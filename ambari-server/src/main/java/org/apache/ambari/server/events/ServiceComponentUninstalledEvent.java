@@ -60,6 +60,17 @@ public class ServiceComponentUninstalledEvent extends ServiceEvent {
     return m_hostName;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Ordered by host, so that the uninstall is handled after the host was added
+   * and before it is removed.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return m_hostName;
+  }
+
   /**
    * {@inheritDoc}
    */
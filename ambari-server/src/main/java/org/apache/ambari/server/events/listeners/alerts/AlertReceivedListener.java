@@ -17,6 +17,14 @@
  */
 package org.apache.ambari.server.events.listeners.alerts;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.EagerSingleton;
 import org.apache.ambari.server.controller.RootServiceResponseFactory.Services;
@@ -45,11 +53,15 @@ import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
 
 /**
  * The {@link AlertReceivedListener} class handles {@link AlertReceivedEvent}
  * and updates the appropriate DAOs. It may also fire new
  * {@link AlertStateChangeEvent} when an {@link AlertState} change is detected.
+ * Alerts whose state did not change are written through
+ * {@link AlertsDAO#mergeLatest(AlertCurrentEntity, long, String)}, which defers the write
+ * when the alert cache is enabled.
  */
 @Singleton
 @EagerSingleton
@@ -88,7 +100,12 @@ public class AlertReceivedListener {
   }
 
   /**
-   * Adds an alert. Checks for a new state before creating a new history record.
+   * Adds the alerts of the event. Checks for a new state before creating a new
+   * history record. All of the alerts are written in a single transaction and
+   * {@link InitialAlertEvent}s and {@link AlertStateChangeEvent}s are only
+   * published once it has been committed. If that transaction fails, each
+   * alert is written in its own transaction so that only the failing alerts
+   * are dropped.
    *
    * @param event
    *          the event to handle.
@@ -101,104 +118,231 @@ public class AlertReceivedListener {
       LOG.debug(event.toString());
     }
 
-    Alert alert = event.getAlert();
+    long clusterId = event.getClusterId();
 
-    // jobs that were running when a service/component/host was changed
-    // which invalidate the alert should not be reported
-    if (!isValid(alert)) {
-      return;
-    }
+    // definitions are looked up once per event
+    Map<String, AlertDefinitionEntity> definitions = new HashMap<String, AlertDefinitionEntity>();
 
-    long clusterId = event.getClusterId();
+    // the last alert received for each definition and host
+    Map<String, Alert> alerts = new LinkedHashMap<String, Alert>();
 
-    AlertDefinitionEntity definition = m_definitionDao.findByName(clusterId,
-        alert.getName());
+    for (Alert alert : event.getAlerts()) {
+      // jobs that were running when a service/component/host was changed
+      // which invalidate the alert should not be reported
+      if (!isValid(alert)) {
+        continue;
+      }
 
-    if (null == definition) {
-      LOG.warn(
-          "Received an alert for {} which is a definition that does not exist anymore",
-          alert.getName());
+      AlertDefinitionEntity definition = definitions.get(alert.getName());
+      if (null == definition && !definitions.containsKey(alert.getName())) {
+        definition = m_definitionDao.findByName(clusterId, alert.getName());
+        definitions.put(alert.getName(), definition);
+      }
 
-      return;
-    }
+      if (null == definition) {
+        LOG.warn(
+            "Received an alert for {} which is a definition that does not exist anymore",
+            alert.getName());
 
-    // it's possible that a definition which is disabled will still have a
-    // running alert returned; this will ensure we don't record it
-    if (!definition.getEnabled()) {
-      LOG.debug(
-          "Received an alert for {} which is disabled. No more alerts should be received for this definition.",
-          alert.getName());
+        continue;
+      }
 
-      return;
-    }
+      // it's possible that a definition which is disabled will still have a
+      // running alert returned; this will ensure we don't record it
+      if (!definition.getEnabled()) {
+        LOG.debug(
+            "Received an alert for {} which is disabled. No more alerts should be received for this definition.",
+            alert.getName());
 
-    AlertCurrentEntity current;
+        continue;
+      }
 
-    if (StringUtils.isBlank(alert.getHostName()) || definition.isHostIgnored()) {
-      current = m_alertsDao.findCurrentByNameNoHost(clusterId, alert.getName());
-    } else {
-      current = m_alertsDao.findCurrentByHostAndName(clusterId, alert.getHostName(),
-          alert.getName());
+      String hostName = null;
+      if (!StringUtils.isBlank(alert.getHostName()) && !definition.isHostIgnored()) {
+        hostName = alert.getHostName();
+      }
+
+      alerts.put(alert.getName() + "/" + hostName, alert);
     }
 
-    if (null == current) {
-      AlertHistoryEntity history = createHistory(clusterId, definition, alert);
+    List<AlertStateChange> toCreate = new ArrayList<AlertStateChange>();
+    List<AlertStateChange> toMerge = new ArrayList<AlertStateChange>();
+    List<AlertStateChange> stateChanges = new ArrayList<AlertStateChange>();
 
-      current = new AlertCurrentEntity();
-      current.setMaintenanceState(MaintenanceState.OFF);
-      current.setAlertHistory(history);
-      current.setLatestTimestamp(alert.getTimestamp());
-      current.setOriginalTimestamp(alert.getTimestamp());
-      m_alertsDao.create(current);
+    for (Alert alert : alerts.values()) {
+      AlertDefinitionEntity definition = definitions.get(alert.getName());
+      AlertCurrentEntity current;
 
-      // broadcast the initial alert being received
-      InitialAlertEvent initialAlertEvent = new InitialAlertEvent(
-          event.getClusterId(), event.getAlert(), current);
+      if (StringUtils.isBlank(alert.getHostName()) || definition.isHostIgnored()) {
+        current = m_alertsDao.findCurrentByNameNoHost(clusterId, alert.getName());
+      } else {
+        current = m_alertsDao.findCurrentByHostAndName(clusterId, alert.getHostName(),
+            alert.getName());
+      }
 
-      m_alertEventPublisher.publish(initialAlertEvent);
-    } else if (alert.getState() == current.getAlertHistory().getAlertState()) {
-      current.setLatestTimestamp(alert.getTimestamp());
-      current.setLatestText(alert.getText());
-      m_alertsDao.merge(current);
-    } else {
-      if (LOG.isDebugEnabled()) {
-        LOG.debug(
-            "Alert State Changed: CurrentId {}, CurrentTimestamp {}, HistoryId {}, HistoryState {}",
-            current.getAlertId(), current.getLatestTimestamp(),
-            current.getAlertHistory().getAlertId(),
-            current.getAlertHistory().getAlertState());
+      if (null == current) {
+        AlertHistoryEntity history = createHistory(clusterId, definition, alert);
+
+        current = new AlertCurrentEntity();
+        current.setMaintenanceState(MaintenanceState.OFF);
+        current.setAlertHistory(history);
+        current.setLatestTimestamp(alert.getTimestamp());
+        current.setOriginalTimestamp(alert.getTimestamp());
+        toCreate.add(new AlertStateChange(alert, current, history, null));
+      } else if (alert.getState() == current.getAlertHistory().getAlertState()) {
+        toMerge.add(new AlertStateChange(alert, current, null, null));
+      } else {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(
+              "Alert State Changed: CurrentId {}, CurrentTimestamp {}, HistoryId {}, HistoryState {}",
+              current.getAlertId(), current.getLatestTimestamp(),
+              current.getAlertHistory().getAlertId(),
+              current.getAlertHistory().getAlertState());
+        }
+
+        AlertHistoryEntity oldHistory = current.getAlertHistory();
+
+        // insert history, update current
+        AlertHistoryEntity history = createHistory(clusterId,
+            oldHistory.getAlertDefinition(), alert);
+
+        current.setLatestTimestamp(alert.getTimestamp());
+        current.setOriginalTimestamp(alert.getTimestamp());
+        current.setLatestText(alert.getText());
+
+        stateChanges.add(new AlertStateChange(alert, current, history,
+            oldHistory.getAlertState()));
       }
+    }
 
-      AlertHistoryEntity oldHistory = current.getAlertHistory();
-      AlertState oldState = oldHistory.getAlertState();
+    if (toCreate.isEmpty() && toMerge.isEmpty() && stateChanges.isEmpty()) {
+      return;
+    }
 
-      // insert history, update current
-      AlertHistoryEntity history = createHistory(clusterId,
-          oldHistory.getAlertDefinition(), alert);
+    try {
+      saveEntities(toCreate, toMerge, stateChanges);
+    } catch (RuntimeException exception) {
+      LOG.warn("Unable to save the alerts of cluster {} together, saving them one at a time",
+          clusterId, exception);
 
-      current.setLatestTimestamp(alert.getTimestamp());
-      current.setOriginalTimestamp(alert.getTimestamp());
-      current.setLatestText(alert.getText());
+      saveEntitiesSeparately(toCreate, toMerge, stateChanges);
+    }
+
+    // broadcast the initial alerts being received
+    for (AlertStateChange initialAlert : toCreate) {
+      InitialAlertEvent initialAlertEvent = new InitialAlertEvent(clusterId,
+          initialAlert.m_alert, initialAlert.m_current);
 
-      current = m_alertsDao.mergeAlertCurrentWithAlertHistory(current, history);
+      m_alertEventPublisher.publish(initialAlertEvent);
+    }
 
+    // broadcast the alert changed events for other subscribers
+    for (AlertStateChange stateChange : stateChanges) {
       if (LOG.isDebugEnabled()) {
         LOG.debug(
             "Alert State Merged: CurrentId {}, CurrentTimestamp {}, HistoryId {}, HistoryState {}",
-            current.getAlertId(), current.getLatestTimestamp(),
-            current.getAlertHistory().getAlertId(),
-            current.getAlertHistory().getAlertState());
+            stateChange.m_current.getAlertId(),
+            stateChange.m_current.getLatestTimestamp(),
+            stateChange.m_current.getAlertHistory().getAlertId(),
+            stateChange.m_current.getAlertHistory().getAlertState());
       }
 
-      // broadcast the alert changed event for other subscribers
       AlertStateChangeEvent alertChangedEvent = new AlertStateChangeEvent(
-          event.getClusterId(), event.getAlert(), current,
-          oldState);
+          clusterId, stateChange.m_alert, stateChange.m_current,
+          stateChange.m_oldState);
 
       m_alertEventPublisher.publish(alertChangedEvent);
     }
   }
 
+  /**
+   * Writes the new current alerts, the alerts which did not change state and
+   * the state changes in a single transaction.
+   *
+   * @param toCreate
+   *          the new current alerts to create.
+   * @param toMerge
+   *          the current alerts which did not change state, with the alerts
+   *          that carry their new latest timestamp and text.
+   * @param stateChanges
+   *          the current alerts with a new state; each is updated with the
+   *          merged current alert.
+   */
+  @Transactional
+  void saveEntities(List<AlertStateChange> toCreate,
+      List<AlertStateChange> toMerge, List<AlertStateChange> stateChanges) {
+    for (AlertStateChange initialAlert : toCreate) {
+      m_alertsDao.create(initialAlert.m_current);
+    }
+
+    for (AlertStateChange latest : toMerge) {
+      m_alertsDao.mergeLatest(latest.m_current, latest.m_alert.getTimestamp(),
+          latest.m_alert.getText());
+    }
+
+    for (AlertStateChange stateChange : stateChanges) {
+      stateChange.m_current = m_alertsDao.mergeAlertCurrentWithAlertHistory(
+          stateChange.m_current, stateChange.m_history);
+    }
+  }
+
+  /**
+   * Writes each alert in its own transaction. Alerts which cannot be written
+   * are logged, evicted from the current alert cache and removed from their
+   * list so that no event is published for them.
+   *
+   * @param toCreate
+   *          the new current alerts to create.
+   * @param toMerge
+   *          the current alerts which did not change state.
+   * @param stateChanges
+   *          the current alerts with a new state.
+   */
+  private void saveEntitiesSeparately(List<AlertStateChange> toCreate,
+      List<AlertStateChange> toMerge, List<AlertStateChange> stateChanges) {
+    List<AlertStateChange> none = Collections.emptyList();
+
+    for (Iterator<AlertStateChange> iterator = toCreate.iterator(); iterator.hasNext();) {
+      AlertStateChange initialAlert = iterator.next();
+      if (!saveEntity(initialAlert, Collections.singletonList(initialAlert), none, none)) {
+        iterator.remove();
+      }
+    }
+
+    for (Iterator<AlertStateChange> iterator = toMerge.iterator(); iterator.hasNext();) {
+      AlertStateChange latest = iterator.next();
+      if (!saveEntity(latest, none, Collections.singletonList(latest), none)) {
+        iterator.remove();
+      }
+    }
+
+    for (Iterator<AlertStateChange> iterator = stateChanges.iterator(); iterator.hasNext();) {
+      AlertStateChange stateChange = iterator.next();
+      if (!saveEntity(stateChange, none, none, Collections.singletonList(stateChange))) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Writes a single alert with {@link #saveEntities(List, List, List)}.
+   *
+   * @return {@code true} if the alert was written.
+   */
+  private boolean saveEntity(AlertStateChange change, List<AlertStateChange> toCreate,
+      List<AlertStateChange> toMerge, List<AlertStateChange> stateChanges) {
+    try {
+      saveEntities(toCreate, toMerge, stateChanges);
+      return true;
+    } catch (RuntimeException exception) {
+      LOG.error("Unable to save alert {} for host {}", change.m_alert.getName(),
+          change.m_alert.getHostName(), exception);
+
+      m_alertsDao.evictCurrent(change.m_current);
+      return false;
+    }
+  }
+
   /**
    * Gets whether the specified alert is valid for its reported cluster,
    * service, component, and host. This method is necessary for the case where a
@@ -304,4 +448,24 @@ public class AlertReceivedListener {
 
     return history;
   }
+
+  /**
+   * A new current alert, a state change of an existing one, or an existing
+   * alert whose state did not change. New alerts have no previous state and
+   * alerts whose state did not change have no new history.
+   */
+  static final class AlertStateChange {
+    private final Alert m_alert;
+    private final AlertHistoryEntity m_history;
+    private final AlertState m_oldState;
+    private AlertCurrentEntity m_current;
+
+    private AlertStateChange(Alert alert, AlertCurrentEntity current,
+        AlertHistoryEntity history, AlertState oldState) {
+      m_alert = alert;
+      m_current = current;
+      m_history = history;
+      m_oldState = oldState;
+    }
+  }
 }
@@ -17,34 +17,74 @@
  */
 package org.apache.ambari.server.events.publishers;
 
-import java.util.concurrent.Executors;
+import java.util.Collections;
+import java.util.Map;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.events.publishers.PartitionedEventBus.EventStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 /**
  * The {@link AmbariEventPublisher} is used to publish instances of
  * {@link AmbariEvent} to any {@link Subscribe} methods interested. It uses a
- * single-threaded {@link AsyncEventBus}.
+ * {@link PartitionedEventBus} with a single lane by default, so that events
+ * are handled in the order they were published. When configured with more
+ * threads, events are only ordered for each cluster or host while events for
+ * different clusters or hosts can be handled concurrently.
  */
 @Singleton
 public class AmbariEventPublisher {
 
   /**
-   * A single threaded event bus for processing Ambari events in serial.
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(AmbariEventPublisher.class);
+
+  /**
+   * The time to wait for the events already published when shutting down,
+   * in milliseconds.
+   */
+  private static final long SHUTDOWN_TIMEOUT = 10000L;
+
+  /**
+   * The event bus for processing Ambari events.
    */
   private final EventBus m_eventBus;
 
   /**
-   * Constructor.
+   * Constructor. Events are handled serially on a single thread.
    */
   public AmbariEventPublisher() {
-    m_eventBus = new AsyncEventBus("ambari-event-bus",
-        Executors.newSingleThreadExecutor());
+    this(1);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          the configuration which determines the number of threads
+   *          handling events.
+   */
+  @Inject
+  public AmbariEventPublisher(Configuration configuration) {
+    this(configuration.getEventPublisherThreads());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param threads
+   *          the number of threads handling events.
+   */
+  public AmbariEventPublisher(int threads) {
+    m_eventBus = new PartitionedEventBus("ambari-event-bus", threads);
   }
 
   /**
@@ -67,4 +107,37 @@ public class AmbariEventPublisher {
   public void register(Object object) {
     m_eventBus.register(object);
   }
+
+  /**
+   * Gets the queue depth and handler latency of each event type published so
+   * far.
+   *
+   * @return the statistics by simple class name of the event, or an empty map
+   *         if the event bus does not track statistics.
+   */
+  public Map<String, EventStatistics> getEventStatistics() {
+    if (m_eventBus instanceof PartitionedEventBus) {
+      return ((PartitionedEventBus) m_eventBus).getStatistics();
+    }
+
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Handles the events which were already published, stops the threads of
+   * the event bus and logs the statistics of the events handled.
+   */
+  public void shutdown() {
+    if (!(m_eventBus instanceof PartitionedEventBus)) {
+      return;
+    }
+
+    try {
+      ((PartitionedEventBus) m_eventBus).shutdown(SHUTDOWN_TIMEOUT);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+
+    LOG.info("Handled Ambari events: {}", getEventStatistics());
+  }
 }
@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.server.events.AmbariEvent;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
+
+/**
+ * The {@link PartitionedEventBus} is an {@link EventBus} which handles events
+ * on several single threaded lanes. The lane of an {@link AmbariEvent} is
+ * chosen by its {@link AmbariEvent#getPartitionKey()}, so events for the same
+ * cluster or host are handled in the order they were posted while unrelated
+ * events are handled concurrently. Handlers which are not annotated with
+ * {@link AllowConcurrentEvents} are still never invoked concurrently.
+ * <p/>
+ * Events with different keys are not ordered relative to each other. All
+ * events about a single host, such as adding and removing it and installing
+ * components on it, are therefore keyed by the host name. Events keyed by
+ * cluster, such as a service install, are not ordered with them; only a
+ * single lane preserves the publishing order of all events.
+ * <p/>
+ * The number of queued events and the time spent handling them is tracked
+ * for each event type.
+ */
+public class PartitionedEventBus extends EventBus {
+
+  /**
+   * The single threaded executors which handle the events.
+   */
+  private final ExecutorService[] m_lanes;
+
+  /**
+   * Statistics by event type.
+   */
+  private final ConcurrentMap<Class<?>, EventStatistics> m_statistics =
+      new ConcurrentHashMap<Class<?>, EventStatistics>();
+
+  /**
+   * Constructor.
+   *
+   * @param identifier
+   *          the name of the bus, used to name its threads.
+   * @param lanes
+   *          the number of threads handling events.
+   */
+  public PartitionedEventBus(String identifier, int lanes) {
+    super(identifier);
+
+    m_lanes = new ExecutorService[Math.max(1, lanes)];
+    for (int i = 0; i < m_lanes.length; i++) {
+      m_lanes[i] = Executors.newSingleThreadExecutor(
+          new LaneThreadFactory(identifier + "-" + i));
+    }
+  }
+
+  /**
+   * Queues the event on its lane. The handlers are invoked by the lane's
+   * thread.
+   *
+   * @param event
+   *          the event to post.
+   */
+  @Override
+  public void post(final Object event) {
+    final EventStatistics statistics = getStatistics(event.getClass());
+    statistics.m_queued.incrementAndGet();
+
+    m_lanes[getLane(event)].execute(new Runnable() {
+      @Override
+      public void run() {
+        statistics.m_queued.decrementAndGet();
+
+        long start = System.nanoTime();
+        try {
+          PartitionedEventBus.super.post(event);
+        } finally {
+          statistics.record(System.nanoTime() - start);
+        }
+      }
+    });
+  }
+
+  /**
+   * @return the number of lanes.
+   */
+  public int getLaneCount() {
+    return m_lanes.length;
+  }
+
+  /**
+   * Gets the lane which handles the event. Events without a partition key are
+   * handled on the first lane.
+   *
+   * @param event
+   *          the event.
+   * @return the index of the lane.
+   */
+  int getLane(Object event) {
+    Object key = null;
+    if (event instanceof AmbariEvent) {
+      key = ((AmbariEvent) event).getPartitionKey();
+    }
+
+    if (null == key) {
+      return 0;
+    }
+
+    return (key.hashCode() & Integer.MAX_VALUE) % m_lanes.length;
+  }
+
+  /**
+   * Gets a snapshot of the statistics of every event type posted so far.
+   *
+   * @return the statistics by simple class name of the event.
+   */
+  public Map<String, EventStatistics> getStatistics() {
+    Map<String, EventStatistics> statistics = new TreeMap<String, EventStatistics>();
+    for (Map.Entry<Class<?>, EventStatistics> entry : m_statistics.entrySet()) {
+      statistics.put(entry.getKey().getSimpleName(), entry.getValue());
+    }
+
+    return Collections.unmodifiableMap(statistics);
+  }
+
+  /**
+   * Stops the lanes after the events which were already posted have been
+   * handled.
+   *
+   * @param timeout
+   *          the time to wait for each lane, in milliseconds.
+   * @throws InterruptedException
+   *           if interrupted while waiting.
+   */
+  public void shutdown(long timeout) throws InterruptedException {
+    for (ExecutorService lane : m_lanes) {
+      lane.shutdown();
+    }
+
+    for (ExecutorService lane : m_lanes) {
+      lane.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private EventStatistics getStatistics(Class<?> eventClass) {
+    EventStatistics statistics = m_statistics.get(eventClass);
+    if (null == statistics) {
+      m_statistics.putIfAbsent(eventClass, new EventStatistics());
+      statistics = m_statistics.get(eventClass);
+    }
+
+    return statistics;
+  }
+
+  /**
+   * The {@link EventStatistics} of a single event type.
+   */
+  public static final class EventStatistics {
+    private final AtomicInteger m_queued = new AtomicInteger();
+    private final AtomicLong m_handled = new AtomicLong();
+    private final AtomicLong m_totalNanos = new AtomicLong();
+    private final AtomicLong m_maxNanos = new AtomicLong();
+
+    private void record(long nanos) {
+      m_handled.incrementAndGet();
+      m_totalNanos.addAndGet(nanos);
+
+      long max = m_maxNanos.get();
+      while (nanos > max && !m_maxNanos.compareAndSet(max, nanos)) {
+        max = m_maxNanos.get();
+      }
+    }
+
+    /**
+     * @return the number of events waiting to be handled.
+     */
+    public int getQueueDepth() {
+      return m_queued.get();
+    }
+
+    /**
+     * @return the number of events handled.
+     */
+    public long getHandledCount() {
+      return m_handled.get();
+    }
+
+    /**
+     * @return the average time spent by all handlers of an event, in
+     *         milliseconds.
+     */
+    public double getAverageLatency() {
+      long handled = m_handled.get();
+      return handled == 0 ? 0 : m_totalNanos.get() / (handled * 1000000.0);
+    }
+
+    /**
+     * @return the longest time spent by all handlers of an event, in
+     *         milliseconds.
+     */
+    public double getMaxLatency() {
+      return m_maxNanos.get() / 1000000.0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      return String.format("{queued=%d, handled=%d, avgMs=%.2f, maxMs=%.2f}",
+          getQueueDepth(), getHandledCount(), getAverageLatency(), getMaxLatency());
+    }
+  }
+
+  /**
+   * Names the thread of a lane. The threads are daemons so that they don't
+   * keep the server alive; {@link #shutdown(long)} lets them finish the
+   * events already posted.
+   */
+  private static final class LaneThreadFactory implements ThreadFactory {
+    private final String m_name;
+
+    private LaneThreadFactory(String name) {
+      m_name = name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, m_name);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
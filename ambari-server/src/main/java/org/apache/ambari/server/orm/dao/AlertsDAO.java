@@ -17,11 +17,15 @@
  */
 package org.apache.ambari.server.orm.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
@@ -31,6 +35,7 @@ import javax.persistence.metamodel.SingularAttribute;
 
 import org.apache.ambari.server.api.query.JpaPredicateVisitor;
 import org.apache.ambari.server.api.query.JpaSortBuilder;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.AlertCurrentRequest;
 import org.apache.ambari.server.controller.AlertHistoryRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
@@ -42,14 +47,19 @@ import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity_;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity_;
+import org.apache.ambari.server.orm.entities.AlertNoticeEntity;
 import org.apache.ambari.server.state.AlertState;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.alert.Scope;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -59,6 +69,11 @@ import com.google.inject.persist.Transactional;
  * The {@link AlertsDAO} class manages the {@link AlertHistoryEntity} and
  * {@link AlertCurrentEntity} instances. Each {@link AlertHistoryEntity} is
  * known as an "alert" that has been triggered and received.
+ * <p/>
+ * If {@link Configuration#isAlertCacheEnabled()} is {@code true}, current
+ * alerts looked up by cluster, definition and host are kept in memory and
+ * updates to alerts which did not change state are only written by
+ * {@link #flushCachedEntitiesToJPA()}.
  */
 @Singleton
 public class AlertsDAO {
@@ -110,6 +125,52 @@ public class AlertsDAO {
   @Inject
   private Provider<Clusters> m_clusters;
 
+  /**
+   * Current alerts by cluster, definition and host, or {@code null} if the
+   * cache is disabled.
+   */
+  private final Cache<AlertCacheKey, AlertCurrentEntity> m_currentAlertCache;
+
+  /**
+   * Current alerts whose latest timestamp and text have not been written yet.
+   * Changes to this map and to the cached alert of a key are made while
+   * holding the lock of the key, so that an alert merged by another caller is
+   * never replaced by an older instance. The latest timestamp and text of an
+   * unflushed alert are changed and read while holding the monitor of the
+   * alert.
+   */
+  private final Map<AlertCacheKey, AlertCurrentEntity> m_unflushedAlerts =
+      new ConcurrentHashMap<AlertCacheKey, AlertCurrentEntity>();
+
+  /**
+   * Locks of the cached current alerts by {@link AlertCacheKey}. Merging an
+   * alert only blocks callers which update the same alert.
+   */
+  private final Striped<Lock> m_currentAlertLocks = Striped.lock(64);
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          the server configuration (not {@code null}).
+   */
+  @Inject
+  public AlertsDAO(Configuration configuration) {
+    if (configuration.isAlertCacheEnabled()) {
+      m_currentAlertCache = CacheBuilder.newBuilder().maximumSize(
+          configuration.getAlertCacheSize()).build();
+    } else {
+      m_currentAlertCache = null;
+    }
+  }
+
+  /**
+   * @return {@code true} if current alerts are cached.
+   */
+  public boolean isCacheEnabled() {
+    return null != m_currentAlertCache;
+  }
+
   /**
    * Gets an alert with the specified ID.
    *
@@ -153,6 +214,28 @@ public class AlertsDAO {
     return m_daoUtils.selectList(query);
   }
 
+  /**
+   * Gets the oldest alerts across all clusters which were received before the
+   * specified time and which are no longer the current instance of an alert.
+   *
+   * @param beforeDate
+   *          the time in milliseconds before which alerts are returned.
+   * @param limit
+   *          the maximum number of alerts to return.
+   * @return the alerts ordered by their ID or an empty list if none exist
+   *         (never {@code null}).
+   */
+  @RequiresSession
+  public List<AlertHistoryEntity> findAllNotCurrentBefore(long beforeDate, int limit) {
+    TypedQuery<AlertHistoryEntity> query = m_entityManagerProvider.get().createNamedQuery(
+        "AlertHistoryEntity.findAllNotCurrentBeforeDate", AlertHistoryEntity.class);
+
+    query.setParameter("beforeDate", beforeDate);
+    query.setMaxResults(limit);
+
+    return m_daoUtils.selectList(query);
+  }
+
   /**
    * Gets all alerts stored in the database for the given cluster that have one
    * of the specified alert states.
@@ -524,6 +607,11 @@ public class AlertsDAO {
   @RequiresSession
   public AlertCurrentEntity findCurrentByHostAndName(long clusterId, String hostName,
       String alertName) {
+    AlertCacheKey key = new AlertCacheKey(clusterId, alertName, hostName);
+    AlertCurrentEntity cached = getCachedCurrent(key);
+    if (null != cached) {
+      return cached;
+    }
 
     TypedQuery<AlertCurrentEntity> query = m_entityManagerProvider.get().createNamedQuery(
         "AlertCurrentEntity.findByHostAndName", AlertCurrentEntity.class);
@@ -532,7 +620,7 @@ public class AlertsDAO {
     query.setParameter("hostName", hostName);
     query.setParameter("definitionName", alertName);
 
-    return m_daoUtils.selectOne(query);
+    return cacheCurrent(key, m_daoUtils.selectOne(query));
   }
 
   /**
@@ -559,6 +647,7 @@ public class AlertsDAO {
     historyQuery.executeUpdate();
 
     entityManager.clear();
+    invalidateCachedCurrent();
   }
 
   /**
@@ -573,7 +662,43 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByHistoryId", AlertCurrentEntity.class);
 
     query.setParameter("historyId", historyId);
-    return query.executeUpdate();
+    int removedItems = query.executeUpdate();
+
+    invalidateCachedCurrent();
+    return removedItems;
+  }
+
+  /**
+   * Removes the alert history entries with the specified IDs along with their
+   * notices. This will invoke {@link EntityManager#clear()} when completed
+   * since the JPQL statements remove entries without going through the EM.
+   * The entries must not be referenced by a current alert.
+   *
+   * @param historyIds
+   *          the IDs of the history entries to remove (not {@code null}).
+   * @return the number of history entries removed.
+   */
+  @Transactional
+  public int removeHistoryByIds(Collection<Long> historyIds) {
+    if (historyIds.isEmpty()) {
+      return 0;
+    }
+
+    EntityManager entityManager = m_entityManagerProvider.get();
+    TypedQuery<AlertNoticeEntity> noticeQuery = entityManager.createNamedQuery(
+        "AlertNoticeEntity.removeByHistoryIds", AlertNoticeEntity.class);
+
+    noticeQuery.setParameter("historyIds", historyIds);
+    noticeQuery.executeUpdate();
+
+    TypedQuery<AlertHistoryEntity> historyQuery = entityManager.createNamedQuery(
+        "AlertHistoryEntity.removeByIds", AlertHistoryEntity.class);
+
+    historyQuery.setParameter("historyIds", historyIds);
+    int removedItems = historyQuery.executeUpdate();
+
+    entityManager.clear();
+    return removedItems;
   }
 
   /**
@@ -586,7 +711,10 @@ public class AlertsDAO {
     TypedQuery<AlertCurrentEntity> query = m_entityManagerProvider.get().createNamedQuery(
         "AlertCurrentEntity.removeDisabled", AlertCurrentEntity.class);
 
-    return query.executeUpdate();
+    int removedItems = query.executeUpdate();
+
+    invalidateCachedCurrent();
+    return removedItems;
   }
 
   /**
@@ -611,6 +739,7 @@ public class AlertsDAO {
     query.setParameter("serviceName", serviceName);
 
     int removedItems = query.executeUpdate();
+    invalidateCachedCurrent();
 
     // publish the event to recalculate aggregates
     m_alertEventPublisher.publish(new AggregateAlertRecalculateEvent(clusterId));
@@ -636,6 +765,7 @@ public class AlertsDAO {
 
     query.setParameter("hostName", hostName);
     int removedItems = query.executeUpdate();
+    invalidateCachedCurrent();
 
     // publish the event to recalculate aggregates for every cluster since a host could potentially have several clusters
     try {
@@ -684,6 +814,7 @@ public class AlertsDAO {
     query.setParameter("hostName", hostName);
 
     int removedItems = query.executeUpdate();
+    invalidateCachedCurrent();
 
     // publish the event to recalculate aggregates
     m_alertEventPublisher.publish(new AggregateAlertRecalculateEvent(clusterId));
@@ -748,6 +879,7 @@ public class AlertsDAO {
   @Transactional
   public void create(AlertCurrentEntity alert) {
     m_entityManagerProvider.get().persist(alert);
+    cacheCurrent(AlertCacheKey.build(alert), alert);
   }
 
   /**
@@ -770,7 +902,133 @@ public class AlertsDAO {
    */
   @Transactional
   public AlertCurrentEntity merge(AlertCurrentEntity alert) {
-    return m_entityManagerProvider.get().merge(alert);
+    AlertCacheKey key = AlertCacheKey.build(alert);
+    if (!isCacheEnabled() || null == key) {
+      return m_entityManagerProvider.get().merge(alert);
+    }
+
+    // the merged alert supersedes any unwritten update, but keeps its
+    // latest timestamp and text
+    Lock lock = m_currentAlertLocks.get(key);
+    lock.lock();
+    try {
+      AlertCurrentEntity unflushed = m_unflushedAlerts.remove(key);
+      if (null != unflushed && unflushed != alert) {
+        copyLatest(unflushed, alert);
+      }
+
+      AlertCurrentEntity merged;
+      synchronized (alert) {
+        merged = m_entityManagerProvider.get().merge(alert);
+      }
+
+      return cacheCurrent(key, merged);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Records a new latest timestamp and text of a current alert whose state
+   * did not change. If the cache is enabled, the alert is only written by
+   * {@link #flushCachedEntitiesToJPA()}; otherwise it is merged right away.
+   * If the alert was merged by another caller since it was read, such as to
+   * change its maintenance state, the merged alert is updated instead.
+   *
+   * @param alert
+   *          the current alert to update (not {@code null}).
+   * @param latestTimestamp
+   *          the new latest timestamp
+   * @param latestText
+   *          the new latest text
+   */
+  @Transactional
+  public void mergeLatest(AlertCurrentEntity alert, long latestTimestamp, String latestText) {
+    AlertCacheKey key = AlertCacheKey.build(alert);
+    if (!isCacheEnabled() || null == key) {
+      alert.setLatestTimestamp(latestTimestamp);
+      alert.setLatestText(latestText);
+      merge(alert);
+      return;
+    }
+
+    Lock lock = m_currentAlertLocks.get(key);
+    lock.lock();
+    try {
+      AlertCurrentEntity cached = m_currentAlertCache.getIfPresent(key);
+      if (null != cached) {
+        alert = cached;
+      }
+
+      synchronized (alert) {
+        alert.setLatestTimestamp(latestTimestamp);
+        alert.setLatestText(latestText);
+      }
+
+      m_unflushedAlerts.put(key, alert);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes a current alert from the cache and drops its unwritten latest
+   * timestamp and text, such as after writing it failed. The alert is read
+   * from the database the next time it is needed.
+   *
+   * @param alert
+   *          the current alert to evict (not {@code null}).
+   */
+  public void evictCurrent(AlertCurrentEntity alert) {
+    AlertCacheKey key = AlertCacheKey.build(alert);
+    if (!isCacheEnabled() || null == key) {
+      return;
+    }
+
+    Lock lock = m_currentAlertLocks.get(key);
+    lock.lock();
+    try {
+      m_unflushedAlerts.remove(key);
+      m_currentAlertCache.invalidate(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Writes the current alerts whose latest timestamp and text were only
+   * updated in the cache. Alerts which are updated again while being written
+   * are written by the next flush.
+   */
+  public void flushCachedEntitiesToJPA() {
+    if (m_unflushedAlerts.isEmpty()) {
+      return;
+    }
+
+    List<Map.Entry<AlertCacheKey, AlertCurrentEntity>> unflushed =
+        new ArrayList<Map.Entry<AlertCacheKey, AlertCurrentEntity>>(m_unflushedAlerts.entrySet());
+
+    mergeUnflushed(unflushed);
+
+    for (Map.Entry<AlertCacheKey, AlertCurrentEntity> entry : unflushed) {
+      m_unflushedAlerts.remove(entry.getKey(), entry.getValue());
+    }
+
+    LOG.debug("Wrote {} cached current alerts", unflushed.size());
+  }
+
+  /**
+   * Merges the unflushed alerts in a single transaction.
+   */
+  @Transactional
+  void mergeUnflushed(List<Map.Entry<AlertCacheKey, AlertCurrentEntity>> unflushed) {
+    EntityManager entityManager = m_entityManagerProvider.get();
+    for (Map.Entry<AlertCacheKey, AlertCurrentEntity> entry : unflushed) {
+      AlertCurrentEntity alert = entry.getValue();
+      synchronized (alert) {
+        entityManager.merge(alert);
+      }
+    }
   }
 
   /**
@@ -803,6 +1061,11 @@ public class AlertsDAO {
   @Transactional
   public void remove(AlertCurrentEntity alert) {
     m_entityManagerProvider.get().remove(merge(alert));
+
+    AlertCacheKey key = AlertCacheKey.build(alert);
+    if (isCacheEnabled() && null != key) {
+      m_currentAlertCache.invalidate(key);
+    }
   }
 
   /**
@@ -842,13 +1105,176 @@ public class AlertsDAO {
    */
   @RequiresSession
   public AlertCurrentEntity findCurrentByNameNoHost(long clusterId, String alertName) {
+    AlertCacheKey key = new AlertCacheKey(clusterId, alertName, null);
+    AlertCurrentEntity cached = getCachedCurrent(key);
+    if (null != cached) {
+      return cached;
+    }
+
     TypedQuery<AlertCurrentEntity> query = m_entityManagerProvider.get().createNamedQuery(
         "AlertCurrentEntity.findByNameAndNoHost", AlertCurrentEntity.class);
 
     query.setParameter("clusterId", Long.valueOf(clusterId));
     query.setParameter("definitionName", alertName);
 
-    return m_daoUtils.selectOne(query);
+    return cacheCurrent(key, m_daoUtils.selectOne(query));
+  }
+
+  /**
+   * Gets a current alert from the cache, preferring an alert which has not
+   * been written yet.
+   *
+   * @param key
+   *          the cache key
+   * @return the cached alert, or {@code null} if none or if the cache is
+   *         disabled.
+   */
+  private AlertCurrentEntity getCachedCurrent(AlertCacheKey key) {
+    if (!isCacheEnabled()) {
+      return null;
+    }
+
+    AlertCurrentEntity unflushed = m_unflushedAlerts.get(key);
+    if (null != unflushed) {
+      return unflushed;
+    }
+
+    return m_currentAlertCache.getIfPresent(key);
+  }
+
+  /**
+   * Copies the latest timestamp and text of an unflushed alert to another
+   * instance of the same alert, unless that instance is more recent.
+   *
+   * @param from
+   *          the unflushed alert
+   * @param to
+   *          the alert to update
+   */
+  private void copyLatest(AlertCurrentEntity from, AlertCurrentEntity to) {
+    Long latestTimestamp;
+    String latestText;
+    synchronized (from) {
+      latestTimestamp = from.getLatestTimestamp();
+      latestText = from.getLatestText();
+    }
+
+    if (null == latestTimestamp) {
+      return;
+    }
+
+    synchronized (to) {
+      if (null == to.getLatestTimestamp()
+          || to.getLatestTimestamp().longValue() < latestTimestamp.longValue()) {
+        to.setLatestTimestamp(latestTimestamp);
+        to.setLatestText(latestText);
+      }
+    }
+  }
+
+  /**
+   * Caches the current alert if the cache is enabled.
+   *
+   * @param key
+   *          the cache key
+   * @param alert
+   *          the alert, or {@code null}
+   * @return the alert
+   */
+  private AlertCurrentEntity cacheCurrent(AlertCacheKey key, AlertCurrentEntity alert) {
+    if (isCacheEnabled() && null != alert && null != key) {
+      m_currentAlertCache.put(key, alert);
+    }
+
+    return alert;
+  }
+
+  /**
+   * Clears the cache after current alerts were removed in bulk, since the
+   * removed alerts are not known. Unflushed alerts are dropped rather than
+   * written so that removed alerts are not merged back.
+   */
+  private void invalidateCachedCurrent() {
+    if (!isCacheEnabled()) {
+      return;
+    }
+
+    m_unflushedAlerts.clear();
+    m_currentAlertCache.invalidateAll();
+  }
+
+  /**
+   * The {@link AlertCacheKey} identifies a current alert by cluster,
+   * definition name and host. Alerts without a host use a {@code null} host.
+   */
+  static final class AlertCacheKey {
+    private final long m_clusterId;
+    private final String m_definitionName;
+    private final String m_hostName;
+
+    /**
+     * Constructor.
+     *
+     * @param clusterId
+     *          the cluster ID
+     * @param definitionName
+     *          the definition name
+     * @param hostName
+     *          the host name, or {@code null} for alerts without a host.
+     */
+    AlertCacheKey(long clusterId, String definitionName, String hostName) {
+      m_clusterId = clusterId;
+      m_definitionName = definitionName;
+      m_hostName = StringUtils.isBlank(hostName) ? null : hostName;
+    }
+
+    /**
+     * Builds the key of the specified current alert.
+     *
+     * @param alert
+     *          the current alert (not {@code null}).
+     * @return the key, or {@code null} if the alert has no history.
+     */
+    static AlertCacheKey build(AlertCurrentEntity alert) {
+      AlertHistoryEntity history = alert.getAlertHistory();
+      if (null == history) {
+        return null;
+      }
+
+      return new AlertCacheKey(history.getClusterId(),
+          history.getAlertDefinition().getDefinitionName(),
+          history.getHostName());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) {
+        return true;
+      }
+
+      if (!(object instanceof AlertCacheKey)) {
+        return false;
+      }
+
+      AlertCacheKey that = (AlertCacheKey) object;
+      return m_clusterId == that.m_clusterId
+          && StringUtils.equals(m_definitionName, that.m_definitionName)
+          && StringUtils.equals(m_hostName, that.m_hostName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      int result = (int) (m_clusterId ^ (m_clusterId >>> 32));
+      result = 31 * result + (null != m_definitionName ? m_definitionName.hashCode() : 0);
+      result = 31 * result + (null != m_hostName ? m_hostName.hashCode() : 0);
+      return result;
+    }
   }
 
   /**
@@ -22,14 +22,33 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
+import org.apache.ambari.server.api.query.JpaPredicateVisitor;
+import org.apache.ambari.server.api.query.JpaSortBuilder;
+import org.apache.ambari.server.controller.internal.HostComponentResourceProvider;
+import org.apache.ambari.server.controller.predicate.ComparisonPredicate;
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.utilities.PredicateHelper;
 import org.apache.ambari.server.orm.RequiresSession;
+import org.apache.ambari.server.orm.entities.ClusterEntity;
 import org.apache.ambari.server.orm.entities.HostComponentStateEntity;
 import org.apache.ambari.server.orm.entities.HostComponentStateEntityPK;
+import org.apache.ambari.server.orm.entities.HostComponentStateEntity_;
 import org.apache.ambari.server.orm.entities.HostEntity;
+import org.apache.ambari.server.orm.entities.HostEntity_;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Singleton
@@ -42,6 +61,9 @@ public class HostComponentStateDAO {
   @Inject
   HostDAO hostDAO;
 
+  @Inject
+  ClusterDAO clusterDAO;
+
   @RequiresSession
   public HostComponentStateEntity findByPK(HostComponentStateEntityPK primaryKey) {
     return entityManagerProvider.get().find(HostComponentStateEntity.class, primaryKey);
@@ -101,4 +123,167 @@ public class HostComponentStateDAO {
   public void removeByPK(HostComponentStateEntityPK primaryKey) {
     remove(findByPK(primaryKey));
   }
+
+  /**
+   * Gets whether the specified predicate can be converted in its entirety into
+   * the JPA queries used by {@link #findAll(Predicate, SortRequest, PageRequest)}
+   * and {@link #getCount(Predicate)}.
+   *
+   * @param predicate
+   *          the Ambari predicate for host components, or {@code null} for all
+   *          host components.
+   * @return {@code true} if the predicate is fully supported.
+   */
+  @RequiresSession
+  public boolean isPredicateSupported(Predicate predicate) {
+    CriteriaQuery<Long> query = entityManagerProvider.get().getCriteriaBuilder().createQuery(Long.class);
+    return applyPredicate(query, predicate).isTranslated();
+  }
+
+  /**
+   * Finds the host components matching the predicate, sorted and paged in the
+   * database. Host components which sort equally are ordered by cluster,
+   * service, host and component, the same as the keys of the host component
+   * resources.
+   *
+   * @param predicate
+   *          the Ambari predicate for host components, or {@code null} for all
+   *          host components.
+   * @param sortRequest
+   *          the sort to apply, or {@code null} for none.
+   * @param pageRequest
+   *          the page to return, which must use an offset from the start, or
+   *          {@code null} for all host components.
+   * @return the host components in sorted order (never {@code null}).
+   */
+  @RequiresSession
+  public List<HostComponentStateEntity> findAll(Predicate predicate,
+      SortRequest sortRequest, PageRequest pageRequest) {
+    if (null != pageRequest && pageRequest.getPageSize() <= 0) {
+      return Collections.emptyList();
+    }
+
+    EntityManager entityManager = entityManagerProvider.get();
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<HostComponentStateEntity> query = builder.createQuery(HostComponentStateEntity.class);
+
+    HostComponentStatePredicateVisitor visitor = applyPredicate(query, predicate);
+    Root<HostComponentStateEntity> root = visitor.getRoot();
+    query.select(root);
+
+    JpaSortBuilder<HostComponentStateEntity> sortBuilder = new JpaSortBuilder<HostComponentStateEntity>();
+    List<Order> sortOrders = new ArrayList<Order>(sortBuilder.buildSortOrders(sortRequest, visitor));
+    sortOrders.add(builder.asc(root.get(HostComponentStateEntity_.clusterId)));
+    sortOrders.add(builder.asc(root.get(HostComponentStateEntity_.serviceName)));
+    sortOrders.add(builder.asc(root.get(HostComponentStateEntity_.hostEntity).get(HostEntity_.hostName)));
+    sortOrders.add(builder.asc(root.get(HostComponentStateEntity_.componentName)));
+    query.orderBy(sortOrders);
+
+    TypedQuery<HostComponentStateEntity> typedQuery = entityManager.createQuery(query);
+    if (null != pageRequest) {
+      typedQuery.setFirstResult(Math.max(0, pageRequest.getOffset()));
+      typedQuery.setMaxResults(pageRequest.getPageSize());
+    }
+
+    return daoUtils.selectList(typedQuery);
+  }
+
+  /**
+   * Counts the host components matching the predicate in the database.
+   *
+   * @param predicate
+   *          the Ambari predicate for host components, or {@code null} for all
+   *          host components.
+   * @return the number of matching host components.
+   */
+  @RequiresSession
+  public int getCount(Predicate predicate) {
+    CriteriaBuilder builder = entityManagerProvider.get().getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+
+    HostComponentStatePredicateVisitor visitor = applyPredicate(query, predicate);
+    query.select(builder.count(visitor.getRoot()));
+
+    Long count = daoUtils.selectSingle(entityManagerProvider.get().createQuery(query));
+    return null == count ? 0 : count.intValue();
+  }
+
+  /**
+   * Converts the Ambari predicate and restricts the query with it.
+   *
+   * @param query
+   *          the query to add the host component root and restriction to.
+   * @param predicate
+   *          the Ambari predicate for host components, or {@code null}.
+   * @return the visitor used to convert the predicate.
+   */
+  private HostComponentStatePredicateVisitor applyPredicate(AbstractQuery<?> query,
+      Predicate predicate) {
+    HostComponentStatePredicateVisitor visitor = new HostComponentStatePredicateVisitor(query);
+    PredicateHelper.visit(predicate, visitor);
+
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+    if (null != jpaPredicate) {
+      query.where(jpaPredicate);
+    }
+
+    return visitor;
+  }
+
+  /**
+   * The {@link HostComponentStatePredicateVisitor} is used to convert an
+   * Ambari {@link Predicate} for host components into a JPA
+   * {@link javax.persistence.criteria.Predicate}. The cluster name, which is
+   * stored as the ID of the cluster, is resolved here.
+   */
+  private final class HostComponentStatePredicateVisitor extends
+      JpaPredicateVisitor<HostComponentStateEntity> {
+
+    /**
+     * Constructor.
+     *
+     * @param query
+     *          the query to add the host component root to.
+     */
+    public HostComponentStatePredicateVisitor(AbstractQuery<?> query) {
+      super(entityManagerProvider.get(), query, HostComponentStateEntity.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<HostComponentStateEntity> getEntityClass() {
+      return HostComponentStateEntity.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<? extends SingularAttribute<?, ?>> getPredicateMapping(
+        String propertyId) {
+      return HostComponentStateEntity_.getPredicateMapping().get(propertyId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected javax.persistence.criteria.Predicate getUnmappedPredicate(
+        ComparisonPredicate<?> predicate) {
+      if (!HostComponentResourceProvider.HOST_COMPONENT_CLUSTER_NAME_PROPERTY_ID.equals(predicate.getPropertyId())
+          || !"=".equals(predicate.getOperator()) || null == predicate.getValue()) {
+        return null;
+      }
+
+      ClusterEntity clusterEntity = clusterDAO.findByName(predicate.getValue().toString());
+      if (null == clusterEntity) {
+        return null;
+      }
+
+      return getCriteriaBuilder().equal(getRoot().get(HostComponentStateEntity_.clusterId),
+          clusterEntity.getClusterId());
+    }
+  }
 }
@@ -22,13 +22,29 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
+import org.apache.ambari.server.api.query.JpaPredicateVisitor;
+import org.apache.ambari.server.api.query.JpaSortBuilder;
+import org.apache.ambari.server.controller.internal.HostResourceProvider;
+import org.apache.ambari.server.controller.predicate.ComparisonPredicate;
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.utilities.PredicateHelper;
 import org.apache.ambari.server.orm.RequiresSession;
+import org.apache.ambari.server.orm.entities.ClusterEntity;
 import org.apache.ambari.server.orm.entities.HostEntity;
+import org.apache.ambari.server.orm.entities.HostEntity_;
 import org.apache.ambari.server.orm.entities.StageEntity;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -39,6 +55,12 @@ public class HostDAO {
   @Inject
   Provider<EntityManager> entityManagerProvider;
 
+  @Inject
+  DaoUtils daoUtils;
+
+  @Inject
+  ClusterDAO clusterDAO;
+
   /**
    * Looks for Host by ID
    * @param hostId ID of Host
@@ -128,4 +150,157 @@ public class HostDAO {
     }
     return hostNames;
   }
+
+  /**
+   * Gets whether the specified predicate can be converted in its entirety into
+   * the JPA queries used by {@link #findHostNames(Predicate, SortRequest, PageRequest)}
+   * and {@link #getCount(Predicate)}.
+   *
+   * @param predicate
+   *          the Ambari predicate for hosts, or {@code null} for all hosts.
+   * @return {@code true} if the predicate is fully supported.
+   */
+  @RequiresSession
+  public boolean isPredicateSupported(Predicate predicate) {
+    CriteriaQuery<Long> query = entityManagerProvider.get().getCriteriaBuilder().createQuery(Long.class);
+    return applyPredicate(query, predicate).isTranslated();
+  }
+
+  /**
+   * Finds the names of the hosts matching the predicate, sorted and paged in
+   * the database. Hosts which sort equally are ordered by name.
+   *
+   * @param predicate
+   *          the Ambari predicate for hosts, or {@code null} for all hosts.
+   * @param sortRequest
+   *          the sort to apply, or {@code null} for none.
+   * @param pageRequest
+   *          the page to return, which must use an offset from the start, or
+   *          {@code null} for all hosts.
+   * @return the host names in sorted order (never {@code null}).
+   */
+  @RequiresSession
+  public List<String> findHostNames(Predicate predicate, SortRequest sortRequest,
+      PageRequest pageRequest) {
+    if (null != pageRequest && pageRequest.getPageSize() <= 0) {
+      return Collections.emptyList();
+    }
+
+    EntityManager entityManager = entityManagerProvider.get();
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<String> query = builder.createQuery(String.class);
+
+    HostPredicateVisitor visitor = applyPredicate(query, predicate);
+    Root<HostEntity> root = visitor.getRoot();
+    query.select(root.get(HostEntity_.hostName));
+
+    JpaSortBuilder<HostEntity> sortBuilder = new JpaSortBuilder<HostEntity>();
+    List<Order> sortOrders = new ArrayList<Order>(sortBuilder.buildSortOrders(sortRequest, visitor));
+    sortOrders.add(builder.asc(root.get(HostEntity_.hostName)));
+    query.orderBy(sortOrders);
+
+    TypedQuery<String> typedQuery = entityManager.createQuery(query);
+    if (null != pageRequest) {
+      typedQuery.setFirstResult(Math.max(0, pageRequest.getOffset()));
+      typedQuery.setMaxResults(pageRequest.getPageSize());
+    }
+
+    return daoUtils.selectList(typedQuery);
+  }
+
+  /**
+   * Counts the hosts matching the predicate in the database.
+   *
+   * @param predicate
+   *          the Ambari predicate for hosts, or {@code null} for all hosts.
+   * @return the number of matching hosts.
+   */
+  @RequiresSession
+  public int getCount(Predicate predicate) {
+    CriteriaBuilder builder = entityManagerProvider.get().getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+
+    HostPredicateVisitor visitor = applyPredicate(query, predicate);
+    query.select(builder.count(visitor.getRoot()));
+
+    Long count = daoUtils.selectSingle(entityManagerProvider.get().createQuery(query));
+    return null == count ? 0 : count.intValue();
+  }
+
+  /**
+   * Converts the Ambari predicate and restricts the query with it.
+   *
+   * @param query
+   *          the query to add the host root and restriction to.
+   * @param predicate
+   *          the Ambari predicate for hosts, or {@code null}.
+   * @return the visitor used to convert the predicate.
+   */
+  private HostPredicateVisitor applyPredicate(AbstractQuery<?> query, Predicate predicate) {
+    HostPredicateVisitor visitor = new HostPredicateVisitor(query);
+    PredicateHelper.visit(predicate, visitor);
+
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+    if (null != jpaPredicate) {
+      query.where(jpaPredicate);
+    }
+
+    return visitor;
+  }
+
+  /**
+   * The {@link HostPredicateVisitor} is used to convert an Ambari
+   * {@link Predicate} for hosts into a JPA
+   * {@link javax.persistence.criteria.Predicate}. The cluster name, which is
+   * stored as the mapping of the host to its clusters, is resolved here.
+   */
+  private final class HostPredicateVisitor extends JpaPredicateVisitor<HostEntity> {
+
+    /**
+     * Constructor.
+     *
+     * @param query
+     *          the query to add the host root to.
+     */
+    public HostPredicateVisitor(AbstractQuery<?> query) {
+      super(entityManagerProvider.get(), query, HostEntity.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<HostEntity> getEntityClass() {
+      return HostEntity.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<? extends SingularAttribute<?, ?>> getPredicateMapping(
+        String propertyId) {
+      return HostEntity_.getPredicateMapping().get(propertyId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected javax.persistence.criteria.Predicate getUnmappedPredicate(
+        ComparisonPredicate<?> predicate) {
+      if (!HostResourceProvider.HOST_CLUSTER_NAME_PROPERTY_ID.equals(predicate.getPropertyId())
+          || !"=".equals(predicate.getOperator()) || null == predicate.getValue()) {
+        return null;
+      }
+
+      ClusterEntity clusterEntity = clusterDAO.findByName(predicate.getValue().toString());
+      if (null == clusterEntity) {
+        return null;
+      }
+
+      return getCriteriaBuilder().isMember(clusterEntity,
+          getRoot().get(HostEntity_.clusterEntities));
+    }
+  }
 }
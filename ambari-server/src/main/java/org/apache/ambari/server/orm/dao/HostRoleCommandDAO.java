@@ -31,13 +31,30 @@ import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
 
 import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.api.query.JpaPredicateVisitor;
+import org.apache.ambari.server.api.query.JpaSortBuilder;
+import org.apache.ambari.server.controller.internal.TaskResourceProvider;
+import org.apache.ambari.server.controller.predicate.ComparisonPredicate;
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.utilities.PredicateHelper;
 import org.apache.ambari.server.orm.RequiresSession;
+import org.apache.ambari.server.orm.entities.ClusterEntity;
 import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity_;
 import org.apache.ambari.server.orm.entities.StageEntity;
+import org.apache.ambari.server.orm.entities.StageEntity_;
 
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
@@ -84,6 +101,8 @@ public class HostRoleCommandDAO {
   Provider<EntityManager> entityManagerProvider;
   @Inject
   DaoUtils daoUtils;
+  @Inject
+  ClusterDAO clusterDAO;
 
   @RequiresSession
   public HostRoleCommandEntity findByPK(long taskId) {
@@ -115,6 +134,39 @@ public class HostRoleCommandDAO {
     return daoUtils.selectList(query, taskIds);
   }
 
+  /**
+   * Finds the output of the specified tasks with a single query instead of
+   * fetching the lazily loaded output of each task on its own.
+   *
+   * @param taskIds the task ids
+   * @return the output of the tasks which exist
+   */
+  @RequiresSession
+  public List<HostRoleCommandOutputDTO> findOutputsByPKs(Collection<Long> taskIds) {
+    if (taskIds == null || taskIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    TypedQuery<HostRoleCommandOutputDTO> query = entityManagerProvider.get().createQuery(
+      "SELECT NEW " + HostRoleCommandOutputDTO.class.getName() + "(" +
+        "task.taskId, task.stdOut, task.stdError, task.structuredOut) " +
+        "FROM HostRoleCommandEntity task WHERE task.taskId IN ?1",
+      HostRoleCommandOutputDTO.class);
+
+    if (daoUtils.getDbType().equals(ORACLE) && taskIds.size() > ORACLE_LIST_LIMIT) {
+      List<HostRoleCommandOutputDTO> result = new ArrayList<HostRoleCommandOutputDTO>();
+
+      List<List<Long>> lists = Lists.partition(new ArrayList<Long>(taskIds), ORACLE_LIST_LIMIT);
+      for (List<Long> list : lists) {
+        result.addAll(daoUtils.selectList(query, list));
+      }
+
+      return result;
+    }
+
+    return daoUtils.selectList(query, taskIds);
+  }
+
   @RequiresSession
   public List<HostRoleCommandEntity> findByHostId(Long hostId) {
     TypedQuery<HostRoleCommandEntity> query = entityManagerProvider.get().createNamedQuery(
@@ -436,4 +488,157 @@ public class HostRoleCommandDAO {
     return map;
   }
 
+  /**
+   * Gets whether the specified predicate can be converted in its entirety into
+   * the JPA queries used by {@link #findTaskIds(Predicate, SortRequest, PageRequest)}
+   * and {@link #getCount(Predicate)}. If it cannot, those queries return a
+   * superset of the matching tasks which must still be filtered.
+   *
+   * @param predicate
+   *          the Ambari predicate for tasks, or {@code null} for all tasks.
+   * @return {@code true} if the predicate is fully supported.
+   */
+  @RequiresSession
+  public boolean isPredicateSupported(Predicate predicate) {
+    CriteriaQuery<Long> query = entityManagerProvider.get().getCriteriaBuilder().createQuery(Long.class);
+
+    HostRoleCommandPredicateVisitor visitor = new HostRoleCommandPredicateVisitor(query);
+    PredicateHelper.visit(predicate, visitor);
+    return visitor.isTranslated();
+  }
+
+  /**
+   * Finds the IDs of the tasks matching the predicate, sorted and paged in the
+   * database. Tasks which sort equally are ordered by request and task ID so
+   * that consecutive pages neither repeat nor skip tasks.
+   *
+   * @param predicate
+   *          the Ambari predicate for tasks, or {@code null} for all tasks.
+   * @param sortRequest
+   *          the sort to apply, or {@code null} for none.
+   * @param pageRequest
+   *          the page to return, which must use an offset from the start, or
+   *          {@code null} for all tasks.
+   * @return the task IDs in sorted order (never {@code null}).
+   */
+  @RequiresSession
+  public List<Long> findTaskIds(Predicate predicate, SortRequest sortRequest,
+      PageRequest pageRequest) {
+    if (null != pageRequest && pageRequest.getPageSize() <= 0) {
+      return Collections.emptyList();
+    }
+
+    EntityManager entityManager = entityManagerProvider.get();
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+
+    HostRoleCommandPredicateVisitor visitor = new HostRoleCommandPredicateVisitor(query);
+    PredicateHelper.visit(predicate, visitor);
+
+    Root<HostRoleCommandEntity> root = visitor.getRoot();
+    query.select(root.get(HostRoleCommandEntity_.taskId));
+
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+    if (null != jpaPredicate) {
+      query.where(jpaPredicate);
+    }
+
+    JpaSortBuilder<HostRoleCommandEntity> sortBuilder = new JpaSortBuilder<HostRoleCommandEntity>();
+    List<Order> sortOrders = new ArrayList<Order>(sortBuilder.buildSortOrders(sortRequest, visitor));
+    sortOrders.add(builder.asc(root.get(HostRoleCommandEntity_.requestId)));
+    sortOrders.add(builder.asc(root.get(HostRoleCommandEntity_.taskId)));
+    query.orderBy(sortOrders);
+
+    TypedQuery<Long> typedQuery = entityManager.createQuery(query);
+    if (null != pageRequest) {
+      typedQuery.setFirstResult(Math.max(0, pageRequest.getOffset()));
+      typedQuery.setMaxResults(pageRequest.getPageSize());
+    }
+
+    return daoUtils.selectList(typedQuery);
+  }
+
+  /**
+   * Counts the tasks matching the predicate in the database.
+   *
+   * @param predicate
+   *          the Ambari predicate for tasks, or {@code null} for all tasks.
+   * @return the number of matching tasks.
+   */
+  @RequiresSession
+  public int getCount(Predicate predicate) {
+    CriteriaBuilder builder = entityManagerProvider.get().getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+
+    HostRoleCommandPredicateVisitor visitor = new HostRoleCommandPredicateVisitor(query);
+    PredicateHelper.visit(predicate, visitor);
+
+    query.select(builder.count(visitor.getRoot()));
+
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+    if (null != jpaPredicate) {
+      query.where(jpaPredicate);
+    }
+
+    Long count = daoUtils.selectSingle(entityManagerProvider.get().createQuery(query));
+    return null == count ? 0 : count.intValue();
+  }
+
+  /**
+   * The {@link HostRoleCommandPredicateVisitor} is used to convert an Ambari
+   * {@link Predicate} for tasks into a JPA
+   * {@link javax.persistence.criteria.Predicate}. The cluster name, which is
+   * stored as the ID of the cluster on the stage, is resolved here.
+   */
+  private final class HostRoleCommandPredicateVisitor extends
+      JpaPredicateVisitor<HostRoleCommandEntity> {
+
+    /**
+     * Constructor.
+     *
+     * @param query
+     *          the query to add the task root to.
+     */
+    public HostRoleCommandPredicateVisitor(AbstractQuery<?> query) {
+      super(entityManagerProvider.get(), query, HostRoleCommandEntity.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<HostRoleCommandEntity> getEntityClass() {
+      return HostRoleCommandEntity.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<? extends SingularAttribute<?, ?>> getPredicateMapping(
+        String propertyId) {
+      return HostRoleCommandEntity_.getPredicateMapping().get(propertyId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected javax.persistence.criteria.Predicate getUnmappedPredicate(
+        ComparisonPredicate<?> predicate) {
+      if (!TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID.equals(predicate.getPropertyId())
+          || !"=".equals(predicate.getOperator()) || null == predicate.getValue()) {
+        return null;
+      }
+
+      ClusterEntity clusterEntity = clusterDAO.findByName(predicate.getValue().toString());
+      if (null == clusterEntity) {
+        return null;
+      }
+
+      return getCriteriaBuilder().equal(
+          getRoot().get(HostRoleCommandEntity_.stage).get(StageEntity_.clusterId),
+          clusterEntity.getClusterId());
+    }
+  }
 }
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.dao;
+
+import org.apache.ambari.server.orm.helpers.LobCompression;
+import org.apache.commons.lang.ArrayUtils;
+
+/**
+ * The stdout, stderr and structured output of a single task, read without
+ * loading the rest of the task.
+ */
+public class HostRoleCommandOutputDTO {
+
+  private final Long m_taskId;
+  private final byte[] m_stdout;
+  private final byte[] m_stderr;
+  private final byte[] m_structuredOut;
+
+  /**
+   * Constructor invoked by JPA.  See {{@link HostRoleCommandDAO#findOutputsByPKs(java.util.Collection)}}
+   */
+  public HostRoleCommandOutputDTO(Long taskId, byte[] stdout, byte[] stderr, byte[] structuredOut) {
+    m_taskId = taskId;
+    m_stdout = stdout;
+    m_stderr = stderr;
+    m_structuredOut = structuredOut;
+  }
+
+  /**
+   * @return the id of the task
+   */
+  public Long getTaskId() {
+    return m_taskId;
+  }
+
+  /**
+   * @return the uncompressed stdout of the task, never {@code null}
+   */
+  public byte[] getStdout() {
+    return ArrayUtils.nullToEmpty(LobCompression.decompress(m_stdout));
+  }
+
+  /**
+   * @return the uncompressed stderr of the task, never {@code null}
+   */
+  public byte[] getStderr() {
+    return ArrayUtils.nullToEmpty(LobCompression.decompress(m_stderr));
+  }
+
+  /**
+   * @return the uncompressed structured output of the task, never {@code null}
+   */
+  public byte[] getStructuredOut() {
+    return ArrayUtils.nullToEmpty(LobCompression.decompress(m_structuredOut));
+  }
+}
@@ -65,6 +65,18 @@ public class MemberDAO {
     return daoUtils.selectList(query);
   }
 
+  /**
+   * Gets the group name and user name of every membership with one query.
+   *
+   * @return the pairs of group name and user name
+   */
+  @RequiresSession
+  public List<Object[]> findAllGroupAndUserNames() {
+    final TypedQuery<Object[]> query = entityManagerProvider.get().createQuery(
+        "SELECT m.group.groupName, m.user.userName FROM MemberEntity m", Object[].class);
+    return daoUtils.selectList(query);
+  }
+
   @RequiresSession
   public List<MemberEntity> findAllMembersByUser(UserEntity userEntity) {
     TypedQuery<MemberEntity> query = entityManagerProvider.get().createQuery("SELECT m FROM MemberEntity m WHERE m.user = :userEntity", MemberEntity.class);
@@ -19,16 +19,33 @@
 package org.apache.ambari.server.orm.dao;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
 
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.api.query.JpaPredicateVisitor;
+import org.apache.ambari.server.api.query.JpaSortBuilder;
+import org.apache.ambari.server.controller.internal.RequestResourceProvider;
+import org.apache.ambari.server.controller.predicate.ComparisonPredicate;
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.utilities.PredicateHelper;
 import org.apache.ambari.server.orm.RequiresSession;
+import org.apache.ambari.server.orm.entities.ClusterEntity;
 import org.apache.ambari.server.orm.entities.RequestEntity;
+import org.apache.ambari.server.orm.entities.RequestEntity_;
 import org.apache.ambari.server.orm.entities.RequestResourceFilterEntity;
 import org.eclipse.persistence.config.HintValues;
 import org.eclipse.persistence.config.QueryHints;
@@ -45,12 +62,27 @@ public class RequestDAO {
    */
   private final static String REQUEST_IDS_SORTED_SQL = "SELECT request.requestId FROM RequestEntity request ORDER BY request.requestId {0}";
 
+  /**
+   * JPQL to retrieve the IDs of completed requests created before a time or
+   * with an ID below a threshold. Requests still referenced by an upgrade or a
+   * provisioning task are never returned.
+   */
+  private final static String PURGEABLE_REQUEST_IDS_SQL = "SELECT request.requestId FROM RequestEntity request " +
+      "WHERE (request.createTime < ?1 OR request.requestId < ?2) " +
+      "AND NOT EXISTS (SELECT task.taskId FROM HostRoleCommandEntity task WHERE task.requestId = request.requestId AND task.status NOT IN ?3) " +
+      "AND NOT EXISTS (SELECT upgrade.upgradeId FROM UpgradeEntity upgrade WHERE upgrade.requestId = request.requestId) " +
+      "AND NOT EXISTS (SELECT logicalTask.id FROM TopologyLogicalTaskEntity logicalTask WHERE logicalTask.hostRoleCommandEntity.requestId = request.requestId) " +
+      "ORDER BY request.requestId";
+
   @Inject
   Provider<EntityManager> entityManagerProvider;
 
   @Inject
   DaoUtils daoUtils;
 
+  @Inject
+  ClusterDAO clusterDAO;
+
   @RequiresSession
   public RequestEntity findByPK(Long requestId) {
     return entityManagerProvider.get().find(RequestEntity.class, requestId);
@@ -149,4 +181,254 @@ public class RequestDAO {
   public void removeByPK(Long requestId) {
     remove(findByPK(requestId));
   }
+
+  /**
+   * Finds the oldest completed requests which are either older than a time or
+   * have an ID below the specified one.
+   *
+   * @param createdBefore
+   *          the creation time in milliseconds before which completed requests
+   *          are returned, or {@code 0} for none.
+   * @param requestIdBefore
+   *          the request ID below which completed requests are returned, or
+   *          {@code 0} for none.
+   * @param limit
+   *          the maximum number of request IDs to return.
+   * @return the request IDs in ascending order (never {@code null}).
+   */
+  @RequiresSession
+  public List<Long> findRequestIdsToPurge(long createdBefore, long requestIdBefore, int limit) {
+    TypedQuery<Long> query = entityManagerProvider.get().createQuery(
+        PURGEABLE_REQUEST_IDS_SQL, Long.class);
+
+    query.setMaxResults(limit);
+
+    return daoUtils.selectList(query, createdBefore, requestIdBefore,
+        HostRoleStatus.getCompletedStates());
+  }
+
+  /**
+   * Removes the specified requests along with their stages, tasks, execution
+   * commands, resource filters and operation levels. The rows are removed
+   * with JPQL statements by their keys, without loading any of the entities.
+   *
+   * @param requestIds
+   *          the IDs of the requests to remove (not {@code null}).
+   * @return the number of tasks removed.
+   */
+  @Transactional
+  public int removeByPKs(Collection<Long> requestIds) {
+    if (requestIds.isEmpty()) {
+      return 0;
+    }
+
+    EntityManager entityManager = entityManagerProvider.get();
+
+    entityManager.createQuery("DELETE FROM ExecutionCommandEntity command WHERE command.taskId IN " +
+        "(SELECT task.taskId FROM HostRoleCommandEntity task WHERE task.requestId IN ?1)")
+        .setParameter(1, requestIds).executeUpdate();
+
+    int tasks = entityManager.createQuery(
+        "DELETE FROM HostRoleCommandEntity task WHERE task.requestId IN ?1")
+        .setParameter(1, requestIds).executeUpdate();
+
+    entityManager.createQuery(
+        "DELETE FROM RoleSuccessCriteriaEntity criteria WHERE criteria.requestId IN ?1")
+        .setParameter(1, requestIds).executeUpdate();
+
+    entityManager.createQuery(
+        "DELETE FROM StageEntity stage WHERE stage.requestId IN ?1")
+        .setParameter(1, requestIds).executeUpdate();
+
+    entityManager.createQuery(
+        "DELETE FROM RequestResourceFilterEntity filter WHERE filter.requestId IN ?1")
+        .setParameter(1, requestIds).executeUpdate();
+
+    entityManager.createQuery(
+        "DELETE FROM RequestOperationLevelEntity level WHERE level.requestId IN ?1")
+        .setParameter(1, requestIds).executeUpdate();
+
+    entityManager.createQuery(
+        "DELETE FROM RequestEntity request WHERE request.requestId IN ?1")
+        .setParameter(1, requestIds).executeUpdate();
+
+    entityManager.clear();
+    return tasks;
+  }
+
+  /**
+   * Gets whether the specified predicate can be converted in its entirety into
+   * the JPA queries used by {@link #findRequestIds(Predicate, SortRequest, PageRequest)}
+   * and {@link #getCount(Predicate)}.
+   *
+   * @param predicate
+   *          the Ambari predicate for requests, or {@code null} for all requests.
+   * @return {@code true} if the predicate is fully supported.
+   */
+  @RequiresSession
+  public boolean isPredicateSupported(Predicate predicate) {
+    CriteriaQuery<Long> query = entityManagerProvider.get().getCriteriaBuilder().createQuery(Long.class);
+    return applyPredicate(query, predicate).isTranslated();
+  }
+
+  /**
+   * Finds the IDs of the requests matching the predicate, sorted and paged in
+   * the database. Requests which sort equally are ordered by their ID. A
+   * predicate which does not restrict the cluster name only matches requests
+   * which don't belong to a cluster, just like the request resources of the
+   * {@link RequestResourceProvider}.
+   *
+   * @param predicate
+   *          the Ambari predicate for requests, or {@code null} for all requests
+   *          which don't belong to a cluster.
+   * @param sortRequest
+   *          the sort to apply, or {@code null} for none.
+   * @param pageRequest
+   *          the page to return, which must use an offset from the start, or
+   *          {@code null} for all requests.
+   * @return the request IDs in sorted order (never {@code null}).
+   */
+  @RequiresSession
+  public List<Long> findRequestIds(Predicate predicate, SortRequest sortRequest,
+      PageRequest pageRequest) {
+    if (null != pageRequest && pageRequest.getPageSize() <= 0) {
+      return Collections.emptyList();
+    }
+
+    EntityManager entityManager = entityManagerProvider.get();
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+
+    RequestPredicateVisitor visitor = applyPredicate(query, predicate);
+    Root<RequestEntity> root = visitor.getRoot();
+    query.select(root.get(RequestEntity_.requestId));
+
+    JpaSortBuilder<RequestEntity> sortBuilder = new JpaSortBuilder<RequestEntity>();
+    List<Order> sortOrders = new ArrayList<Order>(sortBuilder.buildSortOrders(sortRequest, visitor));
+    sortOrders.add(builder.asc(root.get(RequestEntity_.requestId)));
+    query.orderBy(sortOrders);
+
+    TypedQuery<Long> typedQuery = entityManager.createQuery(query);
+    if (null != pageRequest) {
+      typedQuery.setFirstResult(Math.max(0, pageRequest.getOffset()));
+      typedQuery.setMaxResults(pageRequest.getPageSize());
+    }
+
+    return daoUtils.selectList(typedQuery);
+  }
+
+  /**
+   * Counts the requests matching the predicate in the database.
+   *
+   * @param predicate
+   *          the Ambari predicate for requests, or {@code null} for all requests
+   *          which don't belong to a cluster.
+   * @return the number of matching requests.
+   */
+  @RequiresSession
+  public int getCount(Predicate predicate) {
+    CriteriaBuilder builder = entityManagerProvider.get().getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+
+    RequestPredicateVisitor visitor = applyPredicate(query, predicate);
+    query.select(builder.count(visitor.getRoot()));
+
+    Long count = daoUtils.selectSingle(entityManagerProvider.get().createQuery(query));
+    return null == count ? 0 : count.intValue();
+  }
+
+  /**
+   * Converts the Ambari predicate and restricts the query with it.
+   *
+   * @param query
+   *          the query to add the request root and restriction to.
+   * @param predicate
+   *          the Ambari predicate for requests, or {@code null}.
+   * @return the visitor used to convert the predicate.
+   */
+  private RequestPredicateVisitor applyPredicate(AbstractQuery<?> query,
+      Predicate predicate) {
+    RequestPredicateVisitor visitor = new RequestPredicateVisitor(query);
+    PredicateHelper.visit(predicate, visitor);
+
+    CriteriaBuilder builder = visitor.getCriteriaBuilder();
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+
+    if (!visitor.m_clusterRestricted) {
+      javax.persistence.criteria.Predicate noCluster = builder.or(
+          builder.isNull(visitor.getRoot().get(RequestEntity_.clusterId)),
+          builder.equal(visitor.getRoot().get(RequestEntity_.clusterId), -1L));
+
+      jpaPredicate = null == jpaPredicate ? noCluster : builder.and(jpaPredicate, noCluster);
+    }
+
+    if (null != jpaPredicate) {
+      query.where(jpaPredicate);
+    }
+
+    return visitor;
+  }
+
+  /**
+   * The {@link RequestPredicateVisitor} is used to convert an Ambari
+   * {@link Predicate} for requests into a JPA
+   * {@link javax.persistence.criteria.Predicate}. The cluster name, which is
+   * stored as the ID of the cluster, is resolved here.
+   */
+  private final class RequestPredicateVisitor extends
+      JpaPredicateVisitor<RequestEntity> {
+
+    /**
+     * {@code true} once a comparison of the cluster name has been converted.
+     */
+    private boolean m_clusterRestricted = false;
+
+    /**
+     * Constructor.
+     *
+     * @param query
+     *          the query to add the request root to.
+     */
+    public RequestPredicateVisitor(AbstractQuery<?> query) {
+      super(entityManagerProvider.get(), query, RequestEntity.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<RequestEntity> getEntityClass() {
+      return RequestEntity.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<? extends SingularAttribute<?, ?>> getPredicateMapping(
+        String propertyId) {
+      return RequestEntity_.getPredicateMapping().get(propertyId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected javax.persistence.criteria.Predicate getUnmappedPredicate(
+        ComparisonPredicate<?> predicate) {
+      if (!RequestResourceProvider.REQUEST_CLUSTER_NAME_PROPERTY_ID.equals(predicate.getPropertyId())
+          || !"=".equals(predicate.getOperator()) || null == predicate.getValue()) {
+        return null;
+      }
+
+      ClusterEntity clusterEntity = clusterDAO.findByName(predicate.getValue().toString());
+      if (null == clusterEntity) {
+        return null;
+      }
+
+      m_clusterRestricted = true;
+      return getCriteriaBuilder().equal(getRoot().get(RequestEntity_.clusterId),
+          clusterEntity.getClusterId());
+    }
+  }
 }
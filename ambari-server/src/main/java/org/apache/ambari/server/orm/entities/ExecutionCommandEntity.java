@@ -21,6 +21,8 @@ package org.apache.ambari.server.orm.entities;
 import javax.persistence.*;
 import java.util.Arrays;
 
+import org.apache.ambari.server.orm.helpers.LobCompression;
+
 @Table(name = "execution_command")
 @Entity
 public class ExecutionCommandEntity {
@@ -47,11 +49,11 @@ public class ExecutionCommandEntity {
   }
 
   public byte[] getCommand() {
-    return command;
+    return LobCompression.decompress(command);
   }
 
   public void setCommand(byte[] command) {
-    this.command = command;
+    this.command = LobCompression.compress(command);
   }
 
   @Override
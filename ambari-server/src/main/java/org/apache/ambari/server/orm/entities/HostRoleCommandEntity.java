@@ -45,6 +45,7 @@ import javax.persistence.TableGenerator;
 import org.apache.ambari.server.Role;
 import org.apache.ambari.server.RoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.orm.helpers.LobCompression;
 import org.apache.commons.lang.ArrayUtils;
 
 @Entity
@@ -98,12 +99,12 @@ public class HostRoleCommandEntity {
 
   @Column(name = "std_error")
   @Lob
-  @Basic
+  @Basic(fetch = FetchType.LAZY)
   private byte[] stdError = new byte[0];
 
   @Column(name = "std_out")
   @Lob
-  @Basic
+  @Basic(fetch = FetchType.LAZY)
   private byte[] stdOut = new byte[0];
 
   @Column(name = "output_log")
@@ -117,7 +118,7 @@ public class HostRoleCommandEntity {
 
   @Column(name = "structured_out")
   @Lob
-  @Basic
+  @Basic(fetch = FetchType.LAZY)
   private byte[] structuredOut = new byte[0];
 
   @Basic
@@ -233,19 +234,19 @@ public class HostRoleCommandEntity {
   }
 
   public byte[] getStdError() {
-    return ArrayUtils.nullToEmpty(stdError);
+    return ArrayUtils.nullToEmpty(LobCompression.decompress(stdError));
   }
 
   public void setStdError(byte[] stdError) {
-    this.stdError = stdError;
+    this.stdError = LobCompression.compress(stdError);
   }
 
   public byte[] getStdOut() {
-    return ArrayUtils.nullToEmpty(stdOut);
+    return ArrayUtils.nullToEmpty(LobCompression.decompress(stdOut));
   }
 
   public void setStdOut(byte[] stdOut) {
-    this.stdOut = stdOut;
+    this.stdOut = LobCompression.compress(stdOut);
   }
 
   public String getOutputLog() { return outputLog; }
@@ -289,11 +290,11 @@ public class HostRoleCommandEntity {
   }
 
   public byte[] getStructuredOut() {
-    return structuredOut;
+    return LobCompression.decompress(structuredOut);
   }
 
   public void setStructuredOut(byte[] structuredOut) {
-    this.structuredOut = structuredOut;
+    this.structuredOut = LobCompression.compress(structuredOut);
   }
 
   public Long getEndTime() {
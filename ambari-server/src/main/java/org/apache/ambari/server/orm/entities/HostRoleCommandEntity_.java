@@ -18,8 +18,18 @@
 
 package org.apache.ambari.server.orm.entities;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.persistence.metamodel.SingularAttribute;
 
+import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.controller.internal.TaskResourceProvider;
+
 
 /**
  * This class exists so that JPQL can use static singular attributes that are strongly typed
@@ -30,11 +40,11 @@ public class HostRoleCommandEntity_ {
   public static volatile SingularAttribute<HostRoleCommandEntity, Long> taskId;
   public static volatile SingularAttribute<HostRoleCommandEntity, Long> requestId;
   public static volatile SingularAttribute<HostRoleCommandEntity, Long> stageId;
-  public static volatile SingularAttribute<HostRoleCommandEntity, String> hostName;
+  public static volatile SingularAttribute<HostRoleCommandEntity, Long> hostId;
   public static volatile SingularAttribute<HostRoleCommandEntity, String> role;
   public static volatile SingularAttribute<HostRoleCommandEntity, String> event;
   public static volatile SingularAttribute<HostRoleCommandEntity, Integer> exitcode;
-  public static volatile SingularAttribute<HostRoleCommandEntity, String> status;
+  public static volatile SingularAttribute<HostRoleCommandEntity, HostRoleStatus> status;
   public static volatile SingularAttribute<HostRoleCommandEntity, byte[]> stdError;
   public static volatile SingularAttribute<HostRoleCommandEntity, byte[]> stdOut;
   public static volatile SingularAttribute<HostRoleCommandEntity, String> outputLog;
@@ -44,8 +54,63 @@ public class HostRoleCommandEntity_ {
   public static volatile SingularAttribute<HostRoleCommandEntity, Long> endTime;
   public static volatile SingularAttribute<HostRoleCommandEntity, Long> lastAttemptTime;
   public static volatile SingularAttribute<HostRoleCommandEntity, Short> attemptCount;
-  public static volatile SingularAttribute<HostRoleCommandEntity, String> roleCommand;
+  public static volatile SingularAttribute<HostRoleCommandEntity, RoleCommand> roleCommand;
   public static volatile SingularAttribute<HostRoleCommandEntity, String> commandDetail;
   public static volatile SingularAttribute<HostRoleCommandEntity, String> customCommandName;
+  public static volatile SingularAttribute<HostRoleCommandEntity, StageEntity> stage;
+  public static volatile SingularAttribute<HostRoleCommandEntity, HostEntity> hostEntity;
+
+  /**
+   * Gets a mapping of between a resource provider property and the entity
+   * fields it is stored in.
+   * <p/>
+   * This is used when converting an Ambari
+   * {@link org.apache.ambari.server.controller.spi.Predicate} into a JPA
+   * {@link javax.persistence.criteria.Predicate}. The cluster name is not
+   * mapped since it is stored as the ID of the stage's cluster.
+   *
+   * @return a mapping of between a resource provider property
+   */
+  public static Map<String, List<? extends SingularAttribute<?, ?>>> getPredicateMapping() {
+    Map<String, List<? extends SingularAttribute<?, ?>>> mapping = new HashMap<String, List<? extends SingularAttribute<?, ?>>>();
+
+    mapping.put(TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID,
+        Collections.singletonList(requestId));
+
+    mapping.put(TaskResourceProvider.TASK_ID_PROPERTY_ID,
+        Collections.singletonList(taskId));
+
+    mapping.put(TaskResourceProvider.TASK_STAGE_ID_PROPERTY_ID,
+        Collections.singletonList(stageId));
+
+    mapping.put(TaskResourceProvider.TASK_HOST_NAME_PROPERTY_ID,
+        Arrays.asList(hostEntity, HostEntity_.hostName));
+
+    mapping.put(TaskResourceProvider.TASK_ROLE_PROPERTY_ID,
+        Collections.singletonList(role));
+
+    mapping.put(TaskResourceProvider.TASK_COMMAND_PROPERTY_ID,
+        Collections.singletonList(roleCommand));
+
+    mapping.put(TaskResourceProvider.TASK_STATUS_PROPERTY_ID,
+        Collections.singletonList(status));
+
+    mapping.put(TaskResourceProvider.TASK_EXIT_CODE_PROPERTY_ID,
+        Collections.singletonList(exitcode));
+
+    mapping.put(TaskResourceProvider.TASK_START_TIME_PROPERTY_ID,
+        Collections.singletonList(startTime));
+
+    mapping.put(TaskResourceProvider.TASK_END_TIME_PROPERTY_ID,
+        Collections.singletonList(endTime));
+
+    mapping.put(TaskResourceProvider.TASK_ATTEMPT_CNT_PROPERTY_ID,
+        Collections.singletonList(attemptCount));
+
+    mapping.put(TaskResourceProvider.TASK_CUST_CMD_NAME_PROPERTY_ID,
+        Collections.singletonList(customCommandName));
+
+    return mapping;
+  }
 }
 
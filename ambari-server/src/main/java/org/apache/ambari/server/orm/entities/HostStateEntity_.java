@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.orm.entities;
+
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.StaticMetamodel;
+
+import org.apache.ambari.server.state.HostState;
+
+/**
+ * The {@link HostStateEntity_} is a strongly typed metamodel for creating
+ * {@link javax.persistence.criteria.CriteriaQuery} for {@link HostStateEntity}.
+ */
+@StaticMetamodel(HostStateEntity.class)
+public class HostStateEntity_ {
+  public static volatile SingularAttribute<HostStateEntity, Long> hostId;
+  public static volatile SingularAttribute<HostStateEntity, Long> availableMem;
+  public static volatile SingularAttribute<HostStateEntity, Long> timeInState;
+  public static volatile SingularAttribute<HostStateEntity, String> healthStatus;
+  public static volatile SingularAttribute<HostStateEntity, String> agentVersion;
+  public static volatile SingularAttribute<HostStateEntity, HostState> currentState;
+  public static volatile SingularAttribute<HostStateEntity, String> maintenanceState;
+  public static volatile SingularAttribute<HostStateEntity, HostEntity> hostEntity;
+}
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.ambari.server.configuration.Configuration;
+
+/**
+ * The {@link LobCompression} class transparently compresses the binary LOBs
+ * of entities, such as task output and execution commands. Compressed values
+ * start with a marker which never starts the text stored before compression
+ * was introduced, so that existing rows are still read as they are. Values
+ * which are small or don't shrink are stored uncompressed.
+ *
+ * Compression is off unless enabled with
+ * {@link Configuration#SERVER_DB_LOB_COMPRESSION_ENABLED_KEY}, since a server
+ * downgraded to a version without this class can't read compressed values.
+ * Compressed values are always read, whether compression is enabled or not.
+ */
+public final class LobCompression {
+
+  /**
+   * Marks a deflated value; the last byte is the version of the format.
+   */
+  private static final byte[] DEFLATE_MARKER = { 0, 'A', 'Z', 1 };
+
+  /**
+   * Values smaller than this are stored as they are.
+   */
+  static final int MIN_COMPRESSED_LENGTH = 512;
+
+  /**
+   * {@code true} if values are compressed before they are stored.
+   */
+  private static volatile boolean enabled = false;
+
+  /**
+   * Constructor.
+   */
+  private LobCompression() {
+  }
+
+  /**
+   * Static initialization.
+   *
+   * @param configuration
+   *          the server configuration
+   */
+  public static void init(Configuration configuration) {
+    enabled = configuration.isLobCompressionEnabled();
+  }
+
+  /**
+   * Compresses a value before it is stored.
+   *
+   * @param value
+   *          the uncompressed value, or {@code null}.
+   * @return the value to store, or {@code null} if the value is {@code null}.
+   */
+  public static byte[] compress(byte[] value) {
+    if (!enabled || null == value || value.length < MIN_COMPRESSED_LENGTH) {
+      return value;
+    }
+
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(value);
+      deflater.finish();
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(value.length / 4);
+      out.write(DEFLATE_MARKER, 0, DEFLATE_MARKER.length);
+
+      byte[] buffer = new byte[4096];
+      while (!deflater.finished() && out.size() < value.length) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+
+      return deflater.finished() && out.size() < value.length ? out.toByteArray() : value;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Decompresses a stored value. Values without the marker are returned as
+   * they are.
+   *
+   * @param value
+   *          the stored value, or {@code null}.
+   * @return the uncompressed value, or {@code null} if the value is
+   *         {@code null}.
+   * @throws IllegalStateException
+   *           if a compressed value is corrupt.
+   */
+  public static byte[] decompress(byte[] value) {
+    if (!isCompressed(value)) {
+      return value;
+    }
+
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(value, DEFLATE_MARKER.length, value.length - DEFLATE_MARKER.length);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(value.length * 4);
+      byte[] buffer = new byte[4096];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (0 == length && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalStateException("Truncated compressed value");
+        }
+
+        out.write(buffer, 0, length);
+      }
+
+      return out.toByteArray();
+    } catch (DataFormatException exception) {
+      throw new IllegalStateException("Corrupt compressed value", exception);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Gets whether a stored value is compressed.
+   *
+   * @param value
+   *          the stored value, or {@code null}.
+   * @return {@code true} if the value starts with the compression marker.
+   */
+  public static boolean isCompressed(byte[] value) {
+    return null != value && value.length >= DEFLATE_MARKER.length
+        && Arrays.equals(DEFLATE_MARKER, Arrays.copyOf(value, DEFLATE_MARKER.length));
+  }
+}
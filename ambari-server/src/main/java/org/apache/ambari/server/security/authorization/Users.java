@@ -54,6 +54,7 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -67,6 +68,12 @@ public class Users {
 
   private static final Logger LOG = LoggerFactory.getLogger(Users.class);
 
+  /**
+   * The maximum number of users or memberships written in one transaction
+   * during an LDAP sync.
+   */
+  static final int LDAP_SYNC_BATCH_SIZE = 1000;
+
   @Inject
   Provider<EntityManager> entityManagerProvider;
   @Inject
@@ -359,6 +366,25 @@ public class Users {
     return groups;
   }
 
+  /**
+   * Gets the names of the members of all groups with a single query.
+   *
+   * @return map of group name to the names of its members
+   */
+  public Map<String, Set<String>> getAllGroupMemberNames() {
+    final Map<String, Set<String>> memberNames = new HashMap<String, Set<String>>();
+    for (Object[] groupAndUserName : memberDAO.findAllGroupAndUserNames()) {
+      final String groupName = (String) groupAndUserName[0];
+      Set<String> groupMemberNames = memberNames.get(groupName);
+      if (groupMemberNames == null) {
+        groupMemberNames = new HashSet<String>();
+        memberNames.put(groupName, groupMemberNames);
+      }
+      groupMemberNames.add((String) groupAndUserName[1]);
+    }
+    return memberNames;
+  }
+
   /**
    * Gets all members of a group specified.
    *
@@ -515,6 +541,8 @@ public class Users {
 
   /**
    * Executes batch queries to database to insert large amounts of LDAP data.
+   * Users and memberships are written in transactions of at most
+   * {@value #LDAP_SYNC_BATCH_SIZE} entities.
    *
    * @param batchInfo DTO with batch information
    */
@@ -621,8 +649,12 @@ public class Users {
     }
 
     // create users and groups
-    principalDAO.create(principalsToCreate);
-    userDAO.create(usersToCreate);
+    for (List<PrincipalEntity> principals : Lists.partition(principalsToCreate, LDAP_SYNC_BATCH_SIZE)) {
+      principalDAO.create(principals);
+    }
+    for (List<UserEntity> userEntities : Lists.partition(new ArrayList<UserEntity>(usersToCreate), LDAP_SYNC_BATCH_SIZE)) {
+      userDAO.create(new HashSet<UserEntity>(userEntities));
+    }
     groupDAO.create(groupsToCreate);
 
     // create membership
@@ -637,7 +669,9 @@ public class Users {
       groupsToUpdate.add(groupEntity);
       membersToCreate.add(memberEntity);
     }
-    memberDAO.create(membersToCreate);
+    for (List<MemberEntity> memberEntities : Lists.partition(new ArrayList<MemberEntity>(membersToCreate), LDAP_SYNC_BATCH_SIZE)) {
+      memberDAO.create(new HashSet<MemberEntity>(memberEntities));
+    }
     groupDAO.merge(groupsToUpdate); // needed for Derby DB as it doesn't fetch newly added members automatically
 
     // remove membership
@@ -648,7 +682,9 @@ public class Users {
         membersToRemove.add(memberEntity);
       }
     }
-    memberDAO.remove(membersToRemove);
+    for (List<MemberEntity> memberEntities : Lists.partition(new ArrayList<MemberEntity>(membersToRemove), LDAP_SYNC_BATCH_SIZE)) {
+      memberDAO.remove(new HashSet<MemberEntity>(memberEntities));
+    }
 
     // clear cached entities
     entityManagerProvider.get().getEntityManagerFactory().getCache().evictAll();
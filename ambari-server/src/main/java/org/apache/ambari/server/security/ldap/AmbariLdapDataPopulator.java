@@ -82,6 +82,13 @@ public class AmbariLdapDataPopulator {
    */
   private LdapTemplate ldapTemplate;
 
+  /**
+   * Resolved group members of the group synchronization in progress; null if
+   * no groups are being synchronized. Synchronizations are serialized by the
+   * management controller.
+   */
+  private MembershipCache membershipCache;
+
   // Constants
   private static final String UID_ATTRIBUTE          = "uid";
   private static final String OBJECT_CLASS_ATTRIBUTE = "objectClass";
@@ -173,18 +180,23 @@ public class AmbariLdapDataPopulator {
     final Map<String, Group> internalGroupsMap = getInternalGroups();
     final Map<String, User> internalUsersMap = getInternalUsers();
 
-    for (LdapGroupDto groupDto : externalLdapGroupInfo) {
-      String groupName = groupDto.getGroupName();
-      if (internalGroupsMap.containsKey(groupName)) {
-        final Group group = internalGroupsMap.get(groupName);
-        if (!group.isLdapGroup()) {
-          batchInfo.getGroupsToBecomeLdap().add(groupName);
+    membershipCache = new MembershipCache(internalUsersMap, externalLdapGroupInfo);
+    try {
+      for (LdapGroupDto groupDto : externalLdapGroupInfo) {
+        String groupName = groupDto.getGroupName();
+        if (internalGroupsMap.containsKey(groupName)) {
+          final Group group = internalGroupsMap.get(groupName);
+          if (!group.isLdapGroup()) {
+            batchInfo.getGroupsToBecomeLdap().add(groupName);
+          }
+          internalGroupsMap.remove(groupName);
+        } else {
+          batchInfo.getGroupsToBeCreated().add(groupName);
         }
-        internalGroupsMap.remove(groupName);
-      } else {
-        batchInfo.getGroupsToBeCreated().add(groupName);
+        refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
       }
-      refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
+    } finally {
+      membershipCache = null;
     }
     for (Entry<String, Group> internalGroup : internalGroupsMap.entrySet()) {
       if (internalGroup.getValue().isLdapGroup()) {
@@ -247,18 +259,23 @@ public class AmbariLdapDataPopulator {
     final Map<String, Group> internalGroupsMap = getInternalGroups();
     final Map<String, User> internalUsersMap = getInternalUsers();
 
-    for (LdapGroupDto groupDto : specifiedGroups) {
-      String groupName = groupDto.getGroupName();
-      if (internalGroupsMap.containsKey(groupName)) {
-        final Group group = internalGroupsMap.get(groupName);
-        if (!group.isLdapGroup()) {
-          batchInfo.getGroupsToBecomeLdap().add(groupName);
+    membershipCache = new MembershipCache(internalUsersMap, specifiedGroups);
+    try {
+      for (LdapGroupDto groupDto : specifiedGroups) {
+        String groupName = groupDto.getGroupName();
+        if (internalGroupsMap.containsKey(groupName)) {
+          final Group group = internalGroupsMap.get(groupName);
+          if (!group.isLdapGroup()) {
+            batchInfo.getGroupsToBecomeLdap().add(groupName);
+          }
+          internalGroupsMap.remove(groupName);
+        } else {
+          batchInfo.getGroupsToBeCreated().add(groupName);
         }
-        internalGroupsMap.remove(groupName);
-      } else {
-        batchInfo.getGroupsToBeCreated().add(groupName);
+        refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
       }
-      refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
+    } finally {
+      membershipCache = null;
     }
 
     return batchInfo;
@@ -309,18 +326,27 @@ public class AmbariLdapDataPopulator {
     final Map<String, Group> internalGroupsMap = getInternalGroups();
     final Map<String, User> internalUsersMap = getInternalUsers();
 
+    final Set<LdapGroupDto> existingGroups = new HashSet<LdapGroupDto>();
     for (Group group : internalGroupsMap.values()) {
       if (group.isLdapGroup()) {
         Set<LdapGroupDto> groupDtos = getLdapGroups(group.getGroupName());
         if (groupDtos.isEmpty()) {
           batchInfo.getGroupsToBeRemoved().add(group.getGroupName());
         } else {
-          LdapGroupDto groupDto = groupDtos.iterator().next();
-          refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
+          existingGroups.add(groupDtos.iterator().next());
         }
       }
     }
 
+    membershipCache = new MembershipCache(internalUsersMap, existingGroups);
+    try {
+      for (LdapGroupDto groupDto : existingGroups) {
+        refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
+      }
+    } finally {
+      membershipCache = null;
+    }
+
     return batchInfo;
   }
 
@@ -419,13 +445,24 @@ public class AmbariLdapDataPopulator {
   }
 
   /**
-   * Get the LDAP member for the given member attribute.
+   * Get the LDAP member for the given member attribute. While groups are
+   * being synchronized every member attribute value is only looked up once.
    *
    * @param memberAttributeValue  the member attribute value
    *
    * @return the user for the given member attribute; null if not found
    */
   protected LdapUserDto getLdapUserByMemberAttr(String memberAttributeValue) {
+    final MembershipCache cache = membershipCache;
+    if (cache != null) {
+      if (cache.isIndexRequired()) {
+        cache.index(getExternalLdapUserInfo());
+      }
+      if (cache.ldapUsers.containsKey(memberAttributeValue)) {
+        return cache.ldapUsers.get(memberAttributeValue);
+      }
+    }
+
     LdapUserDto dto = getLdapUser(memberAttributeValue);
     if (dto == null) {
       Set<LdapUserDto> filteredLdapUsers = getFilteredLdapUsers(
@@ -434,6 +471,10 @@ public class AmbariLdapDataPopulator {
 
       dto = (filteredLdapUsers.isEmpty()) ? null : filteredLdapUsers.iterator().next();
     }
+
+    if (cache != null) {
+      cache.ldapUsers.put(memberAttributeValue, dto);
+    }
     return dto;
   }
 
@@ -484,7 +525,15 @@ public class AmbariLdapDataPopulator {
     final Set<LdapGroupDto> groups = new HashSet<LdapGroupDto>();
     final LdapTemplate ldapTemplate = loadLdapTemplate();
     String baseDn = ldapServerProperties.getBaseDN();
-    ldapTemplate.search(baseDn, filter.encode(), new LdapGroupContextMapper(groups, ldapServerProperties));
+    PagedResultsDirContextProcessor processor = createPagingProcessor();
+    SearchControls searchControls = new SearchControls();
+    searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+    LdapGroupContextMapper ldapGroupContextMapper = new LdapGroupContextMapper(groups, ldapServerProperties);
+    String encodedFilter = filter.encode();
+
+    do {
+      ldapTemplate.search(baseDn, encodedFilter, searchControls, ldapGroupContextMapper, processor);
+    } while (processor.getCookie() != null && processor.getCookie().getCookie() != null);
     return groups;
   }
 
@@ -530,7 +579,7 @@ public class AmbariLdapDataPopulator {
           users.add((LdapUserDto)dto);
         }
       }
-    } while (processor.getCookie().getCookie() != null);
+    } while (processor.getCookie() != null && processor.getCookie().getCookie() != null);
     return users;
   }
 
@@ -569,6 +618,25 @@ public class AmbariLdapDataPopulator {
    * @return map of UserName-User pairs
    */
   protected Map<String, User> getInternalMembers(String groupName) {
+    final MembershipCache cache = membershipCache;
+    if (cache != null) {
+      if (cache.internalMemberships == null) {
+        cache.internalMemberships = users.getAllGroupMemberNames();
+      }
+      final Set<String> memberNames = cache.internalMemberships.get(groupName);
+      if (memberNames == null) {
+        return Collections.emptyMap();
+      }
+      final Map<String, User> internalMembersMap = new HashMap<String, User>();
+      for (String memberName : memberNames) {
+        final User user = cache.internalUsers.get(memberName);
+        if (user != null) {
+          internalMembersMap.put(memberName, user);
+        }
+      }
+      return internalMembersMap;
+    }
+
     final Collection<User> internalMembers = users.getGroupMembers(groupName);
     if (internalMembers == null) {
       return Collections.emptyMap();
@@ -650,6 +718,77 @@ public class AmbariLdapDataPopulator {
     return new LdapTemplate(ldapContextSource);
   }
 
+  /**
+   * The group members resolved during a synchronization of groups. LDAP users
+   * are cached by member attribute value, so that every member is only looked
+   * up once however many groups it belongs to. If the groups reference more
+   * members than fit in a page of users, all LDAP users are read with paged
+   * searches up front and indexed by DN and uid instead of being looked up
+   * one by one. The internal memberships of all groups are read at once.
+   */
+  private static class MembershipCache {
+
+    /**
+     * LDAP users by member attribute value; null values are members which
+     * are not users.
+     */
+    private final Map<String, LdapUserDto> ldapUsers = new HashMap<String, LdapUserDto>();
+
+    /**
+     * Internal users by user name.
+     */
+    private final Map<String, User> internalUsers;
+
+    /**
+     * Internal member names by group name; null until first needed.
+     */
+    private Map<String, Set<String>> internalMemberships;
+
+    /**
+     * The groups being synchronized; null once it was decided whether to
+     * index all LDAP users.
+     */
+    private Collection<LdapGroupDto> groups;
+
+    private MembershipCache(Map<String, User> internalUsers, Collection<LdapGroupDto> groups) {
+      this.internalUsers = internalUsers;
+      this.groups = groups;
+    }
+
+    /**
+     * Determines whether all LDAP users should be indexed before the first
+     * member is resolved, which is the case if the groups reference more
+     * members than fit in a page of users.
+     */
+    private boolean isIndexRequired() {
+      if (groups == null) {
+        return false;
+      }
+
+      int memberCount = 0;
+      for (LdapGroupDto group : groups) {
+        memberCount += group.getMemberAttributes().size();
+      }
+      groups = null;
+      return memberCount > USERS_PAGE_SIZE;
+    }
+
+    /**
+     * Indexes the given LDAP users by DN and uid. Member attribute values
+     * which match neither are still looked up individually.
+     */
+    private void index(Collection<LdapUserDto> users) {
+      for (LdapUserDto user : users) {
+        if (user.getDn() != null) {
+          ldapUsers.put(user.getDn(), user);
+        }
+        if (user.getUid() != null && !ldapUsers.containsKey(user.getUid())) {
+          ldapUsers.put(user.getUid(), user);
+        }
+      }
+    }
+  }
+
   //
   // ContextMapper implementations
   //
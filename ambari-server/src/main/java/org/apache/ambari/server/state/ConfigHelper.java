@@ -18,6 +18,7 @@
 package org.apache.ambari.server.state;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -29,7 +30,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
@@ -46,6 +54,9 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -64,8 +75,53 @@ public class ConfigHelper {
   public static final String CLUSTER_DEFAULT_TAG = "tag";
   private final boolean STALE_CONFIGS_CACHE_ENABLED;
   private final int STALE_CONFIGS_CACHE_EXPIRATION_TIME = 300;
+  private final int STALE_CONFIGS_REFRESH_DELAY = 1;
+  private static final String ANY_CONFIG_TYPE = "*";
+
+  /**
+   * Effective configuration properties and attributes by cluster id and configuration tags.
+   * The commands of a stage share the same tags, so they are only expanded once per stage
+   * rather than once per command.
+   */
+  private final Cache<List<Object>, Map<String, Map<String, String>>> effectivePropertiesCache =
+      CacheBuilder.newBuilder().maximumSize(100).expireAfterAccess(5, TimeUnit.MINUTES).build();
+  private final Cache<List<Object>, Map<String, Map<String, Map<String, String>>>> effectiveAttributesCache =
+      CacheBuilder.newBuilder().maximumSize(100).expireAfterAccess(5, TimeUnit.MINUTES).build();
   private final Cache<ServiceComponentHost, Boolean> staleConfigsCache;
 
+  /**
+   * Index of config type to the host components whose cached stale state depends on it.
+   * Entries are dropped when the type is invalidated and re-added on recalculation.
+   * Host components whose state wasn't determined by their configs are indexed under
+   * {@link #ANY_CONFIG_TYPE} and are invalidated by a change to any type. A host
+   * component is removed from the index when its cached value expires or is
+   * invalidated, and when it is deleted.
+   */
+  private final ConcurrentMap<String, Set<ServiceComponentHost>> staleConfigsDependencies =
+      new ConcurrentHashMap<String, Set<ServiceComponentHost>>();
+
+  /**
+   * Incremented on every invalidation so that a value calculated concurrently
+   * with an invalidation is not cached.
+   */
+  private final AtomicLong staleConfigsGeneration = new AtomicLong();
+
+  /**
+   * Host components to recalculate in the background after an invalidation.
+   */
+  private final Set<ServiceComponentHost> staleConfigsRefreshQueue =
+      Collections.newSetFromMap(new ConcurrentHashMap<ServiceComponentHost, Boolean>());
+  private final AtomicBoolean staleConfigsRefreshScheduled = new AtomicBoolean();
+  private final ScheduledExecutorService staleConfigsRefreshExecutor =
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Stale Configs Refresh Thread");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
   private static final Logger LOG =
       LoggerFactory.getLogger(ConfigHelper.class);
 
@@ -91,7 +147,16 @@ public class ConfigHelper {
     this.clusterDAO = clusterDAO;
     STALE_CONFIGS_CACHE_ENABLED = configuration.isStaleConfigCacheEnabled();
     staleConfigsCache = CacheBuilder.newBuilder().
-        expireAfterWrite(STALE_CONFIGS_CACHE_EXPIRATION_TIME, TimeUnit.SECONDS).build();
+        expireAfterWrite(STALE_CONFIGS_CACHE_EXPIRATION_TIME, TimeUnit.SECONDS).
+        removalListener(new RemovalListener<ServiceComponentHost, Boolean>() {
+          @Override
+          public void onRemoval(RemovalNotification<ServiceComponentHost, Boolean> notification) {
+            // a replaced value was recalculated and registered its dependencies again
+            if (notification.getCause() != RemovalCause.REPLACED) {
+              removeStaleConfigsDependencies(notification.getKey());
+            }
+          }
+        }).build();
   }
 
   /**
@@ -212,6 +277,84 @@ public class ConfigHelper {
     return properties;
   }
 
+  /**
+   * Get all config properties for a cluster given a set of configType to
+   * versionTags map.  The result is shared by all callers with the same tags
+   * and must not be modified.
+   *
+   * @param cluster
+   * @param desiredTags
+   * @return {type : {key, value}}
+   * @see #getEffectiveConfigProperties(Cluster, Map)
+   */
+  public Map<String, Map<String, String>> getCachedEffectiveConfigProperties(
+      Cluster cluster, Map<String, Map<String, String>> desiredTags) {
+
+    List<Object> key = getEffectiveConfigsCacheKey(cluster, desiredTags);
+    Map<String, Map<String, String>> properties = effectivePropertiesCache.getIfPresent(key);
+    if (properties == null) {
+      properties = getEffectiveConfigProperties(cluster, desiredTags);
+      effectivePropertiesCache.put(key, properties);
+    }
+    return properties;
+  }
+
+  /**
+   * Get all config attributes for a cluster given a set of configType to
+   * versionTags map.  The result is shared by all callers with the same tags
+   * and must not be modified.
+   *
+   * @param cluster
+   * @param desiredTags
+   * @return {type : {attribute : {property, attributeValue}}
+   * @see #getEffectiveConfigAttributes(Cluster, Map)
+   */
+  public Map<String, Map<String, Map<String, String>>> getCachedEffectiveConfigAttributes(
+      Cluster cluster, Map<String, Map<String, String>> desiredTags) {
+
+    List<Object> key = getEffectiveConfigsCacheKey(cluster, desiredTags);
+    Map<String, Map<String, Map<String, String>>> attributes = effectiveAttributesCache.getIfPresent(key);
+    if (attributes == null) {
+      attributes = getEffectiveConfigAttributes(cluster, desiredTags);
+      effectiveAttributesCache.put(key, attributes);
+    }
+    return attributes;
+  }
+
+  /**
+   * The cluster and tags determine the effective configurations. A config
+   * version rewritten in place invalidates the cached entries of its cluster,
+   * see {@link #invalidateEffectiveConfigs(long)}.
+   */
+  private List<Object> getEffectiveConfigsCacheKey(Cluster cluster, Map<String, Map<String, String>> desiredTags) {
+    Map<String, Map<String, String>> tags = new HashMap<String, Map<String, String>>();
+    if (desiredTags != null) {
+      for (Entry<String, Map<String, String>> entry : desiredTags.entrySet()) {
+        tags.put(entry.getKey(), new HashMap<String, String>(entry.getValue()));
+      }
+    }
+    return Arrays.<Object>asList(cluster.getClusterId(), tags);
+  }
+
+  /**
+   * Drops the cached effective configuration properties and attributes of a
+   * cluster. Called when an existing config version is rewritten in place.
+   *
+   * @param clusterId the cluster id
+   */
+  public void invalidateEffectiveConfigs(long clusterId) {
+    for (List<Object> key : effectivePropertiesCache.asMap().keySet()) {
+      if (key.get(0).equals(clusterId)) {
+        effectivePropertiesCache.invalidate(key);
+      }
+    }
+    for (List<Object> key : effectiveAttributesCache.asMap().keySet()) {
+      if (key.get(0).equals(clusterId)) {
+        effectiveAttributesCache.invalidate(key);
+      }
+    }
+  }
+
   /**
    * Get all config attributes for a cluster given a set of configType to
    * versionTags map. This helper method merges all the override tags with a
@@ -377,7 +520,21 @@ public class ConfigHelper {
     }
 
     if (stale == null) {
-      stale = calculateIsStaleConfigs(sch);
+      stale = refreshStaleConfigs(sch);
+    }
+    return stale;
+  }
+
+  /**
+   * Calculates and caches the isStale value for sch.
+   *
+   * @param sch  the host component
+   * @return <code>true</code> if the actual configs are stale
+   */
+  private boolean refreshStaleConfigs(ServiceComponentHost sch) throws AmbariException {
+    long generation = staleConfigsGeneration.get();
+    boolean stale = calculateIsStaleConfigs(sch);
+    if (generation == staleConfigsGeneration.get()) {
       staleConfigsCache.put(sch, stale);
     }
     return stale;
@@ -404,7 +561,9 @@ public class ConfigHelper {
    * Invalidates isStale cache
    */
   public void invalidateStaleConfigsCache() {
+    staleConfigsGeneration.incrementAndGet();
     staleConfigsCache.invalidateAll();
+    staleConfigsDependencies.clear();
   }
 
   /**
@@ -413,9 +572,118 @@ public class ConfigHelper {
    * @param sch
    */
   public void invalidateStaleConfigsCache(ServiceComponentHost sch) {
+    staleConfigsGeneration.incrementAndGet();
     staleConfigsCache.invalidate(sch);
   }
 
+  /**
+   * Removes a deleted host component from the isStale cache and from the index
+   * of the config types it depends on.
+   *
+   * @param sch  the deleted host component
+   */
+  public void removeStaleConfigsCache(ServiceComponentHost sch) {
+    staleConfigsGeneration.incrementAndGet();
+    staleConfigsRefreshQueue.remove(sch);
+    staleConfigsCache.invalidate(sch);
+    removeStaleConfigsDependencies(sch);
+  }
+
+  /**
+   * Invalidates cached isStale values for the host components which depend on
+   * any of the given config types and recalculates them in the background.
+   * Host components which don't depend on the types keep their cached value.
+   *
+   * @param configTypes  the changed config types
+   */
+  public void invalidateStaleConfigsCache(Collection<String> configTypes) {
+    staleConfigsGeneration.incrementAndGet();
+
+    Set<ServiceComponentHost> affected = new HashSet<ServiceComponentHost>();
+    Set<ServiceComponentHost> anyTypeDependents = staleConfigsDependencies.remove(ANY_CONFIG_TYPE);
+    if (anyTypeDependents != null) {
+      affected.addAll(anyTypeDependents);
+    }
+    for (String configType : configTypes) {
+      Set<ServiceComponentHost> dependents = staleConfigsDependencies.remove(configType);
+      if (dependents != null) {
+        affected.addAll(dependents);
+      }
+    }
+
+    for (ServiceComponentHost sch : affected) {
+      // only cached values need to be refreshed, the others are calculated on demand
+      if (staleConfigsCache.getIfPresent(sch) != null) {
+        staleConfigsCache.invalidate(sch);
+        staleConfigsRefreshQueue.add(sch);
+      }
+    }
+
+    if (STALE_CONFIGS_CACHE_ENABLED && ! staleConfigsRefreshQueue.isEmpty() &&
+        staleConfigsRefreshScheduled.compareAndSet(false, true)) {
+      // the short delay coalesces bursts of config changes into a single refresh
+      staleConfigsRefreshExecutor.schedule(new Runnable() {
+        @Override
+        public void run() {
+          staleConfigsRefreshScheduled.set(false);
+          refreshStaleConfigs();
+        }
+      }, STALE_CONFIGS_REFRESH_DELAY, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Recalculates the isStale values of the host components queued by an invalidation
+   * which haven't already been recalculated on demand.
+   */
+  private void refreshStaleConfigs() {
+    Iterator<ServiceComponentHost> iterator = staleConfigsRefreshQueue.iterator();
+    while (iterator.hasNext()) {
+      ServiceComponentHost sch = iterator.next();
+      iterator.remove();
+      if (staleConfigsCache.getIfPresent(sch) == null) {
+        try {
+          refreshStaleConfigs(sch);
+        } catch (Exception e) {
+          // the host component may have been removed
+          LOG.debug("Unable to refresh stale configs for " + sch.getServiceComponentName() +
+              " on host " + sch.getHostName(), e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Registers the config types which the isStale value of sch depends on.
+   *
+   * @param sch          the host component
+   * @param configTypes  the config types
+   */
+  private void addStaleConfigsDependencies(ServiceComponentHost sch, Collection<String> configTypes) {
+    for (String configType : configTypes) {
+      Set<ServiceComponentHost> dependents = staleConfigsDependencies.get(configType);
+      if (dependents == null) {
+        dependents = Collections.newSetFromMap(new ConcurrentHashMap<ServiceComponentHost, Boolean>());
+        Set<ServiceComponentHost> existing = staleConfigsDependencies.putIfAbsent(configType, dependents);
+        if (existing != null) {
+          dependents = existing;
+        }
+      }
+      dependents.add(sch);
+    }
+  }
+
+  /**
+   * Removes sch from the index of the config types which isStale values depend on.
+   *
+   * @param sch  the host component
+   */
+  private void removeStaleConfigsDependencies(ServiceComponentHost sch) {
+    for (Set<ServiceComponentHost> dependents : staleConfigsDependencies.values()) {
+      dependents.remove(sch);
+    }
+  }
+
   /**
    * Remove configs by type
    *
@@ -936,6 +1204,7 @@ public class ConfigHelper {
 
     Map<String, HostConfig> actual = sch.getActualConfigs();
     if (null == actual || actual.isEmpty()) {
+      addStaleConfigsDependencies(sch, Collections.singleton(ANY_CONFIG_TYPE));
       return false;
     }
 
@@ -948,6 +1217,9 @@ public class ConfigHelper {
     ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
         stackId.getStackVersion(), sch.getServiceName());
     ComponentInfo componentInfo = serviceInfo.getComponentByName(sch.getServiceComponentName());
+
+    addStaleConfigsDependencies(sch, getStaleConfigsDependencies(actual, serviceInfo, componentInfo));
+
     // Configs are considered stale when:
     // - desired type DOES NOT exist in actual
     // --- desired type DOES NOT exist in stack: not_stale
@@ -1005,6 +1277,30 @@ public class ConfigHelper {
     return stale;
   }
 
+  /**
+   * Gets the config types which the isStale value of a host component depends
+   * on: the actual types, and the desired types which aren't actual yet but
+   * are checked by {@link ServiceInfo#hasConfigDependency(String)} or
+   * {@link ComponentInfo#hasConfigType(String)}. Creating a config of any other
+   * type can't change the value.
+   *
+   * @param actual         the actual configs of the host component
+   * @param serviceInfo    the service of the host component
+   * @param componentInfo  the component of the host component, or {@code null}
+   * @return the config types
+   */
+  private Set<String> getStaleConfigsDependencies(Map<String, HostConfig> actual,
+      ServiceInfo serviceInfo, ComponentInfo componentInfo) {
+    Set<String> dependencies = new HashSet<String>(actual.keySet());
+    if (serviceInfo.getConfigDependencies() != null) {
+      dependencies.addAll(serviceInfo.getConfigDependencies());
+    }
+    if (componentInfo != null && componentInfo.getConfigDependencies() != null) {
+      dependencies.addAll(componentInfo.getConfigDependencies());
+    }
+    return dependencies;
+  }
+
   /**
    * Determines if the hostname has group specific configs for the type specified
    *
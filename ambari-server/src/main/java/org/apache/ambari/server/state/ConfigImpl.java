@@ -64,6 +64,9 @@ public class ConfigImpl implements Config {
   @Inject
   private ServiceConfigDAO serviceConfigDAO;
 
+  @Inject
+  private ConfigHelper configHelper;
+
   @AssistedInject
   public ConfigImpl(@Assisted Cluster cluster, @Assisted String type, @Assisted Map<String, String> properties,
       @Assisted Map<String, Map<String, String>> propertiesAttributes, Injector injector) {
@@ -252,6 +255,9 @@ public class ConfigImpl implements Config {
         // newest data
         clusterDAO.merge(clusterEntity, true);
         cluster.refresh();
+
+        // the tags are unchanged, so configs expanded from them are stale
+        configHelper.invalidateEffectiveConfigs(cluster.getClusterId());
       }
     }
   }
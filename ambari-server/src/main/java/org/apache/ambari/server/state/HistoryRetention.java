@@ -0,0 +1,505 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+
+import org.apache.ambari.server.actionmanager.ActionDBAccessor;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.dao.RequestDAO;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.orm.entities.AlertNoticeEntity;
+import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.apache.ambari.server.orm.entities.RequestEntity;
+import org.apache.ambari.server.orm.entities.RequestOperationLevelEntity;
+import org.apache.ambari.server.orm.entities.RequestResourceFilterEntity;
+import org.apache.ambari.server.orm.entities.RoleSuccessCriteriaEntity;
+import org.apache.ambari.server.orm.entities.StageEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.stream.JsonWriter;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * The {@link HistoryRetention} removes completed requests, with their stages,
+ * tasks and execution commands, and alert history which are older than the
+ * configured retention. Rows are removed in batches of
+ * {@link Configuration#getHistoryRetentionBatchSize()} parents, each in its
+ * own transaction, so that no long lasting locks are held. Each batch can be
+ * written to a gzipped JSON archive before it is removed. Since the rows are
+ * removed with bulk statements, the removed entities are evicted from the
+ * shared JPA cache and the removed tasks from the task cache of the
+ * {@link ActionDBAccessor} after each batch.
+ * <p/>
+ * Only a single purge runs at any time.
+ */
+@Singleton
+public class HistoryRetention {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(HistoryRetention.class);
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Inject
+  private Configuration m_configuration;
+
+  @Inject
+  private RequestDAO m_requestDAO;
+
+  @Inject
+  private HostRoleCommandDAO m_hostRoleCommandDAO;
+
+  @Inject
+  private AlertsDAO m_alertsDAO;
+
+  @Inject
+  private ActionDBAccessor m_actionDBAccessor;
+
+  @Inject
+  private Provider<EntityManager> m_entityManagerProvider;
+
+  /**
+   * {@code true} while a purge is running.
+   */
+  private final AtomicBoolean m_running = new AtomicBoolean();
+
+  private final AtomicLong m_purgedRequests = new AtomicLong();
+  private final AtomicLong m_purgedTasks = new AtomicLong();
+  private final AtomicLong m_purgedAlerts = new AtomicLong();
+  private final AtomicLong m_batches = new AtomicLong();
+
+  private volatile long m_lastStartTime = -1;
+  private volatile long m_lastEndTime = -1;
+  private volatile String m_lastError;
+
+  /**
+   * Gets whether any retention policy is configured.
+   *
+   * @return {@code true} if requests or alert history are purged.
+   */
+  public boolean isEnabled() {
+    return m_configuration.getRequestRetentionDays() > 0
+        || m_configuration.getRequestRetentionMaxCount() > 0
+        || m_configuration.getAlertHistoryRetentionDays() > 0;
+  }
+
+  /**
+   * Purges the history which is outside of the configured retention on the
+   * calling thread.
+   *
+   * @return {@code false} if a purge was already running.
+   */
+  public boolean purge() {
+    if (!m_running.compareAndSet(false, true)) {
+      return false;
+    }
+
+    doPurge();
+    return true;
+  }
+
+  /**
+   * Purges the history which is outside of the configured retention on a new
+   * thread.
+   *
+   * @return {@code false} if a purge was already running.
+   */
+  public boolean submitPurge() {
+    if (!m_running.compareAndSet(false, true)) {
+      return false;
+    }
+
+    Thread thread = new Thread("history-retention") {
+      @Override
+      public void run() {
+        doPurge();
+      }
+    };
+
+    thread.setDaemon(true);
+    thread.start();
+    return true;
+  }
+
+  /**
+   * Gets the progress of the running purge and the totals since the server
+   * started.
+   *
+   * @return the status (never {@code null}).
+   */
+  public HistoryRetentionStatus getStatus() {
+    HistoryRetentionStatus status = new HistoryRetentionStatus();
+    status.setRunning(m_running.get());
+    status.setLastStartTime(m_lastStartTime);
+    status.setLastEndTime(m_lastEndTime);
+    status.setLastError(m_lastError);
+    status.setPurgedRequests(m_purgedRequests.get());
+    status.setPurgedTasks(m_purgedTasks.get());
+    status.setPurgedAlerts(m_purgedAlerts.get());
+    status.setBatches(m_batches.get());
+    return status;
+  }
+
+  /**
+   * Runs the purge, the caller must have set {@link #m_running}.
+   */
+  private void doPurge() {
+    m_lastStartTime = System.currentTimeMillis();
+    m_lastError = null;
+
+    long requests = m_purgedRequests.get();
+    long tasks = m_purgedTasks.get();
+    long alerts = m_purgedAlerts.get();
+
+    try {
+      purgeRequests();
+      purgeAlertHistory();
+    } catch (Exception exception) {
+      m_lastError = exception.toString();
+      LOG.error("Unable to purge history", exception);
+    } finally {
+      m_lastEndTime = System.currentTimeMillis();
+      m_running.set(false);
+    }
+
+    LOG.info("Purged {} requests with {} tasks and {} alerts in {}ms",
+        m_purgedRequests.get() - requests, m_purgedTasks.get() - tasks,
+        m_purgedAlerts.get() - alerts, m_lastEndTime - m_lastStartTime);
+  }
+
+  /**
+   * Removes the completed requests which are older than the configured number
+   * of days or beyond the configured number of the most recent requests.
+   *
+   * @throws IOException
+   *           if a batch could not be archived.
+   */
+  private void purgeRequests() throws IOException {
+    int days = m_configuration.getRequestRetentionDays();
+    int maxCount = m_configuration.getRequestRetentionMaxCount();
+    if (days <= 0 && maxCount <= 0) {
+      return;
+    }
+
+    long createdBefore = 0;
+    if (days > 0) {
+      createdBefore = m_lastStartTime - TimeUnit.DAYS.toMillis(days);
+    }
+
+    long requestIdBefore = 0;
+    if (maxCount > 0) {
+      List<Long> newest = m_requestDAO.findAllRequestIds(maxCount, false);
+      if (newest.size() == maxCount) {
+        requestIdBefore = newest.get(maxCount - 1);
+      }
+    }
+
+    int batchSize = m_configuration.getHistoryRetentionBatchSize();
+    List<Long> requestIds;
+
+    do {
+      requestIds = m_requestDAO.findRequestIdsToPurge(createdBefore, requestIdBefore, batchSize);
+      if (requestIds.isEmpty()) {
+        break;
+      }
+
+      archiveRequests(requestIds);
+
+      List<Long> taskIds = m_hostRoleCommandDAO.findTaskIdsByRequestIds(requestIds);
+      m_purgedTasks.addAndGet(m_requestDAO.removeByPKs(requestIds));
+      m_purgedRequests.addAndGet(requestIds.size());
+      evictRequests(requestIds, taskIds);
+      m_batches.incrementAndGet();
+    } while (requestIds.size() == batchSize);
+  }
+
+  /**
+   * Removes the alert history which is older than the configured number of
+   * days and is not the current instance of an alert.
+   *
+   * @throws IOException
+   *           if a batch could not be archived.
+   */
+  private void purgeAlertHistory() throws IOException {
+    int days = m_configuration.getAlertHistoryRetentionDays();
+    if (days <= 0) {
+      return;
+    }
+
+    long before = m_lastStartTime - TimeUnit.DAYS.toMillis(days);
+    int batchSize = m_configuration.getHistoryRetentionBatchSize();
+    List<AlertHistoryEntity> alerts;
+
+    do {
+      alerts = m_alertsDAO.findAllNotCurrentBefore(before, batchSize);
+      if (alerts.isEmpty()) {
+        break;
+      }
+
+      archiveAlerts(alerts);
+
+      List<Long> historyIds = new ArrayList<Long>(alerts.size());
+      for (AlertHistoryEntity alert : alerts) {
+        historyIds.add(alert.getAlertId());
+      }
+
+      m_purgedAlerts.addAndGet(m_alertsDAO.removeHistoryByIds(historyIds));
+      m_batches.incrementAndGet();
+      evictAlerts(historyIds);
+    } while (alerts.size() == batchSize);
+  }
+
+  /**
+   * Evicts removed requests and everything removed with them from the caches.
+   * Entities without a single ID are evicted by type.
+   *
+   * @param requestIds
+   *          the IDs of the removed requests.
+   * @param taskIds
+   *          the IDs of the removed tasks.
+   */
+  private void evictRequests(List<Long> requestIds, List<Long> taskIds) {
+    Cache cache = m_entityManagerProvider.get().getEntityManagerFactory().getCache();
+    for (Long requestId : requestIds) {
+      cache.evict(RequestEntity.class, requestId);
+    }
+
+    for (Long taskId : taskIds) {
+      cache.evict(HostRoleCommandEntity.class, taskId);
+      cache.evict(ExecutionCommandEntity.class, taskId);
+    }
+
+    cache.evict(StageEntity.class);
+    cache.evict(RoleSuccessCriteriaEntity.class);
+    cache.evict(RequestResourceFilterEntity.class);
+    cache.evict(RequestOperationLevelEntity.class);
+
+    m_actionDBAccessor.invalidateCachedTasks(taskIds);
+  }
+
+  /**
+   * Evicts removed alert history and its notices from the shared cache.
+   *
+   * @param historyIds
+   *          the IDs of the removed alert history.
+   */
+  private void evictAlerts(List<Long> historyIds) {
+    Cache cache = m_entityManagerProvider.get().getEntityManagerFactory().getCache();
+    for (Long historyId : historyIds) {
+      cache.evict(AlertHistoryEntity.class, historyId);
+    }
+
+    cache.evict(AlertNoticeEntity.class);
+  }
+
+  /**
+   * Writes the requests and their tasks to an archive file, if an archive
+   * directory is configured. Execution commands are not archived since they
+   * only hold what was sent to the agents.
+   *
+   * @param requestIds
+   *          the IDs of the requests, in ascending order.
+   * @throws IOException
+   *           if the archive could not be written.
+   */
+  private void archiveRequests(List<Long> requestIds) throws IOException {
+    JsonWriter writer = createArchive("requests", requestIds.get(0),
+        requestIds.get(requestIds.size() - 1));
+
+    if (null == writer) {
+      return;
+    }
+
+    try {
+      Map<Long, List<HostRoleCommandEntity>> tasks = new HashMap<Long, List<HostRoleCommandEntity>>();
+      for (HostRoleCommandEntity task : m_hostRoleCommandDAO.findByRequestIds(requestIds)) {
+        List<HostRoleCommandEntity> requestTasks = tasks.get(task.getRequestId());
+        if (null == requestTasks) {
+          requestTasks = new ArrayList<HostRoleCommandEntity>();
+          tasks.put(task.getRequestId(), requestTasks);
+        }
+
+        requestTasks.add(task);
+      }
+
+      writer.beginArray();
+      for (RequestEntity request : m_requestDAO.findByPks(requestIds)) {
+        writer.beginObject();
+        writer.name("request_id").value(request.getRequestId());
+        writer.name("cluster_id").value(request.getClusterId());
+        writer.name("request_context").value(request.getRequestContext());
+        writer.name("command_name").value(request.getCommandName());
+        writer.name("inputs").value(request.getInputs());
+        writer.name("create_time").value(request.getCreateTime());
+        writer.name("start_time").value(request.getStartTime());
+        writer.name("end_time").value(request.getEndTime());
+
+        writer.name("tasks").beginArray();
+        List<HostRoleCommandEntity> requestTasks = tasks.get(request.getRequestId());
+        if (null != requestTasks) {
+          for (HostRoleCommandEntity task : requestTasks) {
+            writeTask(writer, task);
+          }
+        }
+
+        writer.endArray();
+        writer.endObject();
+      }
+
+      writer.endArray();
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes a task to an archive.
+   *
+   * @param writer
+   *          the archive.
+   * @param task
+   *          the task.
+   * @throws IOException
+   *           if the task could not be written.
+   */
+  private void writeTask(JsonWriter writer, HostRoleCommandEntity task) throws IOException {
+    writer.beginObject();
+    writer.name("task_id").value(task.getTaskId());
+    writer.name("stage_id").value(task.getStageId());
+    writer.name("host_name").value(task.getHostName());
+    writer.name("role").value(String.valueOf(task.getRole()));
+    writer.name("role_command").value(String.valueOf(task.getRoleCommand()));
+    writer.name("command_detail").value(task.getCommandDetail());
+    writer.name("custom_command_name").value(task.getCustomCommandName());
+    writer.name("status").value(String.valueOf(task.getStatus()));
+    writer.name("exit_code").value(task.getExitcode());
+    writer.name("start_time").value(task.getStartTime());
+    writer.name("end_time").value(task.getEndTime());
+    writer.name("attempt_count").value(task.getAttemptCount());
+    writer.name("stdout").value(toString(task.getStdOut()));
+    writer.name("stderr").value(toString(task.getStdError()));
+    writer.name("structured_out").value(toString(task.getStructuredOut()));
+    writer.endObject();
+  }
+
+  /**
+   * Writes the alert history to an archive file, if an archive directory is
+   * configured.
+   *
+   * @param alerts
+   *          the alert history, in ascending order of their IDs.
+   * @throws IOException
+   *           if the archive could not be written.
+   */
+  private void archiveAlerts(List<AlertHistoryEntity> alerts) throws IOException {
+    JsonWriter writer = createArchive("alerts", alerts.get(0).getAlertId(),
+        alerts.get(alerts.size() - 1).getAlertId());
+
+    if (null == writer) {
+      return;
+    }
+
+    try {
+      writer.beginArray();
+      for (AlertHistoryEntity alert : alerts) {
+        writer.beginObject();
+        writer.name("alert_id").value(alert.getAlertId());
+        writer.name("cluster_id").value(alert.getClusterId());
+        writer.name("definition_name").value(alert.getAlertDefinition().getDefinitionName());
+        writer.name("service_name").value(alert.getServiceName());
+        writer.name("component_name").value(alert.getComponentName());
+        writer.name("host_name").value(alert.getHostName());
+        writer.name("instance").value(alert.getAlertInstance());
+        writer.name("label").value(alert.getAlertLabel());
+        writer.name("state").value(String.valueOf(alert.getAlertState()));
+        writer.name("text").value(alert.getAlertText());
+        writer.name("timestamp").value(alert.getAlertTimestamp());
+        writer.endObject();
+      }
+
+      writer.endArray();
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Creates an archive file for a batch of rows.
+   *
+   * @param prefix
+   *          the type of the archived rows.
+   * @param firstId
+   *          the ID of the first row.
+   * @param lastId
+   *          the ID of the last row.
+   * @return the writer for the archive or {@code null} if no archive
+   *         directory is configured.
+   * @throws IOException
+   *           if the archive could not be created.
+   */
+  private JsonWriter createArchive(String prefix, long firstId, long lastId) throws IOException {
+    String archiveDir = m_configuration.getHistoryRetentionArchiveDir();
+    if (null == archiveDir) {
+      return null;
+    }
+
+    File directory = new File(archiveDir);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create the history archive directory " + directory);
+    }
+
+    File file = new File(directory, prefix + "-" + firstId + "-" + lastId + ".json.gz");
+    return new JsonWriter(new OutputStreamWriter(
+        new GZIPOutputStream(new FileOutputStream(file)), UTF_8));
+  }
+
+  /**
+   * Decodes task output.
+   *
+   * @param bytes
+   *          the output, or {@code null}.
+   * @return the output or {@code null}.
+   */
+  private static String toString(byte[] bytes) {
+    return null == bytes ? null : new String(bytes, UTF_8);
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * The {@link HistoryRetentionStatus} captures the progress of the history
+ * purge done by {@link HistoryRetention}. Counts are totals since the server
+ * started and grow with every batch of a running purge.
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "", propOrder = {})
+public class HistoryRetentionStatus {
+  @XmlElement
+  private boolean running;
+  @XmlElement
+  private long lastStartTime;
+  @XmlElement
+  private long lastEndTime;
+  @XmlElement
+  private String lastError;
+  @XmlElement
+  private long purgedRequests;
+  @XmlElement
+  private long purgedTasks;
+  @XmlElement
+  private long purgedAlerts;
+  @XmlElement
+  private long batches;
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public void setRunning(boolean running) {
+    this.running = running;
+  }
+
+  public long getLastStartTime() {
+    return lastStartTime;
+  }
+
+  public void setLastStartTime(long lastStartTime) {
+    this.lastStartTime = lastStartTime;
+  }
+
+  public long getLastEndTime() {
+    return lastEndTime;
+  }
+
+  public void setLastEndTime(long lastEndTime) {
+    this.lastEndTime = lastEndTime;
+  }
+
+  public String getLastError() {
+    return lastError;
+  }
+
+  public void setLastError(String lastError) {
+    this.lastError = lastError;
+  }
+
+  public long getPurgedRequests() {
+    return purgedRequests;
+  }
+
+  public void setPurgedRequests(long purgedRequests) {
+    this.purgedRequests = purgedRequests;
+  }
+
+  public long getPurgedTasks() {
+    return purgedTasks;
+  }
+
+  public void setPurgedTasks(long purgedTasks) {
+    this.purgedTasks = purgedTasks;
+  }
+
+  public long getPurgedAlerts() {
+    return purgedAlerts;
+  }
+
+  public void setPurgedAlerts(long purgedAlerts) {
+    this.purgedAlerts = purgedAlerts;
+  }
+
+  public long getBatches() {
+    return batches;
+  }
+
+  public void setBatches(long batches) {
+    this.batches = batches;
+  }
+}
@@ -0,0 +1,472 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.HostComponentStateDAO;
+import org.apache.ambari.server.orm.dao.HostStateDAO;
+import org.apache.ambari.server.orm.entities.HostComponentStateEntity;
+import org.apache.ambari.server.orm.entities.HostComponentStateEntityPK;
+import org.apache.ambari.server.orm.entities.HostStateEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+
+/**
+ * The {@link HostStateWriteBehind} coalesces changes to the fields of
+ * {@link HostStateEntity} and {@link HostComponentStateEntity} instances which
+ * only agent heartbeats report and writes them to the database in periodic
+ * batched transactions instead of merging every change as it happens. The
+ * current state of hosts and host components, and the upgrade state of host
+ * components, are always written directly since other readers of the DAOs
+ * depend on them.
+ * <p/>
+ * A change is queued as a snapshot of the agent reported fields, taken while
+ * the owning host or host component holds its write lock. Only the latest
+ * snapshot is kept, so repeated changes between two flushes cost a single
+ * update. A flush applies the snapshots to the entities loaded in its own
+ * transaction and never inserts them, so state of a deleted host or host
+ * component can't be written back. Pending state is flushed by
+ * {@link org.apache.ambari.server.state.services.HostStateWriteBehindService}
+ * every {@link Configuration#getStateWriteBehindInterval()} milliseconds, as
+ * soon as {@link Configuration#getStateWriteBehindMaxPending()} entities are
+ * pending and on shutdown.
+ * <p/>
+ * Owners with pending state must keep using their own entity since the
+ * database does not reflect it until the next flush. Owners which write an
+ * entity directly report it with {@link #writtenHostState(Long, HostStateEntity)}
+ * or {@link #writtenHostComponentState(HostComponentStateEntityPK, HostComponentStateEntity)}.
+ * Flushes don't lock the entities, so a flush which took the pending state
+ * before the direct write may still commit the older snapshot after it; in
+ * that case the state of the direct write stays pending and the next flush
+ * writes it again.
+ */
+@Singleton
+public class HostStateWriteBehind {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(HostStateWriteBehind.class);
+
+  @Inject
+  private HostStateDAO m_hostStateDAO;
+
+  @Inject
+  private HostComponentStateDAO m_hostComponentStateDAO;
+
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * Pending host state, by host id.
+   */
+  private final Map<Long, Pending<HostStateSnapshot>> m_hostStates =
+      new ConcurrentHashMap<Long, Pending<HostStateSnapshot>>();
+
+  /**
+   * Pending host component state, by primary key.
+   */
+  private final Map<HostComponentStateEntityPK, Pending<HostComponentStateSnapshot>> m_hostComponentStates =
+      new ConcurrentHashMap<HostComponentStateEntityPK, Pending<HostComponentStateSnapshot>>();
+
+  /**
+   * The number of entities which are pending and not discarded.
+   */
+  private final AtomicInteger m_pendingCount = new AtomicInteger();
+
+  /**
+   * The number of pending entities which triggers a flush, read when the
+   * flush service starts.
+   */
+  private volatile int m_maxPending = Integer.MAX_VALUE;
+
+  /**
+   * Serializes flushes so that an entity is never merged by two threads.
+   */
+  private final Lock m_flushLock = new ReentrantLock();
+
+  /**
+   * Runs flushes requested because too many entities are pending, or
+   * {@code null} if there is no flush service.
+   */
+  private volatile Executor m_flushExecutor;
+
+  /**
+   * Set from the time a flush takes the pending state until it has removed
+   * the state it wrote.
+   */
+  private volatile boolean m_flushing;
+
+  /**
+   * Set while a requested flush has not started yet.
+   */
+  private final AtomicBoolean m_flushRequested = new AtomicBoolean();
+
+  /**
+   * @return {@code true} if state changes should be handed to this class
+   *         instead of being merged directly.
+   */
+  public boolean isEnabled() {
+    return m_configuration.isStateWriteBehindEnabled();
+  }
+
+  /**
+   * Sets the executor of the flush service which runs the flushes requested
+   * once too many entities are pending.
+   *
+   * @param executor
+   *          the executor, or {@code null} when the service stops.
+   */
+  public void setFlushExecutor(Executor executor) {
+    if (null != executor) {
+      m_maxPending = m_configuration.getStateWriteBehindMaxPending();
+    }
+    m_flushExecutor = executor;
+  }
+
+  /**
+   * Schedules the host state for writing. Must be called while holding the
+   * write lock of the host.
+   *
+   * @param hostId
+   *          the host id (not {@code null}).
+   * @param entity
+   *          the host state (not {@code null}).
+   */
+  public void add(Long hostId, HostStateEntity entity) {
+    added(m_hostStates.put(hostId,
+        new Pending<HostStateSnapshot>(new HostStateSnapshot(entity))));
+  }
+
+  /**
+   * Schedules the host component state for writing. Must be called while
+   * holding the write lock of the host component.
+   *
+   * @param primaryKey
+   *          the primary key of the entity (not {@code null}).
+   * @param entity
+   *          the host component state (not {@code null}).
+   */
+  public void add(HostComponentStateEntityPK primaryKey,
+      HostComponentStateEntity entity) {
+    added(m_hostComponentStates.put(primaryKey,
+        new Pending<HostComponentStateSnapshot>(new HostComponentStateSnapshot(entity))));
+  }
+
+  /**
+   * Discards the pending state of a host after the host state was written
+   * directly. If a flush is running, which may commit an older snapshot
+   * after the direct write, the written state is kept pending instead. Must
+   * be called after the write while holding the write lock of the host.
+   *
+   * @param hostId
+   *          the host id (not {@code null}).
+   * @param entity
+   *          the host state which was written (not {@code null}).
+   */
+  public void writtenHostState(Long hostId, HostStateEntity entity) {
+    if (discard(m_hostStates, hostId) && m_flushing) {
+      add(hostId, entity);
+    }
+  }
+
+  /**
+   * Discards the pending state of a host component after its state was
+   * written directly. If a flush is running, which may commit an older
+   * snapshot after the direct write, the written state is kept pending
+   * instead. Must be called after the write while holding the write lock of
+   * the host component.
+   *
+   * @param primaryKey
+   *          the primary key of the entity (not {@code null}).
+   * @param entity
+   *          the host component state which was written (not {@code null}).
+   */
+  public void writtenHostComponentState(HostComponentStateEntityPK primaryKey,
+      HostComponentStateEntity entity) {
+    if (discard(m_hostComponentStates, primaryKey) && m_flushing) {
+      add(primaryKey, entity);
+    }
+  }
+
+  /**
+   * @param hostId
+   *          the host id
+   * @return {@code true} if host state is waiting to be written.
+   */
+  public boolean hasPendingHostState(Long hostId) {
+    Pending<HostStateSnapshot> pending = m_hostStates.get(hostId);
+    return null != pending && !pending.isDiscarded();
+  }
+
+  /**
+   * @param primaryKey
+   *          the primary key of the host component state
+   * @return {@code true} if host component state is waiting to be written.
+   */
+  public boolean hasPendingHostComponentState(
+      HostComponentStateEntityPK primaryKey) {
+    Pending<HostComponentStateSnapshot> pending = m_hostComponentStates.get(primaryKey);
+    return null != pending && !pending.isDiscarded();
+  }
+
+  /**
+   * Discards pending state of a host which is being removed or which was
+   * written directly. A flush which already took the pending state skips it.
+   *
+   * @param hostId
+   *          the host id
+   */
+  public void discardHostState(Long hostId) {
+    discard(m_hostStates, hostId);
+  }
+
+  /**
+   * Discards pending state of a host component which is being removed or
+   * which was written directly. A flush which already took the pending
+   * state skips it.
+   *
+   * @param primaryKey
+   *          the primary key of the host component state
+   */
+  public void discardHostComponentState(HostComponentStateEntityPK primaryKey) {
+    discard(m_hostComponentStates, primaryKey);
+  }
+
+  /**
+   * @return the number of entities waiting to be written.
+   */
+  public int getPendingCount() {
+    return m_pendingCount.get();
+  }
+
+  /**
+   * Writes all pending entities in a single transaction. Entities which
+   * changed again, or were written directly, while being written stay
+   * pending; discarded entities are skipped. If the transaction fails, all
+   * entities stay pending.
+   */
+  public void flush() {
+    if (m_hostStates.isEmpty() && m_hostComponentStates.isEmpty()) {
+      return;
+    }
+
+    m_flushLock.lock();
+    m_flushing = true;
+    try {
+      List<Map.Entry<Long, Pending<HostStateSnapshot>>> hostStates =
+          new ArrayList<Map.Entry<Long, Pending<HostStateSnapshot>>>(m_hostStates.entrySet());
+      List<Map.Entry<HostComponentStateEntityPK, Pending<HostComponentStateSnapshot>>> hostComponentStates =
+          new ArrayList<Map.Entry<HostComponentStateEntityPK, Pending<HostComponentStateSnapshot>>>(
+              m_hostComponentStates.entrySet());
+
+      long start = System.currentTimeMillis();
+      try {
+        merge(hostStates, hostComponentStates);
+      } catch (RuntimeException exception) {
+        LOG.error("Unable to write {} pending host and host component states",
+            hostStates.size() + hostComponentStates.size(), exception);
+        return;
+      }
+
+      // only remove what was written; newer changes remain pending
+      for (Map.Entry<Long, Pending<HostStateSnapshot>> entry : hostStates) {
+        removed(m_hostStates, entry);
+      }
+      for (Map.Entry<HostComponentStateEntityPK, Pending<HostComponentStateSnapshot>> entry : hostComponentStates) {
+        removed(m_hostComponentStates, entry);
+      }
+
+      LOG.debug("Wrote {} host and {} host component states in {}ms",
+          hostStates.size(), hostComponentStates.size(),
+          System.currentTimeMillis() - start);
+    } finally {
+      m_flushing = false;
+      m_flushLock.unlock();
+    }
+  }
+
+  /**
+   * Applies the snapshots to the stored entities in one transaction.
+   * Snapshots which were replaced or discarded in the meantime, and those of
+   * entities which no longer exist, are skipped.
+   */
+  @Transactional
+  void merge(List<Map.Entry<Long, Pending<HostStateSnapshot>>> hostStates,
+      List<Map.Entry<HostComponentStateEntityPK, Pending<HostComponentStateSnapshot>>> hostComponentStates) {
+    for (Map.Entry<Long, Pending<HostStateSnapshot>> entry : hostStates) {
+      Pending<HostStateSnapshot> pending = entry.getValue();
+      if (pending.isDiscarded() || m_hostStates.get(entry.getKey()) != pending) {
+        continue;
+      }
+      HostStateEntity entity = m_hostStateDAO.findByHostId(entry.getKey());
+      if (null != entity) {
+        pending.snapshot.applyTo(entity);
+        m_hostStateDAO.merge(entity);
+      }
+    }
+    for (Map.Entry<HostComponentStateEntityPK, Pending<HostComponentStateSnapshot>> entry : hostComponentStates) {
+      Pending<HostComponentStateSnapshot> pending = entry.getValue();
+      if (pending.isDiscarded() || m_hostComponentStates.get(entry.getKey()) != pending) {
+        continue;
+      }
+      HostComponentStateEntity entity = m_hostComponentStateDAO.findByPK(entry.getKey());
+      if (null != entity) {
+        pending.snapshot.applyTo(entity);
+        m_hostComponentStateDAO.merge(entity);
+      }
+    }
+  }
+
+  /**
+   * Counts a newly pending entity unless it replaced one which was already
+   * pending, and requests a flush if too many entities are pending.
+   *
+   * @param replaced
+   *          the pending state which was replaced, or {@code null}.
+   */
+  private void added(Pending<?> replaced) {
+    int count = null == replaced || replaced.isDiscarded()
+        ? m_pendingCount.incrementAndGet() : m_pendingCount.get();
+    if (count >= m_maxPending) {
+      requestFlush();
+    }
+  }
+
+  /**
+   * Marks the pending state of an entity as discarded, if there is any.
+   *
+   * @return {@code true} if there was pending state.
+   */
+  private <K, T> boolean discard(Map<K, Pending<T>> pendingStates, K key) {
+    Pending<T> discarded = new Pending<T>(null);
+    Pending<T> pending = pendingStates.get(key);
+    while (null != pending && !pending.isDiscarded()) {
+      if (pendingStates.replace(key, pending, discarded)) {
+        m_pendingCount.decrementAndGet();
+        return true;
+      }
+      pending = pendingStates.get(key);
+    }
+    return false;
+  }
+
+  /**
+   * Removes written or discarded state unless it changed in the meantime.
+   */
+  private <K, T> void removed(Map<K, Pending<T>> pendingStates, Map.Entry<K, Pending<T>> entry) {
+    if (pendingStates.remove(entry.getKey(), entry.getValue()) && !entry.getValue().isDiscarded()) {
+      m_pendingCount.decrementAndGet();
+    }
+  }
+
+  /**
+   * Asks the flush service to flush. The calling thread, usually handling a
+   * heartbeat, doesn't wait for it.
+   */
+  private void requestFlush() {
+    Executor executor = m_flushExecutor;
+    if (null == executor || !m_flushRequested.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          m_flushRequested.set(false);
+          flush();
+        }
+      });
+    } catch (RejectedExecutionException exception) {
+      // the service is stopping and flushes on its own
+      m_flushRequested.set(false);
+    }
+  }
+
+  /**
+   * Wraps a pending snapshot. A new wrapper is created for every change so
+   * that a flush can tell whether the entity was changed again while it was
+   * being written. A wrapper without a snapshot marks discarded state.
+   */
+  static final class Pending<T> {
+    private final T snapshot;
+
+    private Pending(T snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    private boolean isDiscarded() {
+      return null == snapshot;
+    }
+  }
+
+  /**
+   * The heartbeat reported fields of a {@link HostStateEntity}.
+   */
+  static final class HostStateSnapshot {
+    private final Long timeInState;
+    private final String healthStatus;
+    private final String agentVersion;
+
+    private HostStateSnapshot(HostStateEntity entity) {
+      timeInState = entity.getTimeInState();
+      healthStatus = entity.getHealthStatus();
+      agentVersion = entity.getAgentVersion();
+    }
+
+    private void applyTo(HostStateEntity entity) {
+      entity.setTimeInState(timeInState);
+      entity.setHealthStatus(healthStatus);
+      entity.setAgentVersion(agentVersion);
+    }
+  }
+
+  /**
+   * The heartbeat reported fields of a {@link HostComponentStateEntity}.
+   */
+  static final class HostComponentStateSnapshot {
+    private final String version;
+    private final SecurityState securityState;
+
+    private HostComponentStateSnapshot(HostComponentStateEntity entity) {
+      version = entity.getVersion();
+      securityState = entity.getSecurityState();
+    }
+
+    private void applyTo(HostComponentStateEntity entity) {
+      entity.setVersion(version);
+      entity.setSecurityState(securityState);
+    }
+  }
+}
@@ -463,7 +463,7 @@ public class ClusterImpl implements Cluster {
             + configGroup.getTag());
       } else {
         clusterConfigGroups.put(configGroup.getId(), configGroup);
-        configHelper.invalidateStaleConfigsCache();
+        configHelper.invalidateStaleConfigsCache(configGroup.getConfigurations().keySet());
       }
 
     } finally {
@@ -572,9 +572,10 @@ public class ClusterImpl implements Cluster {
           + ", groupName = " + configGroup.getName() + ", groupId = "
           + configGroup.getId() + ", tag = " + configGroup.getTag());
 
+      Collection<String> configTypes = new ArrayList<String>(configGroup.getConfigurations().keySet());
       configGroup.delete();
       clusterConfigGroups.remove(id);
-      configHelper.invalidateStaleConfigsCache();
+      configHelper.invalidateStaleConfigsCache(configTypes);
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -1949,7 +1950,11 @@ public class ClusterImpl implements Cluster {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyConfigs(
           configs, user, serviceConfigVersionNote);
 
-      configHelper.invalidateStaleConfigsCache();
+      Collection<String> configTypes = new ArrayList<String>();
+      for (Config config : configs) {
+        configTypes.add(config.getType());
+      }
+      configHelper.invalidateStaleConfigsCache(configTypes);
       return serviceConfigVersionResponse;
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -2108,7 +2113,7 @@ public class ClusterImpl implements Cluster {
     try {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyServiceConfigVersion(
           serviceName, version, user, note);
-      configHelper.invalidateStaleConfigsCache();
+      configHelper.invalidateStaleConfigsCache(serviceConfigTypes.get(serviceName));
       return serviceConfigVersionResponse;
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -71,6 +71,7 @@ import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.HostHealthStatus;
 import org.apache.ambari.server.state.HostHealthStatus.HealthStatus;
 import org.apache.ambari.server.state.HostState;
+import org.apache.ambari.server.state.HostStateWriteBehind;
 import org.apache.ambari.server.state.RepositoryInfo;
 import org.apache.ambari.server.state.StackId;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
@@ -113,6 +114,8 @@ public class ClustersImpl implements Clusters {
   @Inject
   private HostStateDAO hostStateDAO;
   @Inject
+  private HostStateWriteBehind hostStateWriteBehind;
+  @Inject
   private HostRoleCommandDAO hostRoleCommandDAO;
   @Inject
   private ResourceTypeDAO resourceTypeDAO;
@@ -807,6 +810,7 @@ public class ClustersImpl implements Clusters {
       hostRoleCommandDAO.removeByHostId(entity.getHostId());
 
       entity.setHostStateEntity(null);
+      hostStateWriteBehind.discardHostState(entity.getHostId());
       hostStateDAO.removeByHostId(entity.getHostId());
       hostConfigMappingDAO.removeByHostId(entity.getHostId());
       serviceConfigDAO.removeHostFromServiceConfigs(entity.getHostId());
@@ -58,6 +58,7 @@ import org.apache.ambari.server.state.HostEventType;
 import org.apache.ambari.server.state.HostHealthStatus;
 import org.apache.ambari.server.state.HostHealthStatus.HealthStatus;
 import org.apache.ambari.server.state.HostState;
+import org.apache.ambari.server.state.HostStateWriteBehind;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
@@ -118,6 +119,7 @@ public class HostImpl implements Host {
   private ClusterDAO clusterDAO;
   private Clusters clusters;
   private HostConfigMappingDAO hostConfigMappingDAO;
+  private HostStateWriteBehind stateWriteBehind;
 
   private long lastHeartbeatTime = 0L;
   private AgentEnv lastAgentEnv = null;
@@ -245,6 +247,7 @@ public class HostImpl implements Host {
     clusterDAO = injector.getInstance(ClusterDAO.class);
     clusters = injector.getInstance(Clusters.class);
     hostConfigMappingDAO = injector.getInstance(HostConfigMappingDAO.class);
+    stateWriteBehind = injector.getInstance(HostStateWriteBehind.class);
     //todo: proper static injection
     HostImpl.topologyManager = injector.getInstance(TopologyManager.class);
 
@@ -548,6 +551,7 @@ public class HostImpl implements Host {
       if (hostStateEntity != null) {
         hostStateEntity.setCurrentState(state);
         hostStateEntity.setTimeInState(System.currentTimeMillis());
+        // the host state is read through the DAO, never defer it
         saveIfPersisted();
       }
     }
@@ -924,13 +928,18 @@ public class HostImpl implements Host {
       writeLock.lock();
       HostStateEntity hostStateEntity = getHostStateEntity();
       if (hostStateEntity != null) {
-        hostStateEntity.setHealthStatus(gson.toJson(healthStatus));
+        String healthStatusJson = gson.toJson(healthStatus);
+        boolean changed = !healthStatusJson.equals(hostStateEntity.getHealthStatus());
+        hostStateEntity.setHealthStatus(healthStatusJson);
 
         if (healthStatus.getHealthStatus().equals(HealthStatus.UNKNOWN)) {
           setStatus(HealthStatus.UNKNOWN.name());
         }
 
-        saveIfPersisted();
+        // heartbeats mostly repeat the last status, no need to write it again
+        if (changed || !stateWriteBehind.isEnabled()) {
+          saveHostStateIfPersisted();
+        }
       }
     } finally {
       writeLock.unlock();
@@ -1067,7 +1076,7 @@ public class HostImpl implements Host {
       HostStateEntity hostStateEntity = getHostStateEntity();
       if (hostStateEntity != null) {
         getHostStateEntity().setAgentVersion(gson.toJson(agentVersion));
-        saveIfPersisted();
+        saveHostStateIfPersisted();
       }
     }
     finally {
@@ -1088,7 +1097,7 @@ public class HostImpl implements Host {
       HostStateEntity hostStateEntity = getHostStateEntity();
       if (hostStateEntity != null) {
         getHostStateEntity().setTimeInState(timeInState);
-        saveIfPersisted();
+        saveHostStateIfPersisted();
       }
     }
     finally {
@@ -1243,6 +1252,20 @@ public class HostImpl implements Host {
     if (isPersisted()) {
       hostDAO.merge(hostEntity);
       hostStateDAO.merge(hostStateEntity);
+      stateWriteBehind.writtenHostState(hostEntity.getHostId(), hostStateEntity);
+    }
+  }
+
+  /**
+   * Saves only the host state entity. The write is deferred to
+   * {@link HostStateWriteBehind} when it is enabled, which takes a snapshot
+   * of the entity; callers must hold the write lock.
+   */
+  private void saveHostStateIfPersisted() {
+    if (isPersisted() && stateWriteBehind.isEnabled()) {
+      stateWriteBehind.add(hostEntity.getHostId(), hostStateEntity);
+    } else {
+      saveIfPersisted();
     }
   }
 
@@ -1441,8 +1464,9 @@ public class HostImpl implements Host {
 
   // Get the cached host state entity or load it fresh through the DAO.
   public HostStateEntity getHostStateEntity() {
-    if (isPersisted()) {
-      hostStateEntity = hostStateDAO.findByHostId(hostEntity.getHostId()) ;
+    // state which has not been written yet is newer than the database
+    if (isPersisted() && !stateWriteBehind.hasPendingHostState(hostEntity.getHostId())) {
+      hostStateEntity = hostStateDAO.findByHostId(hostEntity.getHostId());
     }
     return hostStateEntity;
   }
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link CachedAlertFlushService} periodically writes the current alerts
+ * which were only updated in the {@link AlertsDAO} cache. It does nothing
+ * unless {@link Configuration#isAlertCacheEnabled()} is {@code true}.
+ */
+@AmbariService
+public class CachedAlertFlushService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(CachedAlertFlushService.class);
+
+  @Inject
+  private AlertsDAO m_alertsDAO;
+
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * Constructor.
+   */
+  public CachedAlertFlushService() {
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    int interval = Math.max(1, m_configuration.getAlertCacheFlushInterval());
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.MINUTES);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void startUp() throws Exception {
+    if (m_alertsDAO.isCacheEnabled()) {
+      LOG.info("Writing cached current alerts every {} minutes",
+          m_configuration.getAlertCacheFlushInterval());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    try {
+      m_alertsDAO.flushCachedEntitiesToJPA();
+    } catch (Exception exception) {
+      LOG.error("Unable to write cached current alerts", exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    m_alertsDAO.flushCachedEntitiesToJPA();
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.state.HistoryRetention;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link HistoryRetentionService} periodically removes completed requests
+ * and alert history which are outside of the configured retention using
+ * {@link HistoryRetention}. Nothing is removed unless a retention is
+ * configured.
+ */
+@AmbariService
+public class HistoryRetentionService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(HistoryRetentionService.class);
+
+  @Inject
+  private HistoryRetention m_retention;
+
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * Constructor.
+   */
+  public HistoryRetentionService() {
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long interval = m_configuration.getHistoryRetentionInterval();
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.MINUTES);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void startUp() throws Exception {
+    if (!m_retention.isEnabled()) {
+      return;
+    }
+
+    LOG.info("Purging requests older than {} days or beyond the latest {}, "
+        + "and alert history older than {} days, every {} minutes",
+        m_configuration.getRequestRetentionDays(),
+        m_configuration.getRequestRetentionMaxCount(),
+        m_configuration.getAlertHistoryRetentionDays(),
+        m_configuration.getHistoryRetentionInterval());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    if (!m_retention.isEnabled()) {
+      return;
+    }
+
+    // a purge started through the API is not interrupted
+    if (!m_retention.purge()) {
+      LOG.debug("Skipping the history purge since one is already running");
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.state.HostStateWriteBehind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link HostStateWriteBehindService} periodically flushes the host and
+ * host component state collected by {@link HostStateWriteBehind}. Flushes
+ * requested because too many entities are pending also run on the thread of
+ * this service. Pending state is also flushed when the service stops, which
+ * the server does before stopping the persistence service.
+ */
+@AmbariService
+public class HostStateWriteBehindService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(HostStateWriteBehindService.class);
+
+  @Inject
+  private HostStateWriteBehind m_writeBehind;
+
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * The executor of this service, set when the service starts.
+   */
+  private ScheduledExecutorService m_executor;
+
+  /**
+   * Constructor.
+   */
+  public HostStateWriteBehindService() {
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long interval = m_configuration.getStateWriteBehindInterval();
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Keeps the executor so that requested flushes can run on it.
+   */
+  @Override
+  protected ScheduledExecutorService executor() {
+    m_executor = super.executor();
+    return m_executor;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Lets the write-behind request flushes on this service.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    if (!m_writeBehind.isEnabled()) {
+      return;
+    }
+
+    LOG.info("Writing host state every {}ms or every {} changes",
+        m_configuration.getStateWriteBehindInterval(),
+        m_configuration.getStateWriteBehindMaxPending());
+
+    m_writeBehind.setFlushExecutor(m_executor);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    m_writeBehind.flush();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes the state which is still pending.
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    m_writeBehind.setFlushExecutor(null);
+    m_writeBehind.flush();
+  }
+}
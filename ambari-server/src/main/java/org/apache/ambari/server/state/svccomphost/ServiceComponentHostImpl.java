@@ -60,6 +60,7 @@ import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.HostComponentAdminState;
 import org.apache.ambari.server.state.HostConfig;
 import org.apache.ambari.server.state.HostState;
+import org.apache.ambari.server.state.HostStateWriteBehind;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.SecurityState;
 import org.apache.ambari.server.state.ServiceComponent;
@@ -140,6 +141,12 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   @Inject
   private StackDAO stackDAO;
 
+  /**
+   * Used to defer writes of agent reported state.
+   */
+  @Inject
+  private HostStateWriteBehind stateWriteBehind;
+
   // TODO : caching the JPA entities here causes issues if they become stale and get re-merged.
   private HostComponentStateEntity stateEntity;
   private HostComponentDesiredStateEntity desiredStateEntity;
@@ -810,7 +817,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     writeLock.lock();
     try {
       getStateEntity().setVersion(version);
-      saveIfPersisted();
+      saveStateIfPersisted();
     } finally {
       writeLock.unlock();
     }
@@ -831,7 +838,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     writeLock.lock();
     try {
       getStateEntity().setSecurityState(securityState);
-      saveIfPersisted();
+      saveStateIfPersisted();
     } finally {
       writeLock.unlock();
     }
@@ -1278,6 +1285,22 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     if (isPersisted()) {
       hostComponentStateDAO.merge(stateEntity);
       hostComponentDesiredStateDAO.merge(desiredStateEntity);
+      stateWriteBehind.writtenHostComponentState(stateEntityPK, stateEntity);
+    }
+  }
+
+  /**
+   * Saves only the state entity. The write is deferred to
+   * {@link HostStateWriteBehind} when it is enabled, which takes a snapshot
+   * of the entity; callers must hold the write lock. Only used for the
+   * fields reported by heartbeats; the current and upgrade state are read
+   * through the DAO by upgrade checks and API queries and are saved directly.
+   */
+  private void saveStateIfPersisted() {
+    if (isPersisted() && stateWriteBehind.isEnabled()) {
+      stateWriteBehind.add(stateEntityPK, stateEntity);
+    } else {
+      saveIfPersisted();
     }
   }
 
@@ -1315,6 +1338,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
         }
 
         clusters.getCluster(getClusterName()).removeServiceComponentHost(this);
+        helper.removeStaleConfigsCache(this);
       } catch (AmbariException ex) {
         LOG.error("Unable to remove a service component from a host", ex);
       } finally {
@@ -1351,6 +1375,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     pk.setServiceName(stateEntity.getServiceName());
     pk.setHostId(stateEntity.getHostId());
 
+    stateWriteBehind.discardHostComponentState(pk);
     hostComponentStateDAO.removeByPK(pk);
 
     HostComponentDesiredStateEntityPK desiredPK = new HostComponentDesiredStateEntityPK();
@@ -1564,7 +1589,8 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   // Get the cached state entity or load it fresh through the DAO.
   private HostComponentStateEntity getStateEntity() {
-    if (isPersisted()) {
+    // state which has not been written yet is newer than the database
+    if (isPersisted() && !stateWriteBehind.hasPendingHostComponentState(stateEntityPK)) {
       stateEntity = hostComponentStateDAO.findByPK(stateEntityPK);
     }
     return stateEntity;
@@ -34,14 +34,16 @@ import org.apache.ambari.server.orm.entities.TopologyHostRequestEntity;
 import org.apache.ambari.server.orm.entities.TopologyLogicalRequestEntity;
 import org.apache.ambari.server.state.host.HostImpl;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -50,8 +52,8 @@ import java.util.concurrent.atomic.AtomicLong;
 public class LogicalRequest extends Request {
 
   private final Collection<HostRequest> allHostRequests = new ArrayList<HostRequest>();
-  // sorted set with master host requests given priority
-  private final Collection<HostRequest> outstandingHostRequests = new TreeSet<HostRequest>();
+  // outstanding host requests indexed by host group and predicate with master host groups given priority
+  private final Map<String, Deque<HostRequest>> outstandingHostRequests = new TreeMap<String, Deque<HostRequest>>();
   private final Map<String, HostRequest> requestsWithReservedHosts = new HashMap<String, HostRequest>();
 
   private final ClusterTopology topology;
@@ -105,19 +107,31 @@ public class LogicalRequest extends Request {
     // not explicitly reserved, at least not in this request, so attempt to match to outstanding host requests
     boolean predicateRejected = false;
     synchronized (outstandingHostRequests) {
-      //todo: prioritization of master host requests
-      Iterator<HostRequest> hostRequestIterator = outstandingHostRequests.iterator();
-      while (hostRequestIterator.hasNext()) {
-        HostOfferResponse response = hostRequestIterator.next().offer(host);
-        switch (response.getAnswer()) {
-          case ACCEPTED:
-            hostRequestIterator.remove();
+      Iterator<Deque<HostRequest>> hostGroupIterator = outstandingHostRequests.values().iterator();
+      while (hostGroupIterator.hasNext()) {
+        Deque<HostRequest> hostRequests = hostGroupIterator.next();
+        // all requests in a group share the same host group and predicate so only evaluate it once per group
+        if (! hostRequests.peek().matchesHost(host)) {
+          predicateRejected = true;
+          continue;
+        }
+        HostRequest hostRequest;
+        while ((hostRequest = hostRequests.poll()) != null) {
+          HostOfferResponse response = hostRequest.offer(host);
+          if (response.getAnswer() == HostOfferResponse.Answer.ACCEPTED) {
+            if (hostRequests.isEmpty()) {
+              hostGroupIterator.remove();
+            }
             return response;
-          case DECLINED_DONE:
-            //todo: should have been done on ACCEPT
-            hostRequestIterator.remove();
-          case DECLINED_PREDICATE:
+          } else if (response.getAnswer() == HostOfferResponse.Answer.DECLINED_PREDICATE) {
+            hostRequests.addFirst(hostRequest);
             predicateRejected = true;
+            break;
+          }
+          // DECLINED_DONE, the host request has already been resolved
+        }
+        if (hostRequests.isEmpty()) {
+          hostGroupIterator.remove();
         }
       }
     }
@@ -142,12 +156,20 @@ public class LogicalRequest extends Request {
   }
 
   public boolean hasCompleted() {
-    return requestsWithReservedHosts.isEmpty() && outstandingHostRequests.isEmpty();
+    synchronized (outstandingHostRequests) {
+      return requestsWithReservedHosts.isEmpty() && outstandingHostRequests.isEmpty();
+    }
   }
 
   public Collection<HostRequest> getCompletedHostRequests() {
     Collection<HostRequest> completedHostRequests = new ArrayList<HostRequest>(allHostRequests);
-    completedHostRequests.removeAll(outstandingHostRequests);
+    Collection<HostRequest> pendingHostRequests = new HashSet<HostRequest>();
+    synchronized (outstandingHostRequests) {
+      for (Collection<HostRequest> hostRequests : outstandingHostRequests.values()) {
+        pendingHostRequests.addAll(hostRequests);
+      }
+    }
+    completedHostRequests.removeAll(pendingHostRequests);
     completedHostRequests.removeAll(requestsWithReservedHosts.values());
 
     return completedHostRequests;
@@ -295,11 +317,11 @@ public class LogicalRequest extends Request {
           // host count is specified
           HostRequest hostRequest = new HostRequest(getRequestId(), hostIdCounter.getAndIncrement(), getClusterName(),
               null, blueprint.getName(), blueprint.getHostGroup(groupName), hostGroupInfo.getPredicate(), topology);
-          outstandingHostRequests.add(hostRequest);
+          addOutstandingHostRequest(hostRequest);
+          allHostRequests.add(hostRequest);
         }
       }
     }
-    allHostRequests.addAll(outstandingHostRequests);
     allHostRequests.addAll(requestsWithReservedHosts.values());
   }
 
@@ -327,12 +349,34 @@ public class LogicalRequest extends Request {
         if (reservedHostName != null) {
           requestsWithReservedHosts.put(reservedHostName, hostRequest);
         } else {
-          outstandingHostRequests.add(hostRequest);
+          addOutstandingHostRequest(hostRequest);
         }
       }
     }
   }
 
+  /**
+   * Add a host request to the outstanding host request index.  Requests are grouped by
+   * host group, predicate and any previously assigned host name so that a host offer
+   * only needs to evaluate each distinct predicate once.  Groups which contain master
+   * components are ordered first.
+   *
+   * @param hostRequest  outstanding host request
+   */
+  private void addOutstandingHostRequest(HostRequest hostRequest) {
+    String key = String.format("%s:%s:%s:%s", hostRequest.containsMaster() ? 0 : 1,
+        hostRequest.getHostgroupName(), hostRequest.getPredicate(), hostRequest.getHostName());
+
+    synchronized (outstandingHostRequests) {
+      Deque<HostRequest> hostRequests = outstandingHostRequests.get(key);
+      if (hostRequests == null) {
+        hostRequests = new ArrayDeque<HostRequest>();
+        outstandingHostRequests.put(key, hostRequests);
+      }
+      hostRequests.add(hostRequest);
+    }
+  }
+
   private synchronized static AmbariManagementController getController() {
     if (controller == null) {
       controller = AmbariServer.getController();
@@ -18,10 +18,12 @@
 
 package org.apache.ambari.server.topology;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.Request;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.RequestStatusResponse;
 import org.apache.ambari.server.controller.internal.Stack;
 import org.apache.ambari.server.orm.dao.HostRoleCommandStatusSummaryDTO;
@@ -39,13 +41,24 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manages all cluster provisioning actions on the cluster topology.
+ * <p/>
+ * Topology tasks are executed on a thread pool.  Host assignment and task scheduling
+ * are serialized per cluster so that multiple clusters may be provisioned concurrently.
+ * The tasks of a single host are run in order, and no host task of a cluster is run
+ * until the cluster configuration has been resolved and set on the cluster.
  */
-//todo: cluster isolation
 @Singleton
 public class TopologyManager {
 
@@ -53,15 +66,19 @@ public class TopologyManager {
   public static final String TOPOLOGY_RESOLVED_TAG = "TOPOLOGY_RESOLVED";
 
   private PersistedState persistedState;
-  private ExecutorService executor = Executors.newSingleThreadExecutor();
-  private Collection<String> hostsToIgnore = new HashSet<String>();
+  private ExecutorService executor;
+  private final Collection<String> hostsToIgnore =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
   private final List<HostImpl> availableHosts = new LinkedList<HostImpl>();
-  private final Map<String, LogicalRequest> reservedHosts = new HashMap<String, LogicalRequest>();
-  private final Map<Long, LogicalRequest> allRequests = new HashMap<Long, LogicalRequest>();
+  private final ConcurrentMap<String, LogicalRequest> reservedHosts = new ConcurrentHashMap<String, LogicalRequest>();
+  private final Map<Long, LogicalRequest> allRequests = new ConcurrentHashMap<Long, LogicalRequest>();
   // priority is given to oldest outstanding requests
-  private final Collection<LogicalRequest> outstandingRequests = new ArrayList<LogicalRequest>();
-  //todo: currently only support a single cluster
-  private Map<String, ClusterTopology> clusterTopologyMap = new HashMap<String, ClusterTopology>();
+  private final Queue<LogicalRequest> outstandingRequests = new ConcurrentLinkedQueue<LogicalRequest>();
+  // incremented (while holding the availableHosts lock) each time an outstanding request is added
+  private final AtomicLong outstandingRequestsVersion = new AtomicLong();
+  private final Map<String, ClusterTopology> clusterTopologyMap = new ConcurrentHashMap<String, ClusterTopology>();
+  private final ConcurrentMap<String, ClusterProvisioningState> clusterStates =
+      new ConcurrentHashMap<String, ClusterProvisioningState>();
 
   //todo: inject
   private static LogicalRequestFactory logicalRequestFactory = new LogicalRequestFactory();
@@ -73,7 +90,17 @@ public class TopologyManager {
   private final static Logger LOG = LoggerFactory.getLogger(TopologyManager.class);
 
   public TopologyManager() {
+    this(Configuration.TOPOLOGY_TASK_THREADPOOL_SIZE_DEFAULT);
+  }
+
+  @Inject
+  public TopologyManager(Configuration configuration) {
+    this(configuration.getTopologyTaskThreadPoolSize());
+  }
+
+  private TopologyManager(int threadPoolSize) {
     persistedState = ambariContext.getPersistedTopologyState();
+    executor = Executors.newFixedThreadPool(threadPoolSize);
   }
 
   //todo: can't call in constructor.
@@ -123,6 +150,7 @@ public class TopologyManager {
     PersistedTopologyRequest persistedRequest = persistedState.persistTopologyRequest(request);
     // this registers/updates all request host groups
     topology.update(request);
+    getClusterState(clusterName).onTopologyChanged();
     return getRequestStatus(processRequest(persistedRequest, topology,
         ambariContext.getNextRequestId()).getRequestId());
   }
@@ -133,46 +161,30 @@ public class TopologyManager {
       return;
     }
 
-    boolean matchedToRequest = false;
     String hostName = host.getHostName();
-    synchronized(reservedHosts) {
-      if (reservedHosts.containsKey(hostName)) {
-        LogicalRequest request = reservedHosts.remove(hostName);
-        HostOfferResponse response = request.offer(host);
-        if (response.getAnswer() != HostOfferResponse.Answer.ACCEPTED) {
-          throw new RuntimeException("LogicalRequest declined host offer of explicitly requested host: " + hostName);
-        }
-        processAcceptedHostOffer(getClusterTopology(request.getClusterName()), response, host);
-        matchedToRequest = true;
+    LogicalRequest reservingRequest = reservedHosts.remove(hostName);
+    if (reservingRequest != null) {
+      HostOfferResponse response = reservingRequest.offer(host);
+      if (response.getAnswer() != HostOfferResponse.Answer.ACCEPTED) {
+        throw new RuntimeException("LogicalRequest declined host offer of explicitly requested host: " + hostName);
       }
+      processAcceptedHostOffer(getClusterTopology(reservingRequest.getClusterName()), response, host);
+      return;
     }
 
-    // can be true if host was reserved
-    if (! matchedToRequest) {
-      synchronized (outstandingRequests) {
-        Iterator<LogicalRequest> outstandingRequestIterator = outstandingRequests.iterator();
-        while (! matchedToRequest && outstandingRequestIterator.hasNext()) {
-          LogicalRequest request = outstandingRequestIterator.next();
-          HostOfferResponse hostOfferResponse = request.offer(host);
-          switch (hostOfferResponse.getAnswer()) {
-            case ACCEPTED:
-              matchedToRequest = true;
-              processAcceptedHostOffer(getClusterTopology(request.getClusterName()), hostOfferResponse, host);
-              break;
-            case DECLINED_DONE:
-              outstandingRequestIterator.remove();
-              break;
-            case DECLINED_PREDICATE:
-              break;
-          }
-        }
+    while (true) {
+      long requestsVersion = outstandingRequestsVersion.get();
+      if (offerToOutstandingRequests(host)) {
+        return;
       }
-    }
-
-    if (! matchedToRequest) {
       synchronized (availableHosts) {
-        LOG.info("TopologyManager: Queueing available host {}", hostName);
-        availableHosts.add(host);
+        // only queue the host if no request was added while it was being offered,
+        // otherwise the new request could miss the host
+        if (requestsVersion == outstandingRequestsVersion.get()) {
+          LOG.info("TopologyManager: Queueing available host {}", hostName);
+          availableHosts.add(host);
+          return;
+        }
       }
     }
   }
@@ -275,6 +287,29 @@ public class TopologyManager {
     return hostComponentMap;
   }
 
+  /**
+   * Offer a host to the outstanding requests, oldest first.
+   *
+   * @param host  registered host
+   * @return true if the host was accepted by a request
+   */
+  private boolean offerToOutstandingRequests(HostImpl host) {
+    for (LogicalRequest request : outstandingRequests) {
+      HostOfferResponse hostOfferResponse = request.offer(host);
+      switch (hostOfferResponse.getAnswer()) {
+        case ACCEPTED:
+          processAcceptedHostOffer(getClusterTopology(request.getClusterName()), hostOfferResponse, host);
+          return true;
+        case DECLINED_DONE:
+          outstandingRequests.remove(request);
+          break;
+        case DECLINED_PREDICATE:
+          break;
+      }
+    }
+    return false;
+  }
+
   private LogicalRequest processRequest(PersistedTopologyRequest request, ClusterTopology topology, Long requestId)
       throws AmbariException {
 
@@ -282,23 +317,15 @@ public class TopologyManager {
     LogicalRequest logicalRequest = createLogicalRequest(request, topology, requestId);
 
     boolean requestHostComplete = false;
-    //todo: overall synchronization. Currently we have nested synchronization here
     synchronized(availableHosts) {
       Iterator<HostImpl> hostIterator = availableHosts.iterator();
       while (! requestHostComplete && hostIterator.hasNext()) {
         HostImpl host = hostIterator.next();
-        synchronized (reservedHosts) {
-          String hostname = host.getHostName();
-          if (reservedHosts.containsKey(hostname))  {
-            if (logicalRequest.equals(reservedHosts.get(hostname))) {
-              // host is registered to this request, remove it from reserved map
-              reservedHosts.remove(hostname);
-            } else {
-              // host is registered with another request, don't offer
-              //todo: clean up logic
-              continue;
-            }
-          }
+        String hostname = host.getHostName();
+        // a host which is registered to this request is removed from the reserved map,
+        // a host which is registered with another request isn't offered
+        if (! reservedHosts.remove(hostname, logicalRequest) && reservedHosts.containsKey(hostname)) {
+          continue;
         }
         HostOfferResponse response = logicalRequest.offer(host);
         switch (response.getAnswer()) {
@@ -321,6 +348,7 @@ public class TopologyManager {
       if (! requestHostComplete) {
         // not all required hosts have been matched (see earlier comment regarding outstanding logical requests)
         outstandingRequests.add(logicalRequest);
+        outstandingRequestsVersion.incrementAndGet();
       }
     }
     return logicalRequest;
@@ -335,35 +363,52 @@ public class TopologyManager {
     persistedState.persistLogicalRequest(logicalRequest, request.getId());
 
     allRequests.put(logicalRequest.getRequestId(), logicalRequest);
-    synchronized (reservedHosts) {
-      for (String host : logicalRequest.getReservedHosts()) {
-        reservedHosts.put(host, logicalRequest);
-      }
+    for (String host : logicalRequest.getReservedHosts()) {
+      reservedHosts.put(host, logicalRequest);
     }
     return logicalRequest;
   }
 
   private void processAcceptedHostOffer(ClusterTopology topology, HostOfferResponse response, HostImpl host) {
     String hostName = host.getHostName();
+    ClusterProvisioningState clusterState = getClusterState(topology.getClusterName());
+    clusterState.lock.lock();
     try {
-      topology.addHostToTopology(response.getHostGroupName(), hostName);
-    } catch (InvalidTopologyException e) {
-      // host already registered
-      throw new RuntimeException("An internal error occurred while performing request host registration: " + e, e);
-    } catch (NoSuchHostGroupException e) {
-      // invalid host group
-      throw new RuntimeException("An internal error occurred while performing request host registration: " + e, e);
-    }
+      try {
+        topology.addHostToTopology(response.getHostGroupName(), hostName);
+      } catch (InvalidTopologyException e) {
+        // host already registered
+        throw new RuntimeException("An internal error occurred while performing request host registration: " + e, e);
+      } catch (NoSuchHostGroupException e) {
+        // invalid host group
+        throw new RuntimeException("An internal error occurred while performing request host registration: " + e, e);
+      }
 
-    // persist the host request -> hostName association
-    persistedState.registerHostName(response.getHostRequestId(), hostName);
+      // persist the host request -> hostName association
+      persistedState.registerHostName(response.getHostRequestId(), hostName);
 
-    for (TopologyTask task : response.getTasks()) {
-      task.init(topology, ambariContext);
-      executor.execute(task);
+      for (TopologyTask task : response.getTasks()) {
+        task.init(topology, ambariContext);
+      }
+      clusterState.execute(new HostTasks(hostName, response.getTasks()));
+      clusterState.onTopologyChanged();
+    } finally {
+      clusterState.lock.unlock();
     }
   }
 
+  private ClusterProvisioningState getClusterState(String clusterName) {
+    ClusterProvisioningState clusterState = clusterStates.get(clusterName);
+    if (clusterState == null) {
+      clusterState = new ClusterProvisioningState();
+      ClusterProvisioningState existingState = clusterStates.putIfAbsent(clusterName, clusterState);
+      if (existingState != null) {
+        clusterState = existingState;
+      }
+    }
+    return clusterState;
+  }
+
   private void replayRequests(Map<ClusterTopology, List<LogicalRequest>> persistedRequests) {
     boolean configChecked = false;
     for (Map.Entry<ClusterTopology, List<LogicalRequest>> requestEntry : persistedRequests.entrySet()) {
@@ -426,57 +471,137 @@ public class TopologyManager {
 
   /**
    * Register the configuration task which is responsible for configuration topology resolution
-   * and setting the updated configuration on the cluster.  This task needs to be submitted to the
-   * executor before any host requests to ensure that no install or start tasks are executed prior
-   * to configuration being set on the cluster.
+   * and setting the updated configuration on the cluster.  This task needs to be registered
+   * before any host requests to ensure that no install or start tasks are executed prior
+   * to configuration being set on the cluster.  The task is submitted to the executor once
+   * all host groups required for configuration topology resolution have been resolved.
    *
    * @param topology              cluster topology
    * @param configurationRequest  configuration request to be executed
    */
   private void addClusterConfigRequest(ClusterTopology topology, ClusterConfigurationRequest configurationRequest) {
-    executor.execute(new ConfigureClusterTask(topology, configurationRequest));
+    ClusterProvisioningState clusterState = getClusterState(topology.getClusterName());
+    clusterState.lock.lock();
+    try {
+      clusterState.configured = false;
+      clusterState.configureTask = new ConfigureClusterTask(topology, configurationRequest);
+      clusterState.onTopologyChanged();
+    } finally {
+      clusterState.lock.unlock();
+    }
+  }
+
+  /**
+   * Provisioning state of a single cluster.  All access is guarded by the cluster lock.
+   */
+  private class ClusterProvisioningState {
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Configure task which is waiting for the required host groups to be resolved.
+     */
+    private ConfigureClusterTask configureTask;
+
+    /**
+     * Whether the cluster configuration has been set on the cluster.
+     */
+    private boolean configured = true;
+
+    /**
+     * Host tasks which are waiting for the cluster configuration to be set.
+     */
+    private final List<Runnable> deferredTasks = new ArrayList<Runnable>();
+
+    /**
+     * Execute the given task or defer it until the cluster has been configured.
+     *
+     * @param task  host task
+     */
+    private void execute(Runnable task) {
+      if (configured) {
+        executor.execute(task);
+      } else {
+        deferredTasks.add(task);
+      }
+    }
+
+    /**
+     * Submit the pending configure task if the required host groups have been resolved.
+     */
+    private void onTopologyChanged() {
+      if (configureTask != null && configureTask.areRequiredHostGroupsResolved()) {
+        executor.execute(configureTask);
+        configureTask = null;
+      }
+    }
+
+    /**
+     * Mark the cluster as configured and release all deferred host tasks.
+     */
+    private void onConfigured() {
+      lock.lock();
+      try {
+        configured = true;
+        for (Runnable task : deferredTasks) {
+          executor.execute(task);
+        }
+        deferredTasks.clear();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Runs the topology tasks of a single host in order.
+   */
+  private class HostTasks implements Runnable {
+    private final String hostName;
+    private final List<TopologyTask> tasks;
+
+    public HostTasks(String hostName, List<TopologyTask> tasks) {
+      this.hostName = hostName;
+      this.tasks = tasks;
+    }
+
+    @Override
+    public void run() {
+      for (TopologyTask task : tasks) {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          LOG.error(String.format("TopologyManager: An exception occurred while executing %s task for host %s: %s",
+              task.getType(), hostName, e), e);
+        }
+      }
+    }
   }
 
   private class ConfigureClusterTask implements Runnable {
-    private ClusterConfigurationRequest configRequest;
-    private ClusterTopology topology;
+    private final ClusterConfigurationRequest configRequest;
+    private final ClusterTopology topology;
+    private final Collection<String> requiredHostGroups;
 
 
     public ConfigureClusterTask(ClusterTopology topology, ClusterConfigurationRequest configRequest) {
       this.configRequest = configRequest;
       this.topology = topology;
+      this.requiredHostGroups = getTopologyRequiredHostGroups();
     }
 
     @Override
     public void run() {
       LOG.info("TopologyManager.ConfigureClusterTask: Entering");
-
-      boolean completed = false;
-      boolean interrupted = false;
-
-      Collection<String> requiredHostGroups = getTopologyRequiredHostGroups();
-      while (! completed && ! interrupted) {
-        try {
-          Thread.sleep(100);
-        } catch (InterruptedException e) {
-          interrupted = true;
-          // reset interrupted flag on thread
-          Thread.interrupted();
-        }
-        completed = areRequiredHostGroupsResolved(requiredHostGroups);
-      }
-
-      if (! interrupted) {
-        try {
-          LOG.info("TopologyManager.ConfigureClusterTask: Setting Configuration on cluster");
-          // sets updated configuration on topology and cluster
-          configRequest.process();
-        } catch (Exception e) {
-          // just logging and allowing config flag to be reset
-          LOG.error("TopologyManager.ConfigureClusterTask: " +
-              "An exception occurred while attempting to process cluster configs and set on cluster: " + e);
-          e.printStackTrace();
-        }
+      try {
+        LOG.info("TopologyManager.ConfigureClusterTask: Setting Configuration on cluster");
+        // sets updated configuration on topology and cluster
+        configRequest.process();
+      } catch (Exception e) {
+        // just logging and allowing config flag to be reset
+        LOG.error("TopologyManager.ConfigureClusterTask: " +
+            "An exception occurred while attempting to process cluster configs and set on cluster: " + e, e);
+      } finally {
+        getClusterState(topology.getClusterName()).onConfigured();
       }
       LOG.info("TopologyManager.ConfigureClusterTask: Exiting");
     }
@@ -500,12 +625,11 @@ public class TopologyManager {
     }
 
     /**
-     * Determine if all hosts for the given set of required host groups are known.
+     * Determine if all hosts for the required host groups are known.
      *
-     * @param requiredHostGroups set of required host groups
      * @return true if all required host groups are resolved
      */
-    private boolean areRequiredHostGroupsResolved(Collection<String> requiredHostGroups) {
+    private boolean areRequiredHostGroupsResolved() {
       boolean configTopologyResolved = true;
       Map<String, HostGroupInfo> hostGroupInfo = topology.getHostGroupInfo();
       for (String hostGroup : requiredHostGroups) {
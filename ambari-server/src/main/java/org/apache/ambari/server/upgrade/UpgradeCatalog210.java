@@ -173,6 +173,17 @@ public class UpgradeCatalog210 extends AbstractUpgradeCatalog {
     executeStackDDLUpdates();
     executeTopologyDDLUpdates();
     executeViewDDLUpdates();
+    executeHistoryDDLUpdates();
+  }
+
+  /**
+   * Indexes the tasks by their request so that purging old requests doesn't
+   * scan the whole task table.
+   *
+   * @throws SQLException
+   */
+  private void executeHistoryDDLUpdates() throws SQLException {
+    dbAccessor.createIndex("idx_hrc_request_id", HOST_ROLE_COMMAND_TABLE, "request_id");
   }
 
   private void executeTopologyDDLUpdates() throws AmbariException, SQLException {
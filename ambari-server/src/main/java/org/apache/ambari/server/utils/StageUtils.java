@@ -287,7 +287,12 @@ public class StageUtils {
       }
     }
 
-    List<String> hostsList = new ArrayList<String>(hostsSet);
+    // index the hosts once rather than searching the host list for every host component
+    Map<String, Integer> hostIndexes = new HashMap<String, Integer>();
+    for (String hostname : hostsSet) {
+      hostIndexes.put(hostname, hostIndexes.size());
+    }
+
     Map<String, String> additionalComponentToClusterInfoKeyMap = new HashMap<String, String>();
 
     // Fill hosts for services
@@ -326,9 +331,9 @@ public class StageUtils {
               hostRolesInfo.put(roleName, hostsForComponentsHost);
             }
 
-            int hostIndex = hostsList.indexOf(hostName);
+            Integer hostIndex = hostIndexes.get(hostName);
             //Add index of host to current host role
-            hostsForComponentsHost.add(hostIndex);
+            hostsForComponentsHost.add(hostIndex == null ? -1 : hostIndex);
           }
 
           if (decomRoleName != null) {
@@ -341,9 +346,9 @@ public class StageUtils {
                 hostRolesInfo.put(decomRoleName, hostsForComponentsHost);
               }
 
-              int hostIndex = hostsList.indexOf(hostName);
+              Integer hostIndex = hostIndexes.get(hostName);
               //Add index of host to current host role
-              hostsForComponentsHost.add(hostIndex);
+              hostsForComponentsHost.add(hostIndex == null ? -1 : hostIndex);
             }
           }
         }
@@ -381,11 +386,9 @@ public class StageUtils {
             hostRolesInfo.put(roleName, hostsForComponentsHost);
           }
 
-          int hostIndex = hostsList.indexOf(hostname);
-          if (hostIndex != -1) {
-            if (!hostsForComponentsHost.contains(hostIndex)) {
-              hostsForComponentsHost.add(hostIndex);
-            }
+          Integer hostIndex = hostIndexes.get(hostname);
+          if (hostIndex != null) {
+            hostsForComponentsHost.add(hostIndex);
           } else {
             //todo: I don't think that this can happen
             //todo: determine if it can and if so, handle properly
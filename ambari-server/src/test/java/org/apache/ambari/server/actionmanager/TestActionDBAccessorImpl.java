@@ -19,6 +19,7 @@ package org.apache.ambari.server.actionmanager;
 
 import static org.apache.ambari.server.orm.DBAccessor.DbType.ORACLE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -97,6 +98,9 @@ public class TestActionDBAccessorImpl {
   @Inject
   private StageFactory stageFactory;
 
+  @Inject
+  private HostRoleCommandFactory hostRoleCommandFactory;
+
 
   @Before
   public void setup() throws AmbariException {
@@ -455,6 +459,90 @@ public class TestActionDBAccessorImpl {
 
   }
 
+  @Test
+  public void testOutputLoadedLazily() throws Exception {
+    populateActionDB(db, hostName, requestId, stageId);
+    updateOutput(Role.HBASE_MASTER, "master");
+
+    HostRoleCommandEntity commandEntity = hostRoleCommandDAO.findByHostRole(
+        hostName, requestId, stageId, Role.HBASE_MASTER.toString()).get(0);
+    injector.getInstance(EntityManager.class).clear();
+
+    // the output isn't read with the task, only when it is first needed
+    HostRoleCommand command = hostRoleCommandFactory.createExisting(commandEntity);
+    assertEquals("master stdout", command.getStdout());
+    assertEquals("master stderr", command.getStderr());
+    assertEquals("{\"task\":\"master\"}", command.getStructuredOut());
+
+    // output which is set isn't overwritten
+    command = hostRoleCommandFactory.createExisting(commandEntity);
+    command.setStdout("new stdout");
+    assertEquals("new stdout", command.getStdout());
+    assertEquals("master stderr", command.getStderr());
+  }
+
+  @Test
+  public void testLoadOutputForTasks() throws Exception {
+    populateActionDB(db, hostName, requestId, stageId);
+    updateOutput(Role.HBASE_MASTER, "master");
+    updateOutput(Role.HBASE_REGIONSERVER, "regionserver");
+
+    List<HostRoleCommandEntity> commandEntities = hostRoleCommandDAO.findByPKs(
+        hostRoleCommandDAO.findTaskIdsByRequestIds(Collections.singletonList(requestId)));
+    assertEquals(2, commandEntities.size());
+    injector.getInstance(EntityManager.class).clear();
+
+    List<HostRoleCommand> commands = new ArrayList<HostRoleCommand>();
+    for (HostRoleCommandEntity commandEntity : commandEntities) {
+      commands.add(hostRoleCommandFactory.createExisting(commandEntity));
+    }
+    commands.get(1).setStderr("new stderr");
+
+    HostRoleCommand.loadOutput(commands);
+
+    // the output of all of the tasks is read at once
+    for (HostRoleCommand command : commands) {
+      String name = Role.HBASE_MASTER == command.getRole() ? "master" : "regionserver";
+      assertEquals(name + " stdout", command.getStdout());
+      assertEquals("{\"task\":\"" + name + "\"}", command.getStructuredOut());
+    }
+    assertEquals("new stderr", commands.get(1).getStderr());
+  }
+
+  @Test
+  public void testCachedTaskShowsUpdatedOutput() throws Exception {
+    populateActionDB(db, hostName, requestId, stageId);
+    updateOutput(Role.HBASE_MASTER, "master");
+
+    long taskId = hostRoleCommandDAO.findByHostRole(
+        hostName, requestId, stageId, Role.HBASE_MASTER.toString()).get(0).getTaskId();
+
+    // the completed task is cached with the output it loaded
+    HostRoleCommand command = db.getTasks(Collections.singletonList(taskId)).get(0);
+    assertEquals("master stdout", command.getStdout());
+
+    // a later report replaces the cached task
+    updateOutput(Role.HBASE_MASTER, "rerun");
+    command = db.getTasks(Collections.singletonList(taskId)).get(0);
+    assertEquals("rerun stdout", command.getStdout());
+    assertEquals("rerun stderr", command.getStderr());
+  }
+
+  @Test
+  public void testToStringDoesNotLoadOutput() throws Exception {
+    populateActionDB(db, hostName, requestId, stageId);
+    updateOutput(Role.HBASE_MASTER, "master");
+
+    HostRoleCommandEntity commandEntity = hostRoleCommandDAO.findByHostRole(
+        hostName, requestId, stageId, Role.HBASE_MASTER.toString()).get(0);
+    HostRoleCommand command = hostRoleCommandFactory.createExisting(commandEntity);
+
+    assertFalse(command.toString().contains("master stdout"));
+
+    command.getStdout();
+    assertTrue(command.toString().contains("master stdout"));
+  }
+
   @Test
   public void testGetRequestsByStatus() throws AmbariException {
     List<Long> requestIds = new ArrayList<Long>();
@@ -652,6 +740,16 @@ public class TestActionDBAccessorImpl {
       taskIds.size(), entities.size());
   }
 
+  private void updateOutput(Role role, String output) {
+    CommandReport commandReport = new CommandReport();
+    commandReport.setStatus(HostRoleStatus.COMPLETED.toString());
+    commandReport.setStdOut(output + " stdout");
+    commandReport.setStdErr(output + " stderr");
+    commandReport.setStructuredOut("{\"task\":\"" + output + "\"}");
+    commandReport.setExitCode(0);
+    db.updateHostRoleState(hostName, requestId, stageId, role.toString(), commandReport);
+  }
+
   private void populateActionDB(ActionDBAccessor db, String hostname,
       long requestId, long stageId) throws AmbariException {
     Stage s = createStubStage(hostname, requestId, stageId);
@@ -2329,6 +2329,141 @@ public class TestActionScheduler {
 
   }
 
+  /**
+   * Tests that an idle scheduler only queries the stages in progress when
+   * there are commands in progress and waits for the reconcile interval.
+   */
+  @Test
+  public void testIdleScheduler() throws Exception {
+    ActionQueue aq = new ActionQueue();
+    Properties properties = new Properties();
+    Configuration conf = new Configuration(properties);
+    Clusters fsm = mock(Clusters.class);
+    UnitOfWork unitOfWork = mock(UnitOfWork.class);
+    ActionDBAccessor db = mock(ActionDBAccessorImpl.class);
+
+    when(db.getCommandsInProgressCount()).thenReturn(0);
+
+    ActionScheduler scheduler = new ActionScheduler(100, 50, db, aq, fsm, 3,
+        new HostsMap((String) null), unitOfWork, null, conf);
+
+    scheduler.doWork();
+    assertTrue(scheduler.isIdle());
+    verify(db, times(0)).getStagesInProgress();
+    assertEquals(Long.parseLong(Configuration.ACTION_SCHEDULER_RECONCILE_INTERVAL_DEFAULT),
+        scheduler.getIdleWaitTime());
+
+    when(db.getCommandsInProgressCount()).thenReturn(1);
+    when(db.getStagesInProgress()).thenReturn(Collections.<Stage>emptyList());
+
+    scheduler.doWork();
+    assertTrue(scheduler.isIdle());
+    verify(db, times(1)).getStagesInProgress();
+
+    // a reconcile interval shorter than the sleep time is ignored
+    properties.setProperty(Configuration.ACTION_SCHEDULER_RECONCILE_INTERVAL_KEY, "0");
+    assertEquals(100, scheduler.getIdleWaitTime());
+  }
+
+  /**
+   * Tests that a scheduler with commands in progress only reads the stages
+   * again when a command may time out or after the reconcile interval.
+   */
+  @Test
+  public void testActiveSchedulerPollsWhenDue() throws Exception {
+    ActionQueue aq = new ActionQueue();
+    Configuration conf = new Configuration(new Properties());
+    Clusters fsm = mock(Clusters.class);
+    Cluster oneClusterMock = mock(Cluster.class);
+    Service serviceObj = mock(Service.class);
+    ServiceComponent scomp = mock(ServiceComponent.class);
+    ServiceComponentHost sch = mock(ServiceComponentHost.class);
+    UnitOfWork unitOfWork = mock(UnitOfWork.class);
+    when(fsm.getCluster(anyString())).thenReturn(oneClusterMock);
+    when(oneClusterMock.getService(anyString())).thenReturn(serviceObj);
+    when(serviceObj.getServiceComponent(anyString())).thenReturn(scomp);
+    when(scomp.getServiceComponentHost(anyString())).thenReturn(sch);
+    when(serviceObj.getCluster()).thenReturn(oneClusterMock);
+    Host host = mock(Host.class);
+    HashMap<String, ServiceComponentHost> hosts =
+            new HashMap<String, ServiceComponentHost>();
+    hosts.put(hostname, sch);
+    when(scomp.getServiceComponentHosts()).thenReturn(hosts);
+
+    when(fsm.getHost(anyString())).thenReturn(host);
+    when(host.getState()).thenReturn(HostState.HEALTHY);
+    when(host.getHostName()).thenReturn(hostname);
+
+    HostEntity hostEntity = new HostEntity();
+    hostEntity.setHostName(hostname);
+    hostDAO.create(hostEntity);
+
+    List<Stage> stages = new ArrayList<Stage>();
+    Stage s = StageUtils.getATestStage(1, 977, hostname, CLUSTER_HOST_INFO,
+      "{\"host_param\":\"param_value\"}", "{\"stage_param\":\"param_value\"}");
+    stages.add(s);
+
+    ActionDBAccessor db = mock(ActionDBAccessor.class);
+    when(db.getCommandsInProgressCount()).thenReturn(stages.size());
+    when(db.getStagesInProgress()).thenReturn(stages);
+
+    RequestEntity request = mock(RequestEntity.class);
+    when(request.isExclusive()).thenReturn(false);
+    when(db.getRequestEntity(anyLong())).thenReturn(request);
+
+    ActionScheduler scheduler = new ActionScheduler(100, 600000, db, aq, fsm, 3,
+        new HostsMap((String) null), unitOfWork, null, conf);
+    scheduler.setTaskTimeoutAdjustment(false);
+    assertTrue(scheduler.isPollDue(System.currentTimeMillis()));
+
+    long start = System.currentTimeMillis();
+    scheduler.doWork();
+    assertFalse(scheduler.isIdle());
+    assertEquals(HostRoleStatus.QUEUED, s.getHostRoleStatus(hostname, "NAMENODE"));
+
+    // nothing to do until the reconcile interval passed
+    assertFalse(scheduler.isPollDue(System.currentTimeMillis()));
+    assertTrue(scheduler.isPollDue(System.currentTimeMillis() + scheduler.getIdleWaitTime()));
+
+    // a command which may time out earlier brings the next poll forward
+    s.setLastAttemptTime(hostname, "NAMENODE", start - 600000 + 1000);
+    scheduler.doWork();
+    assertFalse(scheduler.isPollDue(start));
+    assertTrue(scheduler.isPollDue(start + 1000));
+  }
+
+  /**
+   * Tests that the scheduler checks for commands in progress right after it
+   * is started instead of waiting for the reconcile interval.
+   */
+  @Test
+  public void testIdleSchedulerRunsOnStart() throws Exception {
+    ActionQueue aq = new ActionQueue();
+    Configuration conf = new Configuration(new Properties());
+    Clusters fsm = mock(Clusters.class);
+    UnitOfWork unitOfWork = mock(UnitOfWork.class);
+    ActionDBAccessor db = mock(ActionDBAccessorImpl.class);
+
+    final CountDownLatch countCalls = new CountDownLatch(1);
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        countCalls.countDown();
+        return 0;
+      }
+    }).when(db).getCommandsInProgressCount();
+
+    ActionScheduler scheduler = new ActionScheduler(100, 50, db, aq, fsm, 3,
+        new HostsMap((String) null), unitOfWork, null, conf);
+
+    scheduler.start();
+    try {
+      assertTrue(countCalls.await(5, TimeUnit.SECONDS));
+      assertTrue(scheduler.getIdleWaitTime() > 5000);
+    } finally {
+      scheduler.stop();
+    }
+  }
 
   public static class MockModule extends AbstractModule {
     @Override
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CommandPayloadReferences}.
+ */
+public class CommandPayloadReferencesTest {
+
+  /**
+   * Tests that an agent which does not cache payloads gets the commands as
+   * they are.
+   */
+  @Test
+  public void testAgentWithoutCache() {
+    CommandPayloadReferences references = new CommandPayloadReferences();
+    ExecutionCommand command = createCommand(1L, "h1");
+
+    assertSame(command, references.reference("h1", command));
+
+    references.register("h1", false);
+    assertSame(command, references.reference("h1", command));
+  }
+
+  /**
+   * Tests that the shared payloads are only sent with the first command of a
+   * host and that the stage's commands are left unchanged.
+   */
+  @Test
+  public void testPayloadsSentOncePerHost() {
+    CommandPayloadReferences references = new CommandPayloadReferences();
+    references.register("h1", true);
+    references.register("h2", true);
+
+    ExecutionCommand first = references.reference("h1", createCommand(1L, "h1"));
+    assertNotNull(first.getClusterHostInfo());
+    assertNotNull(first.getConfigurations());
+    assertNotNull(first.getHostLevelParams());
+    assertEquals(3, first.getPayloadHashes().size());
+
+    ExecutionCommand command = createCommand(2L, "h1");
+    ExecutionCommand second = references.reference("h1", command);
+    assertNull(second.getClusterHostInfo());
+    assertNull(second.getConfigurations());
+    assertNull(second.getHostLevelParams());
+    assertEquals(first.getPayloadHashes(), second.getPayloadHashes());
+    assertEquals(2L, second.getTaskId());
+    assertEquals("DATANODE", second.getRole());
+    assertNotNull(command.getConfigurations());
+
+    // another host gets the payloads once as well
+    assertNotNull(references.reference("h2", createCommand(3L, "h2")).getConfigurations());
+
+    // a changed payload is sent again
+    ExecutionCommand changed = createCommand(4L, "h1");
+    changed.getConfigurations().get("core-site").put("fs.defaultFS", "hdfs://h2:8020");
+    changed = references.reference("h1", changed);
+    assertNotNull(changed.getConfigurations());
+    assertNull(changed.getClusterHostInfo());
+
+    assertEquals(7, references.getSentPayloadCount());
+    assertEquals(5, references.getReferencedPayloadCount());
+  }
+
+  /**
+   * Tests that payloads are sent again after the agent registered again.
+   */
+  @Test
+  public void testPayloadsSentAgainAfterRegistration() {
+    CommandPayloadReferences references = new CommandPayloadReferences();
+    references.register("h1", true);
+
+    references.reference("h1", createCommand(1L, "h1"));
+    assertNull(references.reference("h1", createCommand(2L, "h1")).getConfigurations());
+
+    references.register("h1", true);
+    assertNotNull(references.reference("h1", createCommand(3L, "h1")).getConfigurations());
+  }
+
+  /**
+   * Tests that only the payloads a host used last are referenced.
+   */
+  @Test
+  public void testLeastRecentlyUsedPayloadsForgotten() {
+    CommandPayloadReferences references = new CommandPayloadReferences();
+    references.register("h1", true);
+
+    for (int i = 0; i <= CommandPayloadReferences.HOST_PAYLOAD_LIMIT; i++) {
+      ExecutionCommand command = new ExecutionCommand();
+      command.setConfigurations(Collections.singletonMap("site",
+          Collections.singletonMap("index", String.valueOf(i))));
+      references.reference("h1", command);
+    }
+
+    ExecutionCommand command = new ExecutionCommand();
+    command.setConfigurations(Collections.singletonMap("site",
+        Collections.singletonMap("index", "0")));
+    assertNotNull(references.reference("h1", command).getConfigurations());
+  }
+
+  private static ExecutionCommand createCommand(long taskId, String hostname) {
+    ExecutionCommand command = new ExecutionCommand();
+    command.setTaskId(taskId);
+    command.setHostname(hostname);
+    command.setRole("DATANODE");
+
+    Map<String, Set<String>> clusterHostInfo = new HashMap<String, Set<String>>();
+    clusterHostInfo.put("all_hosts", Collections.singleton("h1"));
+    command.setClusterHostInfo(clusterHostInfo);
+
+    Map<String, Map<String, String>> configurations = new HashMap<String, Map<String, String>>();
+    Map<String, String> coreSite = new HashMap<String, String>();
+    coreSite.put("fs.defaultFS", "hdfs://h1:8020");
+    configurations.put("core-site", coreSite);
+    command.setConfigurations(configurations);
+
+    Map<String, String> hostLevelParams = new HashMap<String, String>();
+    hostLevelParams.put("stack_name", "HDP");
+    command.setHostLevelParams(hostLevelParams);
+    return command;
+  }
+}
@@ -24,6 +24,7 @@ import static org.junit.Assert.assertTrue;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
 import org.easymock.EasyMock;
@@ -377,4 +378,40 @@ public class TestActionQueue {
     assertEquals(4, queue.size(c6401));
     assertEquals(3, queue.size(c6402));
   }
+
+  @Test
+  public void testNotifyOnCommand() throws Exception {
+    ActionQueue queue = new ActionQueue();
+    String c6401 = "c6401.ambari.apache.org";
+    String c6402 = "c6402.ambari.apache.org";
+
+    final AtomicInteger notifications = new AtomicInteger();
+    Runnable callback = new Runnable() {
+      @Override
+      public void run() {
+        notifications.incrementAndGet();
+      }
+    };
+
+    // runs once when a command is queued for the host
+    queue.notifyOnCommand(c6401, callback);
+    queue.enqueue(c6402, new StatusCommand());
+    assertEquals(0, notifications.get());
+    queue.enqueue(c6401, new StatusCommand());
+    assertEquals(1, notifications.get());
+    queue.enqueue(c6401, new StatusCommand());
+    assertEquals(1, notifications.get());
+
+    // runs right away if commands are already queued
+    queue.notifyOnCommand(c6401, callback);
+    assertEquals(2, notifications.get());
+
+    // doesn't run once cancelled
+    queue.dequeueAll(c6402);
+    queue.notifyOnCommand(c6402, callback);
+    assertTrue(queue.cancelNotifyOnCommand(c6402, callback));
+    queue.enqueue(c6402, new StatusCommand());
+    assertEquals(2, notifications.get());
+    assertFalse(queue.cancelNotifyOnCommand(c6402, callback));
+  }
 }
@@ -40,6 +40,7 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
@@ -847,6 +848,45 @@ public class TestHeartbeatHandler {
         hostObject.getLastRegistrationTime());
   }
 
+  @Test
+  public void testHandleCommands() throws AmbariException,
+      InvalidStateTransitionException {
+    ActionManager am = getMockActionManager();
+    replay(am);
+    ActionQueue aq = new ActionQueue();
+    HeartBeatHandler handler = new HeartBeatHandler(clusters, aq, am,
+        injector);
+
+    // unregistered hosts are asked to register
+    assertNotNull(handler.handleCommands(DummyHostname1).getRegistrationCommand());
+
+    clusters.addHost(DummyHostname1);
+    Host hostObject = clusters.getHost(DummyHostname1);
+    hostObject.setIPv4("ipv4");
+    hostObject.setIPv6("ipv6");
+
+    Register reg = new Register();
+    HostInfo hi = new HostInfo();
+    hi.setHostName(DummyHostname1);
+    hi.setOS(DummyOsType);
+    reg.setHostname(DummyHostname1);
+    reg.setCurrentPingPort(DummyCurrentPingPort);
+    reg.setHardwareProfile(hi);
+    reg.setAgentVersion(metaInfo.getServerVersion());
+    reg.setPrefix(Configuration.PREFIX_DIR);
+    RegistrationResponse registrationResponse = handler.handleRegistration(reg);
+
+    StatusCommand statusCommand = new StatusCommand();
+    aq.enqueue(DummyHostname1, statusCommand);
+
+    HeartBeatResponse response = handler.handleCommands(DummyHostname1);
+
+    // the response id of the host is unchanged
+    assertEquals(registrationResponse.getResponseId(), response.getResponseId());
+    assertEquals(1, response.getStatusCommands().size());
+    assertEquals(0, aq.size(DummyHostname1));
+  }
+
   @Test
   public void testRegistrationRecoveryConfig() throws AmbariException,
       InvalidStateTransitionException {
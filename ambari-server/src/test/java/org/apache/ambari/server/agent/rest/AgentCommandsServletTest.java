@@ -0,0 +1,540 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.agent.rest;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.ambari.server.agent.ActionQueue;
+import org.apache.ambari.server.agent.AgentCommand;
+import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.agent.HeartBeatHandler;
+import org.apache.ambari.server.agent.HeartBeatResponse;
+import org.apache.ambari.server.configuration.Configuration;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationListener;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AgentCommandsServlet tests.
+ */
+public class AgentCommandsServletTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AgentCommandsServletTest.class);
+
+  /**
+   * The number of agents of the latency test, each polling from its own
+   * thread.
+   */
+  private static final int HOST_COUNT = 200;
+  private static final int STAGE_COUNT = 10;
+
+  /**
+   * Stands in for the agent connector's thread pool.
+   */
+  private static final int DISPATCH_THREADS = 25;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private ActionQueue actionQueue;
+  private final Set<String> unhealthyHosts = new CopyOnWriteArraySet<String>();
+  private AgentCommandsServlet servlet;
+  private ExecutorService dispatcher;
+
+  @Before
+  public void setup() throws Exception {
+    actionQueue = new ActionQueue();
+
+    HeartBeatHandler heartBeatHandler = createNiceMock(HeartBeatHandler.class);
+    expect(heartBeatHandler.handleCommands((String) anyObject())).andAnswer(new IAnswer<HeartBeatResponse>() {
+      @Override
+      public HeartBeatResponse answer() throws Throwable {
+        HeartBeatResponse response = new HeartBeatResponse();
+        List<AgentCommand> commands = actionQueue.dequeueAll((String) EasyMock.getCurrentArguments()[0]);
+        if (commands != null) {
+          for (AgentCommand command : commands) {
+            response.addExecutionCommand((ExecutionCommand) command);
+          }
+        }
+        return response;
+      }
+    }).anyTimes();
+    expect(heartBeatHandler.isReadyForCommands((String) anyObject())).andAnswer(new IAnswer<Boolean>() {
+      @Override
+      public Boolean answer() throws Throwable {
+        return !unhealthyHosts.contains(EasyMock.getCurrentArguments()[0]);
+      }
+    }).anyTimes();
+
+    Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.getAgentCommandsPollTimeout()).andReturn(30L).anyTimes();
+
+    replay(heartBeatHandler, configuration);
+
+    servlet = new AgentCommandsServlet(heartBeatHandler, actionQueue, configuration);
+    dispatcher = Executors.newFixedThreadPool(DISPATCH_THREADS);
+  }
+
+  @After
+  public void teardown() {
+    dispatcher.shutdownNow();
+  }
+
+  @Test
+  public void testCommandsQueued() throws Exception {
+    actionQueue.enqueue("h1", createCommand(1));
+
+    SyntheticAgent agent = new SyntheticAgent("h1", 1);
+    agent.poll();
+
+    assertTrue(agent.commands.await(10, TimeUnit.SECONDS));
+    assertEquals(1, agent.commandCount);
+    assertEquals(0, actionQueue.size("h1"));
+  }
+
+  @Test
+  public void testSuspendUntilCommandQueued() throws Exception {
+    SyntheticAgent agent = new SyntheticAgent("h1", 1);
+    agent.poll();
+
+    // the request is suspended without a response
+    assertFalse(agent.responses.await(100, TimeUnit.MILLISECONDS));
+    assertTrue(agent.continuation.isSuspended());
+
+    actionQueue.enqueue("h2", createCommand(1));
+    assertFalse(agent.responses.await(100, TimeUnit.MILLISECONDS));
+
+    actionQueue.enqueue("h1", createCommand(1));
+    assertTrue(agent.commands.await(10, TimeUnit.SECONDS));
+    assertEquals(1, agent.commandCount);
+  }
+
+  @Test
+  public void testExpired() throws Exception {
+    SyntheticAgent agent = new SyntheticAgent("h1", 1);
+    agent.poll();
+    assertTrue(agent.continuation.isSuspended());
+
+    // the expired request gets a response without commands
+    agent.continuation.expire();
+
+    assertTrue(agent.responses.await(10, TimeUnit.SECONDS));
+    assertEquals(0, agent.commandCount);
+
+    // only the callback of the next request is left
+    assertEquals(1, actionQueue.getCommandCallbackCount("h1"));
+  }
+
+  @Test
+  public void testExpiredBeforeCallbackRegistered() throws Exception {
+    SyntheticAgent agent = new SyntheticAgent("h1", 1);
+    agent.continuation = new TestContinuation(agent);
+    agent.continuation.expireOnSuspend = true;
+    agent.dispatch(agent.continuation);
+
+    assertTrue(agent.responses.await(10, TimeUnit.SECONDS));
+    assertEquals(0, agent.commandCount);
+
+    // only the callback of the next request is left, not the expired one
+    assertEquals(1, actionQueue.getCommandCallbackCount("h1"));
+  }
+
+  @Test
+  public void testUnhealthyHostWaitsForTimeout() throws Exception {
+    unhealthyHosts.add("h1");
+    actionQueue.enqueue("h1", createCommand(1));
+
+    // the queued command can't be sent, the request waits anyway
+    SyntheticAgent agent = new SyntheticAgent("h1", 1);
+    agent.poll();
+    assertFalse(agent.responses.await(100, TimeUnit.MILLISECONDS));
+    assertTrue(agent.continuation.isSuspended());
+    assertEquals(0, actionQueue.getCommandCallbackCount("h1"));
+
+    agent.continuation.expire();
+    assertTrue(agent.responses.await(10, TimeUnit.SECONDS));
+    assertEquals(0, agent.commandCount);
+    assertEquals(1, actionQueue.size("h1"));
+  }
+
+  /**
+   * Measures the time for the commands of a stage to reach all of the hosts
+   * while every host keeps a request for commands outstanding, through real
+   * HTTP requests suspended and resumed by Jetty.
+   */
+  @Test
+  public void testStageLatency() throws Exception {
+    Server server = new Server(0);
+    ServletContextHandler root = new ServletContextHandler(server, "/");
+    ServletHolder holder = new ServletHolder(servlet);
+    holder.setAsyncSupported(true);
+    root.addServlet(holder, "/agent/v1/commands/*");
+    server.start();
+
+    HttpAgent[] agents = new HttpAgent[HOST_COUNT];
+    try {
+      String url = "http://localhost:" + server.getConnectors()[0].getLocalPort() + "/agent/v1/commands/";
+      for (int i = 0; i < HOST_COUNT; ++i) {
+        agents[i] = new HttpAgent(url, "host" + i);
+        agents[i].start();
+      }
+
+      long totalLatency = 0;
+      long maxLatency = 0;
+      for (int stage = 1; stage <= STAGE_COUNT; ++stage) {
+        // every agent waits for its next command in a suspended request
+        for (HttpAgent agent : agents) {
+          awaitCallback(agent.hostname);
+        }
+
+        CountDownLatch stageLatch = new CountDownLatch(HOST_COUNT);
+        for (HttpAgent agent : agents) {
+          agent.stageLatch = stageLatch;
+        }
+
+        long start = System.nanoTime();
+        for (HttpAgent agent : agents) {
+          actionQueue.enqueue(agent.hostname, createCommand(stage));
+        }
+        assertTrue("Stage " + stage + " wasn't delivered", stageLatch.await(60, TimeUnit.SECONDS));
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+      }
+
+      LOG.info("Delivered {} stages to {} hosts, average stage latency {} ms, maximum {} ms",
+          STAGE_COUNT, HOST_COUNT, totalLatency / STAGE_COUNT, maxLatency);
+
+      // every agent received each of its commands once, in order
+      List<Long> expected = new ArrayList<Long>();
+      for (long stage = 1; stage <= STAGE_COUNT; ++stage) {
+        expected.add(stage);
+      }
+      for (HttpAgent agent : agents) {
+        agent.join(10000);
+        assertEquals("Commands of " + agent.hostname, expected, agent.taskIds);
+        assertNull(agent.failure);
+      }
+    } finally {
+      for (HttpAgent agent : agents) {
+        if (agent != null) {
+          agent.interrupt();
+        }
+      }
+      server.stop();
+    }
+  }
+
+  private void awaitCallback(String hostname) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (actionQueue.getCommandCallbackCount(hostname) == 0) {
+      assertTrue("No request of " + hostname + " is waiting", System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  private static ExecutionCommand createCommand(int stage) {
+    ExecutionCommand command = new ExecutionCommand();
+    command.setRequestAndStage(1, stage);
+    command.setTaskId(stage);
+    return command;
+  }
+
+  /**
+   * An agent which requests its commands again as soon as it receives a response.
+   */
+  private class SyntheticAgent {
+    private final String hostname;
+    private final CountDownLatch responses = new CountDownLatch(1);
+    private final CountDownLatch commands;
+    private volatile int commandCount;
+    private volatile TestContinuation continuation;
+
+    private SyntheticAgent(String hostname, int expectedCommands) {
+      this.hostname = hostname;
+      commands = new CountDownLatch(expectedCommands);
+    }
+
+    private void poll() {
+      continuation = new TestContinuation(this);
+      dispatch(continuation);
+    }
+
+    private void dispatch(TestContinuation continuation) {
+      try {
+        HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+        expect(request.getMethod()).andReturn("GET").anyTimes();
+        expect(request.getPathInfo()).andReturn("/" + hostname).anyTimes();
+        expect(request.getAttribute(Continuation.ATTRIBUTE)).andReturn(continuation).anyTimes();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+        expect(response.getOutputStream()).andReturn(new ServletOutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            out.write(b);
+          }
+        }).anyTimes();
+        replay(request, response);
+
+        servlet.service(request, response);
+
+        if (out.size() == 0) {
+          // suspended, a later dispatch responds
+          return;
+        }
+        continuation.complete();
+        onResponse(mapper.readTree(out.toByteArray()));
+      } catch (Exception e) {
+        LOG.error("Commands request failed for host " + hostname, e);
+      }
+    }
+
+    private void onResponse(JsonNode response) {
+      int commandsReceived = response.get("executionCommands").size();
+      poll();
+      for (int i = 0; i < commandsReceived; ++i) {
+        commandCount++;
+        commands.countDown();
+      }
+      responses.countDown();
+    }
+  }
+
+  /**
+   * An agent which requests its commands over HTTP again as soon as it
+   * receives a response, until it has received the commands of all stages.
+   */
+  private class HttpAgent extends Thread {
+    private final String url;
+    private final String hostname;
+    private final List<Long> taskIds = Collections.synchronizedList(new ArrayList<Long>());
+    private volatile CountDownLatch stageLatch;
+    private volatile Exception failure;
+
+    private HttpAgent(String url, String hostname) {
+      super("agent-" + hostname);
+      setDaemon(true);
+      this.url = url + hostname;
+      this.hostname = hostname;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (taskIds.size() < STAGE_COUNT && !isInterrupted()) {
+          HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+          connection.setReadTimeout(60000);
+          InputStream in = connection.getInputStream();
+          JsonNode response;
+          try {
+            response = mapper.readTree(in);
+          } finally {
+            in.close();
+          }
+
+          for (JsonNode command : response.get("executionCommands")) {
+            taskIds.add(command.get("taskId").getLongValue());
+            stageLatch.countDown();
+          }
+        }
+      } catch (Exception e) {
+        failure = e;
+        LOG.error("Commands request failed for host " + hostname, e);
+      }
+    }
+  }
+
+  /**
+   * Stands in for the continuation of a Jetty request, dispatching the request
+   * again when it's resumed or expires.
+   */
+  private class TestContinuation implements Continuation {
+    private final SyntheticAgent agent;
+    private final List<ContinuationListener> listeners = new CopyOnWriteArrayList<ContinuationListener>();
+    private volatile boolean initial = true;
+    private volatile boolean suspended;
+    private volatile boolean resumed;
+    private volatile boolean expired;
+
+    /**
+     * Expire the request as soon as it's suspended, like a timeout which
+     * fires before the servlet registers its callback.
+     */
+    private volatile boolean expireOnSuspend;
+
+    private TestContinuation(SyntheticAgent agent) {
+      this.agent = agent;
+    }
+
+    private synchronized void expire() {
+      timeout();
+      redispatch();
+    }
+
+    private void timeout() {
+      if (!suspended) {
+        throw new IllegalStateException();
+      }
+      suspended = false;
+      expired = true;
+      initial = false;
+      for (ContinuationListener listener : listeners) {
+        listener.onTimeout(this);
+      }
+    }
+
+    private void redispatch() {
+      dispatcher.execute(new Runnable() {
+        @Override
+        public void run() {
+          agent.dispatch(TestContinuation.this);
+        }
+      });
+    }
+
+    @Override
+    public void setTimeout(long timeoutMs) {
+    }
+
+    @Override
+    public synchronized void suspend() {
+      suspended = true;
+      if (expireOnSuspend) {
+        // the expired request is dispatched and completed before suspend returns
+        timeout();
+        agent.dispatch(this);
+      }
+    }
+
+    @Override
+    public void suspend(ServletResponse response) {
+      suspend();
+    }
+
+    @Override
+    public synchronized void resume() {
+      if (!suspended) {
+        throw new IllegalStateException();
+      }
+      suspended = false;
+      resumed = true;
+      initial = false;
+      redispatch();
+    }
+
+    @Override
+    public void complete() {
+      for (ContinuationListener listener : listeners) {
+        listener.onComplete(this);
+      }
+    }
+
+    @Override
+    public boolean isSuspended() {
+      return suspended;
+    }
+
+    @Override
+    public boolean isResumed() {
+      return resumed;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return expired;
+    }
+
+    @Override
+    public boolean isInitial() {
+      return initial;
+    }
+
+    @Override
+    public boolean isResponseWrapped() {
+      return false;
+    }
+
+    @Override
+    public ServletResponse getServletResponse() {
+      return null;
+    }
+
+    @Override
+    public void addContinuationListener(ContinuationListener listener) {
+      listeners.add(listener);
+    }
+
+    @Override
+    public void setAttribute(String name, Object attribute) {
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+      return null;
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+    }
+
+    @Override
+    public void undispatch() {
+    }
+  }
+}
@@ -37,12 +37,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.ambari.server.api.query.render.DefaultRenderer;
 import org.apache.ambari.server.api.query.render.Renderer;
 import org.apache.ambari.server.api.resources.ClusterResourceDefinition;
+import org.apache.ambari.server.api.resources.HostResourceDefinition;
 import org.apache.ambari.server.api.resources.ResourceDefinition;
 import org.apache.ambari.server.api.resources.ResourceInstance;
 import org.apache.ambari.server.api.resources.StackResourceDefinition;
@@ -51,21 +53,30 @@ import org.apache.ambari.server.api.resources.SubResourceDefinition;
 import org.apache.ambari.server.api.services.Result;
 import org.apache.ambari.server.api.util.TreeNode;
 import org.apache.ambari.server.api.util.TreeNodeImpl;
+import org.apache.ambari.server.controller.internal.AbstractResourceProvider;
 import org.apache.ambari.server.controller.internal.ClusterControllerImpl;
 import org.apache.ambari.server.controller.internal.ClusterControllerImplTest;
 import org.apache.ambari.server.controller.internal.PageRequestImpl;
+import org.apache.ambari.server.controller.internal.ResourceImpl;
+import org.apache.ambari.server.controller.spi.BatchResourceProvider;
 import org.apache.ambari.server.controller.spi.ClusterController;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.PropertyProvider;
+import org.apache.ambari.server.controller.spi.ProviderModule;
 import org.apache.ambari.server.controller.spi.QueryResponse;
+import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.ResourceProvider;
 import org.apache.ambari.server.controller.spi.Schema;
 import org.apache.ambari.server.controller.spi.SortRequest;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.controller.utilities.PredicateBuilder;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
 import org.easymock.Capture;
 import org.junit.Assert;
 import org.junit.Test;
@@ -842,6 +853,71 @@ public class QueryImplTest {
     Assert.assertNotNull(hostNode.getObject().getPropertyValue("c1/p3"));
   }
 
+  @Test
+  public void testExecute__Host_collection_batchedSubResources() throws Exception {
+    TestHostComponentResourceProvider hostComponentProvider = new BatchTestHostComponentResourceProvider();
+
+    Result result = executeHostComponentQuery(hostComponentProvider);
+
+    // the host components of all four hosts are fetched with one provider call
+    Assert.assertEquals(1, hostComponentProvider.getQueryCount());
+    assertHostComponents(result);
+  }
+
+  @Test
+  public void testExecute__Host_collection_unbatchedSubResources() throws Exception {
+    TestHostComponentResourceProvider hostComponentProvider = new TestHostComponentResourceProvider();
+
+    Result result = executeHostComponentQuery(hostComponentProvider);
+
+    // one provider call for each host
+    Assert.assertEquals(4, hostComponentProvider.getQueryCount());
+    assertHostComponents(result);
+  }
+
+  private Result executeHostComponentQuery(final ResourceProvider hostComponentProvider) throws Exception {
+    final ProviderModule testProviderModule = new ClusterControllerImplTest.TestProviderModule();
+
+    ProviderModule providerModule = new ProviderModule() {
+      @Override
+      public ResourceProvider getResourceProvider(Resource.Type type) {
+        return type == Resource.Type.HostComponent ?
+            hostComponentProvider : testProviderModule.getResourceProvider(type);
+      }
+
+      @Override
+      public List<PropertyProvider> getPropertyProviders(Resource.Type type) {
+        return testProviderModule.getPropertyProviders(type);
+      }
+    };
+
+    Map<Resource.Type, String> mapIds = new HashMap<Resource.Type, String>();
+    mapIds.put(Resource.Type.Cluster, "cluster");
+    mapIds.put(Resource.Type.Host, null);
+
+    QueryImpl instance = new TestQuery(mapIds, new HostResourceDefinition(),
+        new ClusterControllerImpl(providerModule));
+    instance.addProperty("host_components/*", null);
+
+    return instance.execute();
+  }
+
+  private void assertHostComponents(Result result) {
+    TreeNode<Resource> tree = result.getResultTree();
+
+    Assert.assertEquals(4, tree.getChildren().size());
+    for (TreeNode<Resource> hostNode : tree.getChildren()) {
+      Object hostName = hostNode.getObject().getPropertyValue("Hosts/host_name");
+
+      TreeNode<Resource> hostComponentsNode = hostNode.getChild("host_components");
+      Assert.assertEquals(2, hostComponentsNode.getChildren().size());
+
+      for (TreeNode<Resource> hostComponentNode : hostComponentsNode.getChildren()) {
+        Assert.assertEquals(hostName, hostComponentNode.getObject().getPropertyValue("HostRoles/host_name"));
+      }
+    }
+  }
+
   public static class TestQuery extends QueryImpl {
     public TestQuery(Map<Resource.Type, String> mapIds, ResourceDefinition resourceDefinition) {
       super(mapIds, resourceDefinition, new ClusterControllerImpl(new ClusterControllerImplTest.TestProviderModule()));
@@ -853,5 +929,60 @@ public class QueryImplTest {
       setRenderer(new DefaultRenderer());
     }
   }
-}
 
+  private static class TestHostComponentResourceProvider extends AbstractResourceProvider {
+
+    private int queryCount = 0;
+
+    private TestHostComponentResourceProvider() {
+      super(PropertyHelper.getPropertyIds(Resource.Type.HostComponent),
+          PropertyHelper.getKeyPropertyIds(Resource.Type.HostComponent));
+    }
+
+    public int getQueryCount() {
+      return queryCount;
+    }
+
+    @Override
+    public Set<Resource> getResources(Request request, Predicate predicate)
+        throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+      ++queryCount;
+
+      Set<Resource> resources = new HashSet<Resource>();
+      for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
+        for (String componentName : new String[]{"DATANODE", "NODEMANAGER"}) {
+          Resource resource = new ResourceImpl(Resource.Type.HostComponent);
+          resource.setProperty("HostRoles/cluster_name", propertyMap.get("HostRoles/cluster_name"));
+          resource.setProperty("HostRoles/host_name", propertyMap.get("HostRoles/host_name"));
+          resource.setProperty("HostRoles/component_name", componentName);
+          resources.add(resource);
+        }
+      }
+      return resources;
+    }
+
+    @Override
+    public RequestStatus createResources(Request request) {
+      throw new UnsupportedOperationException(); // not needed for testing
+    }
+
+    @Override
+    public RequestStatus updateResources(Request request, Predicate predicate) {
+      throw new UnsupportedOperationException(); // not needed for testing
+    }
+
+    @Override
+    public RequestStatus deleteResources(Predicate predicate) {
+      throw new UnsupportedOperationException(); // not needed for testing
+    }
+
+    @Override
+    protected Set<String> getPKPropertyIds() {
+      return Collections.emptySet();
+    }
+  }
+
+  private static class BatchTestHostComponentResourceProvider extends TestHostComponentResourceProvider
+      implements BatchResourceProvider {
+  }
+}
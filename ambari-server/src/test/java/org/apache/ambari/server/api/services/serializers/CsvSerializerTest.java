@@ -30,6 +30,7 @@ import org.apache.commons.csv.CSVRecord;
 import org.easymock.EasyMockSupport;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -242,6 +243,49 @@ public class CsvSerializerTest extends EasyMockSupport {
     verifyAll();
   }
 
+  @Test
+  public void testSerializeResources_Stream() throws Exception {
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    tree.setName("items");
+    tree.setProperty("isCollection", "true");
+    tree.setProperty(CsvSerializer.PROPERTY_COLUMN_MAP, new HashMap<String, String>() {{
+      put("property1", "Property 1");
+      put("property2", "Property 2");
+    }});
+    tree.setProperty(CsvSerializer.PROPERTY_COLUMN_ORDER, Arrays.asList(
+        "property1",
+        "property2"));
+
+    addChildResource(tree, "resource", 0, new HashMap<String, Object>() {
+      {
+        put("property1", "value1a");
+        put("property2", "value2a");
+      }
+    });
+    addChildResource(tree, "resource", 1, new HashMap<String, Object>() {
+      {
+        put("property1", "value1,b");
+        put("property2", "value2\u00e9b");
+      }
+    });
+
+    replayAll();
+
+    //execute test
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new CsvSerializer().serialize(result, out);
+
+    String expected = "Property 1,Property 2\n" +
+        "value1a,value2a\n" +
+        "\"value1,b\",value2\u00e9b\n";
+
+    assertEquals(expected, out.toString("UTF-8").replace("\r", ""));
+    assertEquals(new CsvSerializer().serialize(result), out.toString("UTF-8"));
+
+    verifyAll();
+  }
 
   private void addChildResource(TreeNode<Resource> parent, String name, int index, final Map<String, Object> data) {
     Resource resource = new ResourceImpl(Resource.Type.Cluster);
@@ -27,7 +27,9 @@ import org.junit.Test;
 
 import javax.ws.rs.core.UriInfo;
 
+import java.io.ByteArrayOutputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.easymock.EasyMock.*;
@@ -207,6 +209,67 @@ public class JsonSerializerTest {
 
     verify(uriInfo, resource/*, resource2*/);
   }
-    
-  
+
+  @Test
+  public void testSerializeToStream() throws Exception {
+    Resource resource = createMock(Resource.class);
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    TreeNode<Resource> resourcesNode = tree.addChild(null, "resources");
+    resourcesNode.addChild(resource, "resource1");
+    resourcesNode.addChild(resource, "resource2");
+
+    // resource properties
+    Map<String, Object> mapRootProps = new LinkedHashMap<String, Object>();
+    mapRootProps.put("prop1", "value1");
+    mapRootProps.put("prop2", 2);
+
+    Map<String, Map<String, Object>> propertyMap = new LinkedHashMap<String, Map<String, Object>>();
+    propertyMap.put(null, mapRootProps);
+
+    //expectations
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Cluster).anyTimes();
+
+    replay(resource);
+
+    //execute test
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JsonSerializer().serialize(result, out);
+
+    String expected = "{\n" +
+        "  \"resources\" : [\n" +
+        "    {\n" +
+        "      \"prop1\" : \"value1\",\n" +
+        "      \"prop2\" : 2\n" +
+        "    },\n" +
+        "    {\n" +
+        "      \"prop1\" : \"value1\",\n" +
+        "      \"prop2\" : 2\n" +
+        "    }\n" +
+        "  ]\n" +
+        "}";
+
+    assertEquals(expected, out.toString("UTF-8").replace("\r", ""));
+    assertEquals(new JsonSerializer().serialize(result), out.toString("UTF-8"));
+
+    verify(resource);
+  }
+
+  @Test
+  public void testSerializeErrorToStream() throws Exception {
+    Result result = new ResultImpl(new ResultStatus(ResultStatus.STATUS.NOT_FOUND, "no such resource"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JsonSerializer().serialize(result, out);
+
+    String expected = "{\n" +
+        "  \"status\" : 404,\n" +
+        "  \"message\" : \"no such resource\"\n" +
+        "}";
+
+    assertEquals(expected, out.toString("UTF-8").replace("\r", ""));
+  }
 }
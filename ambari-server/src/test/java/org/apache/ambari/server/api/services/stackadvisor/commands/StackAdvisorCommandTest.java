@@ -19,6 +19,7 @@
 package org.apache.ambari.server.api.services.stackadvisor.commands;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -28,6 +29,8 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
@@ -185,6 +188,93 @@ public class StackAdvisorCommandTest {
     assertEquals(requestId, result.getId());
   }
 
+  @Test
+  public void testInvoke_cachedResult() throws StackAdvisorException {
+    final String testResourceString = "{\"type\": \"success\"}";
+    final File recommendationsDir = temp.newFolder("recommendationDir");
+    StackAdvisorRunner saRunner = spy(new StackAdvisorRunner());
+    AmbariMetaInfo metaInfo = mock(AmbariMetaInfo.class);
+    doReturn(Collections.emptyList()).when(metaInfo).getStackParentVersions(anyString(), anyString());
+
+    doAnswer(new Answer() {
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        File resultFile = new File((File) invocation.getArguments()[2], "result.json");
+        FileUtils.writeStringToFile(resultFile, testResourceString);
+        return null;
+      }
+    }).when(saRunner).runScript(any(String.class), any(StackAdvisorCommandType.class), any(File.class));
+
+    StackAdvisorRequest request = StackAdvisorRequestBuilder.forStack("stackName", "stackVersion")
+        .build();
+
+    TestResource result = invokeWithHeartbeatTime(recommendationsDir, 1, saRunner, metaInfo, request, 1000L);
+    assertEquals("success", result.getType());
+    assertEquals(1, result.getId());
+
+    // a later heartbeat of the hosts doesn't change the result
+    result = invokeWithHeartbeatTime(recommendationsDir, 2, saRunner, metaInfo, request, 2000L);
+    assertEquals("success", result.getType());
+    assertEquals(2, result.getId());
+    assertFalse(new File(recommendationsDir, "2").exists());
+
+    verify(saRunner, times(1)).runScript(any(String.class), any(StackAdvisorCommandType.class), any(File.class));
+  }
+
+  @Test
+  public void testGetResultCacheKey_scriptContent() throws Exception {
+    File recommendationsDir = temp.newFolder("recommendationDir");
+    File script = new File(temp.newFolder("scripts"), "stack_advisor.py");
+    File stacksDir = temp.newFolder("stacks");
+    File baseAdvisor = new File(stacksDir, "stack_advisor.py");
+    File parentAdvisor = new File(stacksDir, "HDP/2.0/services/stack_advisor.py");
+    File stackAdvisor = new File(stacksDir, "HDP/2.1/services/stack_advisor.py");
+    FileUtils.writeStringToFile(script, "version 1");
+    FileUtils.writeStringToFile(baseAdvisor, "version 1");
+    FileUtils.writeStringToFile(parentAdvisor, "version 1");
+    FileUtils.writeStringToFile(stackAdvisor, "version 1");
+
+    StackAdvisorRunner saRunner = mock(StackAdvisorRunner.class);
+    AmbariMetaInfo metaInfo = mock(AmbariMetaInfo.class);
+    doReturn(Arrays.asList("2.0")).when(metaInfo).getStackParentVersions("HDP", "2.1");
+    doReturn(Collections.emptyList()).when(metaInfo).getStackParentVersions("HDP", "2.0");
+    StackAdvisorCommand<TestResource> command = new TestStackAdvisorCommand(recommendationsDir,
+        script.getAbsolutePath(), 1, saRunner, metaInfo);
+    StackAdvisorRequest request = StackAdvisorRequestBuilder.forStack("HDP", "2.1").build();
+    StackAdvisorData data = new StackAdvisorData("{\"items\" : []}", "{\"services\" : \"HDFS\"}");
+
+    String key = command.getResultCacheKey(request, data);
+    assertEquals(key, command.getResultCacheKey(request, data));
+
+    // another stack version doesn't use the earlier result
+    StackAdvisorRequest parentRequest = StackAdvisorRequestBuilder.forStack("HDP", "2.0").build();
+    assertFalse(key.equals(command.getResultCacheKey(parentRequest, data)));
+
+    // a changed script or stack advisor at the same path doesn't use the earlier result
+    for (File file : Arrays.asList(script, baseAdvisor, parentAdvisor, stackAdvisor)) {
+      FileUtils.writeStringToFile(file, "version 2");
+      String changedKey = command.getResultCacheKey(request, data);
+      assertFalse(key.equals(changedKey));
+      key = changedKey;
+    }
+  }
+
+  private TestResource invokeWithHeartbeatTime(File recommendationsDir, int requestId,
+      StackAdvisorRunner saRunner, AmbariMetaInfo metaInfo, StackAdvisorRequest request,
+      long heartbeatTime) throws StackAdvisorException {
+    StackAdvisorCommand<TestResource> command = spy(new TestStackAdvisorCommand(
+        recommendationsDir, "echo", requestId, saRunner, metaInfo));
+
+    String hostsJSON = "{\"items\" : [{\"Hosts\" : {\"host_name\" : \"localhost\", " +
+        "\"last_heartbeat_time\" : " + heartbeatTime + "}}]}";
+    String servicesJSON = "{\"services\" : \"HDFS\"}";
+    doReturn(hostsJSON).when(command).getHostsInformation(request);
+    doReturn(servicesJSON).when(command).getServicesInformation(request);
+    doReturn(new StackAdvisorData(hostsJSON, servicesJSON)).when(command)
+        .adjust(any(StackAdvisorData.class), any(StackAdvisorRequest.class));
+
+    return command.invoke(request);
+  }
+
   @Test
   public void testPopulateStackHierarchy() throws Exception {
     File file = mock(File.class);
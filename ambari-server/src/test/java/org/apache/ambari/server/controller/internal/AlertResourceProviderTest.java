@@ -577,6 +577,7 @@ public class AlertResourceProviderTest {
       expect(configuration.getDatabaseUser()).andReturn("test").anyTimes();
       expect(configuration.getDatabasePassword()).andReturn("test").anyTimes();
       expect(configuration.getAlertEventPublisherPoolSize()).andReturn(Integer.valueOf(Configuration.ALERTS_EXECUTION_SCHEDULER_THREADS_DEFAULT)).anyTimes();
+      expect(configuration.getEventPublisherThreads()).andReturn(Integer.valueOf(Configuration.EVENT_PUBLISHER_THREADS_DEFAULT)).anyTimes();
       replay(configuration);
     }
   }
@@ -52,6 +52,8 @@ import org.junit.Test;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -287,6 +289,8 @@ public class ConfigGroupResourceProviderTest {
     expect(configGroup.getName()).andReturn("test-1").anyTimes();
     expect(configGroup.getId()).andReturn(25L).anyTimes();
     expect(configGroup.getTag()).andReturn("tag-1").anyTimes();
+    expect(configGroup.getConfigurations()).andReturn(
+        Collections.<String, Config>singletonMap("hdfs-site", null)).anyTimes();
 
     expect(configGroup.convertToResponse()).andReturn(configGroupResponse).anyTimes();
     expect(configGroupResponse.getClusterName()).andReturn("Cluster100").anyTimes();
@@ -301,7 +305,8 @@ public class ConfigGroupResourceProviderTest {
       }
     });
     expect(managementController.getConfigHelper()).andReturn(configHelper).once();
-    configHelper.invalidateStaleConfigsCache();
+    // both the previous and the updated config types of the group are invalidated
+    configHelper.invalidateStaleConfigsCache(new HashSet<String>(Arrays.asList("hdfs-site", "core-site")));
     expectLastCall().once();
 
     replay(managementController, clusters, cluster,
@@ -31,6 +31,7 @@ import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.verify;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -52,8 +53,11 @@ import org.apache.ambari.server.api.services.BaseRequest;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.ExecuteActionRequest;
 import org.apache.ambari.server.controller.RequestStatusResponse;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceProvider;
@@ -274,6 +278,63 @@ public class RequestResourceProviderTest {
     verify(managementController, actionManager, requestDAO, hrcDAO);
   }
 
+  @Test
+  public void testQueryForResourcesPaged() throws Exception {
+    Resource.Type type = Resource.Type.Request;
+
+    AmbariManagementController managementController = createNiceMock(AmbariManagementController.class);
+
+    RequestEntity requestMock103 = createNiceMock(RequestEntity.class);
+    expect(requestMock103.getRequestId()).andReturn(103L).anyTimes();
+    RequestEntity requestMock104 = createNiceMock(RequestEntity.class);
+    expect(requestMock104.getRequestId()).andReturn(104L).anyTimes();
+
+    Capture<PageRequest> pageRequestCapture = new Capture<PageRequest>();
+
+    // set expectations
+    expect(requestDAO.isPredicateSupported(null)).andReturn(true).anyTimes();
+    expect(requestDAO.getCount(null)).andReturn(5).anyTimes();
+    expect(requestDAO.findRequestIds(EasyMock.<Predicate>isNull(),
+        EasyMock.<org.apache.ambari.server.controller.spi.SortRequest>isNull(),
+        capture(pageRequestCapture))).andReturn(Arrays.asList(104L, 103L)).once();
+    expect(requestDAO.findByPks(EasyMock.<Collection<Long>>anyObject(), eq(true))).andReturn(
+        new LinkedList<RequestEntity>(Arrays.asList(requestMock103, requestMock104))).anyTimes();
+    expect(hrcDAO.findAggregateCounts((Long) anyObject())).andReturn(
+        new HashMap<Long, HostRoleCommandStatusSummaryDTO>()).anyTimes();
+
+    // replay
+    replay(managementController, requestDAO, hrcDAO, requestMock103, requestMock104);
+
+    ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
+        type,
+        PropertyHelper.getPropertyIds(type),
+        PropertyHelper.getKeyPropertyIds(type),
+        managementController);
+
+    // the last page of two requests
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.End, 2, 0, null, null);
+    Request request = PropertyHelper.getReadRequest(Collections.<String>emptySet(), null, null, pageRequest, null);
+
+    QueryResponse queryResponse = ((ExtendedResourceProvider) provider).queryForResources(request, null);
+
+    Assert.assertTrue(queryResponse.isPagedResponse());
+    Assert.assertTrue(queryResponse.isSortedResponse());
+    Assert.assertEquals(5, queryResponse.getTotalResourceCount());
+
+    Assert.assertEquals(PageRequest.StartingPoint.OffsetStart, pageRequestCapture.getValue().getStartingPoint());
+    Assert.assertEquals(3, pageRequestCapture.getValue().getOffset());
+    Assert.assertEquals(2, pageRequestCapture.getValue().getPageSize());
+
+    // the resources keep the order of the database
+    List<Object> requestIds = new ArrayList<Object>();
+    for (Resource resource : queryResponse.getResources()) {
+      requestIds.add(resource.getPropertyValue(RequestResourceProvider.REQUEST_ID_PROPERTY_ID));
+    }
+    Assert.assertEquals(Arrays.<Object>asList(104L, 103L), requestIds);
+
+    verify(managementController, requestDAO);
+  }
+
   @Test
   public void testGetResourcesWithRequestSchedule() throws Exception {
     Resource.Type type = Resource.Type.Request;
@@ -23,6 +23,7 @@ import org.apache.ambari.server.controller.utilities.PropertyHelper;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -161,6 +162,36 @@ public class ResourceImplTest {
     }
   }
 
+  @Test
+  public void testNullPropertyValue() {
+    Resource resource = new ResourceImpl(Resource.Type.Cluster);
+
+    resource.setProperty("c1/p1", null);
+    resource.setProperty("c1/p2", "foo");
+    Assert.assertNull(resource.getPropertyValue("c1/p1"));
+
+    Map<String, Object> properties = resource.getPropertiesMap().get("c1");
+    Assert.assertEquals(2, properties.size());
+    Assert.assertTrue(properties.containsKey("p1"));
+    Assert.assertNull(properties.get("p1"));
+
+    Map<String, Object> expected = new HashMap<String, Object>();
+    expected.put("p1", null);
+    expected.put("p2", "foo");
+    Assert.assertEquals(expected, properties);
+
+    // the properties map is a view of the resource
+    for (Map.Entry<String, Object> entry : properties.entrySet()) {
+      if (entry.getValue() == null) {
+        entry.setValue("bar");
+      }
+    }
+    Assert.assertEquals("bar", resource.getPropertyValue("c1/p1"));
+
+    properties.remove("p2");
+    Assert.assertNull(resource.getPropertyValue("c1/p2"));
+  }
+
   @Test
   public void testEquals() {
     Resource resource1 = new ResourceImpl(Resource.Type.Cluster);
@@ -24,6 +24,7 @@ import static org.easymock.EasyMock.createStrictMock;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.fail;
 
@@ -230,6 +231,35 @@ public class StageResourceProviderTest {
     verify(dao, clusters, cluster, actionManager, managementController);
   }
 
+  @Test
+  public void testUpdateStageStatus_completed() throws Exception {
+
+    ActionManager actionManager = createNiceMock(ActionManager.class);
+
+    Predicate predicate = new PredicateBuilder().property(StageResourceProvider.STAGE_STAGE_ID).equals(2L).and().
+        property(StageResourceProvider.STAGE_REQUEST_ID).equals(1L).toPredicate();
+
+    Request request = PropertyHelper.getReadRequest();
+
+    List<StageEntity> entities = getStageEntities(HostRoleStatus.HOLDING);
+
+    expect(dao.findAll(request, predicate)).andReturn(entities);
+
+    expect(managementController.getActionManager()).andReturn(actionManager).anyTimes();
+
+    reset(hrcDao);
+    expect(hrcDao.merge(anyObject(HostRoleCommandEntity.class))).andReturn(null);
+
+    // the scheduler may be idle and must pick up the released stage
+    actionManager.awake();
+
+    replay(dao, clusters, cluster, actionManager, managementController, hrcDao);
+
+    StageResourceProvider.updateStageStatus(1L, 2L, HostRoleStatus.COMPLETED, managementController);
+
+    verify(dao, clusters, cluster, actionManager, managementController, hrcDao);
+  }
+
   private List<StageEntity> getStageEntities(HostRoleStatus lastTaskStatus) {
     StageEntity stage = new StageEntity();
 
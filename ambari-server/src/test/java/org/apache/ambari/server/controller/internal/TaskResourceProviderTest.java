@@ -18,14 +18,21 @@
 
 package org.apache.ambari.server.controller.internal;
 
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -33,15 +40,29 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.ambari.server.Role;
+import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.actionmanager.ActionManager;
+import org.apache.ambari.server.actionmanager.HostRoleCommand;
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.RequestStatusResponse;
 import org.apache.ambari.server.controller.TaskStatusResponse;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceProvider;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.utilities.PredicateBuilder;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.topology.TopologyManager;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -138,6 +159,109 @@ public class TaskResourceProviderTest {
     verify(managementController);
   }
 
+  @Test
+  public void testQueryForResourcesPagedAndSorted() throws Exception {
+    Resource.Type type = Resource.Type.Task;
+
+    AmbariManagementController managementController = createNiceMock(AmbariManagementController.class);
+    ActionManager actionManager = createNiceMock(ActionManager.class);
+    HostRoleCommandDAO hrcDAO = createNiceMock(HostRoleCommandDAO.class);
+    TopologyManager topologyManager = createNiceMock(TopologyManager.class);
+
+    // !!! don't mess with injectors for this test
+    setStaticField("s_hostRoleCommandDAO", hrcDAO);
+    setStaticField("topologyManager", topologyManager);
+
+    Predicate predicate = new PredicateBuilder().property(TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID).equals("c1").
+        and().property(TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").toPredicate();
+
+    SortRequest sortRequest = new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty(TaskResourceProvider.TASK_HOST_NAME_PROPERTY_ID, SortRequest.Order.DESC)));
+
+    Capture<PageRequest> pageRequestCapture = new Capture<PageRequest>();
+
+    // set expectations
+    expect(topologyManager.getTasks(EasyMock.<Collection<Long>>anyObject())).andReturn(
+        Collections.<HostRoleCommand>emptyList()).anyTimes();
+    expect(hrcDAO.isPredicateSupported(predicate)).andReturn(true).anyTimes();
+    expect(hrcDAO.getCount(predicate)).andReturn(5).anyTimes();
+    expect(hrcDAO.findTaskIds(eq(predicate), eq(sortRequest), capture(pageRequestCapture))).andReturn(
+        Arrays.asList(3L, 1L)).once();
+    expect(managementController.getActionManager()).andReturn(actionManager).anyTimes();
+    expect(actionManager.getTasks(EasyMock.<Collection<Long>>anyObject())).andReturn(
+        Arrays.asList(createTask(1L, "host1"), createTask(3L, "host3"))).once();
+
+    // replay
+    replay(managementController, actionManager, hrcDAO, topologyManager);
+
+    ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
+        type,
+        PropertyHelper.getPropertyIds(type),
+        PropertyHelper.getKeyPropertyIds(type),
+        managementController);
+
+    Set<String> propertyIds = new HashSet<String>();
+    propertyIds.add(TaskResourceProvider.TASK_ID_PROPERTY_ID);
+    propertyIds.add(TaskResourceProvider.TASK_HOST_NAME_PROPERTY_ID);
+
+    // the second page of two tasks
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 2, 2, null, null);
+    Request request = PropertyHelper.getReadRequest(propertyIds, null, null, pageRequest, sortRequest);
+
+    QueryResponse queryResponse = ((ExtendedResourceProvider) provider).queryForResources(request, predicate);
+
+    Assert.assertTrue(queryResponse.isPagedResponse());
+    Assert.assertTrue(queryResponse.isSortedResponse());
+    Assert.assertEquals(5, queryResponse.getTotalResourceCount());
+    Assert.assertEquals(2, pageRequestCapture.getValue().getOffset());
+    Assert.assertEquals(2, pageRequestCapture.getValue().getPageSize());
+
+    // the resources keep the order of the database
+    List<Object> hostNames = new ArrayList<Object>();
+    for (Resource resource : queryResponse.getResources()) {
+      hostNames.add(resource.getPropertyValue(TaskResourceProvider.TASK_HOST_NAME_PROPERTY_ID));
+    }
+    Assert.assertEquals(Arrays.<Object>asList("host3", "host1"), hostNames);
+
+    // verify
+    verify(hrcDAO, actionManager);
+  }
+
+  @Test
+  public void testGetResourcesOutputNotRequested() throws Exception {
+    // the output is only read for the requested properties
+    HostRoleCommand command = createTask(100L, "host1", false);
+
+    Set<Resource> resources = getResources(command, TaskResourceProvider.TASK_ID_PROPERTY_ID,
+        TaskResourceProvider.TASK_HOST_NAME_PROPERTY_ID);
+
+    Assert.assertEquals(1, resources.size());
+    Resource resource = resources.iterator().next();
+    assertNull(resource.getPropertyValue(TaskResourceProvider.TASK_STOUT_PROPERTY_ID));
+    assertNull(resource.getPropertyValue(TaskResourceProvider.TASK_STDERR_PROPERTY_ID));
+    assertNull(resource.getPropertyValue(TaskResourceProvider.TASK_STRUCT_OUT_PROPERTY_ID));
+
+    verify(command);
+  }
+
+  @Test
+  public void testGetResourcesOutputRequested() throws Exception {
+    HostRoleCommand command = createTask(100L, "host1", true);
+
+    Set<Resource> resources = getResources(command, TaskResourceProvider.TASK_ID_PROPERTY_ID,
+        TaskResourceProvider.TASK_STOUT_PROPERTY_ID, TaskResourceProvider.TASK_STDERR_PROPERTY_ID,
+        TaskResourceProvider.TASK_STRUCT_OUT_PROPERTY_ID);
+
+    Assert.assertEquals(1, resources.size());
+    Resource resource = resources.iterator().next();
+    Assert.assertEquals("stdout", resource.getPropertyValue(TaskResourceProvider.TASK_STOUT_PROPERTY_ID));
+    Assert.assertEquals("stderr", resource.getPropertyValue(TaskResourceProvider.TASK_STDERR_PROPERTY_ID));
+    Assert.assertEquals("value", resource.getPropertyValue(
+        PropertyHelper.getPropertyId(TaskResourceProvider.TASK_STRUCT_OUT_PROPERTY_ID, "key")));
+
+    verify(command);
+  }
+
   @Test
   public void testUpdateResources() throws Exception {
     Resource.Type type = Resource.Type.Task;
@@ -283,4 +407,69 @@ public class TaskResourceProviderTest {
     verify(managementController);
   }
 
+  private static Set<Resource> getResources(HostRoleCommand command, String... propertyIds) throws Exception {
+    Resource.Type type = Resource.Type.Task;
+
+    AmbariManagementController managementController = createMock(AmbariManagementController.class);
+    expect(managementController.getTaskStatus(AbstractResourceProviderTest.Matcher.getTaskRequestSet(100L, 100L))).
+        andReturn(Collections.singleton(new TaskStatusResponse(command))).once();
+    replay(managementController);
+
+    ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
+        type,
+        PropertyHelper.getPropertyIds(type),
+        PropertyHelper.getKeyPropertyIds(type),
+        managementController);
+
+    Predicate predicate = new PredicateBuilder().property(TaskResourceProvider.TASK_ID_PROPERTY_ID).equals("100").
+        and().property(TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").toPredicate();
+    Request request = PropertyHelper.getReadRequest(new HashSet<String>(Arrays.asList(propertyIds)));
+    Set<Resource> resources = provider.getResources(request, predicate);
+
+    verify(managementController);
+    return resources;
+  }
+
+  private static void setStaticField(String name, Object value) throws Exception {
+    Field field = TaskResourceProvider.class.getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(null, value);
+  }
+
+  private static HostRoleCommand createTask(long taskId, String hostName) {
+    HostRoleCommand command = createTaskMock(taskId, hostName);
+    replay(command);
+    return command;
+  }
+
+  /**
+   * Creates a task which expects its output to be read once if it is requested
+   * and fails if it is read although it isn't requested.
+   */
+  private static HostRoleCommand createTask(long taskId, String hostName, boolean outputRequested) {
+    HostRoleCommand command = createTaskMock(taskId, hostName);
+    if (outputRequested) {
+      expect(command.getStdout()).andReturn("stdout").once();
+      expect(command.getStderr()).andReturn("stderr").once();
+      expect(command.getStructuredOut()).andReturn("{\"key\":\"value\"}").once();
+    } else {
+      IllegalStateException exception = new IllegalStateException("The output isn't requested");
+      expect(command.getStdout()).andThrow(exception).anyTimes();
+      expect(command.getStderr()).andThrow(exception).anyTimes();
+      expect(command.getStructuredOut()).andThrow(exception).anyTimes();
+    }
+    replay(command);
+    return command;
+  }
+
+  private static HostRoleCommand createTaskMock(long taskId, String hostName) {
+    HostRoleCommand command = createNiceMock(HostRoleCommand.class);
+    expect(command.getTaskId()).andReturn(taskId).anyTimes();
+    expect(command.getRequestId()).andReturn(100L).anyTimes();
+    expect(command.getHostName()).andReturn(hostName).anyTimes();
+    expect(command.getRole()).andReturn(Role.DATANODE).anyTimes();
+    expect(command.getRoleCommand()).andReturn(RoleCommand.INSTALL).anyTimes();
+    expect(command.getStatus()).andReturn(HostRoleStatus.COMPLETED).anyTimes();
+    return command;
+  }
 }
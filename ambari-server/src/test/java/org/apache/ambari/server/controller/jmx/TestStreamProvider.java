@@ -50,6 +50,8 @@ public class TestStreamProvider implements StreamProvider {
 
   private boolean isLastSpecUpdated;
 
+  private int readCount;
+
   public TestStreamProvider() {
     delay = 0;
   }
@@ -64,6 +66,7 @@ public class TestStreamProvider implements StreamProvider {
       lastSpec = spec;
     
     isLastSpecUpdated = false;
+    ++readCount;
     String filename = FILE_MAPPING.get(getPort(spec));
     if (filename == null) {
       throw new IOException("Can't find JMX source for " + spec);
@@ -83,6 +86,10 @@ public class TestStreamProvider implements StreamProvider {
     return lastSpec;
   }
 
+  public int getReadCount() {
+    return readCount;
+  }
+
   private String getPort(String spec) {
     int colonIndex = spec.indexOf(":", 5);
     int slashIndex = spec.indexOf("/", colonIndex);
@@ -21,6 +21,7 @@ package org.apache.ambari.server.controller.metrics;
 import org.apache.ambari.server.controller.internal.ResourceImpl;
 import org.apache.ambari.server.controller.jmx.JMXHostProvider;
 import org.apache.ambari.server.controller.jmx.JMXPropertyProvider;
+import org.apache.ambari.server.controller.jmx.JMXSnapshotCache;
 import org.apache.ambari.server.controller.jmx.TestStreamProvider;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
@@ -133,7 +134,9 @@ public class JMXPropertyProviderTest {
 
     propertyProvider.populateResources(Collections.singleton(resource), request, null);
 
-    Assert.assertEquals(propertyProvider.getSpec("http", "domu-12-31-39-14-ee-b3.compute-1.internal", "50030", "/jmx"), streamProvider.getLastSpec());
+    // a handful of exact beans are fetched with per-bean queries rather than the full /jmx document
+    Assert.assertTrue(streamProvider.getLastSpec().startsWith(
+        propertyProvider.getSpec("http", "domu-12-31-39-14-ee-b3.compute-1.internal", "50030", "/jmx?qry=")));
 
     // see test/resources/mapreduce_jobtracker_jmx.json for values
     Assert.assertEquals(13, PropertyHelper.getProperties(resource).size());
@@ -180,7 +183,8 @@ public class JMXPropertyProviderTest {
 
     propertyProvider.populateResources(Collections.singleton(resource), request, null);
 
-    Assert.assertEquals(propertyProvider.getSpec("http", "domu-12-31-39-14-ee-b3.compute-1.internal", "50060", "/jmx"), streamProvider.getLastSpec());
+    Assert.assertTrue(streamProvider.getLastSpec().startsWith(
+        propertyProvider.getSpec("http", "domu-12-31-39-14-ee-b3.compute-1.internal", "50060", "/jmx?qry=")));
 
     Assert.assertEquals(18, PropertyHelper.getProperties(resource).size());
     Assert.assertEquals(954466304, resource.getPropertyValue(PropertyHelper.getPropertyId("metrics/jvm", "HeapMemoryMax")));
@@ -221,7 +225,8 @@ public class JMXPropertyProviderTest {
 
     propertyProvider.populateResources(Collections.singleton(resource), request, null);
 
-    Assert.assertEquals(propertyProvider.getSpec("http", "domu-12-31-39-14-ee-b3.compute-1.internal", "60010", "/jmx"), streamProvider.getLastSpec());
+    Assert.assertTrue(streamProvider.getLastSpec().startsWith(
+        propertyProvider.getSpec("http", "domu-12-31-39-14-ee-b3.compute-1.internal", "60010", "/jmx?qry=")));
 
     Assert.assertEquals(8, PropertyHelper.getProperties(resource).size());
     Assert.assertEquals(1069416448, resource.getPropertyValue(PropertyHelper.getPropertyId("metrics/jvm", "HeapMemoryMax")));
@@ -262,7 +267,8 @@ public class JMXPropertyProviderTest {
 
     Assert.assertEquals(1, propertyProvider.populateResources(Collections.singleton(resource), request, null).size());
 
-    Assert.assertEquals(propertyProvider.getSpec("http", "domu-12-31-39-0e-34-e1.compute-1.internal", "50070", "/jmx"), streamProvider.getLastSpec());
+    Assert.assertEquals(propertyProvider.getSpec("http", "domu-12-31-39-0e-34-e1.compute-1.internal", "50070",
+        "/jmx?qry=Hadoop%3Aservice%3DNameNode%2Cname%3DRpcActivity*"), streamProvider.getLastSpec());
 
     // see test/resources/hdfs_namenode_jmx.json for values
     Assert.assertEquals(13670605,  resource.getPropertyValue("metrics/rpc/ReceivedBytes"));
@@ -299,7 +305,8 @@ public class JMXPropertyProviderTest {
 
     Assert.assertEquals(1, propertyProvider.populateResources(Collections.singleton(resource), request, null).size());
 
-    Assert.assertEquals(propertyProvider.getSpec("http","domu-12-31-39-0e-34-e1.compute-1.internal", "50070","/jmx"), streamProvider.getLastSpec());
+    Assert.assertTrue(streamProvider.getLastSpec().startsWith(
+        propertyProvider.getSpec("http","domu-12-31-39-0e-34-e1.compute-1.internal", "50070","/jmx?qry=")));
 
     // see test/resources/hdfs_namenode_jmx.json for values
     Assert.assertEquals(184320,  resource.getPropertyValue("metrics/dfs/FSNamesystem/CapacityUsed"));
@@ -307,6 +314,49 @@ public class JMXPropertyProviderTest {
     Assert.assertNull(resource.getPropertyValue("metrics/rpc/ReceivedBytes"));
   }
 
+  @Test
+  public void testPopulateResources_sharedSnapshot() throws Exception {
+    TestStreamProvider  streamProvider = new TestStreamProvider();
+    TestJMXHostProvider hostProvider = new TestJMXHostProvider(false);
+    TestMetricHostProvider metricsHostProvider = new TestMetricHostProvider();
+
+    JMXPropertyProvider propertyProvider = new JMXPropertyProvider(
+        PropertyHelper.getJMXPropertyIds(Resource.Type.HostComponent),
+        streamProvider,
+        hostProvider,
+        metricsHostProvider,
+        PropertyHelper.getPropertyId("HostRoles", "cluster_name"),
+        PropertyHelper.getPropertyId("HostRoles", "host_name"),
+        PropertyHelper.getPropertyId("HostRoles", "component_name"),
+        PropertyHelper.getPropertyId("HostRoles", "state"));
+
+    JMXSnapshotCache snapshotCache = JMXPropertyProvider.getSnapshotCache();
+    long hits = snapshotCache.getHitCount();
+    long misses = snapshotCache.getMissCount();
+
+    Request request = PropertyHelper.getReadRequest(Collections.singleton("metrics/rpc/ReceivedBytes"),
+        new HashMap<String, TemporalInfo>());
+
+    // two namenode resources on the same host should share one fetch of the RpcActivity bean
+    for (int i = 0; i < 2; ++i) {
+      Resource resource = new ResourceImpl(Resource.Type.HostComponent);
+
+      resource.setProperty(HOST_COMPONENT_HOST_NAME_PROPERTY_ID, "domu-12-31-39-0e-34-e1.compute-1.internal");
+      resource.setProperty(HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID, "NAMENODE");
+      resource.setProperty(HOST_COMPONENT_STATE_PROPERTY_ID, "STARTED");
+
+      Assert.assertEquals(1, propertyProvider.populateResources(Collections.singleton(resource), request, null).size());
+
+      // see test/resources/hdfs_namenode_jmx.json for values
+      Assert.assertEquals(13670605, resource.getPropertyValue("metrics/rpc/ReceivedBytes"));
+    }
+
+    Assert.assertEquals(1, streamProvider.getReadCount());
+    Assert.assertEquals(hits + 1, snapshotCache.getHitCount());
+    Assert.assertEquals(misses + 1, snapshotCache.getMissCount());
+    Assert.assertTrue(snapshotCache.getAverageFetchMillis() >= 0);
+  }
+
   @Test
   public void testPopulateResourcesWithUnknownPort() throws Exception {
     TestStreamProvider  streamProvider = new TestStreamProvider();
@@ -44,13 +44,16 @@ import org.powermock.api.easymock.PowerMock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -74,6 +77,7 @@ public class AMSPropertyProviderTest {
   private static final String FILE_PATH_PREFIX = "ams" + File.separator;
   private static final String SINGLE_HOST_METRICS_FILE_PATH = FILE_PATH_PREFIX + "single_host_metric.json";
   private static final String MULTIPLE_HOST_METRICS_FILE_PATH = FILE_PATH_PREFIX + "multiple_host_metrics.json";
+  private static final String MULTIPLE_HOSTS_METRIC_FILE_PATH = FILE_PATH_PREFIX + "multiple_hosts_metric.json";
   private static final String SINGLE_COMPONENT_METRICS_FILE_PATH = FILE_PATH_PREFIX + "single_component_metrics.json";
   private static final String MULTIPLE_COMPONENT_REGEXP_METRICS_FILE_PATH = FILE_PATH_PREFIX + "multiple_component_regexp_metrics.json";
   private static final String EMBEDDED_METRICS_FILE_PATH = FILE_PATH_PREFIX + "embedded_host_metric.json";
@@ -261,6 +265,221 @@ public class AMSPropertyProviderTest {
     Assert.assertEquals(86, val.length);
   }
 
+  @Test
+  public void testPopulateResourcesForMultipleHosts() throws Exception {
+    setUpCommonMocks();
+    TestStreamProviderForHostComponentHostMetricsTest streamProvider =
+      new TestStreamProviderForHostComponentHostMetricsTest(null);
+    streamProvider.hostMetricFilePath = MULTIPLE_HOSTS_METRIC_FILE_PATH;
+    TestMetricHostProvider metricHostProvider = new TestMetricHostProvider();
+    ComponentSSLConfiguration sslConfiguration = mock(ComponentSSLConfiguration.class);
+
+    Map<String, Map<String, PropertyInfo>> propertyIds = PropertyHelper.getMetricPropertyIds(Resource.Type.Host);
+    AMSPropertyProvider propertyProvider = new AMSHostPropertyProvider(
+      propertyIds,
+      streamProvider,
+      sslConfiguration,
+      metricHostProvider,
+      CLUSTER_NAME_PROPERTY_ID,
+      HOST_NAME_PROPERTY_ID
+    );
+
+    Resource resource1 = new ResourceImpl(Resource.Type.Host);
+    resource1.setProperty(CLUSTER_NAME_PROPERTY_ID, "c1");
+    resource1.setProperty(HOST_NAME_PROPERTY_ID, "h1");
+    Resource resource2 = new ResourceImpl(Resource.Type.Host);
+    resource2.setProperty(CLUSTER_NAME_PROPERTY_ID, "c1");
+    resource2.setProperty(HOST_NAME_PROPERTY_ID, "h2");
+    Map<String, TemporalInfo> temporalInfoMap = new HashMap<String, TemporalInfo>();
+    temporalInfoMap.put(PROPERTY_ID1, new TemporalInfoImpl(1416445244701L, 1416445259901L, 1L));
+    Request request = PropertyHelper.getReadRequest(Collections.singleton(PROPERTY_ID1), temporalInfoMap);
+    Set<Resource> resources = propertyProvider.populateResources(
+      new HashSet<Resource>(Arrays.asList(resource1, resource2)), request, null);
+    Assert.assertEquals(2, resources.size());
+
+    // Both hosts are queried with a single call
+    URIBuilder uriBuilder = AMSPropertyProvider.getAMSUriBuilder("localhost", 8188);
+    uriBuilder.addParameter("metricNames", "cpu_user");
+    uriBuilder.addParameter("hostname", "h1,h2");
+    uriBuilder.addParameter("appId", "HOST");
+    uriBuilder.addParameter("startTime", "1416445244701");
+    uriBuilder.addParameter("endTime", "1416445259901");
+    Assert.assertEquals(Collections.singleton(uriBuilder.toString()), streamProvider.getAllSpecs());
+
+    Number[][] val = (Number[][]) resource1.getPropertyValue(PROPERTY_ID1);
+    Assert.assertEquals(3, val.length);
+    val = (Number[][]) resource2.getPropertyValue(PROPERTY_ID1);
+    Assert.assertEquals(2, val.length);
+  }
+
+  @Test
+  public void testPopulateResourcesForHostsInChunks() throws Exception {
+    setUpCommonMocks();
+    TestStreamProviderForHostComponentHostMetricsTest streamProvider =
+      new TestStreamProviderForHostComponentHostMetricsTest(null);
+    streamProvider.hostMetricFilePath = MULTIPLE_HOSTS_METRIC_FILE_PATH;
+    TestMetricHostProvider metricHostProvider = new TestMetricHostProvider();
+    ComponentSSLConfiguration sslConfiguration = mock(ComponentSSLConfiguration.class);
+
+    Map<String, Map<String, PropertyInfo>> propertyIds = PropertyHelper.getMetricPropertyIds(Resource.Type.Host);
+    AMSPropertyProvider propertyProvider = new AMSHostPropertyProvider(
+      propertyIds,
+      streamProvider,
+      sslConfiguration,
+      metricHostProvider,
+      CLUSTER_NAME_PROPERTY_ID,
+      HOST_NAME_PROPERTY_ID
+    );
+
+    Set<Resource> resources = new HashSet<Resource>();
+    for (int i = 0; i < AMSPropertyProvider.HOSTS_PER_REQUEST * 2; i++) {
+      Resource resource = new ResourceImpl(Resource.Type.Host);
+      resource.setProperty(CLUSTER_NAME_PROPERTY_ID, "c1");
+      resource.setProperty(HOST_NAME_PROPERTY_ID, "h" + i);
+      resources.add(resource);
+    }
+    Map<String, TemporalInfo> temporalInfoMap = new HashMap<String, TemporalInfo>();
+    temporalInfoMap.put(PROPERTY_ID1, new TemporalInfoImpl(1416445244701L, 1416445259901L, 1L));
+    Request request = PropertyHelper.getReadRequest(Collections.singleton(PROPERTY_ID1), temporalInfoMap);
+    propertyProvider.populateResources(resources, request, null);
+
+    Assert.assertEquals(2, streamProvider.getAllSpecs().size());
+    Assert.assertEquals(2, propertyProvider.getCollectorRequestCount());
+    Assert.assertEquals(0, propertyProvider.getCollectorErrorCount());
+    Assert.assertEquals(1, propertyProvider.getPopulateRequestCount());
+    Assert.assertTrue(propertyProvider.getLastPopulateMillis() >= propertyProvider.getLastCollectorMillis());
+    for (Resource resource : resources) {
+      String hostName = (String) resource.getPropertyValue(HOST_NAME_PROPERTY_ID);
+      Number[][] val = (Number[][]) resource.getPropertyValue(PROPERTY_ID1);
+      if (hostName.equals("h1")) {
+        Assert.assertEquals(3, val.length);
+      } else if (hostName.equals("h2")) {
+        Assert.assertEquals(2, val.length);
+      } else {
+        Assert.assertNull(val);
+      }
+    }
+  }
+
+  @Test
+  public void testPopulateResourcesForMultipleHostsRejected() throws Exception {
+    final List<String> requestSpecs = new ArrayList<String>();
+    TestStreamProviderForHostComponentHostMetricsTest streamProvider =
+      new TestStreamProviderForHostComponentHostMetricsTest(null) {
+        @Override
+        public synchronized InputStream readFrom(String spec) throws IOException {
+          requestSpecs.add(spec);
+          if (spec.contains("h1%2Ch2")) {
+            throw new IOException("Server returned HTTP response code: 400 for URL: " + spec);
+          }
+          return super.readFrom(spec);
+        }
+      };
+    streamProvider.hostMetricFilePath = MULTIPLE_HOSTS_METRIC_FILE_PATH;
+    TestMetricHostProvider metricHostProvider = new TestMetricHostProvider();
+    ComponentSSLConfiguration sslConfiguration = mock(ComponentSSLConfiguration.class);
+
+    Map<String, Map<String, PropertyInfo>> propertyIds = PropertyHelper.getMetricPropertyIds(Resource.Type.Host);
+    AMSPropertyProvider propertyProvider = new AMSHostPropertyProvider(
+      propertyIds,
+      streamProvider,
+      sslConfiguration,
+      metricHostProvider,
+      CLUSTER_NAME_PROPERTY_ID,
+      HOST_NAME_PROPERTY_ID
+    );
+
+    Map<String, TemporalInfo> temporalInfoMap = new HashMap<String, TemporalInfo>();
+    temporalInfoMap.put(PROPERTY_ID1, new TemporalInfoImpl(1416445244701L, 1416445259901L, 1L));
+    Request request = PropertyHelper.getReadRequest(Collections.singleton(PROPERTY_ID1), temporalInfoMap);
+
+    for (int i = 0; i < 2; i++) {
+      setUpCommonMocks();
+      Resource resource1 = new ResourceImpl(Resource.Type.Host);
+      resource1.setProperty(CLUSTER_NAME_PROPERTY_ID, "c1");
+      resource1.setProperty(HOST_NAME_PROPERTY_ID, "h1");
+      Resource resource2 = new ResourceImpl(Resource.Type.Host);
+      resource2.setProperty(CLUSTER_NAME_PROPERTY_ID, "c1");
+      resource2.setProperty(HOST_NAME_PROPERTY_ID, "h2");
+      propertyProvider.populateResources(
+        new HashSet<Resource>(Arrays.asList(resource1, resource2)), request, null);
+
+      // Each host is queried separately after the rejected call
+      Number[][] val = (Number[][]) resource1.getPropertyValue(PROPERTY_ID1);
+      Assert.assertEquals(3, val.length);
+      val = (Number[][]) resource2.getPropertyValue(PROPERTY_ID1);
+      Assert.assertEquals(2, val.length);
+    }
+
+    // The second populate doesn't try the rejected call again
+    Assert.assertEquals(5, requestSpecs.size());
+    Assert.assertTrue(requestSpecs.get(0).contains("h1%2Ch2"));
+    for (String spec : requestSpecs.subList(1, requestSpecs.size())) {
+      Assert.assertFalse(spec.contains("h1%2Ch2"));
+    }
+  }
+
+  @Test
+  public void testPopulateResourcesForMultipleHostsIgnored() throws Exception {
+    final List<String> requestSpecs = new ArrayList<String>();
+    TestStreamProviderForHostComponentHostMetricsTest streamProvider =
+      new TestStreamProviderForHostComponentHostMetricsTest(null) {
+        @Override
+        public synchronized InputStream readFrom(String spec) throws IOException {
+          requestSpecs.add(spec);
+          if (spec.contains("h1%2Ch2")) {
+            // older collectors look for a host named "h1,h2"
+            return new ByteArrayInputStream("{\"metrics\":[]}".getBytes());
+          }
+          return super.readFrom(spec);
+        }
+      };
+    streamProvider.hostMetricFilePath = MULTIPLE_HOSTS_METRIC_FILE_PATH;
+    TestMetricHostProvider metricHostProvider = new TestMetricHostProvider();
+    ComponentSSLConfiguration sslConfiguration = mock(ComponentSSLConfiguration.class);
+
+    Map<String, Map<String, PropertyInfo>> propertyIds = PropertyHelper.getMetricPropertyIds(Resource.Type.Host);
+    AMSPropertyProvider propertyProvider = new AMSHostPropertyProvider(
+      propertyIds,
+      streamProvider,
+      sslConfiguration,
+      metricHostProvider,
+      CLUSTER_NAME_PROPERTY_ID,
+      HOST_NAME_PROPERTY_ID
+    );
+
+    Map<String, TemporalInfo> temporalInfoMap = new HashMap<String, TemporalInfo>();
+    temporalInfoMap.put(PROPERTY_ID1, new TemporalInfoImpl(1416445244701L, 1416445259901L, 1L));
+    Request request = PropertyHelper.getReadRequest(Collections.singleton(PROPERTY_ID1), temporalInfoMap);
+
+    for (int i = 0; i < 2; i++) {
+      setUpCommonMocks();
+      Resource resource1 = new ResourceImpl(Resource.Type.Host);
+      resource1.setProperty(CLUSTER_NAME_PROPERTY_ID, "c1");
+      resource1.setProperty(HOST_NAME_PROPERTY_ID, "h1");
+      Resource resource2 = new ResourceImpl(Resource.Type.Host);
+      resource2.setProperty(CLUSTER_NAME_PROPERTY_ID, "c1");
+      resource2.setProperty(HOST_NAME_PROPERTY_ID, "h2");
+      propertyProvider.populateResources(
+        new HashSet<Resource>(Arrays.asList(resource1, resource2)), request, null);
+
+      // Each host is queried separately after the empty answer
+      Number[][] val = (Number[][]) resource1.getPropertyValue(PROPERTY_ID1);
+      Assert.assertEquals(3, val.length);
+      val = (Number[][]) resource2.getPropertyValue(PROPERTY_ID1);
+      Assert.assertEquals(2, val.length);
+    }
+
+    // The second populate doesn't try the ignored call again
+    Assert.assertEquals(5, requestSpecs.size());
+    Assert.assertTrue(requestSpecs.get(0).contains("h1%2Ch2"));
+    for (String spec : requestSpecs.subList(1, requestSpecs.size())) {
+      Assert.assertFalse(spec.contains("h1%2Ch2"));
+    }
+    Assert.assertEquals(5, propertyProvider.getCollectorRequestCount());
+    Assert.assertEquals(2, propertyProvider.getPopulateRequestCount());
+  }
+
   @Test
   public void testPopulateResourcesForRegexpMetrics() throws Exception {
     setUpCommonMocks();
@@ -497,7 +716,7 @@ public class AMSPropertyProviderTest {
     }
 
     @Override
-    public InputStream readFrom(String spec) throws IOException {
+    public synchronized InputStream readFrom(String spec) throws IOException {
       if (spec.contains("HOST")) {
         this.fileName = hostMetricFilePath;
       } else {
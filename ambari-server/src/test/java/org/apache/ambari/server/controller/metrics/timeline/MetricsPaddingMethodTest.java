@@ -47,7 +47,7 @@ public class MetricsPaddingMethodTest {
 
     TemporalInfo temporalInfo = getTemporalInfo(now - 10000, now, 1l);
     paddingMethod.applyPaddingStrategy(timelineMetric, temporalInfo);
-    TreeMap<Long, Double> values = (TreeMap<Long, Double>) timelineMetric.getMetricValues();
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>(timelineMetric.getMetricValues());
 
     Assert.assertEquals(11, values.size());
     Assert.assertEquals(new Long(now - 10000), values.keySet().iterator().next());
@@ -75,7 +75,7 @@ public class MetricsPaddingMethodTest {
 
     TemporalInfo temporalInfo = getTemporalInfo(now - 10000, now, 1l);
     paddingMethod.applyPaddingStrategy(timelineMetric, temporalInfo);
-    TreeMap<Long, Double> values = (TreeMap<Long, Double>) timelineMetric.getMetricValues();
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>(timelineMetric.getMetricValues());
 
     Assert.assertEquals(11, values.size());
     Assert.assertEquals(new Long(now - 10000), values.keySet().iterator().next());
@@ -104,7 +104,7 @@ public class MetricsPaddingMethodTest {
 
     TemporalInfo temporalInfo = getTemporalInfo(now - 3000, now, 1l);
     paddingMethod.applyPaddingStrategy(timelineMetric, temporalInfo);
-    TreeMap<Long, Double> values = (TreeMap<Long, Double>) timelineMetric.getMetricValues();
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>(timelineMetric.getMetricValues());
 
     Assert.assertEquals(4, values.size());
     Assert.assertEquals(new Long(now - 3000), values.keySet().iterator().next());
@@ -129,7 +129,7 @@ public class MetricsPaddingMethodTest {
 
     TemporalInfo temporalInfo = getTemporalInfo(now - 10000, now, 1000l);
     paddingMethod.applyPaddingStrategy(timelineMetric, temporalInfo);
-    TreeMap<Long, Double> values = (TreeMap<Long, Double>) timelineMetric.getMetricValues();
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>(timelineMetric.getMetricValues());
 
     Assert.assertEquals(11, values.size());
     Assert.assertEquals(new Long(now - 10000), values.keySet().iterator().next());
@@ -155,7 +155,7 @@ public class MetricsPaddingMethodTest {
 
     TemporalInfo temporalInfo = getTemporalInfo(now - 10000, now, null);
     paddingMethod.applyPaddingStrategy(timelineMetric, temporalInfo);
-    TreeMap<Long, Double> values = (TreeMap<Long, Double>) timelineMetric.getMetricValues();
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>(timelineMetric.getMetricValues());
 
     Assert.assertEquals(1, values.size());
     Assert.assertEquals(new Long(now - 1000), values.keySet().iterator().next());
@@ -182,7 +182,7 @@ public class MetricsPaddingMethodTest {
 
     TemporalInfo temporalInfo = getTemporalInfo(now - 1000, now, 10l);
     paddingMethod.applyPaddingStrategy(timelineMetric, temporalInfo);
-    TreeMap<Long, Double> values = (TreeMap<Long, Double>) timelineMetric.getMetricValues();
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>(timelineMetric.getMetricValues());
 
     Assert.assertEquals(3, values.size());
   }
@@ -0,0 +1,282 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.AmbariEvent.AmbariEventType;
+import org.apache.ambari.server.events.ClusterEvent;
+import org.apache.ambari.server.events.HostAddedEvent;
+import org.apache.ambari.server.events.HostEvent;
+import org.apache.ambari.server.events.HostRegisteredEvent;
+import org.apache.ambari.server.events.HostRemovedEvent;
+import org.apache.ambari.server.events.ServiceComponentInstalledEvent;
+import org.apache.ambari.server.events.ServiceComponentUninstalledEvent;
+import org.apache.ambari.server.events.publishers.PartitionedEventBus.EventStatistics;
+import org.junit.Test;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Tests {@link PartitionedEventBus}.
+ */
+public class PartitionedEventBusTest {
+
+  /**
+   * Tests that events with the same partition key are handled in the order
+   * they were posted.
+   */
+  @Test
+  public void testOrderingByPartitionKey() throws Exception {
+    PartitionedEventBus eventBus = new PartitionedEventBus("test-event-bus", 4);
+    OrderListener listener = new OrderListener(2 * 100);
+    eventBus.register(listener);
+
+    for (int i = 0; i < 100; i++) {
+      eventBus.post(new SequencedEvent(1L, i));
+      eventBus.post(new SequencedEvent(2L, i));
+    }
+
+    assertTrue(listener.m_latch.await(10, TimeUnit.SECONDS));
+    eventBus.shutdown(1000);
+
+    for (Long clusterId : new Long[] { 1L, 2L }) {
+      List<Integer> sequence = listener.m_sequences.get(clusterId);
+      assertEquals(100, sequence.size());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(Integer.valueOf(i), sequence.get(i));
+      }
+    }
+
+    EventStatistics statistics = eventBus.getStatistics().get(
+        SequencedEvent.class.getSimpleName());
+
+    assertEquals(200, statistics.getHandledCount());
+    assertEquals(0, statistics.getQueueDepth());
+  }
+
+  /**
+   * Tests that events are assigned to lanes by their partition key.
+   */
+  @Test
+  public void testLaneSelection() throws Exception {
+    PartitionedEventBus eventBus = new PartitionedEventBus("test-event-bus", 4);
+
+    assertEquals(4, eventBus.getLaneCount());
+    assertEquals(eventBus.getLane(new SequencedEvent(5L, 0)),
+        eventBus.getLane(new SequencedEvent(5L, 1)));
+    assertEquals(eventBus.getLane(new HostRegisteredEvent("h1")),
+        eventBus.getLane(new HostRegisteredEvent("h1")));
+
+    // the lifecycle of a host is ordered on the lane of the host
+    assertEquals(eventBus.getLane(new HostRemovedEvent("h1")),
+        eventBus.getLane(new HostAddedEvent(1L, "h1")));
+    assertEquals(eventBus.getLane(new HostRemovedEvent("h1")),
+        eventBus.getLane(new HostAddedEvent(2L, "h1")));
+    assertEquals(eventBus.getLane(new HostAddedEvent(1L, "h2")),
+        eventBus.getLane(new ServiceComponentInstalledEvent(1L, "HDP", "2.2", "HDFS",
+            "DATANODE", "h2")));
+    assertEquals(eventBus.getLane(new HostRemovedEvent("h2")),
+        eventBus.getLane(new ServiceComponentUninstalledEvent(1L, "HDP", "2.2", "HDFS",
+            "DATANODE", "h2")));
+
+    // events without a key go to the first lane
+    assertEquals(0, eventBus.getLane(new Object()));
+
+    eventBus.shutdown(1000);
+  }
+
+  /**
+   * Tests that a host which is added and then removed is handled in that
+   * order, with the default configuration and with several lanes.
+   */
+  @Test
+  public void testHostAddedBeforeRemoved() throws Exception {
+    assertHostAddedBeforeRemoved(new AmbariEventPublisher(new Configuration()));
+    assertHostAddedBeforeRemoved(new AmbariEventPublisher(4));
+  }
+
+  private void assertHostAddedBeforeRemoved(AmbariEventPublisher publisher) throws Exception {
+    final CountDownLatch latch = new CountDownLatch(2 * 50);
+    final Map<String, List<String>> handled =
+        Collections.synchronizedMap(new HashMap<String, List<String>>());
+
+    publisher.register(new Object() {
+      @Subscribe
+      @AllowConcurrentEvents
+      public void onEvent(HostAddedEvent event) {
+        record(event.getHostName(), "added");
+      }
+
+      @Subscribe
+      @AllowConcurrentEvents
+      public void onEvent(HostEvent event) {
+        if (event instanceof HostRemovedEvent) {
+          record(event.getHostName(), "removed");
+        }
+      }
+
+      private void record(String hostName, String action) {
+        synchronized (handled) {
+          List<String> actions = handled.get(hostName);
+          if (null == actions) {
+            actions = new ArrayList<String>();
+            handled.put(hostName, actions);
+          }
+
+          actions.add(action);
+        }
+
+        latch.countDown();
+      }
+    });
+
+    for (int i = 0; i < 50; i++) {
+      publisher.publish(new HostAddedEvent(1L, "h" + i));
+      publisher.publish(new HostRemovedEvent("h" + i));
+    }
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    publisher.shutdown();
+
+    for (int i = 0; i < 50; i++) {
+      List<String> actions = handled.get("h" + i);
+      assertEquals(2, actions.size());
+      assertEquals("added", actions.get(0));
+      assertEquals("removed", actions.get(1));
+    }
+  }
+
+  /**
+   * Tests that a slow event does not delay events for other keys.
+   */
+  @Test
+  public void testSlowEventDoesNotBlockOtherKeys() throws Exception {
+    PartitionedEventBus eventBus = new PartitionedEventBus("test-event-bus", 2);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch handled = new CountDownLatch(1);
+
+    long slowKey = 0;
+    long fastKey = 1;
+    while (eventBus.getLane(new SequencedEvent(fastKey, 0)) ==
+        eventBus.getLane(new SequencedEvent(slowKey, 0))) {
+      fastKey++;
+    }
+
+    final long blockedKey = slowKey;
+    eventBus.register(new Object() {
+      @Subscribe
+      @AllowConcurrentEvents
+      public void onEvent(SequencedEvent event) throws InterruptedException {
+        if (event.getClusterId() == blockedKey) {
+          release.await(10, TimeUnit.SECONDS);
+        } else {
+          handled.countDown();
+        }
+      }
+    });
+
+    eventBus.post(new SequencedEvent(slowKey, 0));
+    eventBus.post(new SequencedEvent(fastKey, 0));
+
+    assertTrue(handled.await(10, TimeUnit.SECONDS));
+
+    release.countDown();
+    eventBus.shutdown(1000);
+  }
+
+  /**
+   * Tests that the threads of the lanes don't keep the JVM alive.
+   */
+  @Test
+  public void testLaneThreadsAreDaemons() throws Exception {
+    PartitionedEventBus eventBus = new PartitionedEventBus("test-event-bus", 1);
+    final CountDownLatch handled = new CountDownLatch(1);
+    final boolean[] daemon = new boolean[1];
+
+    eventBus.register(new Object() {
+      @Subscribe
+      @AllowConcurrentEvents
+      public void onEvent(SequencedEvent event) {
+        daemon[0] = Thread.currentThread().isDaemon();
+        handled.countDown();
+      }
+    });
+
+    eventBus.post(new SequencedEvent(1L, 0));
+
+    assertTrue(handled.await(10, TimeUnit.SECONDS));
+    assertTrue(daemon[0]);
+
+    eventBus.shutdown(1000);
+  }
+
+  /**
+   * A cluster event with a sequence number.
+   */
+  private static final class SequencedEvent extends ClusterEvent {
+    private final int m_sequence;
+
+    private SequencedEvent(long clusterId, int sequence) {
+      super(AmbariEventType.HOST_ADDED, clusterId);
+      m_sequence = sequence;
+    }
+  }
+
+  /**
+   * Records the order of the events of each cluster.
+   */
+  public static final class OrderListener {
+    private final Map<Long, List<Integer>> m_sequences =
+        Collections.synchronizedMap(new HashMap<Long, List<Integer>>());
+
+    private final CountDownLatch m_latch;
+
+    private OrderListener(int count) {
+      m_latch = new CountDownLatch(count);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onEvent(SequencedEvent event) {
+      List<Integer> sequence;
+      synchronized (m_sequences) {
+        sequence = m_sequences.get(event.getClusterId());
+        if (null == sequence) {
+          sequence = new ArrayList<Integer>();
+          m_sequences.put(event.getClusterId(), sequence);
+        }
+      }
+
+      // events of the same cluster are never handled concurrently
+      sequence.add(event.m_sequence);
+      m_latch.countDown();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.dao;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.controller.internal.HostResourceProvider;
+import org.apache.ambari.server.controller.internal.PageRequestImpl;
+import org.apache.ambari.server.controller.internal.SortRequestImpl;
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
+import org.apache.ambari.server.controller.utilities.PredicateBuilder;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.OrmTestHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * HostDAO unit tests
+ */
+public class HostDAOTest {
+  private Injector injector;
+  private HostDAO hostDAO;
+
+  @Before
+  public void setup() throws Exception {
+    injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    injector.getInstance(GuiceJpaInitializer.class);
+    injector.getInstance(AmbariMetaInfo.class);
+
+    hostDAO = injector.getInstance(HostDAO.class);
+    injector.getInstance(OrmTestHelper.class).createDefaultData();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  @Test
+  public void testFindHostNames() throws Exception {
+    Predicate predicate = new PredicateBuilder().property(
+        HostResourceProvider.HOST_CLUSTER_NAME_PROPERTY_ID).equals("test_cluster1").toPredicate();
+
+    Assert.assertTrue(hostDAO.isPredicateSupported(predicate));
+    Assert.assertEquals(2, hostDAO.getCount(predicate));
+    Assert.assertEquals(Arrays.asList("test_host1", "test_host2"),
+        hostDAO.findHostNames(predicate, null, null));
+
+    SortRequest sortRequest = new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty(HostResourceProvider.HOST_IP_PROPERTY_ID, SortRequest.Order.DESC)));
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 1, 0, null, null);
+
+    Assert.assertEquals(Collections.singletonList("test_host2"),
+        hostDAO.findHostNames(predicate, sortRequest, pageRequest));
+
+    // the host state is joined from its own table
+    predicate = new PredicateBuilder().property(
+        HostResourceProvider.HOST_STATE_PROPERTY_ID).equals("HEALTHY").toPredicate();
+
+    Assert.assertEquals(Collections.singletonList("test_host2"),
+        hostDAO.findHostNames(predicate, null, null));
+
+    // the health report is only known in memory
+    predicate = new PredicateBuilder().property(
+        HostResourceProvider.HOST_HOST_HEALTH_REPORT_PROPERTY_ID).equals("").toPredicate();
+
+    Assert.assertFalse(hostDAO.isPredicateSupported(predicate));
+  }
+}
@@ -30,6 +30,15 @@ import org.apache.ambari.server.RoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.controller.internal.CalculatedStatus;
+import org.apache.ambari.server.controller.internal.PageRequestImpl;
+import org.apache.ambari.server.controller.internal.RequestResourceProvider;
+import org.apache.ambari.server.controller.internal.SortRequestImpl;
+import org.apache.ambari.server.controller.internal.TaskResourceProvider;
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
+import org.apache.ambari.server.controller.utilities.PredicateBuilder;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
 import org.apache.ambari.server.orm.OrmTestHelper;
@@ -134,6 +143,92 @@ public class RequestDAOTest {
     Assert.assertEquals(calc3.getStatus(), calc4.getStatus());
   }
 
+  @Test
+  public void testFindTaskIds() throws Exception {
+    createGraph();
+
+    Predicate predicate = new PredicateBuilder().property(
+        TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID).equals("test_cluster1").and().property(
+        TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").toPredicate();
+
+    Assert.assertTrue(hostRoleCommandDAO.isPredicateSupported(predicate));
+    Assert.assertEquals(8, hostRoleCommandDAO.getCount(predicate));
+
+    List<Long> taskIds = hostRoleCommandDAO.findTaskIds(predicate, null, null);
+    Assert.assertEquals(8, taskIds.size());
+
+    // a page is a slice of the complete, sorted list
+    SortRequest sortRequest = new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty(TaskResourceProvider.TASK_STATUS_PROPERTY_ID,
+            SortRequest.Order.DESC)));
+
+    List<Long> sortedTaskIds = hostRoleCommandDAO.findTaskIds(predicate, sortRequest, null);
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 3, 2, null, null);
+
+    Assert.assertEquals(sortedTaskIds.subList(2, 5),
+        hostRoleCommandDAO.findTaskIds(predicate, sortRequest, pageRequest));
+
+    // string values are converted to the type of the column
+    predicate = new PredicateBuilder().property(
+        TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").and().property(
+        TaskResourceProvider.TASK_STATUS_PROPERTY_ID).equals("PENDING").toPredicate();
+
+    Assert.assertEquals(3, hostRoleCommandDAO.getCount(predicate));
+
+    // an unknown cluster can't be converted
+    predicate = new PredicateBuilder().property(
+        TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID).equals("c1").toPredicate();
+
+    Assert.assertFalse(hostRoleCommandDAO.isPredicateSupported(predicate));
+
+    // neither can an OR with a part which can't be converted
+    predicate = new PredicateBuilder().property(
+        TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").or().property(
+        TaskResourceProvider.TASK_STDERR_PROPERTY_ID).equals("error").toPredicate();
+
+    Assert.assertFalse(hostRoleCommandDAO.isPredicateSupported(predicate));
+  }
+
+  @Test
+  public void testFindRequestIds() throws Exception {
+    createGraph();
+
+    Predicate predicate = new PredicateBuilder().property(
+        RequestResourceProvider.REQUEST_CLUSTER_NAME_PROPERTY_ID).equals("test_cluster1").toPredicate();
+
+    Assert.assertTrue(requestDAO.isPredicateSupported(predicate));
+    Assert.assertEquals(1, requestDAO.getCount(predicate));
+    Assert.assertEquals(Collections.singletonList(100L),
+        requestDAO.findRequestIds(predicate, null, null));
+
+    // without a cluster only the requests which don't belong to one match
+    Assert.assertEquals(0, requestDAO.getCount(null));
+    Assert.assertTrue(requestDAO.findRequestIds(null, null, null).isEmpty());
+  }
+
+  @Test
+  public void testFindTaskIdsSortedByHostName() throws Exception {
+    createGraph();
+
+    Predicate predicate = new PredicateBuilder().property(
+        TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").toPredicate();
+
+    Assert.assertEquals(8, hostRoleCommandDAO.getCount(predicate));
+
+    SortRequest sortRequest = new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty(TaskResourceProvider.TASK_HOST_NAME_PROPERTY_ID,
+            SortRequest.Order.ASC)));
+
+    // sorting on the host joins it without dropping tasks
+    List<Long> taskIds = hostRoleCommandDAO.findTaskIds(predicate, sortRequest, null);
+    Assert.assertEquals(8, taskIds.size());
+
+    // and the pages add up to the count
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 5, 5, null, null);
+    Assert.assertEquals(taskIds.subList(5, 8),
+        hostRoleCommandDAO.findTaskIds(predicate, sortRequest, pageRequest));
+  }
+
   private void createGraph() {
     OrmTestHelper helper = injector.getInstance(OrmTestHelper.class);
     helper.createDefaultData();
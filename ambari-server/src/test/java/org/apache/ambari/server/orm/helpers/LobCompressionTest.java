@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.orm.helpers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * LobCompression unit tests.
+ */
+public class LobCompressionTest {
+
+  @Before
+  public void before() {
+    LobCompression.init(createConfiguration(true));
+  }
+
+  @After
+  public void after() {
+    LobCompression.init(createConfiguration(false));
+  }
+
+  @Test
+  public void testCompressionDisabled() {
+    byte[] value = createOutput(100).getBytes();
+    byte[] compressed = LobCompression.compress(value);
+
+    LobCompression.init(new Configuration(new Properties()));
+    assertSame(value, LobCompression.compress(value));
+
+    // values compressed while it was enabled are still read
+    assertArrayEquals(value, LobCompression.decompress(compressed));
+  }
+
+  @Test
+  public void testCompressAndDecompress() {
+    byte[] value = createOutput(100).getBytes();
+
+    byte[] stored = LobCompression.compress(value);
+    assertTrue(LobCompression.isCompressed(stored));
+    assertTrue(stored.length < value.length);
+    assertArrayEquals(value, LobCompression.decompress(stored));
+  }
+
+  @Test
+  public void testSmallValuesAreNotCompressed() {
+    byte[] value = "small output".getBytes();
+    assertSame(value, LobCompression.compress(value));
+    assertSame(value, LobCompression.decompress(value));
+
+    assertNull(LobCompression.compress(null));
+    assertNull(LobCompression.decompress(null));
+    assertEquals(0, LobCompression.compress(new byte[0]).length);
+  }
+
+  @Test
+  public void testIncompressibleValuesAreNotCompressed() {
+    byte[] value = new byte[LobCompression.MIN_COMPRESSED_LENGTH * 4];
+    new Random(1).nextBytes(value);
+    value[0] = '{';
+
+    byte[] stored = LobCompression.compress(value);
+    assertFalse(LobCompression.isCompressed(stored));
+    assertArrayEquals(value, LobCompression.decompress(stored));
+  }
+
+  @Test
+  public void testUncompressedValuesAreReadAsTheyAre() {
+    // rows written before compression was introduced
+    byte[] value = createOutput(100).getBytes();
+    assertFalse(LobCompression.isCompressed(value));
+    assertSame(value, LobCompression.decompress(value));
+  }
+
+  @Test
+  public void testCorruptValue() {
+    byte[] stored = LobCompression.compress(createOutput(100).getBytes());
+    byte[] truncated = Arrays.copyOf(stored, stored.length / 2);
+
+    try {
+      LobCompression.decompress(truncated);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEntities() {
+    String output = createOutput(50);
+
+    HostRoleCommandEntity task = new HostRoleCommandEntity();
+    task.setStdOut(output.getBytes());
+    task.setStdError(output.getBytes());
+    task.setStructuredOut(output.getBytes());
+    assertEquals(output, new String(task.getStdOut()));
+    assertEquals(output, new String(task.getStdError()));
+    assertEquals(output, new String(task.getStructuredOut()));
+
+    task.setStdOut(null);
+    assertEquals(0, task.getStdOut().length);
+
+    ExecutionCommandEntity command = new ExecutionCommandEntity();
+    command.setCommand(output.getBytes());
+    assertEquals(output, new String(command.getCommand()));
+  }
+
+  private static Configuration createConfiguration(boolean enabled) {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.SERVER_DB_LOB_COMPRESSION_ENABLED_KEY,
+        String.valueOf(enabled));
+    return new Configuration(properties);
+  }
+
+  private static String createOutput(int lines) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      builder.append("2015-06-01 10:00:00,").append(i)
+          .append(" - Execute['/usr/bin/yum -d 0 -e 0 -y install hadoop'] {}\n");
+    }
+    return builder.toString();
+  }
+}
@@ -1419,6 +1419,77 @@ public class AmbariLdapDataPopulatorTest {
     verify(populator.loadLdapTemplate(), populator);
   }
 
+  @Test
+  public void testSynchronizeAllLdapGroups_indexedMembers() throws Exception {
+    Configuration configuration = createNiceMock(Configuration.class);
+    Users users = createMock(Users.class);
+    LdapTemplate ldapTemplate = createMock(LdapTemplate.class);
+    LdapServerProperties ldapServerProperties = createNiceMock(LdapServerProperties.class);
+
+    User user0 = createNiceMock(User.class);
+    expect(user0.getUserName()).andReturn("user0").anyTimes();
+    expect(user0.isLdapUser()).andReturn(true).anyTimes();
+
+    Group group1 = createNiceMock(Group.class);
+    expect(group1.getGroupName()).andReturn("group1").anyTimes();
+    expect(group1.isLdapGroup()).andReturn(true).anyTimes();
+
+    // more members than fit in a page of users, referenced by DN and by uid
+    LdapGroupDto externalGroup = new LdapGroupDto();
+    externalGroup.setGroupName("group1");
+    Set<LdapUserDto> externalUsers = new HashSet<LdapUserDto>();
+    for (int i = 0; i < 600; i++) {
+      LdapUserDto externalUser = new LdapUserDto();
+      externalUser.setUserName("user" + i);
+      externalUser.setUid("user" + i);
+      externalUser.setDn("uid=user" + i + ",ou=people,dc=example,dc=com");
+      externalUsers.add(externalUser);
+      externalGroup.getMemberAttributes().add(i % 2 == 0 ? externalUser.getDn() : externalUser.getUid());
+    }
+
+    Map<String, Set<String>> internalMemberships = new HashMap<String, Set<String>>();
+    internalMemberships.put("group1", createSet("user0"));
+
+    // the memberships are read at once and no member is looked up in LDAP
+    expect(users.getAllGroupMemberNames()).andReturn(internalMemberships).once();
+    replay(ldapTemplate, ldapServerProperties, users, configuration, user0, group1);
+
+    AmbariLdapDataPopulatorTestInstance populator = createMockBuilder(AmbariLdapDataPopulatorTestInstance.class)
+        .addMockedMethod("getExternalLdapGroupInfo")
+        .addMockedMethod("getExternalLdapUserInfo")
+        .addMockedMethod("getInternalGroups")
+        .addMockedMethod("getInternalUsers")
+        .withConstructor(configuration, users)
+        .createNiceMock();
+
+    expect(populator.getExternalLdapGroupInfo()).andReturn(createSet(externalGroup));
+    expect(populator.getExternalLdapUserInfo()).andReturn(externalUsers).once();
+    Map<String, Group> internalGroups = new HashMap<String, Group>();
+    internalGroups.put("group1", group1);
+    Map<String, User> internalUsers = new HashMap<String, User>();
+    internalUsers.put("user0", user0);
+
+    expect(populator.getInternalGroups()).andReturn(internalGroups);
+    expect(populator.getInternalUsers()).andReturn(internalUsers);
+
+    replay(populator);
+
+    populator.setLdapTemplate(ldapTemplate);
+    populator.setLdapServerProperties(ldapServerProperties);
+
+    LdapBatchDto result = populator.synchronizeAllLdapGroups(new LdapBatchDto());
+
+    assertEquals(599, result.getMembershipToAdd().size());
+    assertFalse(result.getMembershipToAdd().contains(new LdapUserGroupMemberDto("group1", "user0")));
+    assertTrue(result.getMembershipToAdd().contains(new LdapUserGroupMemberDto("group1", "user599")));
+    assertTrue(result.getMembershipToRemove().isEmpty());
+    assertEquals(599, result.getUsersToBeCreated().size());
+    assertTrue(result.getGroupsToBeCreated().isEmpty());
+    assertTrue(result.getGroupsToBeRemoved().isEmpty());
+
+    verify(ldapTemplate, users, populator);
+  }
+
   @Test
   @SuppressWarnings("serial")
   public void testCleanUpLdapUsersWithoutGroup() throws AmbariException {
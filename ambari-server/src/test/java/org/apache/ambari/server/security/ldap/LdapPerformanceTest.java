@@ -18,6 +18,10 @@
 
 package org.apache.ambari.server.security.ldap;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -26,20 +30,60 @@ import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.security.ClientSecurityType;
 import org.apache.ambari.server.security.authorization.AuthorizationTestModule;
+import org.apache.ambari.server.security.authorization.User;
 import org.apache.ambari.server.security.authorization.Users;
+import org.apache.commons.io.FileUtils;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.server.annotations.CreateLdapServer;
+import org.apache.directory.server.annotations.CreateTransport;
+import org.apache.directory.server.core.annotations.ContextEntry;
+import org.apache.directory.server.core.annotations.CreateDS;
+import org.apache.directory.server.core.annotations.CreatePartition;
+import org.apache.directory.server.core.api.CoreSession;
+import org.apache.directory.server.core.integ.AbstractLdapTestUnit;
+import org.apache.directory.server.core.integ.FrameworkRunner;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.junit.runner.RunWith;
 
 import com.google.inject.Guice;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
 
 /**
- * Performs sync request to real LDAP server.
+ * Performs sync requests against an embedded LDAP server populated with
+ * generated users and groups. The size of the directory can be raised with
+ * the ldap.performance.users, ldap.performance.groups and
+ * ldap.performance.members system properties.
  */
 @Ignore
-public class LdapPerformanceTest {
+@RunWith(FrameworkRunner.class)
+@CreateDS(allowAnonAccess = true,
+    name = "LdapPerformanceTest",
+    partitions = {
+        @CreatePartition(name = "Root",
+            suffix = "dc=apache,dc=org",
+            contextEntry = @ContextEntry(
+                entryLdif =
+                    "dn: dc=apache,dc=org\n" +
+                        "dc: apache\n" +
+                        "objectClass: top\n" +
+                        "objectClass: domain\n\n"))
+    })
+@CreateLdapServer(allowAnonymousAccess = true,
+    transports = {@CreateTransport(protocol = "LDAP", port = 33390)})
+public class LdapPerformanceTest extends AbstractLdapTestUnit {
+
+  private static final String PEOPLE_DN = "ou=people,dc=apache,dc=org";
+  private static final String GROUPS_DN = "ou=groups,dc=apache,dc=org";
+
+  private static final int USER_COUNT = Integer.getInteger("ldap.performance.users", 300);
+  private static final int GROUP_COUNT = Integer.getInteger("ldap.performance.groups", 30);
+  private static final int MEMBER_COUNT = Integer.getInteger("ldap.performance.members", 40);
 
   private static Injector injector;
 
@@ -52,18 +96,30 @@ public class LdapPerformanceTest {
   @Inject
   Configuration configuration;
 
-  final String SPRING_CONTEXT_LOCATION = "classpath:webapp/WEB-INF/spring-security.xml";
-
   @Before
-  public void setUp() {
+  public void setUp() throws Exception {
     injector = Guice.createInjector(new AuthorizationTestModule());
 
     injector.injectMembers(this);
     injector.getInstance(GuiceJpaInitializer.class);
     configuration.setClientSecurityType(ClientSecurityType.LDAP);
-    configuration.setLdap("c6402.ambari.apache.org:389", "posixAccount", "uid",
-        "posixGroup", "cn", "memberUid", "dc=apache,dc=org", false,
-        "uid=hdfs,ou=people,ou=dev,dc=apache,dc=org", "hdfs");
+
+    // anonymous searches are limited to a hundred entries
+    File passwordFile = File.createTempFile("ldap-password", ".dat");
+    passwordFile.deleteOnExit();
+    FileUtils.writeStringToFile(passwordFile, "secret");
+    configuration.setLdap("localhost:33390", "person", "uid",
+        "groupOfNames", "cn", "member", "dc=apache,dc=org", false,
+        "uid=admin,ou=system", passwordFile.getAbsolutePath());
+    // the populator reads the new configuration when it connects
+    populator.loadLdapTemplate();
+
+    populateDirectory();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    injector.getInstance(PersistService.class).stop();
   }
 
   @Test
@@ -71,26 +127,79 @@ public class LdapPerformanceTest {
     long time = System.currentTimeMillis();
     Set<LdapGroupDto> groups = populator.getExternalLdapGroupInfo();
     Set<LdapUserDto> users = populator.getExternalLdapUserInfo();
-    Set<String> userNames = new HashSet<String>();
-    for (LdapUserDto user : users) {
-      userNames.add(user.getUserName());
-    }
-    Set<String> groupNames = new HashSet<String>();
+    System.out.println("Data fetch: " + (System.currentTimeMillis() - time));
+    assertEquals(GROUP_COUNT, groups.size());
+    assertEquals(USER_COUNT, users.size());
+
+    // resolve every member with its own lookup, as outside of a sync
+    time = System.currentTimeMillis();
+    LdapBatchDto perMemberBatchDto = new LdapBatchDto();
     for (LdapGroupDto group : groups) {
-      groupNames.add(group.getGroupName());
+      populator.refreshGroupMembers(perMemberBatchDto, group, populator.getInternalUsers());
     }
-    System.out.println("Data fetch: " + (System.currentTimeMillis() - time));
+    System.out.println("Per-member resolution: " + (System.currentTimeMillis() - time));
+
     time = System.currentTimeMillis();
     LdapBatchDto batchDto = new LdapBatchDto();
-    populator.synchronizeLdapUsers(userNames, batchDto);
-    populator.synchronizeLdapGroups(groupNames, batchDto);
+    populator.synchronizeAllLdapUsers(batchDto);
+    populator.synchronizeAllLdapGroups(batchDto);
+    System.out.println("Indexed resolution: " + (System.currentTimeMillis() - time));
+    assertEquals(perMemberBatchDto.getMembershipToAdd(), batchDto.getMembershipToAdd());
+    assertEquals(GROUP_COUNT * MEMBER_COUNT, batchDto.getMembershipToAdd().size());
+
+    time = System.currentTimeMillis();
     this.users.processLdapSync(batchDto);
     System.out.println("Initial sync: " + (System.currentTimeMillis() - time));
+    int ldapUserCount = 0;
+    for (User user : this.users.getAllUsers()) {
+      if (user.isLdapUser()) {
+        ldapUserCount++;
+      }
+    }
+    assertEquals(USER_COUNT, ldapUserCount);
+    assertEquals(MEMBER_COUNT, this.users.getAllMembers("group0").size());
+
     time = System.currentTimeMillis();
     batchDto = new LdapBatchDto();
-    populator.synchronizeLdapUsers(userNames, batchDto);
-    populator.synchronizeLdapGroups(groupNames, batchDto);
+    populator.synchronizeAllLdapUsers(batchDto);
+    populator.synchronizeAllLdapGroups(batchDto);
     this.users.processLdapSync(batchDto);
     System.out.println("Subsequent sync: " + (System.currentTimeMillis() - time));
+    assertTrue(batchDto.getUsersToBeCreated().isEmpty());
+    assertTrue(batchDto.getMembershipToAdd().isEmpty());
+    assertTrue(batchDto.getMembershipToRemove().isEmpty());
+  }
+
+  /**
+   * Adds the generated users and groups to the directory; the members of
+   * each group are a contiguous range of users.
+   */
+  private void populateDirectory() throws Exception {
+    CoreSession session = getService().getAdminSession();
+    if (session.exists(PEOPLE_DN)) {
+      return;
+    }
+
+    session.add(new DefaultEntry(getService().getSchemaManager(), PEOPLE_DN,
+        "objectClass: top", "objectClass: organizationalUnit", "ou: people"));
+    session.add(new DefaultEntry(getService().getSchemaManager(), GROUPS_DN,
+        "objectClass: top", "objectClass: organizationalUnit", "ou: groups"));
+
+    for (int i = 0; i < USER_COUNT; i++) {
+      session.add(new DefaultEntry(getService().getSchemaManager(), "uid=user" + i + "," + PEOPLE_DN,
+          "objectClass: top", "objectClass: person", "objectClass: organizationalPerson",
+          "objectClass: inetOrgPerson", "uid: user" + i, "cn: user" + i, "sn: user" + i));
+    }
+
+    for (int i = 0; i < GROUP_COUNT; i++) {
+      Entry group = new DefaultEntry(getService().getSchemaManager(), "cn=group" + i + "," + GROUPS_DN,
+          "objectClass: top", "objectClass: groupOfNames", "cn: group" + i);
+      Set<String> members = new HashSet<String>();
+      for (int j = 0; j < MEMBER_COUNT; j++) {
+        members.add("uid=user" + ((i + j) % USER_COUNT) + "," + PEOPLE_DN);
+      }
+      group.add("member", members.toArray(new String[members.size()]));
+      session.add(group);
+    }
   }
 }
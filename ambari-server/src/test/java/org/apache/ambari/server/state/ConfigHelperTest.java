@@ -23,6 +23,7 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -273,6 +274,44 @@ public class ConfigHelperTest {
       Assert.assertEquals("30", coreProps.get("ipc.client.connect.max.retries"));
     }
 
+    @Test
+    public void testCachedEffectiveProperties() throws Exception {
+      Map<String, Map<String, String>> tags = configHelper.getEffectiveDesiredTags(cluster, "h1");
+
+      Map<String, Map<String, String>> propertyMap = configHelper
+          .getCachedEffectiveConfigProperties(cluster, tags);
+
+      Assert.assertEquals(configHelper.getEffectiveConfigProperties(cluster, tags), propertyMap);
+      Assert.assertEquals("30", propertyMap.get("core-site").get("ipc.client.connect.max.retries"));
+
+      // equal tags share the expanded properties
+      Assert.assertSame(propertyMap, configHelper.getCachedEffectiveConfigProperties(cluster,
+          configHelper.getEffectiveDesiredTags(cluster, "h2")));
+      Assert.assertSame(configHelper.getCachedEffectiveConfigAttributes(cluster, tags),
+          configHelper.getCachedEffectiveConfigAttributes(cluster,
+              configHelper.getEffectiveDesiredTags(cluster, "h2")));
+    }
+
+    @Test
+    public void testCachedEffectivePropertiesRewrittenInPlace() throws Exception {
+      Map<String, Map<String, String>> tags = configHelper.getEffectiveDesiredTags(cluster, "h1");
+      Map<String, Map<String, String>> propertyMap = configHelper
+          .getCachedEffectiveConfigProperties(cluster, tags);
+      Assert.assertEquals("30", propertyMap.get("core-site").get("ipc.client.connect.max.retries"));
+
+      // rewrite the current core-site version without a new tag, the way
+      // upgrade server actions do
+      Config config = cluster.getDesiredConfigByType("core-site");
+      Map<String, String> properties = new HashMap<String, String>(config.getProperties());
+      properties.put("ipc.client.connect.max.retries", "40");
+      config.setProperties(properties);
+      config.persist(false);
+
+      tags = configHelper.getEffectiveDesiredTags(cluster, "h1");
+      propertyMap = configHelper.getCachedEffectiveConfigProperties(cluster, tags);
+      Assert.assertEquals("40", propertyMap.get("core-site").get("ipc.client.connect.max.retries"));
+    }
+
     @Test
     public void testEffectivePropertiesAttributesWithOverrides() throws Exception {
       final Config config1 = new ConfigImpl("core-site");
@@ -587,6 +626,109 @@ public class ConfigHelperTest {
       Assert.assertTrue(configHelper.isStaleConfigs(sch));
       verify(sch);
     }
+
+    @Test
+    public void testInvalidateStaleConfigsCacheByType() throws Exception {
+      Map<String, HostConfig> schReturn = new HashMap<String, HostConfig>();
+      HostConfig hc = new HostConfig();
+      hc.setDefaultVersionTag("version2");
+      schReturn.put("flume-conf", hc);
+      ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+      // only calculated twice, the unrelated type invalidation keeps the cached value
+      expect(sch.getActualConfigs()).andReturn(schReturn).times(2);
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(1l).times(2);
+      expect(sch.getServiceName()).andReturn("FLUME").times(2);
+      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").times(2);
+      replay(sch);
+
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      configHelper.invalidateStaleConfigsCache(Collections.singleton("zoo.cfg"));
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      HostConfig hc2 = new HostConfig();
+      hc2.setDefaultVersionTag("version1");
+      schReturn.put("flume-conf", hc2);
+      configHelper.invalidateStaleConfigsCache(Collections.singleton("flume-conf"));
+      Assert.assertFalse(configHelper.isStaleConfigs(sch));
+      verify(sch);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStaleConfigsDependenciesRemoved() throws Exception {
+      Map<String, HostConfig> schReturn = new HashMap<String, HostConfig>();
+      HostConfig hc = new HostConfig();
+      hc.setDefaultVersionTag("version2");
+      schReturn.put("flume-conf", hc);
+      ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+      expect(sch.getActualConfigs()).andReturn(schReturn).anyTimes();
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(1l).anyTimes();
+      expect(sch.getServiceName()).andReturn("FLUME").anyTimes();
+      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").anyTimes();
+      replay(sch);
+
+      Field field = ConfigHelper.class.getDeclaredField("staleConfigsDependencies");
+      field.setAccessible(true);
+      Map<String, Set<ServiceComponentHost>> dependencies =
+          (Map<String, Set<ServiceComponentHost>>) field.get(configHelper);
+
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+      Assert.assertTrue(dependencies.get("flume-conf").contains(sch));
+
+      // an invalidated value no longer keeps the host component in the index
+      configHelper.invalidateStaleConfigsCache(sch);
+      Assert.assertFalse(dependencies.get("flume-conf").contains(sch));
+
+      // nor does a deleted host component
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+      Assert.assertTrue(dependencies.get("flume-conf").contains(sch));
+      configHelper.removeStaleConfigsCache(sch);
+      Assert.assertFalse(dependencies.get("flume-conf").contains(sch));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNewComponentConfigTypeInvalidatesStaleConfigs() throws Exception {
+      Map<String, HostConfig> schReturn = new HashMap<String, HostConfig>();
+      HostConfig hc = new HostConfig();
+      hc.setDefaultVersionTag("version1");
+      schReturn.put("core-site", hc);
+      ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+      expect(sch.getActualConfigs()).andReturn(schReturn).anyTimes();
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(cluster.getClusterId()).anyTimes();
+      expect(sch.getServiceName()).andReturn("YARN").anyTimes();
+      expect(sch.getServiceComponentName()).andReturn("RESOURCEMANAGER").anyTimes();
+      replay(sch);
+
+      Field field = ConfigHelper.class.getDeclaredField("staleConfigsDependencies");
+      field.setAccessible(true);
+      Map<String, Set<ServiceComponentHost>> dependencies =
+          (Map<String, Set<ServiceComponentHost>>) field.get(configHelper);
+
+      // the component's config type isn't desired yet
+      Assert.assertFalse(configHelper.isStaleConfigs(sch));
+      Assert.assertTrue(dependencies.get("capacity-scheduler").contains(sch));
+
+      // creating it invalidates the cached value
+      ConfigurationRequest cr = new ConfigurationRequest();
+      cr.setClusterName(clusterName);
+      cr.setType("capacity-scheduler");
+      cr.setVersionTag("version1");
+      cr.setProperties(Collections.singletonMap("yarn.scheduler.capacity.maximum-applications", "10000"));
+
+      final ClusterRequest clusterRequest =
+          new ClusterRequest(cluster.getClusterId(), clusterName,
+              cluster.getDesiredStackVersion().getStackVersion(), null);
+      clusterRequest.setDesiredConfig(Collections.singletonList(cr));
+      managementController.updateClusters(Collections.singleton(clusterRequest), null);
+
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+      verify(sch);
+    }
   }
 
   public static class RunWithCustomModule {
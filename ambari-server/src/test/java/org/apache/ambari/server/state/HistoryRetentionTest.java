@@ -0,0 +1,373 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+
+import org.apache.ambari.server.Role;
+import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.actionmanager.ActionDBAccessor;
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.OrmTestHelper;
+import org.apache.ambari.server.orm.dao.AlertDispatchDAO;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.apache.ambari.server.orm.dao.ClusterDAO;
+import org.apache.ambari.server.orm.dao.HostDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.dao.RequestDAO;
+import org.apache.ambari.server.orm.dao.StageDAO;
+import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
+import org.apache.ambari.server.orm.entities.AlertDefinitionEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.orm.entities.AlertNoticeEntity;
+import org.apache.ambari.server.orm.entities.AlertTargetEntity;
+import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
+import org.apache.ambari.server.orm.entities.HostEntity;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.apache.ambari.server.orm.entities.RequestEntity;
+import org.apache.ambari.server.orm.entities.RoleSuccessCriteriaEntity;
+import org.apache.ambari.server.orm.entities.StageEntity;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+import com.google.inject.persist.UnitOfWork;
+
+/**
+ * Tests {@link HistoryRetention} against a seeded in-memory database.
+ */
+public class HistoryRetentionTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HistoryRetentionTest.class);
+
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Injector injector;
+  private long clusterId;
+  private HostEntity host;
+
+  @After
+  public void teardown() {
+    injector.getInstance(UnitOfWork.class).end();
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  @Test
+  public void testPurgeByAge() throws Exception {
+    File archiveDir = temporaryFolder.newFolder("archive");
+
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.HISTORY_RETENTION_REQUESTS_DAYS_KEY, "30");
+    module.getProperties().setProperty(Configuration.HISTORY_RETENTION_ALERTS_DAYS_KEY, "30");
+    module.getProperties().setProperty(Configuration.HISTORY_RETENTION_BATCH_SIZE_KEY, "50");
+    module.getProperties().setProperty(Configuration.HISTORY_RETENTION_ARCHIVE_DIR_KEY,
+        archiveDir.getAbsolutePath());
+    createInjector(module);
+
+    long now = System.currentTimeMillis();
+    long old = now - 60 * DAY;
+
+    // 300 old completed requests with 10 tasks each, an old one which is
+    // still running and a few recent ones
+    EntityManager entityManager = injector.getProvider(EntityManager.class).get();
+    entityManager.getTransaction().begin();
+    for (long requestId = 1; requestId <= 300; requestId++) {
+      createRequest(entityManager, requestId, old, HostRoleStatus.COMPLETED);
+    }
+
+    createRequest(entityManager, 301, old, HostRoleStatus.IN_PROGRESS);
+    for (long requestId = 302; requestId <= 305; requestId++) {
+      createRequest(entityManager, requestId, now, HostRoleStatus.COMPLETED);
+    }
+
+    entityManager.getTransaction().commit();
+
+    // 3000 old alerts, of which the first is still current and has a notice
+    AlertDefinitionEntity definition = injector.getInstance(OrmTestHelper.class).createAlertDefinition(clusterId);
+    entityManager.getTransaction().begin();
+    for (int i = 0; i < 3000; i++) {
+      createAlert(entityManager, definition, old + i);
+    }
+
+    for (int i = 0; i < 5; i++) {
+      createAlert(entityManager, definition, now);
+    }
+
+    entityManager.getTransaction().commit();
+
+    AlertsDAO alertsDAO = injector.getInstance(AlertsDAO.class);
+    AlertHistoryEntity currentHistory = alertsDAO.findAll().get(0);
+    AlertCurrentEntity current = new AlertCurrentEntity();
+    current.setAlertHistory(currentHistory);
+    current.setLatestTimestamp(now);
+    current.setOriginalTimestamp(old);
+    alertsDAO.create(current);
+
+    AlertDispatchDAO dispatchDAO = injector.getInstance(AlertDispatchDAO.class);
+    AlertTargetEntity target = injector.getInstance(OrmTestHelper.class).createAlertTarget();
+    AlertNoticeEntity notice = new AlertNoticeEntity();
+    notice.setAlertHistory(alertsDAO.findAll().get(1));
+    notice.setAlertTarget(target);
+    notice.setNotifyState(NotificationState.PENDING);
+    notice.setUuid(UUID.randomUUID().toString());
+    dispatchDAO.create(notice);
+    entityManager.clear();
+
+    long tasksBefore = injector.getInstance(HostRoleCommandDAO.class).findAll().size();
+    long alertsBefore = alertsDAO.findAll(clusterId).size();
+    long stagesInProgressBefore = measureStagesInProgress();
+    long alertHistoryBefore = measureAlertHistory();
+
+    HistoryRetention retention = injector.getInstance(HistoryRetention.class);
+    Assert.assertTrue(retention.isEnabled());
+    Assert.assertTrue(retention.purge());
+
+    long stagesInProgressAfter = measureStagesInProgress();
+    long alertHistoryAfter = measureAlertHistory();
+
+    // only the running and the recent requests are left
+    RequestDAO requestDAO = injector.getInstance(RequestDAO.class);
+    Assert.assertEquals(5, requestDAO.findAllRequestIds(1000, true).size());
+    Assert.assertEquals(Long.valueOf(301L), requestDAO.findAllRequestIds(1, true).get(0));
+    Assert.assertEquals(50, injector.getInstance(HostRoleCommandDAO.class).findAll().size());
+    Assert.assertEquals(10, injector.getInstance(StageDAO.class).findAll().size());
+
+    // the current alert and the recent alerts are left
+    List<AlertHistoryEntity> alerts = alertsDAO.findAll();
+    Assert.assertEquals(6, alerts.size());
+    Assert.assertTrue(alerts.contains(currentHistory));
+    Assert.assertTrue(dispatchDAO.findAllNotices().isEmpty());
+
+    HistoryRetentionStatus status = retention.getStatus();
+    Assert.assertFalse(status.isRunning());
+    Assert.assertNull(status.getLastError());
+    Assert.assertEquals(300, status.getPurgedRequests());
+    Assert.assertEquals(3000, status.getPurgedTasks());
+    Assert.assertEquals(2999, status.getPurgedAlerts());
+    Assert.assertEquals(6 + 60, status.getBatches());
+
+    File[] archives = archiveDir.listFiles();
+    Assert.assertEquals(6 + 60, archives.length);
+    Assert.assertTrue(new File(archiveDir, "requests-1-50.json.gz").length() > 0);
+
+    // the queries of the server read far fewer rows; timings are only
+    // reported since they depend on the machine running the test
+    Assert.assertEquals(3050, tasksBefore);
+    Assert.assertEquals(3005, alertsBefore);
+    Assert.assertEquals(2, injector.getInstance(StageDAO.class).findByCommandStatuses(
+        HostRoleStatus.IN_PROGRESS_STATUSES).size());
+    Assert.assertEquals(6, alertsDAO.findAll(clusterId).size());
+
+    LOG.info("Stages in progress took {}ns before and {}ns after the purge",
+        stagesInProgressBefore, stagesInProgressAfter);
+    LOG.info("Alert history took {}ns before and {}ns after the purge",
+        alertHistoryBefore, alertHistoryAfter);
+  }
+
+  @Test
+  public void testPurgeByCount() throws Exception {
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.HISTORY_RETENTION_REQUESTS_MAX_KEY, "3");
+    module.getProperties().setProperty(Configuration.HISTORY_RETENTION_BATCH_SIZE_KEY, "2");
+    createInjector(module);
+
+    long now = System.currentTimeMillis();
+    EntityManager entityManager = injector.getProvider(EntityManager.class).get();
+    entityManager.getTransaction().begin();
+    for (long requestId = 1; requestId <= 10; requestId++) {
+      createRequest(entityManager, requestId, now, HostRoleStatus.COMPLETED);
+    }
+
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+
+    HistoryRetention retention = injector.getInstance(HistoryRetention.class);
+    Assert.assertTrue(retention.purge());
+
+    Assert.assertEquals(Arrays.asList(8L, 9L, 10L),
+        injector.getInstance(RequestDAO.class).findAllRequestIds(1000, true));
+    Assert.assertEquals(7, retention.getStatus().getPurgedRequests());
+  }
+
+  @Test
+  public void testPurgeEvictsCachedEntities() throws Exception {
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.HISTORY_RETENTION_REQUESTS_MAX_KEY, "1");
+    createInjector(module);
+
+    long now = System.currentTimeMillis();
+    EntityManager entityManager = injector.getProvider(EntityManager.class).get();
+    entityManager.getTransaction().begin();
+    for (long requestId = 1; requestId <= 2; requestId++) {
+      createRequest(entityManager, requestId, now, HostRoleStatus.COMPLETED);
+    }
+
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+
+    // read the purged request and its tasks into the caches
+    RequestDAO requestDAO = injector.getInstance(RequestDAO.class);
+    ActionDBAccessor actionDBAccessor = injector.getInstance(ActionDBAccessor.class);
+    List<Long> taskIds = injector.getInstance(HostRoleCommandDAO.class).findTaskIdsByRequestIds(
+        Collections.singletonList(1L));
+    Assert.assertEquals(10, taskIds.size());
+    Assert.assertNotNull(requestDAO.findByPK(1L));
+    Assert.assertEquals(10, actionDBAccessor.getTasks(taskIds).size());
+    Cache cache = entityManager.getEntityManagerFactory().getCache();
+    Assert.assertTrue(cache.contains(RequestEntity.class, 1L));
+
+    Assert.assertTrue(injector.getInstance(HistoryRetention.class).purge());
+
+    Assert.assertFalse(cache.contains(RequestEntity.class, 1L));
+    Assert.assertFalse(cache.contains(HostRoleCommandEntity.class, taskIds.get(0)));
+    Assert.assertNull(requestDAO.findByPK(1L));
+    Assert.assertTrue(actionDBAccessor.getTasks(taskIds).isEmpty());
+    Assert.assertNotNull(requestDAO.findByPK(2L));
+  }
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    createInjector(new InMemoryDefaultTestModule());
+    Assert.assertFalse(injector.getInstance(HistoryRetention.class).isEnabled());
+  }
+
+  private void createInjector(InMemoryDefaultTestModule module) throws Exception {
+    injector = Guice.createInjector(module);
+    injector.getInstance(GuiceJpaInitializer.class);
+    injector.getInstance(AmbariMetaInfo.class);
+    injector.getInstance(UnitOfWork.class).begin();
+
+    injector.getInstance(OrmTestHelper.class).createDefaultData();
+    clusterId = injector.getInstance(ClusterDAO.class).findByName("test_cluster1").getClusterId();
+    host = injector.getInstance(HostDAO.class).findByName("test_host1");
+  }
+
+  /**
+   * Creates a request with 2 stages of 5 tasks each, all in the same status.
+   */
+  private void createRequest(EntityManager entityManager, long requestId,
+      long createTime, HostRoleStatus status) {
+    RequestEntity request = new RequestEntity();
+    request.setRequestId(requestId);
+    request.setClusterId(clusterId);
+    request.setCreateTime(createTime);
+    entityManager.persist(request);
+
+    for (long stageId = 1; stageId <= 2; stageId++) {
+      StageEntity stage = new StageEntity();
+      stage.setClusterId(clusterId);
+      stage.setRequest(request);
+      stage.setStageId(stageId);
+      entityManager.persist(stage);
+
+      RoleSuccessCriteriaEntity criteria = new RoleSuccessCriteriaEntity();
+      criteria.setRequestId(requestId);
+      criteria.setStageId(stageId);
+      criteria.setRole(Role.DATANODE);
+      criteria.setStage(stage);
+      entityManager.persist(criteria);
+
+      for (int i = 0; i < 5; i++) {
+        HostRoleCommandEntity task = new HostRoleCommandEntity();
+        task.setRequestId(requestId);
+        task.setStageId(stageId);
+        task.setRole(Role.DATANODE);
+        task.setRoleCommand(RoleCommand.INSTALL);
+        task.setStatus(status);
+        task.setStdOut(("output of " + requestId).getBytes());
+        task.setHostEntity(host);
+        task.setStage(stage);
+        entityManager.persist(task);
+
+        ExecutionCommandEntity command = new ExecutionCommandEntity();
+        command.setTaskId(task.getTaskId());
+        command.setCommand(new byte[128]);
+        command.setHostRoleCommand(task);
+        entityManager.persist(command);
+      }
+    }
+  }
+
+  private void createAlert(EntityManager entityManager,
+      AlertDefinitionEntity definition, long timestamp) {
+    AlertHistoryEntity history = new AlertHistoryEntity();
+    history.setServiceName(definition.getServiceName());
+    history.setClusterId(clusterId);
+    history.setAlertDefinition(definition);
+    history.setAlertLabel("label");
+    history.setAlertText("text");
+    history.setAlertState(AlertState.OK);
+    history.setAlertTimestamp(timestamp);
+    entityManager.persist(history);
+  }
+
+  /**
+   * @return the best time in nanoseconds to find the stages in progress.
+   */
+  private long measureStagesInProgress() {
+    StageDAO stageDAO = injector.getInstance(StageDAO.class);
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < 10; i++) {
+      long start = System.nanoTime();
+      stageDAO.findByCommandStatuses(HostRoleStatus.IN_PROGRESS_STATUSES);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+
+    return best;
+  }
+
+  /**
+   * @return the best time in nanoseconds to load the alert history of the
+   *         cluster.
+   */
+  private long measureAlertHistory() {
+    AlertsDAO alertsDAO = injector.getInstance(AlertsDAO.class);
+    EntityManager entityManager = injector.getProvider(EntityManager.class).get();
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < 10; i++) {
+      long start = System.nanoTime();
+      alertsDAO.findAll(clusterId);
+      best = Math.min(best, System.nanoTime() - start);
+      entityManager.clear();
+    }
+
+    return best;
+  }
+}
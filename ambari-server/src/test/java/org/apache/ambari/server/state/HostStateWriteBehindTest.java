@@ -0,0 +1,340 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.dao.HostComponentStateDAO;
+import org.apache.ambari.server.orm.dao.HostStateDAO;
+import org.apache.ambari.server.orm.entities.HostComponentStateEntity;
+import org.apache.ambari.server.orm.entities.HostStateEntity;
+import org.apache.ambari.server.state.HostHealthStatus.HealthStatus;
+import org.apache.ambari.server.state.host.HostImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.persist.PersistService;
+import com.google.inject.persist.Transactional;
+import com.google.inject.util.Modules;
+
+/**
+ * Tests {@link HostStateWriteBehind}.
+ */
+public class HostStateWriteBehindTest {
+
+  private Injector injector;
+
+  @After
+  public void teardown() {
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  @Test
+  public void testHostStateCoalescedUntilFlush() throws Exception {
+    createInjector("1000");
+    HostStateWriteBehind writeBehind = injector.getInstance(HostStateWriteBehind.class);
+    Host host = addHost("h1");
+
+    host.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, "first"));
+    host.setHealthStatus(new HostHealthStatus(HealthStatus.UNHEALTHY, "second"));
+    host.setAgentVersion(new AgentVersion("2.1.0"));
+
+    // all changes to the host are pending as a single entity
+    Assert.assertEquals(1, writeBehind.getPendingCount());
+    Assert.assertEquals(HealthStatus.UNHEALTHY, host.getHealthStatus().getHealthStatus());
+    Assert.assertEquals("2.1.0", host.getAgentVersion().getVersion());
+
+    writeBehind.flush();
+    Assert.assertEquals(0, writeBehind.getPendingCount());
+
+    HostStateEntity entity = injector.getInstance(HostStateDAO.class).findByHostId(host.getHostId());
+    HostHealthStatus healthStatus = new Gson().fromJson(entity.getHealthStatus(), HostHealthStatus.class);
+    Assert.assertEquals(HealthStatus.UNHEALTHY, healthStatus.getHealthStatus());
+    Assert.assertEquals("second", healthStatus.getHealthReport());
+
+    // an unchanged health status is not written again
+    host.setHealthStatus(new HostHealthStatus(HealthStatus.UNHEALTHY, "second"));
+    Assert.assertEquals(0, writeBehind.getPendingCount());
+  }
+
+  @Test
+  public void testPendingStateIsSnapshot() throws Exception {
+    createInjector("1000");
+    HostStateWriteBehind writeBehind = injector.getInstance(HostStateWriteBehind.class);
+    Host host = addHost("h1");
+
+    host.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, "queued"));
+
+    // a change made without going through the host is not written
+    HostStateEntity hostStateEntity = ((HostImpl) host).getHostStateEntity();
+    hostStateEntity.setAgentVersion("changed");
+
+    writeBehind.flush();
+
+    HostStateEntity entity = injector.getInstance(HostStateDAO.class).findByHostId(host.getHostId());
+    Assert.assertEquals("queued", new Gson().fromJson(entity.getHealthStatus(),
+        HostHealthStatus.class).getHealthReport());
+    Assert.assertFalse("changed".equals(entity.getAgentVersion()));
+  }
+
+  @Test
+  public void testFlushWhenMaxPendingReached() throws Exception {
+    createInjector("2");
+    HostStateWriteBehind writeBehind = injector.getInstance(HostStateWriteBehind.class);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    writeBehind.setFlushExecutor(executor);
+    Host host1 = addHost("h1");
+    Host host2 = addHost("h2");
+
+    host1.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, ""));
+    Assert.assertEquals(1, writeBehind.getPendingCount());
+
+    // the flush runs on the executor, not on the calling thread
+    host2.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, ""));
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertEquals(0, writeBehind.getPendingCount());
+  }
+
+  @Test
+  public void testNoFlushWithoutExecutor() throws Exception {
+    createInjector("1");
+    HostStateWriteBehind writeBehind = injector.getInstance(HostStateWriteBehind.class);
+    Host host = addHost("h1");
+
+    host.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, ""));
+    Assert.assertEquals(1, writeBehind.getPendingCount());
+  }
+
+  @Test
+  public void testDeleteHostDiscardsPendingState() throws Exception {
+    createInjector("1000");
+    HostStateWriteBehind writeBehind = injector.getInstance(HostStateWriteBehind.class);
+    Host host = addHost("h1");
+
+    host.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, ""));
+    Assert.assertEquals(1, writeBehind.getPendingCount());
+    HostStateEntity hostStateEntity = ((HostImpl) host).getHostStateEntity();
+
+    injector.getInstance(Clusters.class).deleteHost("h1");
+    Assert.assertEquals(0, writeBehind.getPendingCount());
+    Assert.assertFalse(writeBehind.hasPendingHostState(host.getHostId()));
+
+    // a late change of the deleted host doesn't bring its state back
+    writeBehind.add(host.getHostId(), hostStateEntity);
+    writeBehind.flush();
+    Assert.assertNull(injector.getInstance(HostStateDAO.class).findByHostId(host.getHostId()));
+  }
+
+  @Test
+  public void testPendingCountAfterDiscard() throws Exception {
+    createInjector("1000");
+    HostStateWriteBehind writeBehind = injector.getInstance(HostStateWriteBehind.class);
+    Host host1 = addHost("h1");
+    Host host2 = addHost("h2");
+
+    host1.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, ""));
+    host2.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, ""));
+    Assert.assertEquals(2, writeBehind.getPendingCount());
+
+    // discarding twice counts once, a new change counts again
+    writeBehind.discardHostState(host1.getHostId());
+    writeBehind.discardHostState(host1.getHostId());
+    Assert.assertEquals(1, writeBehind.getPendingCount());
+    host1.setHealthStatus(new HostHealthStatus(HealthStatus.UNHEALTHY, ""));
+    Assert.assertEquals(2, writeBehind.getPendingCount());
+
+    writeBehind.flush();
+    Assert.assertEquals(0, writeBehind.getPendingCount());
+  }
+
+  @Test
+  public void testStateWrittenDirectlyDuringFlushStaysPending() throws Exception {
+    createInjector("1000", new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(HostStateDAO.class).to(BlockingHostStateDAO.class);
+      }
+    });
+    final HostStateWriteBehind writeBehind = injector.getInstance(HostStateWriteBehind.class);
+    final BlockingHostStateDAO hostStateDAO = injector.getInstance(BlockingHostStateDAO.class);
+    Host host = addHost("h1");
+
+    host.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, "queued"));
+
+    // the flush has taken the queued state and is about to write it
+    Thread flusher = new Thread() {
+      @Override
+      public void run() {
+        writeBehind.flush();
+      }
+    };
+    hostStateDAO.blockedThread = flusher;
+    flusher.start();
+    Assert.assertTrue(hostStateDAO.blocked.await(10, TimeUnit.SECONDS));
+
+    // newer state is written directly without waiting for the flush
+    host.setHealthStatus(new HostHealthStatus(HealthStatus.HEALTHY, "direct"));
+    host.setState(HostState.HEARTBEAT_LOST);
+
+    // the flush commits the older state after the direct write, which stays
+    // pending and is written again by the next flush
+    hostStateDAO.release.countDown();
+    flusher.join(10000);
+    Assert.assertEquals(1, writeBehind.getPendingCount());
+
+    writeBehind.flush();
+    Assert.assertEquals(0, writeBehind.getPendingCount());
+    injector.getInstance(EntityManager.class).clear();
+    HostStateEntity entity = hostStateDAO.findByHostId(host.getHostId());
+    Assert.assertEquals(HostState.HEARTBEAT_LOST, entity.getCurrentState());
+    Assert.assertEquals("direct", new Gson().fromJson(entity.getHealthStatus(),
+        HostHealthStatus.class).getHealthReport());
+  }
+
+  @Test
+  public void testHostComponentStateWrittenDirectly() throws Exception {
+    createInjector("1000");
+    HostStateWriteBehind writeBehind = injector.getInstance(HostStateWriteBehind.class);
+    HostComponentStateDAO hostComponentStateDAO = injector.getInstance(HostComponentStateDAO.class);
+    ServiceComponentHost sch = addHostComponent("h1");
+
+    // the version reported by heartbeats is deferred
+    sch.setVersion("2.2.0.0-1");
+    Assert.assertEquals(1, writeBehind.getPendingCount());
+
+    // the current state is written right away, with the pending version
+    sch.setState(State.INSTALLED);
+    Assert.assertEquals(0, writeBehind.getPendingCount());
+
+    injector.getInstance(EntityManager.class).clear();
+    HostComponentStateEntity entity = hostComponentStateDAO.findByHost("h1").get(0);
+    Assert.assertEquals(State.INSTALLED, entity.getCurrentState());
+    Assert.assertEquals("2.2.0.0-1", entity.getVersion());
+
+    sch.setUpgradeState(UpgradeState.IN_PROGRESS);
+    Assert.assertEquals(0, writeBehind.getPendingCount());
+  }
+
+  @Test
+  public void testHostStateWrittenDirectly() throws Exception {
+    createInjector("1000");
+    HostStateWriteBehind writeBehind = injector.getInstance(HostStateWriteBehind.class);
+    Host host = addHost("h1");
+
+    host.setState(HostState.HEARTBEAT_LOST);
+    Assert.assertEquals(0, writeBehind.getPendingCount());
+
+    injector.getInstance(EntityManager.class).clear();
+    Assert.assertEquals(HostState.HEARTBEAT_LOST, injector.getInstance(HostStateDAO.class).findByHostId(
+        host.getHostId()).getCurrentState());
+  }
+
+  private void createInjector(String maxPending) throws Exception {
+    createInjector(maxPending, null);
+  }
+
+  private void createInjector(String maxPending, Module override) throws Exception {
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(
+        Configuration.SERVER_STATE_WRITE_BEHIND_ENABLED_KEY, "true");
+    module.getProperties().setProperty(
+        Configuration.SERVER_STATE_WRITE_BEHIND_MAX_PENDING_KEY, maxPending);
+
+    injector = Guice.createInjector(null == override ? module : Modules.override(module).with(override));
+    injector.getInstance(GuiceJpaInitializer.class);
+  }
+
+  private ServiceComponentHost addHostComponent(String hostName) throws Exception {
+    StackId stackId = new StackId("HDP-0.1");
+    Clusters clusters = injector.getInstance(Clusters.class);
+    clusters.addCluster("c1", stackId);
+    Cluster cluster = clusters.getCluster("c1");
+
+    Host host = addHost(hostName);
+    Map<String, String> hostAttributes = new HashMap<String, String>();
+    hostAttributes.put("os_family", "redhat");
+    hostAttributes.put("os_release_version", "6.3");
+    host.setHostAttributes(hostAttributes);
+    host.persist();
+    clusters.mapHostToCluster(hostName, "c1");
+
+    Service service = injector.getInstance(ServiceFactory.class).createNew(cluster, "HDFS");
+    cluster.addService(service);
+    service.persist();
+    ServiceComponent component = injector.getInstance(ServiceComponentFactory.class).createNew(
+        service, "DATANODE");
+    service.addServiceComponent(component);
+    component.persist();
+
+    ServiceComponentHost sch = injector.getInstance(ServiceComponentHostFactory.class).createNew(
+        component, hostName);
+    component.addServiceComponentHost(sch);
+    sch.persist();
+    return sch;
+  }
+
+  private Host addHost(String hostName) throws Exception {
+    Clusters clusters = injector.getInstance(Clusters.class);
+    clusters.addHost(hostName);
+    Host host = clusters.getHost(hostName);
+    host.persist();
+    return host;
+  }
+
+  /**
+   * Holds the merges of one thread until they are released.
+   */
+  @Singleton
+  public static class BlockingHostStateDAO extends HostStateDAO {
+    private volatile Thread blockedThread;
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    @Transactional
+    public HostStateEntity merge(HostStateEntity hostStateEntity) {
+      if (Thread.currentThread() == blockedThread) {
+        blocked.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return super.merge(hostStateEntity);
+    }
+  }
+}
@@ -18,10 +18,15 @@
 package org.apache.ambari.server.state.alerts;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import javax.persistence.EntityManager;
+
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.AlertReceivedEvent;
 import org.apache.ambari.server.events.listeners.alerts.AlertReceivedListener;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
@@ -35,6 +40,7 @@ import org.apache.ambari.server.state.Alert;
 import org.apache.ambari.server.state.AlertState;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.ServiceComponentFactory;
 import org.apache.ambari.server.state.ServiceComponentHostFactory;
 import org.apache.ambari.server.state.ServiceFactory;
@@ -44,9 +50,14 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
+import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
 import com.google.inject.persist.PersistService;
+import com.google.inject.util.Modules;
 
 /**
  * Tests the {@link AlertReceivedListener}.
@@ -70,7 +81,11 @@ public class AlertReceivedListenerTest {
 
   @Before
   public void setup() throws Exception {
-    m_injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    setup(new InMemoryDefaultTestModule());
+  }
+
+  private void setup(Module module) throws Exception {
+    m_injector = Guice.createInjector(module);
     m_injector.getInstance(GuiceJpaInitializer.class);
 
     m_helper = m_injector.getInstance(OrmTestHelper.class);
@@ -259,4 +274,204 @@ public class AlertReceivedListenerTest {
     allCurrent = m_dao.findCurrent();
     assertEquals(0, allCurrent.size());
   }
+
+  /**
+   * Tests that the alerts of a single event are all written.
+   */
+  @Test
+  public void testMultipleAlertsInEvent() {
+    AlertReceivedListener listener = m_injector.getInstance(AlertReceivedListener.class);
+
+    List<Alert> alerts = new ArrayList<Alert>();
+    for (int i = 0; i < 3; i++) {
+      alerts.add(createAlert(ALERT_DEFINITION + i, AlertState.OK, 1L));
+    }
+
+    listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(), alerts));
+    assertEquals(3, m_dao.findCurrent().size());
+
+    // one alert changes state, the others only get a new timestamp
+    alerts = new ArrayList<Alert>();
+    alerts.add(createAlert(ALERT_DEFINITION + 0, AlertState.CRITICAL, 2L));
+    alerts.add(createAlert(ALERT_DEFINITION + 1, AlertState.OK, 2L));
+    alerts.add(createAlert(ALERT_DEFINITION + 2, AlertState.OK, 2L));
+
+    listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(), alerts));
+
+    List<AlertCurrentEntity> allCurrent = m_dao.findCurrent();
+    assertEquals(3, allCurrent.size());
+    for (AlertCurrentEntity current : allCurrent) {
+      assertEquals(Long.valueOf(2L), current.getLatestTimestamp());
+
+      String definitionName = current.getAlertHistory().getAlertDefinition().getDefinitionName();
+      AlertState expected = definitionName.equals(ALERT_DEFINITION + 0) ? AlertState.CRITICAL
+          : AlertState.OK;
+      assertEquals(expected, current.getAlertHistory().getAlertState());
+    }
+
+    assertEquals(4, m_dao.findAll().size());
+  }
+
+  /**
+   * Tests that with the alert cache enabled, alerts which did not change state
+   * are only written when the cache is flushed.
+   */
+  @Test
+  public void testAlertCache() throws Exception {
+    teardown();
+
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.ALERTS_CACHE_ENABLED_KEY, "true");
+    setup(module);
+
+    assertTrue(m_dao.isCacheEnabled());
+
+    AlertReceivedListener listener = m_injector.getInstance(AlertReceivedListener.class);
+    String definitionName = ALERT_DEFINITION + "1";
+
+    listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(),
+        createAlert(definitionName, AlertState.OK, 1L)));
+
+    listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(),
+        createAlert(definitionName, AlertState.OK, 2L)));
+
+    // the cached alert has the new timestamp, the database does not
+    AlertCurrentEntity cached = m_dao.findCurrentByHostAndName(
+        m_cluster.getClusterId(), HOST1, definitionName);
+    assertEquals(Long.valueOf(2L), cached.getLatestTimestamp());
+
+    m_injector.getInstance(EntityManager.class).clear();
+    assertEquals(Long.valueOf(1L), m_dao.findCurrent().get(0).getLatestTimestamp());
+
+    m_dao.flushCachedEntitiesToJPA();
+    assertEquals(Long.valueOf(2L), m_dao.findCurrent().get(0).getLatestTimestamp());
+
+    // a state change is written right away
+    listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(),
+        createAlert(definitionName, AlertState.CRITICAL, 3L)));
+
+    m_injector.getInstance(EntityManager.class).clear();
+    AlertCurrentEntity current = m_dao.findCurrent().get(0);
+    assertEquals(AlertState.CRITICAL, current.getAlertHistory().getAlertState());
+    assertEquals(Long.valueOf(3L), current.getLatestTimestamp());
+  }
+
+  /**
+   * Tests that a maintenance mode change merged while a heartbeat update is
+   * waiting in the alert cache keeps both changes.
+   */
+  @Test
+  public void testAlertCacheWithMaintenanceModeMerge() throws Exception {
+    teardown();
+
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.ALERTS_CACHE_ENABLED_KEY, "true");
+    setup(module);
+
+    AlertReceivedListener listener = m_injector.getInstance(AlertReceivedListener.class);
+    String definitionName = ALERT_DEFINITION + "1";
+
+    listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(),
+        createAlert(definitionName, AlertState.OK, 1L)));
+
+    listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(),
+        createAlert(definitionName, AlertState.OK, 2L)));
+
+    // a heartbeat read the alert before the maintenance mode change
+    AlertCurrentEntity read = m_dao.findCurrentByHostAndName(
+        m_cluster.getClusterId(), HOST1, definitionName);
+
+    // like AlertMaintenanceModeListener, merge an alert loaded from the database
+    m_injector.getInstance(EntityManager.class).clear();
+    AlertCurrentEntity loaded = m_dao.findCurrent().get(0);
+    assertEquals(Long.valueOf(1L), loaded.getLatestTimestamp());
+    loaded.setMaintenanceState(MaintenanceState.ON);
+    m_dao.merge(loaded);
+
+    m_dao.flushCachedEntitiesToJPA();
+    m_injector.getInstance(EntityManager.class).clear();
+    AlertCurrentEntity current = m_dao.findCurrent().get(0);
+    assertEquals(MaintenanceState.ON, current.getMaintenanceState());
+    assertEquals(Long.valueOf(2L), current.getLatestTimestamp());
+
+    // the heartbeat's update of the instance it read keeps the maintenance mode
+    m_dao.mergeLatest(read, 3L, "HDFS DATANODE is OK");
+    m_dao.flushCachedEntitiesToJPA();
+    m_injector.getInstance(EntityManager.class).clear();
+    current = m_dao.findCurrent().get(0);
+    assertEquals(MaintenanceState.ON, current.getMaintenanceState());
+    assertEquals(Long.valueOf(3L), current.getLatestTimestamp());
+  }
+
+  /**
+   * Tests that an alert which cannot be written does not keep the other alerts
+   * of the same heartbeat from being written.
+   */
+  @Test
+  public void testFailingAlertIsIsolated() throws Exception {
+    teardown();
+
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.ALERTS_CACHE_ENABLED_KEY, "true");
+    setup(Modules.override(module).with(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(AlertsDAO.class).to(FailingAlertsDAO.class);
+      }
+    }));
+
+    AlertReceivedListener listener = m_injector.getInstance(AlertReceivedListener.class);
+
+    List<Alert> alerts = new ArrayList<Alert>();
+    alerts.add(createAlert(ALERT_DEFINITION + 0, AlertState.OK, 1L));
+    alerts.add(createAlert(FailingAlertsDAO.FAILING_DEFINITION, AlertState.OK, 1L));
+    alerts.add(createAlert(ALERT_DEFINITION + 2, AlertState.OK, 1L));
+
+    listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(), alerts));
+
+    m_injector.getInstance(EntityManager.class).clear();
+    List<AlertCurrentEntity> allCurrent = m_dao.findCurrent();
+    assertEquals(2, allCurrent.size());
+    for (AlertCurrentEntity current : allCurrent) {
+      assertTrue(!FailingAlertsDAO.FAILING_DEFINITION.equals(
+          current.getAlertHistory().getAlertDefinition().getDefinitionName()));
+    }
+
+    // the failed alert is not cached and is created with the next heartbeat
+    assertEquals(null, m_dao.findCurrentByHostAndName(m_cluster.getClusterId(),
+        HOST1, FailingAlertsDAO.FAILING_DEFINITION));
+  }
+
+  private Alert createAlert(String definitionName, AlertState state, long timestamp) {
+    Alert alert = new Alert(definitionName, null, "HDFS", "DATANODE", HOST1, state);
+    alert.setCluster(m_cluster.getClusterName());
+    alert.setLabel(ALERT_LABEL);
+    alert.setText("HDFS DATANODE is " + state);
+    alert.setTimestamp(timestamp);
+    return alert;
+  }
+
+  /**
+   * An {@link AlertsDAO} which fails to create the current alert of one
+   * definition.
+   */
+  @Singleton
+  public static class FailingAlertsDAO extends AlertsDAO {
+    static final String FAILING_DEFINITION = ALERT_DEFINITION + 1;
+
+    @Inject
+    public FailingAlertsDAO(Configuration configuration) {
+      super(configuration);
+    }
+
+    @Override
+    public void create(AlertCurrentEntity alert) {
+      if (FAILING_DEFINITION.equals(
+          alert.getAlertHistory().getAlertDefinition().getDefinitionName())) {
+        throw new IllegalStateException("Unable to write " + FAILING_DEFINITION);
+      }
+
+      super.create(alert);
+    }
+  }
 }
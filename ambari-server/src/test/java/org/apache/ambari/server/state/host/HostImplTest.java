@@ -25,6 +25,7 @@ import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.HostStateEntity;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.HostHealthStatus;
+import org.apache.ambari.server.state.HostStateWriteBehind;
 import org.junit.Test;
 
 import java.util.Map;
@@ -47,11 +48,13 @@ public class HostImplTest {
     HostStateDAO hostStateDAO  = createNiceMock(HostStateDAO.class);
 
 
+    HostStateWriteBehind writeBehind = createNiceMock(HostStateWriteBehind.class);
     Gson gson = new Gson();
 
     expect(injector.getInstance(Gson.class)).andReturn(gson).anyTimes();
     expect(injector.getInstance(HostDAO.class)).andReturn(hostDAO).anyTimes();
     expect(injector.getInstance(HostStateDAO.class)).andReturn(hostStateDAO).anyTimes();
+    expect(injector.getInstance(HostStateWriteBehind.class)).andReturn(writeBehind).anyTimes();
     expect(hostEntity.getHostAttributes()).andReturn("{\"foo\": \"aaa\", \"bar\":\"bbb\"}").anyTimes();
     expect(hostEntity.getHostId()).andReturn(1L).anyTimes();
     expect(hostEntity.getHostName()).andReturn("host1").anyTimes();
@@ -59,7 +62,7 @@ public class HostImplTest {
     expect(hostDAO.findById(1L)).andReturn(hostEntity).once();
     expect(hostStateDAO.findByHostId(1L)).andReturn(hostStateEntity).once();
 
-    replay(hostEntity, hostStateEntity, injector, hostDAO);
+    replay(hostEntity, hostStateEntity, injector, hostDAO, writeBehind);
     HostImpl host = new HostImpl(hostEntity, false, injector);
 
     Map<String, String> hostAttributes = host.getHostAttributes();
@@ -84,11 +87,13 @@ public class HostImplTest {
     HostStateDAO hostStateDAO  = createNiceMock(HostStateDAO.class);
     Injector injector = createNiceMock(Injector.class);
 
+    HostStateWriteBehind writeBehind = createNiceMock(HostStateWriteBehind.class);
     Gson gson = new Gson();
 
     expect(injector.getInstance(Gson.class)).andReturn(gson).anyTimes();
     expect(injector.getInstance(HostDAO.class)).andReturn(hostDAO).anyTimes();
     expect(injector.getInstance(HostStateDAO.class)).andReturn(hostStateDAO).anyTimes();
+    expect(injector.getInstance(HostStateWriteBehind.class)).andReturn(writeBehind).anyTimes();
     expect(hostEntity.getHostAttributes()).andReturn("{\"foo\": \"aaa\", \"bar\":\"bbb\"}").anyTimes();
     expect(hostEntity.getHostName()).andReturn("host1").anyTimes();
     expect(hostEntity.getHostId()).andReturn(1L).anyTimes();
@@ -96,7 +101,7 @@ public class HostImplTest {
     expect(hostDAO.findById(1L)).andReturn(hostEntity).anyTimes();
     expect(hostStateDAO.findByHostId(1L)).andReturn(hostStateEntity).once();
 
-    replay(hostEntity, hostStateEntity, injector, hostDAO);
+    replay(hostEntity, hostStateEntity, injector, hostDAO, writeBehind);
     HostImpl host = new HostImpl(hostEntity, false, injector);
 
     host.getHealthStatus();
@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.topology;
+
+import org.apache.ambari.server.controller.AmbariManagementController;
+import org.apache.ambari.server.controller.RequestStatusResponse;
+import org.apache.ambari.server.controller.ShortTaskStatus;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.HostHealthStatus;
+import org.apache.ambari.server.state.host.HostImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Registers a large number of hosts concurrently with the TopologyManager.
+ */
+public class TopologyManagerLoadTest {
+
+  private static final String CLUSTER_NAME = "test-cluster";
+  private static final int HOST_COUNT = 1000;
+  private static final int REGISTRATION_THREADS = 20;
+
+  private final AmbariContext ambariContext = createNiceMock(AmbariContext.class);
+  private final PersistedState persistedState = createNiceMock(PersistedState.class);
+  private final AmbariManagementController controller = createNiceMock(AmbariManagementController.class);
+  private final Clusters clusters = createNiceMock(Clusters.class);
+  private final Cluster cluster = createNiceMock(Cluster.class);
+  private final ClusterTopology topology = createNiceMock(ClusterTopology.class);
+  private final Blueprint blueprint = createNiceMock(Blueprint.class);
+  private final HostGroup masterGroup = createNiceMock(HostGroup.class);
+  private final HostGroup workerGroup = createNiceMock(HostGroup.class);
+  private final TopologyRequest request = createNiceMock(TopologyRequest.class);
+
+  private LogicalRequest logicalRequest;
+  private TopologyManager topologyManager;
+
+  @Before
+  public void setup() throws Exception {
+    expect(controller.getClusters()).andReturn(clusters).anyTimes();
+    expect(clusters.getCluster(CLUSTER_NAME)).andReturn(cluster).anyTimes();
+    expect(clusters.getClusterById(1L)).andReturn(cluster).anyTimes();
+    expect(cluster.getClusterId()).andReturn(1L).anyTimes();
+    expect(cluster.getClusterName()).andReturn(CLUSTER_NAME).anyTimes();
+
+    expect(blueprint.getName()).andReturn("test-bp").anyTimes();
+    expect(blueprint.getHostGroup("master")).andReturn(masterGroup).anyTimes();
+    expect(blueprint.getHostGroup("worker")).andReturn(workerGroup).anyTimes();
+
+    expect(masterGroup.getName()).andReturn("master").anyTimes();
+    expect(masterGroup.containsMasterComponent()).andReturn(true).anyTimes();
+    expect(masterGroup.getComponents()).andReturn(Collections.<String>emptyList()).anyTimes();
+    expect(masterGroup.getServices()).andReturn(Collections.<String>emptyList()).anyTimes();
+    expect(workerGroup.getName()).andReturn("worker").anyTimes();
+    expect(workerGroup.containsMasterComponent()).andReturn(false).anyTimes();
+    expect(workerGroup.getComponents()).andReturn(Collections.<String>emptyList()).anyTimes();
+    expect(workerGroup.getServices()).andReturn(Collections.<String>emptyList()).anyTimes();
+
+    HostGroupInfo masterInfo = new HostGroupInfo("master");
+    masterInfo.setRequestedCount(1);
+    masterInfo.setPredicate("Hosts/host_name=master-host");
+    HostGroupInfo workerInfo = new HostGroupInfo("worker");
+    workerInfo.setRequestedCount(HOST_COUNT);
+    Map<String, HostGroupInfo> groupInfoMap = new LinkedHashMap<String, HostGroupInfo>();
+    groupInfoMap.put("worker", workerInfo);
+    groupInfoMap.put("master", masterInfo);
+
+    expect(request.getClusterName()).andReturn(CLUSTER_NAME).anyTimes();
+    expect(request.getDescription()).andReturn("Load Test").anyTimes();
+    expect(request.getHostGroupInfo()).andReturn(groupInfoMap).anyTimes();
+
+    RequestStatusResponse response = new RequestStatusResponse(1L);
+    response.setTasks(Collections.<ShortTaskStatus>emptyList());
+
+    expect(topology.getClusterName()).andReturn(CLUSTER_NAME).anyTimes();
+    expect(topology.getBlueprint()).andReturn(blueprint).anyTimes();
+    expect(topology.getAmbariContext()).andReturn(ambariContext).anyTimes();
+    expect(topology.installHost(isA(String.class))).andReturn(response).times(HOST_COUNT + 1);
+    expect(topology.startHost(isA(String.class))).andReturn(response).times(HOST_COUNT + 1);
+
+    expect(ambariContext.getPersistedTopologyState()).andReturn(persistedState).anyTimes();
+    expect(ambariContext.doesConfigurationWithTagExist(CLUSTER_NAME,
+        TopologyManager.TOPOLOGY_RESOLVED_TAG)).andReturn(true).anyTimes();
+    ambariContext.createAmbariHostResources(eq(CLUSTER_NAME), isA(String.class),
+        anyObject(Map.class));
+    expectLastCall().times(HOST_COUNT + 1);
+
+    replay(controller, clusters, cluster, blueprint, masterGroup, workerGroup, request, topology, ambariContext);
+
+    Field f = LogicalRequest.class.getDeclaredField("controller");
+    f.setAccessible(true);
+    f.set(null, controller);
+
+    logicalRequest = new LogicalRequest(1L, request, topology);
+
+    Map<ClusterTopology, List<LogicalRequest>> persistedRequests =
+        Collections.singletonMap(topology, Collections.singletonList(logicalRequest));
+    expect(persistedState.getAllRequests()).andReturn(persistedRequests).once();
+    replay(persistedState);
+
+    f = TopologyManager.class.getDeclaredField("ambariContext");
+    f.setAccessible(true);
+    f.set(null, ambariContext);
+
+    topologyManager = new TopologyManager();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Field f = LogicalRequest.class.getDeclaredField("controller");
+    f.setAccessible(true);
+    f.set(null, null);
+  }
+
+  @Test
+  public void testConcurrentHostRegistration() throws Exception {
+    List<HostImpl> hosts = new ArrayList<HostImpl>();
+    for (int i = 0; i < HOST_COUNT; ++i) {
+      hosts.add(createHost("host" + i));
+    }
+    hosts.add(createHost("master-host"));
+
+    ExecutorService registrationExecutor = Executors.newFixedThreadPool(REGISTRATION_THREADS);
+    List<Callable<Void>> registrations = new ArrayList<Callable<Void>>();
+    for (final HostImpl host : hosts) {
+      registrations.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          topologyManager.onHostRegistered(host, false);
+          return null;
+        }
+      });
+    }
+    for (Future<Void> future : registrationExecutor.invokeAll(registrations)) {
+      // propagate any registration failure
+      future.get();
+    }
+    registrationExecutor.shutdown();
+
+    assertTrue(logicalRequest.hasCompleted());
+
+    Collection<String> assignedHosts = new HashSet<String>();
+    for (HostRequest hostRequest : logicalRequest.getHostRequests()) {
+      assignedHosts.add(hostRequest.getHostName());
+      if (hostRequest.getHostgroupName().equals("master")) {
+        assertEquals("master-host", hostRequest.getHostName());
+      }
+    }
+    assertEquals(HOST_COUNT + 1, assignedHosts.size());
+
+    // no outstanding requests remain so an additional host is queued as available
+    topologyManager.onHostRegistered(createHost("extra-host"), false);
+    Field f = TopologyManager.class.getDeclaredField("availableHosts");
+    f.setAccessible(true);
+    assertEquals(1, ((Collection<?>) f.get(topologyManager)).size());
+
+    // wait for all host tasks to run
+    f = TopologyManager.class.getDeclaredField("executor");
+    f.setAccessible(true);
+    ExecutorService executor = (ExecutorService) f.get(topologyManager);
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+    verify(topology, ambariContext);
+  }
+
+  private HostImpl createHost(String hostName) {
+    HostImpl host = createNiceMock(HostImpl.class);
+    expect(host.getHostName()).andReturn(hostName).anyTimes();
+    expect(host.getHealthStatus()).andReturn(
+        new HostHealthStatus(HostHealthStatus.HealthStatus.HEALTHY, "")).anyTimes();
+    replay(host);
+    return host;
+  }
+}